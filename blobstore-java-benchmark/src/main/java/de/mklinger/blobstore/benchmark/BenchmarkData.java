@@ -0,0 +1,137 @@
+package de.mklinger.blobstore.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import de.mklinger.blobstore.BlobEntry;
+import de.mklinger.blobstore.FileBlobStoreWriter;
+
+/**
+ * Synthetic data generator for benchmarks. All data is derived from a fixed
+ * seed, so runs are comparable.
+ *
+ * @author Marc Klinger - mklinger[at]mklinger[dot]de
+ */
+public final class BenchmarkData {
+	private static final long SEED = 4711;
+	private static final String[] WORDS = {
+			"blob", "store", "index", "entry", "offset", "length", "media", "type",
+			"encoding", "gzip", "deflate", "block", "header", "reader", "writer", "file",
+			"name", "value", "data", "search", "binary", "cache", "channel", "stream",
+			"{", "}", "\"", ":", ",", "0", "1", "42", "true", "false", "null", "\n"
+	};
+
+	private BenchmarkData() {
+	}
+
+	/**
+	 * @return The name of the entry with the given number. Names sort in
+	 *         number order.
+	 */
+	public static String getName(final int idx) {
+		return String.format("entry-%010d", idx);
+	}
+
+	/**
+	 * @return A name that sorts between the names of existing entries, but
+	 *         does not exist.
+	 */
+	public static String getMissingName(final int idx) {
+		return getName(idx) + "-missing";
+	}
+
+	/**
+	 * Create text like contents which compresses similar to JSON documents.
+	 */
+	public static byte[] getContents(final Random random, final int size) {
+		final StringBuilder sb = new StringBuilder(size + 16);
+		while (sb.length() < size) {
+			sb.append(WORDS[random.nextInt(WORDS.length)]);
+			if (random.nextInt(4) == 0) {
+				sb.append(random.nextInt(100_000));
+			}
+			sb.append(' ');
+		}
+		sb.setLength(size);
+		return sb.toString().getBytes(StandardCharsets.US_ASCII);
+	}
+
+	/**
+	 * Create contents for the given number of entries.
+	 */
+	public static List<byte[]> getContents(final int count, final int size) {
+		final Random random = new Random(SEED);
+		final List<byte[]> contents = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			contents.add(getContents(random, size));
+		}
+		return contents;
+	}
+
+	/**
+	 * Write a blob file with entries named by {@link #getName(int)}.
+	 * @param entryNumbers Entry numbers used for names, e.g. to write files
+	 *        with interleaved or disjoint name ranges
+	 * @param encoding The encoding to use, {@link BlobEntry#ENCODING_IDENTITY}
+	 *        to store contents as they are
+	 */
+	public static void writeBlobFile(final File blobFile, final int formatVersion, final int[] entryNumbers, final int entrySize, final String encoding) throws IOException {
+		final Random random = new Random(SEED);
+		try (FileBlobStoreWriter writer = FileBlobStoreWriter.builder()
+				.blobFile(blobFile)
+				.overwrite(true)
+				.formatVersion(formatVersion)
+				.build()) {
+			for (final int entryNumber : entryNumbers) {
+				final ByteArrayInputStream in = new ByteArrayInputStream(getContents(random, entrySize));
+				if (BlobEntry.ENCODING_IDENTITY.equals(encoding)) {
+					writer.addBlobEntryUnencoded(getName(entryNumber), in);
+				} else {
+					writer.addBlobEntryEncoded(getName(entryNumber), in, null, encoding);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Write a blob file with entries numbered from 0 to entryCount - 1.
+	 */
+	public static void writeBlobFile(final File blobFile, final int formatVersion, final int entryCount, final int entrySize, final String encoding) throws IOException {
+		final int[] entryNumbers = new int[entryCount];
+		for (int i = 0; i < entryCount; i++) {
+			entryNumbers[i] = i;
+		}
+		writeBlobFile(blobFile, formatVersion, entryNumbers, entrySize, encoding);
+	}
+
+	public static File newTempDirectory() throws IOException {
+		return Files.createTempDirectory("blobstore-benchmark").toFile();
+	}
+
+	public static void deleteRecursively(final File directory) {
+		if (directory == null || !directory.exists()) {
+			return;
+		}
+		try (Stream<Path> paths = Files.walk(directory.toPath())) {
+			paths.sorted(Comparator.reverseOrder()).forEach(path -> {
+				try {
+					Files.delete(path);
+				} catch (final IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+		} catch (final IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
@@ -0,0 +1,99 @@
+package de.mklinger.blobstore.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.mklinger.blobstore.BlobEntry;
+import de.mklinger.blobstore.FileBlobStoreReader;
+
+/**
+ * Throughput of reading decoded entry contents by name, by encoding and
+ * entry size.
+ *
+ * @author Marc Klinger - mklinger[at]mklinger[dot]de
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DecodedReadBenchmark {
+	private static final int ENTRY_COUNT = 10_000;
+
+	@Param({ BlobEntry.ENCODING_IDENTITY, BlobEntry.ENCODING_GZIP, BlobEntry.ENCODING_DEFLATE_RAW, BlobEntry.ENCODING_LZ4_BLOCKS })
+	private String encoding;
+
+	@Param({ "1024", "65536" })
+	private int entrySize;
+
+	@Param({ "false", "true" })
+	private boolean mappedContents;
+
+	private File directory;
+	private FileBlobStoreReader reader;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		directory = BenchmarkData.newTempDirectory();
+		final File blobFile = new File(directory, "decoded.blob");
+		BenchmarkData.writeBlobFile(blobFile, 2, ENTRY_COUNT, entrySize, encoding);
+		reader = FileBlobStoreReader.builder()
+				.blobFile(blobFile)
+				.mappedContents(mappedContents)
+				.inMemoryIndex(true)
+				.build();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		reader.close();
+		BenchmarkData.deleteRecursively(directory);
+	}
+
+	@Benchmark
+	public long read(final ReadBuffer buffer) throws IOException {
+		return read(buffer, reader);
+	}
+
+	@Benchmark
+	@Threads(4)
+	public long read4Threads(final ReadBuffer buffer) throws IOException {
+		return read(buffer, reader);
+	}
+
+	private static long read(final ReadBuffer buffer, final FileBlobStoreReader reader) throws IOException {
+		final String name = BenchmarkData.getName(ThreadLocalRandom.current().nextInt(ENTRY_COUNT));
+		long count = 0;
+		try (InputStream in = reader.getBlobEntryContentsDecoded(name)) {
+			int n;
+			while ((n = in.read(buffer.buf)) != -1) {
+				count += n;
+			}
+		}
+		return count;
+	}
+
+	@State(Scope.Thread)
+	public static class ReadBuffer {
+		private final byte[] buf = new byte[8192];
+	}
+}
@@ -0,0 +1,100 @@
+package de.mklinger.blobstore.benchmark;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.mklinger.blobstore.io.FileChannelInputStream;
+
+/**
+ * Time to read a gzip file of about 1.4 MB through a
+ * {@link FileChannelInputStream}, by buffer size. A buffer size of 1 issues
+ * a read system call per byte, like an unbuffered stream. Both single byte
+ * reads as done by line parsers and gzip decoding, which reads its source
+ * in small chunks, are measured.
+ *
+ * @author Marc Klinger - mklinger[at]mklinger[dot]de
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FileChannelInputStreamBenchmark {
+	@Param({ "1", "8192", "65536" })
+	private int bufferSize;
+
+	private File directory;
+	private FileChannel channel;
+	private long length;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		directory = BenchmarkData.newTempDirectory();
+		final File file = new File(directory, "lines.gz");
+		try (OutputStream out = new GZIPOutputStream(new FileOutputStream(file))) {
+			for (int i = 0; i < 200_000; i++) {
+				out.write(("line " + i + " " + (i * 7919) + "\n").getBytes(StandardCharsets.US_ASCII));
+			}
+		}
+		channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		length = channel.size();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		channel.close();
+		BenchmarkData.deleteRecursively(directory);
+	}
+
+	@Benchmark
+	public long singleByteReads() throws IOException {
+		long count = 0;
+		try (InputStream in = new FileChannelInputStream(channel, 0, length, bufferSize)) {
+			while (in.read() != -1) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	@Benchmark
+	public long gzipDecoded(final ReadBuffer buffer) throws IOException {
+		long count = 0;
+		try (InputStream in = new GZIPInputStream(new FileChannelInputStream(channel, 0, length, bufferSize))) {
+			int n;
+			while ((n = in.read(buffer.buf)) != -1) {
+				count += n;
+			}
+		}
+		return count;
+	}
+
+	@State(Scope.Thread)
+	public static class ReadBuffer {
+		private final byte[] buf = new byte[8192];
+	}
+}
@@ -0,0 +1,83 @@
+package de.mklinger.blobstore.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.mklinger.blobstore.BlobEntry;
+import de.mklinger.blobstore.FileBlobStoreWriter;
+
+/**
+ * Time to write many small entries with index chunk files, including
+ * merging the chunk files on close. Entries are added in reverse name
+ * order, so every chunk spans the whole name range.
+ *
+ * @author Marc Klinger - mklinger[at]mklinger[dot]de
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class IndexWriteBenchmark {
+	private static final byte[] CONTENTS = new byte[16];
+
+	@Param({ "1000000" })
+	private int entryCount;
+
+	@Param({ "10000" })
+	private int maxIndexEntriesInMemory;
+
+	/** Whether to write and merge index chunks using an executor. */
+	@Param({ "false", "true" })
+	private boolean indexMergeExecutor;
+
+	private File directory;
+	private ExecutorService executor;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		directory = BenchmarkData.newTempDirectory();
+		executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		executor.shutdown();
+		BenchmarkData.deleteRecursively(directory);
+	}
+
+	@Benchmark
+	public long write() throws IOException {
+		final File target = new File(directory, "target.blob");
+		try (FileBlobStoreWriter writer = FileBlobStoreWriter.builder()
+				.blobFile(target)
+				.overwrite(true)
+				.maxIndexEntriesInMemory(maxIndexEntriesInMemory)
+				.indexMergeExecutor(indexMergeExecutor ? executor : null)
+				.build()) {
+			for (int i = entryCount - 1; i >= 0; i--) {
+				writer.addBlobEntry(BenchmarkData.getName(i), new ByteArrayInputStream(CONTENTS), null, BlobEntry.ENCODING_IDENTITY);
+			}
+		}
+		return target.length();
+	}
+}
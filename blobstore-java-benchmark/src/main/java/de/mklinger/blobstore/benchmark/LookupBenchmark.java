@@ -0,0 +1,83 @@
+package de.mklinger.blobstore.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.mklinger.blobstore.BlobEntry;
+import de.mklinger.blobstore.FileBlobStoreReader;
+
+/**
+ * Latency of {@link FileBlobStoreReader#getBlobEntry(String)} for existing
+ * and missing names, by index size, format version and position cache
+ * depth. The position cache is used for format version 1 only. The bloom
+ * filter is disabled, so misses search the index.
+ *
+ * @author Marc Klinger - mklinger[at]mklinger[dot]de
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LookupBenchmark {
+	@Param({ "1000", "100000", "1000000" })
+	private int entryCount;
+
+	@Param({ "1", "2" })
+	private int formatVersion;
+
+	@Param({ "0", "20" })
+	private int positionCacheDepth;
+
+	@Param({ "false", "true" })
+	private boolean mapped;
+
+	private File directory;
+	private FileBlobStoreReader reader;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		directory = BenchmarkData.newTempDirectory();
+		final File blobFile = new File(directory, "lookup.blob");
+		BenchmarkData.writeBlobFile(blobFile, formatVersion, entryCount, 16, BlobEntry.ENCODING_IDENTITY);
+		reader = FileBlobStoreReader.builder()
+				.blobFile(blobFile)
+				.positionCacheDepth(positionCacheDepth)
+				.mapped(mapped)
+				.bloomFilter(false)
+				.build();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		reader.close();
+		BenchmarkData.deleteRecursively(directory);
+	}
+
+	@Benchmark
+	public BlobEntry hit() throws IOException {
+		return reader.getBlobEntry(BenchmarkData.getName(ThreadLocalRandom.current().nextInt(entryCount)));
+	}
+
+	@Benchmark
+	public BlobEntry miss() throws IOException {
+		return reader.getBlobEntry(BenchmarkData.getMissingName(ThreadLocalRandom.current().nextInt(entryCount)));
+	}
+}
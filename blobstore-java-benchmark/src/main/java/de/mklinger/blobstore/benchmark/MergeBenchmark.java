@@ -0,0 +1,73 @@
+package de.mklinger.blobstore.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.mklinger.blobstore.BlobEntry;
+import de.mklinger.blobstore.FileBlobStoreReader;
+import de.mklinger.blobstore.FileBlobStoreWriter;
+
+/**
+ * Time to merge a blob file into a new blob file using
+ * {@link FileBlobStoreWriter#mergeFrom(de.mklinger.blobstore.BlobStoreReader)},
+ * including writing the index on close.
+ *
+ * @author Marc Klinger - mklinger[at]mklinger[dot]de
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MergeBenchmark {
+	@Param({ "10000", "100000" })
+	private int entryCount;
+
+	@Param({ BlobEntry.ENCODING_IDENTITY, BlobEntry.ENCODING_GZIP })
+	private String encoding;
+
+	private File directory;
+	private FileBlobStoreReader reader;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		directory = BenchmarkData.newTempDirectory();
+		final File blobFile = new File(directory, "source.blob");
+		BenchmarkData.writeBlobFile(blobFile, 2, entryCount, 1024, encoding);
+		reader = new FileBlobStoreReader(blobFile);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		reader.close();
+		BenchmarkData.deleteRecursively(directory);
+	}
+
+	@Benchmark
+	public long mergeFrom() throws IOException {
+		final File target = new File(directory, "target.blob");
+		try (FileBlobStoreWriter writer = FileBlobStoreWriter.builder()
+				.blobFile(target)
+				.overwrite(true)
+				.build()) {
+			writer.mergeFrom(reader);
+		}
+		return target.length();
+	}
+}
@@ -0,0 +1,86 @@
+package de.mklinger.blobstore.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.mklinger.blobstore.BlobEntry;
+import de.mklinger.blobstore.MultiFileBlobStoreReader;
+
+/**
+ * Latency of {@link MultiFileBlobStoreReader#getBlobEntry(String)} across a
+ * number of blob files. With disjoint name ranges, as written by a rotating
+ * writer, a lookup needs to ask one file only. With interleaved names, all
+ * files have overlapping name ranges and lookups rely on the bloom filters.
+ *
+ * @author Marc Klinger - mklinger[at]mklinger[dot]de
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MultiFileLookupBenchmark {
+	private static final int ENTRIES_PER_FILE = 10_000;
+
+	@Param({ "1", "10", "100" })
+	private int fileCount;
+
+	@Param({ "false", "true" })
+	private boolean interleaved;
+
+	private File directory;
+	private MultiFileBlobStoreReader reader;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		directory = BenchmarkData.newTempDirectory();
+		final List<File> files = new ArrayList<>(fileCount);
+		for (int fileIdx = 0; fileIdx < fileCount; fileIdx++) {
+			final int[] entryNumbers = new int[ENTRIES_PER_FILE];
+			for (int i = 0; i < ENTRIES_PER_FILE; i++) {
+				entryNumbers[i] = interleaved
+						? i * fileCount + fileIdx
+						: fileIdx * ENTRIES_PER_FILE + i;
+			}
+			final File blobFile = new File(directory, "multi-" + fileIdx + ".blob");
+			BenchmarkData.writeBlobFile(blobFile, 2, entryNumbers, 16, BlobEntry.ENCODING_IDENTITY);
+			files.add(blobFile);
+		}
+		reader = new MultiFileBlobStoreReader(files);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		reader.close();
+		BenchmarkData.deleteRecursively(directory);
+	}
+
+	@Benchmark
+	public BlobEntry hit() throws IOException {
+		return reader.getBlobEntry(BenchmarkData.getName(ThreadLocalRandom.current().nextInt(fileCount * ENTRIES_PER_FILE)));
+	}
+
+	@Benchmark
+	public BlobEntry miss() throws IOException {
+		return reader.getBlobEntry(BenchmarkData.getMissingName(ThreadLocalRandom.current().nextInt(fileCount * ENTRIES_PER_FILE)));
+	}
+}
@@ -0,0 +1,111 @@
+package de.mklinger.blobstore.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.mklinger.blobstore.FileBlobStoreWriter;
+
+/**
+ * Throughput of adding entries, single and multi threaded. A new blob file
+ * is written for each iteration, closing the writer including the index
+ * merge is part of the iteration teardown and not measured.
+ *
+ * @author Marc Klinger - mklinger[at]mklinger[dot]de
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WriteBenchmark {
+	private static final int CONTENTS_COUNT = 1024;
+
+	@Param({ "1024", "65536" })
+	private int entrySize;
+
+	@Param({ "false", "true" })
+	private boolean concurrentWrites;
+
+	private List<byte[]> contents;
+	private File directory;
+	private FileBlobStoreWriter writer;
+	private final AtomicInteger entryNumber = new AtomicInteger();
+
+	@Setup(Level.Trial)
+	public void setUpTrial() throws IOException {
+		contents = BenchmarkData.getContents(CONTENTS_COUNT, entrySize);
+		directory = BenchmarkData.newTempDirectory();
+	}
+
+	@Setup(Level.Iteration)
+	public void setUpIteration() throws IOException {
+		writer = FileBlobStoreWriter.builder()
+				.blobFile(new File(directory, "write.blob"))
+				.overwrite(true)
+				.concurrentWrites(concurrentWrites)
+				.build();
+	}
+
+	@TearDown(Level.Iteration)
+	public void tearDownIteration() throws IOException {
+		writer.close();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDownTrial() {
+		BenchmarkData.deleteRecursively(directory);
+	}
+
+	@Benchmark
+	public void addBlobEntry() throws IOException {
+		addBlobEntry(false);
+	}
+
+	@Benchmark
+	@Threads(4)
+	public void addBlobEntry4Threads() throws IOException {
+		addBlobEntry(false);
+	}
+
+	@Benchmark
+	public void addBlobEntryGzEncoded() throws IOException {
+		addBlobEntry(true);
+	}
+
+	@Benchmark
+	@Threads(4)
+	public void addBlobEntryGzEncoded4Threads() throws IOException {
+		addBlobEntry(true);
+	}
+
+	private void addBlobEntry(final boolean gzEncoded) throws IOException {
+		final int idx = entryNumber.getAndIncrement();
+		final String name = BenchmarkData.getName(idx);
+		final ByteArrayInputStream in = new ByteArrayInputStream(contents.get(idx % CONTENTS_COUNT));
+		if (gzEncoded) {
+			writer.addBlobEntryGzEncoded(name, in);
+		} else {
+			writer.addBlobEntryUnencoded(name, in);
+		}
+	}
+}
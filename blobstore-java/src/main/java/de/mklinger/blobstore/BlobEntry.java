@@ -1,8 +1,18 @@
 package de.mklinger.blobstore;
 
+import de.mklinger.blobstore.codec.BlobCodecs;
+
 public interface BlobEntry {
 	String ENCODING_IDENTITY = "identity";
 	String ENCODING_GZIP = "gzip";
+	/** Raw deflate data without header and checksum. */
+	String ENCODING_DEFLATE_RAW = "deflate-raw";
+	/** LZ4 compressed blocks, see {@link de.mklinger.blobstore.io.Lz4BlockCompressingInputStream}. */
+	String ENCODING_LZ4_BLOCKS = "lz4-blocks";
+	/** Raw deflate data using the preset dictionary of the blob file. */
+	String ENCODING_DEFLATE_DICT = "deflate-dict";
+	/** Entry packed into a compressed block, see {@link de.mklinger.blobstore.impl.CompressedBlock}. */
+	String ENCODING_DEFLATE_BLOCK = "deflate-block";
 
 	String getName();
 	long getOffset();
@@ -10,10 +20,14 @@ public interface BlobEntry {
 	String getEncoding();
 	String getMediaType();
 
+	/**
+	 * @throws IllegalArgumentException If no codec is registered for the
+	 *         given encoding, see {@link BlobCodecs}.
+	 */
 	public static String requireValidEncoding(String encoding) {
-		if (encoding != null && !BlobEntry.ENCODING_GZIP.equals(encoding) && !BlobEntry.ENCODING_IDENTITY.equals(encoding)) {
-			throw new IllegalArgumentException("Unsupported encoding: " + encoding);
+		if (encoding != null) {
+			BlobCodecs.require(encoding);
 		}
 		return encoding;
 	}
-}
\ No newline at end of file
+}
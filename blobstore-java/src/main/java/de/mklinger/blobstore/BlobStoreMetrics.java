@@ -0,0 +1,82 @@
+package de.mklinger.blobstore;
+
+/**
+ * Receiver for metrics of readers and writers. All methods have empty
+ * default implementations, so implementations only override what they are
+ * interested in. Methods are called by any thread using a reader or writer
+ * and must be thread-safe and fast.
+ *
+ * @see FileBlobStoreReader.Builder#metrics(BlobStoreMetrics)
+ * @see FileBlobStoreWriter.Builder#metrics(BlobStoreMetrics)
+ * @author Marc Klinger - mklinger[at]mklinger[dot]de
+ */
+public interface BlobStoreMetrics {
+	/** Metrics implementation ignoring all calls. */
+	BlobStoreMetrics NOOP = new BlobStoreMetrics() {
+	};
+
+	/**
+	 * An entry was looked up by name.
+	 * @param nanos Time taken for the lookup
+	 * @param probes Number of index positions read from the blob file during
+	 *        binary search, including positions served from the position
+	 *        cache. 0 for lookups answered from the in-memory index or the
+	 *        bloom filter.
+	 * @param found Whether an entry was found
+	 */
+	default void lookup(final long nanos, final int probes, final boolean found) {
+	}
+
+	/**
+	 * The cache for index lines was asked for a line.
+	 */
+	default void positionCacheAccess(final boolean hit) {
+	}
+
+	/**
+	 * Stored contents were read from the blob file. Reported when the
+	 * contents stream is closed, or when a transfer is done.
+	 */
+	default void bytesRead(final long bytes) {
+	}
+
+	/**
+	 * Contents were decoded. Reported when the decoded contents stream is
+	 * closed.
+	 * @param bytes The number of decoded bytes read
+	 */
+	default void bytesDecoded(final long bytes) {
+	}
+
+	/**
+	 * Entries were appended to the blob file.
+	 * @param bytes The number of bytes written for the entries
+	 */
+	default void entriesWritten(final int entryCount, final long bytes) {
+	}
+
+	/**
+	 * A writer thread waited for the lock on the blob file output.
+	 */
+	default void writeLockWait(final long nanos) {
+	}
+
+	/**
+	 * Index entries were sorted and written to a temporary chunk file.
+	 */
+	default void indexChunkDumped(final long nanos, final int entryCount) {
+	}
+
+	/**
+	 * Index chunk files were merged to one in the background, before close.
+	 * @see FileBlobStoreWriter.Builder#indexMergeExecutor(java.util.concurrent.Executor)
+	 */
+	default void indexChunksMerged(final long nanos, final int chunkCount) {
+	}
+
+	/**
+	 * The index was written on close, merging index chunk files if any.
+	 */
+	default void indexWritten(final long nanos, final long entryCount) {
+	}
+}
@@ -1,17 +1,74 @@
 package de.mklinger.blobstore;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * @author Marc Klinger - mklinger[at]mklinger[dot]de
  */
-public interface BlobStoreReader {
+public interface BlobStoreReader extends Closeable {
 	BlobEntry getBlobEntry(String name) throws IOException;
 
+	/**
+	 * Get the blob entries for multiple names at once. Implementations may
+	 * answer this more efficiently than calling {@link #getBlobEntry(String)}
+	 * for each name.
+	 * @return The entries found by name. Names without entry are not
+	 *         contained.
+	 */
+	default Map<String, BlobEntry> getBlobEntries(final Collection<String> names) throws IOException {
+		final Map<String, BlobEntry> blobEntries = new LinkedHashMap<>();
+		for (final String name : names) {
+			final BlobEntry blobEntry = getBlobEntry(name);
+			if (blobEntry != null) {
+				blobEntries.put(name, blobEntry);
+			}
+		}
+		return blobEntries;
+	}
+
 	InputStream getBlobEntryContents(BlobEntry blobEntry) throws IOException;
 	InputStream getBlobEntryContentsDecoded(BlobEntry blobEntry) throws IOException;
 
+	/**
+	 * Get the stored contents of an entry as channel. Like
+	 * {@link #getBlobEntryContents(BlobEntry)}, contents are not decoded.
+	 */
+	default ReadableByteChannel getBlobEntryChannel(final BlobEntry blobEntry) throws IOException {
+		return Channels.newChannel(getBlobEntryContents(blobEntry));
+	}
+
+	/**
+	 * Write the stored contents of an entry to the given channel. Like
+	 * {@link #getBlobEntryContents(BlobEntry)}, contents are not decoded, so
+	 * e.g. gzip encoded entries can be passed through as they are.
+	 * Implementations may transfer the contents without copying them
+	 * through the heap. The target channel should be in blocking mode.
+	 * @return The number of bytes written
+	 */
+	default long transferTo(final BlobEntry blobEntry, final WritableByteChannel target) throws IOException {
+		try (ReadableByteChannel in = getBlobEntryChannel(blobEntry)) {
+			final ByteBuffer buf = ByteBuffer.allocate(8192);
+			long count = 0;
+			while (in.read(buf) != -1) {
+				buf.flip();
+				while (buf.hasRemaining()) {
+					count += target.write(buf);
+				}
+				buf.clear();
+			}
+			return count;
+		}
+	}
+
 	InputStream getBlobEntryContents(String name) throws IOException;
 	InputStream getBlobEntryContentsDecoded(String name) throws IOException;
 
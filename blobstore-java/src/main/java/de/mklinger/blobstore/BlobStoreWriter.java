@@ -3,6 +3,7 @@ package de.mklinger.blobstore;
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
 
 /**
  * @author Marc Klinger - mklinger[at]mklinger[dot]de
@@ -13,6 +14,29 @@ public interface BlobStoreWriter extends Closeable {
 	void addBlobEntryGzEncoded(String name, InputStream nonGzIn, String mediaType) throws IOException;
 	void addBlobEntryGzEncoded(String name, InputStream nonGzIn) throws IOException;
 
+	/**
+	 * Add a blob entry, encoding the given input using the codec registered
+	 * for the given encoding, see {@link de.mklinger.blobstore.codec.BlobCodecs}.
+	 *
+	 * <p>
+	 * The default implementation only supports the encodings
+	 * {@value BlobEntry#ENCODING_GZIP} and {@value BlobEntry#ENCODING_IDENTITY}
+	 * and delegates to {@link #addBlobEntryGzEncoded(String, InputStream, String)}
+	 * and {@link #addBlobEntryUnencoded(String, InputStream, String)}.
+	 * </p>
+	 *
+	 * @throws UnsupportedEncodingException If the encoding is not supported
+	 */
+	default void addBlobEntryEncoded(String name, InputStream unencodedIn, String mediaType, String encoding) throws IOException {
+		if (BlobEntry.ENCODING_GZIP.equals(encoding)) {
+			addBlobEntryGzEncoded(name, unencodedIn, mediaType);
+		} else if (BlobEntry.ENCODING_IDENTITY.equals(encoding)) {
+			addBlobEntryUnencoded(name, unencodedIn, mediaType);
+		} else {
+			throw new UnsupportedEncodingException("Unsupported encoding: " + encoding);
+		}
+	}
+
 	void addBlobEntryUnencoded(String name, InputStream in, String mediaType) throws IOException;
 	void addBlobEntryUnencoded(String name, InputStream in) throws IOException;
 
@@ -0,0 +1,73 @@
+package de.mklinger.blobstore;
+
+/**
+ * Snapshot of the statistics of a cache.
+ */
+public class CacheStats {
+	private final long hitCount;
+	private final long missCount;
+	private final long evictionCount;
+	private final long entryCount;
+	private final long estimatedSize;
+
+	public CacheStats(final long hitCount, final long missCount, final long evictionCount, final long entryCount, final long estimatedSize) {
+		this.hitCount = hitCount;
+		this.missCount = missCount;
+		this.evictionCount = evictionCount;
+		this.entryCount = entryCount;
+		this.estimatedSize = estimatedSize;
+	}
+
+	public long getHitCount() {
+		return hitCount;
+	}
+
+	public long getMissCount() {
+		return missCount;
+	}
+
+	public long getRequestCount() {
+		return hitCount + missCount;
+	}
+
+	/**
+	 * @return The ratio of requests that were hits, or 1.0 if there were no
+	 *         requests yet.
+	 */
+	public double getHitRatio() {
+		final long requestCount = getRequestCount();
+		return requestCount == 0 ? 1.0 : (double)hitCount / requestCount;
+	}
+
+	public long getEvictionCount() {
+		return evictionCount;
+	}
+
+	public long getEntryCount() {
+		return entryCount;
+	}
+
+	/**
+	 * @return The estimated memory used by cached values in bytes.
+	 */
+	public long getEstimatedSize() {
+		return estimatedSize;
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder builder = new StringBuilder();
+		builder.append("CacheStats [hitCount=");
+		builder.append(hitCount);
+		builder.append(", missCount=");
+		builder.append(missCount);
+		builder.append(", evictionCount=");
+		builder.append(evictionCount);
+		builder.append(", entryCount=");
+		builder.append(entryCount);
+		builder.append(", estimatedSize=");
+		builder.append(estimatedSize);
+		builder.append("]");
+		return builder.toString();
+	}
+}
@@ -1,38 +1,113 @@
 package de.mklinger.blobstore;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.zip.GZIPInputStream;
+import java.util.Objects;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.mklinger.blobstore.codec.BlobCodecs;
+import de.mklinger.blobstore.codec.DeflateDictionaryCodec;
+import de.mklinger.blobstore.impl.BinaryIndex;
 import de.mklinger.blobstore.impl.BlobEntryImpl;
+import de.mklinger.blobstore.impl.BloomFilter;
+import de.mklinger.blobstore.impl.CompressedBlock;
+import de.mklinger.blobstore.impl.ContentCache;
+import de.mklinger.blobstore.impl.IndexLineCache;
+import de.mklinger.blobstore.impl.LongKeyCache;
+import de.mklinger.blobstore.impl.PackedBlobIndex;
+import de.mklinger.blobstore.impl.PresetDictionary;
+import de.mklinger.blobstore.io.FileChannelInputStream;
+import de.mklinger.blobstore.io.FileChannelRangeChannel;
+import de.mklinger.blobstore.io.FileChannelSource;
 import de.mklinger.blobstore.io.LazyInputStream;
-import de.mklinger.blobstore.io.RandomAccessFileInputStream;
+import de.mklinger.blobstore.io.MappedFileRegion;
+import de.mklinger.blobstore.io.MeteredInputStream;
 
 /**
+ * Reader for a blob file.
+ *
+ * <p>
+ * All reads go through one shared file channel using positional reads, so
+ * instances can be used by any number of threads concurrently. If a thread is
+ * interrupted while reading, the channel is closed by the JDK and reopened on
+ * next access. Reads of other threads failing because of the closed channel,
+ * including reads of open entry streams and channels, are retried once with
+ * the reopened channel.
+ * </p>
+ *
  * @author Marc Klinger - mklinger[at]mklinger[dot]de
  */
 public class FileBlobStoreReader implements BlobStoreReader {
+	private static final Logger LOG = LoggerFactory.getLogger(FileBlobStoreReader.class);
+	private static final int INDEX_READ_BUFFER_SIZE = 512;
+
 	private final File blobFile;
 	private final BlobStoreDefaults defaults;
+	private final BlobStoreMetrics metrics;
 	private final long fileSize;
 	private final long indexOffset;
+	private final int formatVersion;
 	private final int positionCacheDepth;
+	/** null if index is not memory mapped. */
+	private final MappedFileRegion indexRegion;
+	/** null if contents are not memory mapped. */
+	private final MappedFileRegion contentsRegion;
+	/** null if index is not kept in memory. */
+	private final PackedBlobIndex packedIndex;
+	/** null for format version 1. */
+	private final BinaryIndex binaryIndex;
+	/** null if no bloom filter is available or usage is disabled. */
+	private final BloomFilter bloomFilter;
 
-	private Map<Long, String> linesCache;
+	/** null if caching is disabled. */
+	private final IndexLineCache linesCache;
+	/** Decompressed blocks by block offset, null if caching is disabled. */
+	private final LongKeyCache<byte[]> blockCache;
+	/** Decoded contents by entry name, null if caching is disabled. */
+	private final ContentCache contentCache;
+	private final int maxCachedEntrySize;
+	private final int readBufferSize;
+	/** null until the first entry using the dictionary is decoded. */
+	private volatile DeflateDictionaryCodec dictionaryCodec;
+	private volatile FileChannel channel;
+	/** Provides the current channel to streams, which must not keep it. */
+	private final FileChannelSource channelSource = this::getChannel;
+	private volatile boolean closed;
 
 	public FileBlobStoreReader(final File blobFile) throws IOException {
 		this(blobFile, BlobStoreDefaults.STANDARD_DEFAULTS);
 	}
 
 	public FileBlobStoreReader(final File blobFile, BlobStoreDefaults defaults) throws IOException {
-		this(blobFile, 20, defaults);
+		this(blobFile, Builder.DEFAULT_POSITION_CACHE_DEPTH, defaults);
 	}
 
 	/**
@@ -46,28 +121,269 @@ public class FileBlobStoreReader implements BlobStoreReader {
 	 * @param positionCacheDepth A value less than 1 disables caching.
 	 */
 	protected FileBlobStoreReader(final File blobFile, final int positionCacheDepth, BlobStoreDefaults defaults) throws IOException {
-		this.blobFile = blobFile;
-		this.fileSize = blobFile.length();
-		this.indexOffset = readIndexOffset();
-		this.positionCacheDepth = positionCacheDepth;
-		if (positionCacheDepth > 0) {
-			linesCache = new ConcurrentHashMap<>();
+		this(builder()
+				.blobFile(blobFile)
+				.positionCacheDepth(positionCacheDepth)
+				.defaults(defaults));
+	}
+
+	private FileBlobStoreReader(final Builder builder) throws IOException {
+		this.blobFile = Objects.requireNonNull(builder.blobFile);
+		this.defaults = Objects.requireNonNull(builder.defaults);
+		this.metrics = Objects.requireNonNull(builder.metrics);
+		if (builder.readBufferSize <= 0) {
+			throw new IllegalArgumentException("Invalid read buffer size: " + builder.readBufferSize);
 		}
-		this.defaults = defaults;
+		this.readBufferSize = builder.readBufferSize;
+		if (builder.blockCacheSize > 0) {
+			this.blockCache = new LongKeyCache<>(builder.blockCacheSize, block -> block.length + 16);
+		} else {
+			this.blockCache = null;
+		}
+		if (builder.contentCacheSize > 0) {
+			if (builder.maxCachedEntrySize <= 0) {
+				throw new IllegalArgumentException("Invalid max cached entry size: " + builder.maxCachedEntrySize);
+			}
+			this.contentCache = new ContentCache(builder.contentCacheSize, builder.maxCachedEntrySize);
+			this.maxCachedEntrySize = builder.maxCachedEntrySize;
+		} else {
+			this.contentCache = null;
+			this.maxCachedEntrySize = 0;
+		}
+		this.channel = openChannel();
+		try {
+			this.fileSize = channel.size();
+			final String header = readHeader();
+			this.formatVersion = header.startsWith(FileBlobStoreWriter.HEADER_PREFIX_V2)
+					? FileBlobStoreWriter.FORMAT_VERSION_2
+					: FileBlobStoreWriter.FORMAT_VERSION_1;
+			this.indexOffset = parseIndexOffset(header);
+		} catch (final IOException | RuntimeException e) {
+			try {
+				channel.close();
+			} catch (final IOException e2) {
+				e.addSuppressed(e2);
+			}
+			throw e;
+		}
+		if (builder.positionCacheDepth > 0 && builder.positionCacheSize > 0 && !builder.inMemoryIndex
+				&& formatVersion == FileBlobStoreWriter.FORMAT_VERSION_1) {
+			this.positionCacheDepth = builder.positionCacheDepth;
+			this.linesCache = new IndexLineCache(builder.positionCacheSize);
+		} else {
+			this.positionCacheDepth = 0;
+			this.linesCache = null;
+		}
+		try {
+			if (builder.mapped && !builder.inMemoryIndex || builder.mappedContents) {
+				this.indexRegion = new MappedFileRegion(channel, indexOffset, fileSize - indexOffset);
+			} else {
+				this.indexRegion = null;
+			}
+			if (builder.mappedContents) {
+				this.contentsRegion = new MappedFileRegion(channel, 0, indexOffset);
+			} else {
+				this.contentsRegion = null;
+			}
+			if (formatVersion == FileBlobStoreWriter.FORMAT_VERSION_2) {
+				this.binaryIndex = new BinaryIndex(this::readIndexBytes, indexOffset, fileSize, defaults);
+			} else {
+				this.binaryIndex = null;
+			}
+			if (builder.inMemoryIndex) {
+				this.packedIndex = loadPackedIndex();
+			} else {
+				this.packedIndex = null;
+			}
+			// validated against the index, so loaded last
+			this.bloomFilter = builder.bloomFilter ? loadBloomFilter() : null;
+		} catch (final IOException | RuntimeException e) {
+			try {
+				channel.close();
+			} catch (final IOException e2) {
+				e.addSuppressed(e2);
+			}
+			throw e;
+		}
+	}
+
+	private FileChannel openChannel() throws IOException {
+		return FileChannel.open(blobFile.toPath(), StandardOpenOption.READ);
+	}
+
+	private FileChannel getChannel() throws IOException {
+		FileChannel c = channel;
+		if (!c.isOpen()) {
+			synchronized (this) {
+				if (closed) {
+					throw new ClosedChannelException();
+				}
+				c = channel;
+				if (!c.isOpen()) {
+					// closed by interrupt
+					c = openChannel();
+					channel = c;
+				}
+			}
+		}
+		return c;
 	}
 
 	public File getBlobFile() {
 		return blobFile;
 	}
 
-	private long readIndexOffset() throws IOException {
-		String header;
-		try (BufferedReader r = new BufferedReader(new InputStreamReader(new FileInputStream(blobFile), BlobEntryImpl.BLOB_ENTRY_NAME_ENCODING))) {
-			header = r.readLine();
+	/**
+	 * Get statistics of the cache for index lines used in binary search.
+	 * @return The statistics, or <code>null</code> if caching is disabled.
+	 */
+	public CacheStats getPositionCacheStats() {
+		if (linesCache == null) {
+			return null;
+		}
+		return linesCache.getStats();
+	}
+
+	/**
+	 * Get statistics of the cache for decompressed blocks of entries with
+	 * encoding {@value BlobEntry#ENCODING_DEFLATE_BLOCK}.
+	 * @return The statistics, or <code>null</code> if caching is disabled.
+	 */
+	public CacheStats getBlockCacheStats() {
+		if (blockCache == null) {
+			return null;
+		}
+		return blockCache.getStats();
+	}
+
+	/**
+	 * Get statistics of the cache for decoded entry contents.
+	 * @return The statistics, or <code>null</code> if caching is disabled.
+	 */
+	public CacheStats getContentCacheStats() {
+		if (contentCache == null) {
+			return null;
+		}
+		return contentCache.getStats();
+	}
+
+	/**
+	 * Get the name of the first entry in index order, which is the smallest
+	 * name in this blob file.
+	 * @return The name, or <code>null</code> if the blob file has no entries.
+	 */
+	public String getFirstEntryName() throws IOException {
+		if (packedIndex != null) {
+			return packedIndex.size() == 0 ? null : packedIndex.getName(0);
+		}
+		if (binaryIndex != null) {
+			return binaryIndex.size() == 0 ? null : binaryIndex.getName(0);
+		}
+		return BlobEntryImpl.parseKey(readChannelIndexLine(indexOffset, false));
+	}
+
+	/**
+	 * Get the name of the last entry in index order, which is the largest
+	 * name in this blob file.
+	 * @return The name, or <code>null</code> if the blob file has no entries.
+	 */
+	public String getLastEntryName() throws IOException {
+		if (packedIndex != null) {
+			return packedIndex.size() == 0 ? null : packedIndex.getName(packedIndex.size() - 1);
+		}
+		if (binaryIndex != null) {
+			return binaryIndex.size() == 0 ? null : binaryIndex.getName(binaryIndex.size() - 1);
+		}
+		return BlobEntryImpl.parseKey(readLastIndexLine());
+	}
+
+	private BloomFilter loadBloomFilter() {
+		final File sidecarFile = BloomFilter.getSidecarFile(blobFile);
+		if (!sidecarFile.isFile()) {
+			return null;
+		}
+		try {
+			final BloomFilter filter = BloomFilter.read(sidecarFile, new BloomFilter.BlobFileInfo(
+					fileSize, indexOffset, blobFile.lastModified(),
+					getIndexEntryCount(), getFirstEntryName(), getLastEntryName()));
+			if (filter == null && sidecarFile.exists()) {
+				LOG.warn("Not using bloom filter {}, it does not match the blob file", sidecarFile);
+			}
+			return filter;
+		} catch (final IOException | BlobStoreFormatException e) {
+			LOG.warn("Not using bloom filter {}, seems to be broken", sidecarFile, e);
+			return null;
+		}
+	}
+
+	/**
+	 * @return The number of index entries, or -1 if unknown without reading
+	 *         the whole index, which is the case for a format version 1 index
+	 *         not held in memory.
+	 */
+	private long getIndexEntryCount() {
+		if (packedIndex != null) {
+			return packedIndex.size();
+		}
+		if (binaryIndex != null) {
+			return binaryIndex.size();
+		}
+		return -1;
+	}
+
+	/**
+	 * @return <code>false</code> if the bloom filter tells that there is no
+	 *         entry with the given name.
+	 */
+	private boolean mightContain(final String name) {
+		return bloomFilter == null || bloomFilter.mightContain(name);
+	}
+
+	private int readIndexBytes(final long position, final byte[] b, final int off, final int len) throws IOException {
+		if (indexRegion != null) {
+			return indexRegion.get(position - indexOffset, b, off, len);
 		}
-		if (header == null || header.length() != FileBlobStoreWriter.HEADER_LENGTH - 1 || !header.startsWith(FileBlobStoreWriter.HEADER_PREFIX)) {
+		return channelSource.read(ByteBuffer.wrap(b, off, len), position);
+	}
+
+	private PackedBlobIndex loadPackedIndex() throws IOException {
+		final PackedBlobIndex.Builder packedIndexBuilder = PackedBlobIndex.builder(defaults);
+		if (binaryIndex != null) {
+			try (InputStream in = newBinaryIndexRecordsInputStream()) {
+				binaryIndex.visitEntries(in, packedIndexBuilder::add);
+			}
+			return packedIndexBuilder.build();
+		}
+		try (BufferedReader r = newIndexReader()) {
+			String line;
+			while ((line = r.readLine()) != null) {
+				packedIndexBuilder.add(BlobEntryImpl.parseBlobEntry(line, defaults));
+			}
+		}
+		return packedIndexBuilder.build();
+	}
+
+	/**
+	 * Read the header using a single positional read.
+	 * @return The header without the line terminator
+	 */
+	private String readHeader() throws IOException {
+		final ByteBuffer buf = ByteBuffer.allocate((int)FileBlobStoreWriter.HEADER_LENGTH);
+		while (buf.hasRemaining()) {
+			if (channel.read(buf, buf.position()) == -1) {
+				throw new BlobStoreFormatException("Invalid header in blob file: " + this.blobFile);
+			}
+		}
+		final String header = new String(buf.array(), 0, buf.limit() - 1, BlobEntryImpl.BLOB_ENTRY_NAME_ENCODING);
+		if (buf.get(buf.limit() - 1) != '\n'
+				|| !(header.startsWith(FileBlobStoreWriter.HEADER_PREFIX) || header.startsWith(FileBlobStoreWriter.HEADER_PREFIX_V2))) {
 			throw new BlobStoreFormatException("Invalid header in blob file: " + this.blobFile);
 		}
+		return header;
+	}
+
+	private long parseIndexOffset(final String header) {
+		// both header prefixes have the same length
 		final String indexOffsetString = header.substring(FileBlobStoreWriter.HEADER_PREFIX.length());
 		try {
 			return Long.parseLong(indexOffsetString);
@@ -78,18 +394,151 @@ public class FileBlobStoreReader implements BlobStoreReader {
 
 	@Override
 	public BlobEntry getBlobEntry(final String name) throws IOException {
-		try (final RandomAccessFile f = new RandomAccessFile(blobFile, "r")) {
-			return searchBlobEntry(f, name);
+		final SearchBound bound = new SearchBound(indexOffset);
+		if (metrics == BlobStoreMetrics.NOOP) {
+			return findBlobEntry(name, bound);
+		}
+		final long start = System.nanoTime();
+		final BlobEntry blobEntry = findBlobEntry(name, bound);
+		metrics.lookup(System.nanoTime() - start, bound.probes, blobEntry != null);
+		return blobEntry;
+	}
+
+	private BlobEntry findBlobEntry(final String name, final SearchBound bound) throws IOException {
+		if (!mightContain(name)) {
+			return null;
+		}
+		if (packedIndex != null) {
+			final int idx = packedIndex.indexOf(name);
+			if (idx < 0) {
+				return null;
+			}
+			return packedIndex.getBlobEntry(idx);
+		}
+		if (binaryIndex != null) {
+			return binaryIndex.getBlobEntry(name, probes -> bound.probes += probes);
+		}
+		if (indexRegion != null) {
+			return searchBlobEntry(this::readMappedIndexLine, name, bound);
 		}
+		return searchBlobEntry(this::readChannelIndexLine, name, bound);
+	}
+
+	/**
+	 * Get the blob entries for multiple names at once. The names are sorted
+	 * and looked up in one walk over the index, each search starting where
+	 * the search for the previous name ended.
+	 */
+	@Override
+	public Map<String, BlobEntry> getBlobEntries(final Collection<String> names) throws IOException {
+		final SortedSet<String> sortedNames = new TreeSet<>();
+		for (final String name : names) {
+			if (mightContain(name)) {
+				sortedNames.add(name);
+			}
+		}
+		final Map<String, BlobEntry> blobEntries = new LinkedHashMap<>();
+		if (packedIndex != null) {
+			int fromIdx = 0;
+			for (final String name : sortedNames) {
+				final int idx = packedIndex.indexOf(name, fromIdx);
+				if (idx < 0) {
+					fromIdx = -(idx + 1);
+				} else {
+					blobEntries.put(name, packedIndex.getBlobEntry(idx));
+					fromIdx = idx + 1;
+				}
+			}
+		} else if (binaryIndex != null) {
+			binaryIndex.getBlobEntries(sortedNames, blobEntries);
+		} else {
+			final IndexLineReader indexLineReader = indexRegion != null ? this::readMappedIndexLine : this::readChannelIndexLine;
+			final SearchBound bound = new SearchBound(indexOffset);
+			for (final String name : sortedNames) {
+				final BlobEntry blobEntry = searchBlobEntry(indexLineReader, name, bound);
+				if (blobEntry != null) {
+					blobEntries.put(name, blobEntry);
+				}
+			}
+		}
+		return blobEntries;
 	}
 
 	@Override
 	public InputStream getBlobEntryContentsDecoded(BlobEntry blobEntry) throws IOException {
-		if (BlobEntry.ENCODING_GZIP.equals(blobEntry.getEncoding())) {
-			return new GZIPInputStream(getBlobEntryContents(blobEntry));
+		if (contentCache != null) {
+			final byte[] contents = contentCache.get(blobEntry.getName());
+			if (contents != null) {
+				return new ByteArrayInputStream(contents);
+			}
+			return cached(blobEntry.getName(), decoded(getBlobEntryContents(blobEntry), blobEntry.getEncoding()));
+		}
+		return decoded(getBlobEntryContents(blobEntry), blobEntry.getEncoding());
+	}
+
+	/**
+	 * Read decoded contents up to the maximum cached entry size. If the
+	 * contents fit, they are put into the content cache.
+	 */
+	private InputStream cached(final String name, final InputStream decoded) throws IOException {
+		final ByteArrayOutputStream bout = new ByteArrayOutputStream();
+		final byte[] buf = new byte[Math.min(8192, maxCachedEntrySize + 1)];
+		try {
+			while (bout.size() <= maxCachedEntrySize) {
+				final int n = decoded.read(buf, 0, Math.min(buf.length, maxCachedEntrySize + 1 - bout.size()));
+				if (n == -1) {
+					break;
+				}
+				bout.write(buf, 0, n);
+			}
+		} catch (final IOException | RuntimeException e) {
+			try {
+				decoded.close();
+			} catch (final IOException e2) {
+				e.addSuppressed(e2);
+			}
+			throw e;
+		}
+		if (bout.size() > maxCachedEntrySize) {
+			// too large, continue with the remaining contents
+			return new SequenceInputStream(new ByteArrayInputStream(bout.toByteArray()), decoded);
+		}
+		decoded.close();
+		final byte[] contents = bout.toByteArray();
+		contentCache.put(name, contents);
+		return new ByteArrayInputStream(contents);
+	}
+
+	private InputStream decoded(final InputStream in, final String encoding) throws IOException {
+		if (encoding == null) {
+			return in;
+		}
+		final InputStream decoded;
+		if (BlobEntry.ENCODING_DEFLATE_DICT.equals(encoding)) {
+			decoded = getDictionaryCodec().newDecodingInputStream(in);
 		} else {
-			return getBlobEntryContents(blobEntry);
+			decoded = BlobCodecs.require(encoding).newDecodingInputStream(in);
+		}
+		if (metrics == BlobStoreMetrics.NOOP || decoded == in) {
+			return decoded;
+		}
+		return new MeteredInputStream(decoded, metrics::bytesDecoded);
+	}
+
+	private DeflateDictionaryCodec getDictionaryCodec() throws IOException {
+		DeflateDictionaryCodec codec = dictionaryCodec;
+		if (codec == null) {
+			synchronized (this) {
+				codec = dictionaryCodec;
+				if (codec == null) {
+					try (InputStream in = getContents(FileBlobStoreWriter.HEADER_LENGTH, indexOffset - FileBlobStoreWriter.HEADER_LENGTH)) {
+						codec = new DeflateDictionaryCodec(PresetDictionary.read(in));
+					}
+					dictionaryCodec = codec;
+				}
+			}
 		}
+		return codec;
 	}
 
 	@Override
@@ -97,80 +546,449 @@ public class FileBlobStoreReader implements BlobStoreReader {
 		if (blobEntry == null) {
 			throw new NullPointerException();
 		}
-		final RandomAccessFile f = new RandomAccessFile(blobFile, "r");
-		return new RandomAccessFileInputStream(f, blobEntry.getOffset(), blobEntry.getLength());
+		return getContents(blobEntry.getOffset(), blobEntry.getLength(), blobEntry.getEncoding());
 	}
 
 	@Override
-	public InputStream getBlobEntryContentsDecoded(String name) throws IOException {
-		final RandomAccessFile f = new RandomAccessFile(blobFile, "r");
-		final BlobEntry blobEntry = searchBlobEntry(f, name);
+	public ReadableByteChannel getBlobEntryChannel(final BlobEntry blobEntry) throws IOException {
 		if (blobEntry == null) {
-			f.close();
-			return null;
+			throw new NullPointerException();
 		}
+		if (BlobEntry.ENCODING_DEFLATE_BLOCK.equals(blobEntry.getEncoding())) {
+			return Channels.newChannel(getBlobEntryContents(blobEntry));
+		}
+		return new FileChannelRangeChannel(channelSource, blobEntry.getOffset(), blobEntry.getLength());
+	}
 
-		final RandomAccessFileInputStream baseIn = new RandomAccessFileInputStream(f, blobEntry.getOffset(), blobEntry.getLength());
-		if (BlobEntry.ENCODING_GZIP.equals(blobEntry.getEncoding())) {
-			return new GZIPInputStream(baseIn);
+	/**
+	 * Write the stored contents of an entry to the given channel. Contents
+	 * are transferred using {@link FileChannel#transferTo(long, long, WritableByteChannel)},
+	 * so that e.g. identity or gzip encoded entries can be sent to a socket
+	 * without copying them through the heap.
+	 */
+	@Override
+	public long transferTo(final BlobEntry blobEntry, final WritableByteChannel target) throws IOException {
+		if (blobEntry == null) {
+			throw new NullPointerException();
+		}
+		if (BlobEntry.ENCODING_DEFLATE_BLOCK.equals(blobEntry.getEncoding())) {
+			return BlobStoreReader.super.transferTo(blobEntry, target);
+		}
+		try (FileChannelRangeChannel in = new FileChannelRangeChannel(channelSource, blobEntry.getOffset(), blobEntry.getLength())) {
+			final long count = in.transferTo(target);
+			metrics.bytesRead(count);
+			return count;
+		}
+	}
+
+	/**
+	 * Get the stored contents of an entry. Entries packed into a compressed
+	 * block have no stored form of their own, their unencoded contents are
+	 * returned.
+	 */
+	private InputStream getContents(final long offset, final long length, final String encoding) throws IOException {
+		if (BlobEntry.ENCODING_DEFLATE_BLOCK.equals(encoding)) {
+			final byte[] block = getBlock(CompressedBlock.getBlockOffset(offset));
+			final int intraBlockOffset = CompressedBlock.getIntraBlockOffset(offset);
+			if (intraBlockOffset + length > block.length) {
+				throw new BlobStoreFormatException("Entry exceeds compressed block");
+			}
+			return new ByteArrayInputStream(block, intraBlockOffset, (int)length);
+		}
+		return getContents(offset, length);
+	}
+
+	private byte[] getBlock(final long blockOffset) throws IOException {
+		if (blockCache != null) {
+			final byte[] block = blockCache.get(blockOffset);
+			if (block != null) {
+				return block;
+			}
+		}
+		final byte[] block;
+		try (InputStream in = getContents(blockOffset, indexOffset - blockOffset)) {
+			block = CompressedBlock.read(in);
+		}
+		if (blockCache != null) {
+			blockCache.put(blockOffset, block);
+		}
+		return block;
+	}
+
+	private InputStream getContents(final long offset, final long length) throws IOException {
+		final InputStream in;
+		if (contentsRegion != null) {
+			in = contentsRegion.newInputStream(offset, length);
 		} else {
-			return baseIn;
+			in = new FileChannelInputStream(channelSource, offset, length, readBufferSize);
 		}
+		if (metrics == BlobStoreMetrics.NOOP) {
+			return in;
+		}
+		return new MeteredInputStream(in, metrics::bytesRead);
+	}
+
+	@Override
+	public InputStream getBlobEntryContentsDecoded(String name) throws IOException {
+		if (contentCache != null) {
+			final byte[] contents = contentCache.get(name);
+			if (contents != null) {
+				return new ByteArrayInputStream(contents);
+			}
+		}
+		if (!mightContain(name)) {
+			return null;
+		}
+		if (packedIndex != null) {
+			final int idx = packedIndex.indexOf(name);
+			if (idx < 0) {
+				return null;
+			}
+			final String encoding = packedIndex.getEncoding(idx);
+			final InputStream decoded = decoded(getContents(packedIndex.getOffset(idx), packedIndex.getLength(idx), encoding), encoding);
+			return contentCache != null ? cached(name, decoded) : decoded;
+		}
+		final BlobEntry blobEntry = getBlobEntry(name);
+		if (blobEntry == null) {
+			return null;
+		}
+		if (contentCache != null) {
+			return cached(name, decoded(getBlobEntryContents(blobEntry), blobEntry.getEncoding()));
+		}
+		return getBlobEntryContentsDecoded(blobEntry);
 	}
 
 	@Override
 	public InputStream getBlobEntryContents(final String name) throws IOException {
-		final RandomAccessFile f = new RandomAccessFile(blobFile, "r");
-		final BlobEntry blobEntry = searchBlobEntry(f, name);
+		if (!mightContain(name)) {
+			return null;
+		}
+		if (packedIndex != null) {
+			final int idx = packedIndex.indexOf(name);
+			if (idx < 0) {
+				return null;
+			}
+			return getContents(packedIndex.getOffset(idx), packedIndex.getLength(idx), packedIndex.getEncoding(idx));
+		}
+		final BlobEntry blobEntry = getBlobEntry(name);
 		if (blobEntry == null) {
-			f.close();
 			return null;
 		}
-		return new RandomAccessFileInputStream(f, blobEntry.getOffset(), blobEntry.getLength());
+		return getBlobEntryContents(blobEntry);
 	}
 
 	@Override
 	public void visitBlobEntries(final BlobEntryVisitor visitor) throws IOException {
-		try (BufferedReader r = newIndexReader()) {
+		if (packedIndex != null) {
+			visitPackedIndexRange(visitor, 0, packedIndex.size());
+		} else if (binaryIndex != null) {
+			visitBinaryIndexRange(visitor, 0, binaryIndex.size());
+		} else {
+			visitTextIndexRange(visitor, indexOffset, fileSize);
+		}
+	}
+
+	/**
+	 * Visit all entries using multiple tasks. The index is split into the
+	 * given number of ranges of about equal size, and the entries of each
+	 * range are visited by a task run with the given executor. Within a range,
+	 * entries are visited in index order. The visitor must be thread-safe.
+	 * This method returns after all tasks are done. If any task fails, the
+	 * first failure is thrown.
+	 * @param parallelism The number of ranges. A value of 1 visits all
+	 *        entries in the calling thread.
+	 */
+	public void visitBlobEntries(final BlobEntryVisitor visitor, final Executor executor, final int parallelism) throws IOException {
+		if (parallelism < 1) {
+			throw new IllegalArgumentException("Invalid parallelism: " + parallelism);
+		}
+		Objects.requireNonNull(executor);
+		if (parallelism == 1) {
+			visitBlobEntries(visitor);
+			return;
+		}
+		final List<RangeVisit> rangeVisits = new ArrayList<>(parallelism);
+		if (packedIndex != null || binaryIndex != null) {
+			final long size = packedIndex != null ? packedIndex.size() : binaryIndex.size();
+			for (int i = 0; i < parallelism; i++) {
+				final long fromIdx = size * i / parallelism;
+				final long toIdx = size * (i + 1) / parallelism;
+				if (fromIdx < toIdx) {
+					if (packedIndex != null) {
+						rangeVisits.add(() -> visitPackedIndexRange(visitor, (int)fromIdx, (int)toIdx));
+					} else {
+						rangeVisits.add(() -> visitBinaryIndexRange(visitor, fromIdx, toIdx));
+					}
+				}
+			}
+		} else {
+			long start = indexOffset;
+			for (int i = 1; i <= parallelism; i++) {
+				final long end = i == parallelism
+						? fileSize
+						: findLineStart(indexOffset + (fileSize - indexOffset) * i / parallelism);
+				if (start < end) {
+					final long rangeStart = start;
+					rangeVisits.add(() -> visitTextIndexRange(visitor, rangeStart, end));
+					start = end;
+				}
+			}
+		}
+		runAll(rangeVisits, executor);
+	}
+
+	@FunctionalInterface
+	private interface RangeVisit {
+		void run() throws IOException;
+	}
+
+	private static void runAll(final List<RangeVisit> rangeVisits, final Executor executor) throws IOException {
+		final List<CompletableFuture<Void>> futures = new ArrayList<>(rangeVisits.size());
+		for (final RangeVisit rangeVisit : rangeVisits) {
+			futures.add(CompletableFuture.runAsync(() -> {
+				try {
+					rangeVisit.run();
+				} catch (final IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}, executor));
+		}
+		Throwable failure = null;
+		for (final CompletableFuture<Void> future : futures) {
+			try {
+				future.join();
+			} catch (final CompletionException e) {
+				final Throwable cause = e.getCause() instanceof UncheckedIOException ? e.getCause().getCause() : e.getCause();
+				if (failure == null) {
+					failure = cause;
+				} else {
+					failure.addSuppressed(cause);
+				}
+			}
+		}
+		if (failure instanceof IOException) {
+			throw (IOException) failure;
+		}
+		if (failure instanceof RuntimeException) {
+			throw (RuntimeException) failure;
+		}
+		if (failure instanceof Error) {
+			throw (Error) failure;
+		}
+		if (failure != null) {
+			throw new IOException(failure);
+		}
+	}
+
+	private void visitPackedIndexRange(final BlobEntryVisitor visitor, final int fromIdx, final int toIdx) throws IOException {
+		for (int idx = fromIdx; idx < toIdx; idx++) {
+			visit(visitor, packedIndex.getBlobEntry(idx));
+		}
+	}
+
+	private void visitBinaryIndexRange(final BlobEntryVisitor visitor, final long fromIdx, final long toIdx) throws IOException {
+		final long recordsEnd = binaryIndex.getRecordsOffset() + binaryIndex.getRecordsLength();
+		final long start = fromIdx == 0 ? binaryIndex.getRecordsOffset() : binaryIndex.getRecordPosition(fromIdx);
+		try (InputStream recordsIn = new FileChannelInputStream(channelSource, start, recordsEnd - start, readBufferSize)) {
+			binaryIndex.visitEntries(recordsIn, toIdx - fromIdx, (name, offset, length, mediaType, encoding) ->
+					visit(visitor, binaryIndex.newBlobEntry(name, offset, length, mediaType, encoding)));
+		}
+	}
+
+	/**
+	 * Visit the entries of the text index lines between the given file
+	 * positions, which must be line starts.
+	 */
+	private void visitTextIndexRange(final BlobEntryVisitor visitor, final long start, final long end) throws IOException {
+		try (BufferedReader r = newIndexReader(start, end)) {
 			String line;
 			while ((line = r.readLine()) != null) {
-				final BlobEntry blobEntry = BlobEntryImpl.parseBlobEntry(line, defaults);
-				try (InputStream in = new LazyInputStream(() -> getBlobEntryContents(blobEntry.getName()))) {
-					visitor.visit(blobEntry, in);
+				visit(visitor, BlobEntryImpl.parseBlobEntry(line, defaults));
+			}
+		}
+	}
+
+	/**
+	 * Visit an entry. The entry offset is known, so contents are read without
+	 * another index lookup.
+	 */
+	private void visit(final BlobEntryVisitor visitor, final BlobEntry blobEntry) throws IOException {
+		try (InputStream in = new LazyInputStream(() -> getBlobEntryContents(blobEntry))) {
+			visitor.visit(blobEntry, in);
+		}
+	}
+
+	/**
+	 * Find the start of the first text index line starting at or after the
+	 * given position.
+	 * @return The line start, or the file size if there is none.
+	 */
+	private long findLineStart(final long pos) throws IOException {
+		if (pos <= indexOffset) {
+			return indexOffset;
+		}
+		final byte[] buf = new byte[INDEX_READ_BUFFER_SIZE];
+		long bufPos = pos - 1;
+		while (bufPos < fileSize) {
+			final int n = readIndexBytes(bufPos, buf, 0, (int)Math.min(buf.length, fileSize - bufPos));
+			if (n <= 0) {
+				break;
+			}
+			for (int i = 0; i < n; i++) {
+				if (buf[i] == '\n') {
+					return bufPos + i + 1;
 				}
 			}
+			bufPos += n;
 		}
+		return fileSize;
 	}
 
+	@Override
+	public void close() throws IOException {
+		synchronized (this) {
+			closed = true;
+		}
+		channel.close();
+	}
+
+	/**
+	 * Get a reader for the text index, starting at the index offset of the
+	 * shared channel.
+	 */
 	private BufferedReader newIndexReader() throws IOException {
-		@SuppressWarnings("resource")
-		final FileInputStream fin = new FileInputStream(blobFile);
-		try {
-			long skipped = 0;
-			while (skipped < indexOffset) {
-				final long skippedNow = fin.skip(indexOffset - skipped);
-				if (skippedNow < 0) {
-					throw new IOException("Could not skip to index offset");
+		return newIndexReader(indexOffset, fileSize);
+	}
+
+	private BufferedReader newIndexReader(final long start, final long end) throws IOException {
+		final InputStream in = indexRegion != null
+				? indexRegion.newInputStream(start - indexOffset, end - start)
+				: new FileChannelInputStream(channelSource, start, end - start, readBufferSize);
+		return new BufferedReader(new InputStreamReader(in, BlobEntryImpl.BLOB_ENTRY_NAME_ENCODING));
+	}
+
+	private InputStream newBinaryIndexRecordsInputStream() throws IOException {
+		return new FileChannelInputStream(channelSource, binaryIndex.getRecordsOffset(), binaryIndex.getRecordsLength(), readBufferSize);
+	}
+
+	/**
+	 * Reads the index line at the given file position. If skipPartialLine is
+	 * <code>true</code>, the line containing the given position is skipped
+	 * and the following line is returned.
+	 */
+	@FunctionalInterface
+	private interface IndexLineReader {
+		String readLine(long pos, boolean skipPartialLine) throws IOException;
+	}
+
+	private String readChannelIndexLine(final long pos, final boolean skipPartialLine) throws IOException {
+		final ByteBuffer buf = ByteBuffer.allocate(INDEX_READ_BUFFER_SIZE);
+		final byte[] bytes = buf.array();
+		StringBuilder line = null;
+		boolean inLine = !skipPartialLine;
+		long p = pos;
+		int n;
+		while ((n = channelSource.read(buf, p)) != -1) {
+			int lineStart = 0;
+			for (int i = 0; i < n; i++) {
+				if (bytes[i] == '\n') {
+					if (inLine) {
+						if (line == null) {
+							line = new StringBuilder(i - lineStart);
+						}
+						appendLatin1(line, bytes, lineStart, i);
+						return line.toString();
+					}
+					inLine = true;
+					lineStart = i + 1;
 				}
-				skipped += skippedNow;
 			}
-			return new BufferedReader(new InputStreamReader(fin, BlobEntryImpl.BLOB_ENTRY_NAME_ENCODING));
-		} catch (final Exception e) {
-			try {
-				fin.close();
-			} catch (final Exception e2) {
-				if (e2 != e) {
-					e.addSuppressed(e2);
+			if (inLine && lineStart < n) {
+				if (line == null) {
+					line = new StringBuilder();
 				}
+				appendLatin1(line, bytes, lineStart, n);
 			}
-			throw e;
+			p += n;
+			buf.clear();
+		}
+		// line without terminator at end of file
+		return line == null ? null : line.toString();
+	}
+
+	private String readLastIndexLine() throws IOException {
+		final ByteBuffer buf = ByteBuffer.allocate(INDEX_READ_BUFFER_SIZE);
+		final byte[] bytes = buf.array();
+		// the last byte is the terminator of the last line or part of it
+		long blockEnd = fileSize - 1;
+		while (blockEnd > indexOffset) {
+			final int len = (int)Math.min(bytes.length, blockEnd - indexOffset);
+			final long blockStart = blockEnd - len;
+			buf.clear();
+			buf.limit(len);
+			while (buf.hasRemaining()) {
+				if (channelSource.read(buf, blockStart + buf.position()) == -1) {
+					throw new EOFException();
+				}
+			}
+			for (int i = len - 1; i >= 0; i--) {
+				if (bytes[i] == '\n') {
+					return readChannelIndexLine(blockStart + i + 1, false);
+				}
+			}
+			blockEnd = blockStart;
+		}
+		return readChannelIndexLine(indexOffset, false);
+	}
+
+	private static void appendLatin1(final StringBuilder sb, final byte[] bytes, final int start, final int end) {
+		// same byte to char mapping as RandomAccessFile.readLine()
+		for (int i = start; i < end; i++) {
+			sb.append((char)(bytes[i] & 0xff));
+		}
+	}
+
+	private String readMappedIndexLine(final long pos, final boolean skipPartialLine) {
+		final long size = indexRegion.size();
+		long start = pos - indexOffset;
+		if (skipPartialLine) {
+			while (start < size && indexRegion.get(start) != '\n') {
+				start++;
+			}
+			start++;
+		}
+		if (start >= size) {
+			return null;
+		}
+		long end = start;
+		while (end < size && indexRegion.get(end) != '\n') {
+			end++;
+		}
+		final byte[] lineBytes = new byte[(int)(end - start)];
+		indexRegion.get(start, lineBytes, 0, lineBytes.length);
+		// same byte to char mapping as RandomAccessFile.readLine()
+		return new String(lineBytes, StandardCharsets.ISO_8859_1);
+	}
+
+	/**
+	 * Lower bound of the positions to probe in binary search. When searching
+	 * names in ascending order, the bound left by one search is valid for the
+	 * next one. Also counts the positions probed.
+	 */
+	private static class SearchBound {
+		private long position;
+		private int probes;
+
+		public SearchBound(final long position) {
+			this.position = position;
 		}
 	}
 
-	private BlobEntry searchBlobEntry(final RandomAccessFile indexRAFile, final String searchName) throws IOException {
+	private BlobEntry searchBlobEntry(final IndexLineReader indexLineReader, final String searchName, final SearchBound bound) throws IOException {
 		// because we read the second line after each seek there is no way the
 		// binary search will find the first line, so check it first.
-		String line = readFirstLine(indexRAFile);
+		bound.probes++;
+		String line = readFirstLine(indexLineReader);
 		String key = BlobEntryImpl.parseKey(line);
 		if (key == null) {
 			return null;
@@ -183,12 +1001,13 @@ public class FileBlobStoreReader implements BlobStoreReader {
 
 		// set up the binary search.
 		int iterationIdx = 0;
-		long beg = indexOffset;
+		long beg = bound.position;
 		long end = fileSize;
 		while (beg <= end) {
 			// find the mid point.
 			final long mid = beg + (end - beg) / 2;
-			line = readNextLine(indexRAFile, mid, iterationIdx);
+			bound.probes++;
+			line = readNextLine(indexLineReader, mid, iterationIdx);
 			if (line == null) {
 				// end of file, look before
 				end = mid - 1;
@@ -203,14 +1022,19 @@ public class FileBlobStoreReader implements BlobStoreReader {
 					// otherwise, look after it.
 					beg = mid + 1;
 				} else {
+					// the line after mid is the one found, larger names follow it
+					bound.position = mid + 1;
 					return BlobEntryImpl.parseBlobEntry(line, defaults);
 				}
 			}
 			iterationIdx++;
 		}
+		// lines after positions before beg are all smaller than the searched name
+		bound.position = beg;
 
 		// The search falls through when the range is narrowed to nothing.
-		line = readNextLine(indexRAFile, beg, iterationIdx);
+		bound.probes++;
+		line = readNextLine(indexLineReader, beg, iterationIdx);
 		final BlobEntry blobEntry = BlobEntryImpl.parseBlobEntry(line, defaults);
 		if (blobEntry != null && !blobEntry.getName().equals(searchName)) {
 			// not found
@@ -219,34 +1043,222 @@ public class FileBlobStoreReader implements BlobStoreReader {
 		return blobEntry;
 	}
 
-	private String readFirstLine(final RandomAccessFile indexRAFile) throws IOException {
+	private String readFirstLine(final IndexLineReader indexLineReader) throws IOException {
 		if (positionCacheDepth > 0) {
 			final String line = linesCache.get(-1L);
+			metrics.positionCacheAccess(line != null);
 			if (line != null) {
 				return line;
 			}
 		}
-		indexRAFile.seek(indexOffset);
-		final String line = indexRAFile.readLine();
+		final String line = indexLineReader.readLine(indexOffset, false);
 		if (line != null && positionCacheDepth > 0) {
-			linesCache.putIfAbsent(-1L, line);
+			linesCache.put(-1L, line);
 		}
 		return line;
 	}
 
-	private String readNextLine(final RandomAccessFile indexRAFile, final long pos, final int iterationIdx) throws IOException {
+	private String readNextLine(final IndexLineReader indexLineReader, final long pos, final int iterationIdx) throws IOException {
 		if (iterationIdx < positionCacheDepth) {
 			final String line = linesCache.get(pos);
+			metrics.positionCacheAccess(line != null);
 			if (line != null) {
 				return line;
 			}
 		}
-		indexRAFile.seek(pos);
-		indexRAFile.readLine();
-		final String line = indexRAFile.readLine();
+		final String line = indexLineReader.readLine(pos, true);
 		if (line != null && iterationIdx < positionCacheDepth) {
 			linesCache.put(pos, line);
 		}
 		return line;
 	}
+
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	public static class Builder {
+		// package protected
+		static final int DEFAULT_POSITION_CACHE_DEPTH = 20;
+		static final long DEFAULT_POSITION_CACHE_SIZE = 4 * 1024 * 1024;
+		static final long DEFAULT_BLOCK_CACHE_SIZE = 8 * 1024 * 1024;
+		static final int DEFAULT_MAX_CACHED_ENTRY_SIZE = 64 * 1024;
+		static final int DEFAULT_READ_BUFFER_SIZE = FileChannelInputStream.DEFAULT_BUFFER_SIZE;
+
+		private File blobFile;
+		private BlobStoreDefaults defaults = BlobStoreDefaults.STANDARD_DEFAULTS;
+		private BlobStoreMetrics metrics = BlobStoreMetrics.NOOP;
+		private int positionCacheDepth = DEFAULT_POSITION_CACHE_DEPTH;
+		private long positionCacheSize = DEFAULT_POSITION_CACHE_SIZE;
+		private boolean mapped;
+		private boolean mappedContents;
+		private boolean inMemoryIndex;
+		private boolean bloomFilter = true;
+		private long blockCacheSize = DEFAULT_BLOCK_CACHE_SIZE;
+		private long contentCacheSize;
+		private int maxCachedEntrySize = DEFAULT_MAX_CACHED_ENTRY_SIZE;
+		private int readBufferSize = DEFAULT_READ_BUFFER_SIZE;
+
+		public Builder blobFile(File blobFile) {
+			this.blobFile = blobFile;
+			return this;
+		}
+
+		public Builder defaults(BlobStoreDefaults defaults) {
+			this.defaults = defaults;
+			return this;
+		}
+
+		/**
+		 * Set the number of binary search iterations for which index lines are
+		 * cached. A value less than 1 disables caching.
+		 *
+		 * <p>
+		 * Default value: {@value #DEFAULT_POSITION_CACHE_DEPTH}.
+		 * </p>
+		 */
+		public Builder positionCacheDepth(int positionCacheDepth) {
+			this.positionCacheDepth = positionCacheDepth;
+			return this;
+		}
+
+		/**
+		 * Set the maximum estimated memory in bytes used for caching index
+		 * lines. When the limit is reached, least recently used lines are
+		 * evicted. A value less than 1 disables caching.
+		 *
+		 * <p>
+		 * Default value: {@value #DEFAULT_POSITION_CACHE_SIZE}.
+		 * </p>
+		 */
+		public Builder positionCacheSize(long positionCacheSize) {
+			this.positionCacheSize = positionCacheSize;
+			return this;
+		}
+
+		/**
+		 * Enable memory mapping of the index region, so that lookups do not
+		 * need to open the blob file or issue any system calls.
+		 */
+		public Builder mapped(boolean mapped) {
+			this.mapped = mapped;
+			return this;
+		}
+
+		/**
+		 * Enable memory mapping of the contents region in addition to the
+		 * index region, so that contents are read from memory as well. Regions
+		 * larger than 1 GiB are mapped in multiple chunks.
+		 */
+		public Builder mappedContents(boolean mappedContents) {
+			this.mappedContents = mappedContents;
+			return this;
+		}
+
+		/**
+		 * Load the complete index into memory when opening the reader. The
+		 * index is kept in a compact form using primitive arrays, lookups are
+		 * answered from memory without allocating any objects on misses. The
+		 * required heap is roughly the sum of all entry name lengths plus 25
+		 * bytes per entry.
+		 */
+		public Builder inMemoryIndex(boolean inMemoryIndex) {
+			this.inMemoryIndex = inMemoryIndex;
+			return this;
+		}
+
+		/**
+		 * Enable or disable usage of a bloom filter sidecar file written
+		 * along with the blob file. If enabled and a matching sidecar file
+		 * exists, lookups for missing names are answered without searching
+		 * the index. A sidecar file matches if the length, index offset,
+		 * modification time, entry count and first and last entry name of
+		 * the blob file are unchanged since the filter was written.
+		 *
+		 * <p>
+		 * Default value: <code>true</code>.
+		 * </p>
+		 */
+		public Builder bloomFilter(boolean bloomFilter) {
+			this.bloomFilter = bloomFilter;
+			return this;
+		}
+
+		/**
+		 * Set the maximum estimated memory in bytes used for caching
+		 * decompressed blocks of entries with encoding
+		 * {@value BlobEntry#ENCODING_DEFLATE_BLOCK}, so that reading
+		 * neighbouring entries decompresses a block only once. A value less
+		 * than 1 disables caching.
+		 *
+		 * <p>
+		 * Default value: {@value #DEFAULT_BLOCK_CACHE_SIZE}.
+		 * </p>
+		 */
+		public Builder blockCacheSize(long blockCacheSize) {
+			this.blockCacheSize = blockCacheSize;
+			return this;
+		}
+
+		/**
+		 * Set the maximum estimated memory in bytes used for caching decoded
+		 * entry contents by entry name, so that frequently read entries are
+		 * served without any I/O or decompression. When the limit is reached,
+		 * least recently used entries are evicted. A value less than 1
+		 * disables caching.
+		 *
+		 * <p>
+		 * Default value: <code>0</code>.
+		 * </p>
+		 */
+		public Builder contentCacheSize(long contentCacheSize) {
+			this.contentCacheSize = contentCacheSize;
+			return this;
+		}
+
+		/**
+		 * Set the maximum decoded size in bytes of entries put into the
+		 * content cache. Larger entries are always read from the blob file.
+		 * Must fit into the content cache size, see
+		 * {@link #contentCacheSize(long)}.
+		 *
+		 * <p>
+		 * Default value: {@value #DEFAULT_MAX_CACHED_ENTRY_SIZE}.
+		 * </p>
+		 */
+		public Builder maxCachedEntrySize(int maxCachedEntrySize) {
+			this.maxCachedEntrySize = maxCachedEntrySize;
+			return this;
+		}
+
+		/**
+		 * Set the size in bytes of the buffer used when reading entry contents
+		 * and index records from the blob file. Reads of at least this size
+		 * bypass the buffer. Not used for memory mapped regions.
+		 *
+		 * <p>
+		 * Default value: {@value #DEFAULT_READ_BUFFER_SIZE}.
+		 * </p>
+		 */
+		public Builder readBufferSize(int readBufferSize) {
+			this.readBufferSize = readBufferSize;
+			return this;
+		}
+
+		/**
+		 * Set the receiver for metrics of this reader.
+		 *
+		 * <p>
+		 * Default value: {@link BlobStoreMetrics#NOOP}.
+		 * </p>
+		 */
+		public Builder metrics(BlobStoreMetrics metrics) {
+			this.metrics = metrics;
+			return this;
+		}
+
+		public FileBlobStoreReader build() throws IOException {
+			return new FileBlobStoreReader(this);
+		}
+	}
 }
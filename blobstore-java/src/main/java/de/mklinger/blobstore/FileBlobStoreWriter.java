@@ -1,34 +1,54 @@
 package de.mklinger.blobstore;
 
 import java.io.BufferedOutputStream;
-import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
 import java.io.RandomAccessFile;
-import java.io.UnsupportedEncodingException;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
 import java.io.Writer;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
 import java.util.Objects;
-import java.util.zip.GZIPOutputStream;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.Deflater;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import de.mklinger.blobstore.codec.BlobCodec;
+import de.mklinger.blobstore.codec.DeflateDictionaryCodec;
 import de.mklinger.blobstore.impl.AbstractBlobStoreWriter;
+import de.mklinger.blobstore.impl.BinaryIndex;
+import de.mklinger.blobstore.impl.BinaryIndexWriter;
 import de.mklinger.blobstore.impl.BlobEntryImpl;
+import de.mklinger.blobstore.impl.BloomFilter;
+import de.mklinger.blobstore.impl.CompressedBlock;
+import de.mklinger.blobstore.impl.CompressedBlockWriter;
+import de.mklinger.blobstore.impl.IndexEntryBuffer;
+import de.mklinger.blobstore.impl.IndexWriter;
+import de.mklinger.blobstore.impl.PresetDictionary;
+import de.mklinger.blobstore.impl.TextIndexWriter;
 import de.mklinger.blobstore.io.BlobEntryOutputStream;
-import de.mklinger.blobstore.io.ExternalSort;
 import de.mklinger.blobstore.io.NonClosingCountingOutputStream;
+import de.mklinger.blobstore.io.SortedChunkMerger;
+import de.mklinger.blobstore.io.StagingBuffer;
 import de.mklinger.micro.streamcopy.StreamCopy;
 
 /**
@@ -37,42 +57,163 @@ import de.mklinger.micro.streamcopy.StreamCopy;
 public class FileBlobStoreWriter extends AbstractBlobStoreWriter {
 	private static final Logger LOG = LoggerFactory.getLogger(FileBlobStoreWriter.class);
 
+	/** Format with text index, readable by all readers. */
+	public static final int FORMAT_VERSION_1 = 1;
+	/** Format with binary index, see {@link BinaryIndex}. */
+	public static final int FORMAT_VERSION_2 = 2;
+
 	protected static final String HEADER_PREFIX = "indexOffset=";
+	protected static final String HEADER_PREFIX_V2 = "v2idxOffset=";
 	protected static final String HEADER_SUFFIX = "\n";
 	protected static final String EMPTY_HEADER = HEADER_PREFIX + "___________________" + HEADER_SUFFIX;
 	protected static final long HEADER_LENGTH = 32;
+	private static final int ASYNC_MAX_BATCH_SIZE = 256;
+	private static final int ASYNC_WRITE_BUFFER_SIZE = 256 * 1024;
+	/** Maximum number of index chunks sorted and written in the background at once. */
+	private static final int MAX_PENDING_INDEX_CHUNKS = 2;
+	private static final PendingWrite END_OF_PENDING_WRITES = new PendingWrite(null, null, null, null, null);
 	private final int maxIndexEntriesInMemory;
+	/** 0 if the estimated memory of index entries is not limited. */
+	private final long maxIndexMemory;
 	private final File blobFile;
 	/** null if index is to be written to blob file. */
 	private final File indexFile;
 	private final BlobStoreDefaults defaults;
-	private List<BlobEntryImpl> indexEntries;
-	private final List<File> indexChunkFiles;
+	private final BlobStoreMetrics metrics;
+	private final int formatVersion;
+	/** 0 if no bloom filter is written. */
+	private final double bloomFilterFalsePositiveRate;
+	private IndexEntryBuffer indexEntries;
+	private long indexEntryCount;
+	/** Index chunk files in write order, completed when written. Guarded by itself. */
+	private final List<CompletableFuture<File>> indexChunks;
+	/** Number of chunks at the end of indexChunks not yet merged, guarded by indexChunks. */
+	private int unmergedIndexChunks;
 	private final Object indexEntriesMutex;
+	private final FileOutputStream fileOut;
 	private final NonClosingCountingOutputStream countingOut;
+	/** null if concurrent writes are disabled. */
+	private final Queue<StagingBuffer> stagingBuffers;
+	private final int maxStagingBufferSize;
+	/** null if async writes are disabled. */
+	private final BlockingQueue<PendingWrite> pendingWrites;
+	private final Thread asyncWriterThread;
+	private final boolean syncAsyncWrites;
+	/** Held for reading while enqueuing, for writing while closing. */
+	private final ReadWriteLock asyncLock;
+	private boolean asyncClosed;
+	/** null if no compression executor is set. */
+	private final Executor compressionExecutor;
+	private final Semaphore compressionPermits;
+	private final int maxPendingCompressions;
+	private volatile boolean compressionClosed;
+	/** null if no dictionary is set. */
+	private final DeflateDictionaryCodec dictionaryCodec;
+	/** null if block mode is disabled. Used as lock for the current block. */
+	private final CompressedBlockWriter blockWriter;
+	/**
+	 * Futures of the entries in the current block, null for entries not
+	 * added async. Guarded by the block writer lock.
+	 */
+	private final List<CompletableFuture<BlobEntry>> blockFutures;
+	private final int maxBlockedEntrySize;
+	/** null to write and merge index chunk files in the writing and closing threads. */
+	private final Executor indexMergeExecutor;
+	/** null if no index merge executor is set. */
+	private final Semaphore indexChunkPermits;
+	private volatile Throwable indexChunkFailure;
+	private final SortedChunkMerger indexChunkMerger;
 
 	private FileBlobStoreWriter(Builder builder) throws IOException {
 		this.blobFile = Objects.requireNonNull(builder.blobFile);
 		this.indexFile = builder.indexFile;
 		this.maxIndexEntriesInMemory = builder.maxIndexEntriesInMemory;
+		this.maxIndexMemory = Math.max(0, builder.maxIndexMemory);
 		this.defaults = Objects.requireNonNull(builder.defaults);
+		this.metrics = Objects.requireNonNull(builder.metrics);
+		this.formatVersion = builder.formatVersion;
+		if (formatVersion != FORMAT_VERSION_1 && formatVersion != FORMAT_VERSION_2) {
+			throw new IllegalArgumentException("Unsupported format version: " + formatVersion);
+		}
+		this.bloomFilterFalsePositiveRate = builder.bloomFilter ? builder.bloomFilterFalsePositiveRate : 0;
+		if (builder.bloomFilter && (bloomFilterFalsePositiveRate <= 0 || bloomFilterFalsePositiveRate >= 1)) {
+			throw new IllegalArgumentException("Invalid bloom filter false positive rate: " + bloomFilterFalsePositiveRate);
+		}
 
 		if (indexFile != null && blobFile.getAbsoluteFile().equals(indexFile.getAbsoluteFile())) {
 			throw new IllegalArgumentException();
 		}
+		if (indexFile != null && builder.dictionary != null) {
+			// readers expect the dictionary right after the header
+			throw new IllegalArgumentException("A dictionary can not be used with a separate index file");
+		}
 
 		deleteIfOverwrite(builder.blobFile, builder.overwrite);
 		deleteIfOverwrite(builder.indexFile, builder.overwrite);
+		// a bloom filter of a previous blob file would be stale
+		Files.deleteIfExists(BloomFilter.getSidecarFile(blobFile).toPath());
 
-		this.indexEntries = new ArrayList<>();
-		this.indexChunkFiles = new ArrayList<>();
+		this.indexEntries = new IndexEntryBuffer(defaults);
+		this.indexChunks = new ArrayList<>();
 		this.indexEntriesMutex = new Object();
-		this.countingOut = new NonClosingCountingOutputStream(new BufferedOutputStream(new FileOutputStream(blobFile)));
+		this.fileOut = new FileOutputStream(blobFile);
+		if (builder.asyncQueueCapacity > 0) {
+			this.countingOut = new NonClosingCountingOutputStream(new BufferedOutputStream(fileOut, ASYNC_WRITE_BUFFER_SIZE));
+		} else {
+			this.countingOut = new NonClosingCountingOutputStream(new BufferedOutputStream(fileOut));
+		}
+		this.stagingBuffers = builder.concurrentWrites ? new ConcurrentLinkedQueue<>() : null;
+		this.maxStagingBufferSize = builder.maxStagingBufferSize;
+		this.syncAsyncWrites = builder.syncAsyncWrites;
+		this.asyncLock = new ReentrantReadWriteLock();
+		this.compressionExecutor = builder.compressionExecutor;
+		this.indexMergeExecutor = builder.indexMergeExecutor;
+		this.indexChunkPermits = indexMergeExecutor != null ? new Semaphore(MAX_PENDING_INDEX_CHUNKS) : null;
+		this.indexChunkMerger = new SortedChunkMerger(
+				BlobEntryImpl::parseKey,
+				Charset.forName(BlobEntryImpl.BLOB_ENTRY_NAME_ENCODING),
+				indexMergeExecutor);
+		if (builder.maxPendingCompressions > 0) {
+			this.maxPendingCompressions = builder.maxPendingCompressions;
+		} else {
+			this.maxPendingCompressions = 2 * Runtime.getRuntime().availableProcessors();
+		}
+		this.compressionPermits = compressionExecutor != null ? new Semaphore(maxPendingCompressions) : null;
+		if (builder.asyncQueueCapacity > 0) {
+			this.pendingWrites = new ArrayBlockingQueue<>(builder.asyncQueueCapacity);
+			this.asyncWriterThread = new Thread(this::writePendingWrites, "blobstore-writer-" + blobFile.getName());
+			this.asyncWriterThread.setDaemon(true);
+		} else {
+			this.pendingWrites = null;
+			this.asyncWriterThread = null;
+		}
 
 		if (indexFile == null) {
 			// reserve header space
 			this.countingOut.write(EMPTY_HEADER.getBytes(BlobEntryImpl.BLOB_ENTRY_NAME_ENCODING));
 		}
+
+		if (builder.dictionary != null) {
+			this.dictionaryCodec = new DeflateDictionaryCodec(builder.dictionary);
+			// the dictionary always starts the contents region
+			PresetDictionary.write(countingOut, builder.dictionary);
+		} else {
+			this.dictionaryCodec = null;
+		}
+
+		if (builder.blockSize > 0) {
+			this.blockWriter = new CompressedBlockWriter(builder.blockSize, Deflater.DEFAULT_COMPRESSION, defaults);
+			this.blockFutures = new ArrayList<>();
+			this.maxBlockedEntrySize = Math.min(builder.maxBlockedEntrySize, builder.blockSize);
+		} else {
+			this.blockWriter = null;
+			this.blockFutures = null;
+			this.maxBlockedEntrySize = 0;
+		}
+
+		if (asyncWriterThread != null) {
+			asyncWriterThread.start();
+		}
 	}
 
 	private void deleteIfOverwrite(File file, boolean overwrite) throws IOException {
@@ -84,18 +225,483 @@ public class FileBlobStoreWriter extends AbstractBlobStoreWriter {
 		}
 	}
 
+	@Override
+	protected BlobCodec getCodec(final String encoding) {
+		if (BlobEntry.ENCODING_DEFLATE_DICT.equals(encoding)) {
+			if (dictionaryCodec == null) {
+				throw new IllegalArgumentException("Encoding '" + encoding + "' needs a dictionary, see Builder.dictionary(byte[])");
+			}
+			return dictionaryCodec;
+		}
+		return super.getCodec(encoding);
+	}
+
+	/**
+	 * Check that already encoded data with the given encoding can be
+	 * written.
+	 */
+	private void requireWritableEncoding(final String encoding) {
+		final String effectiveEncoding = encoding == null || encoding.isEmpty() ? defaults.getDefaultEncoding() : encoding;
+		if (BlobEntry.ENCODING_DEFLATE_DICT.equals(effectiveEncoding) && dictionaryCodec == null) {
+			throw new IllegalArgumentException("Encoding '" + effectiveEncoding + "' needs a dictionary, see Builder.dictionary(byte[])");
+		}
+		if (BlobEntry.ENCODING_DEFLATE_BLOCK.equals(effectiveEncoding)) {
+			throw new IllegalArgumentException("Encoding '" + effectiveEncoding + "' is only used by the writer in block mode, see Builder.blockSize(int)");
+		}
+	}
+
+	/**
+	 * @return <code>true</code> if entries with the given encoding can only
+	 *         be decoded using data of the blob file containing them.
+	 */
+	static boolean isFileBoundEncoding(final String encoding) {
+		return BlobEntry.ENCODING_DEFLATE_DICT.equals(encoding) || BlobEntry.ENCODING_DEFLATE_BLOCK.equals(encoding);
+	}
+
+	/**
+	 * Add an encoded blob entry. With encoding
+	 * {@value BlobEntry#ENCODING_DEFLATE_BLOCK}, entries are packed into
+	 * compressed blocks, see {@link Builder#blockSize(int)}.
+	 *
+	 * <p>
+	 * If a compression executor is set, the entry is encoded by an executor
+	 * task, and this method waits for the entry to be written, see
+	 * {@link #addBlobEntryEncodedAsync(String, InputStream, String, String)}.
+	 * Encoding then never happens while holding the lock of the blob file,
+	 * and entries added by multiple threads are encoded in parallel by the
+	 * executor. Entries with encoding {@value BlobEntry#ENCODING_IDENTITY} or
+	 * {@value BlobEntry#ENCODING_DEFLATE_BLOCK} are still handled in the
+	 * calling thread.
+	 * </p>
+	 *
+	 * @throws IllegalArgumentException If the encoding is
+	 *         {@value BlobEntry#ENCODING_DEFLATE_BLOCK} and block mode is
+	 *         disabled
+	 */
+	@Override
+	public void addBlobEntryEncoded(final String name, final InputStream unencodedIn, final String mediaType, final String encoding) throws IOException {
+		final BlobCodec codec = getEncodingCodec(encoding);
+		if (!BlobEntry.ENCODING_DEFLATE_BLOCK.equals(encoding)) {
+			if (compressionExecutor != null && !BlobEntry.ENCODING_IDENTITY.equals(encoding)) {
+				awaitWritten(addBlobEntryEncodedAsync(name, unencodedIn, mediaType, encoding));
+			} else {
+				addBlobEntry(name, codec.newEncodingInputStream(unencodedIn), mediaType, encoding);
+			}
+			return;
+		}
+		final byte[] data = new byte[maxBlockedEntrySize + 1];
+		final int length = readBlockCandidate(unencodedIn, data);
+		if (length <= maxBlockedEntrySize) {
+			addBlockedEntry(name, mediaType, data, length, null);
+		} else {
+			final InputStream in = new SequenceInputStream(new ByteArrayInputStream(data, 0, length), unencodedIn);
+			addBlobEntry(name, getCodec(BlobEntry.ENCODING_DEFLATE_RAW).newEncodingInputStream(in), mediaType, BlobEntry.ENCODING_DEFLATE_RAW);
+		}
+	}
+
+	/**
+	 * Get the codec to encode entries with the given encoding.
+	 */
+	private BlobCodec getEncodingCodec(final String encoding) {
+		final BlobCodec codec = getCodec(Objects.requireNonNull(encoding));
+		if (BlobEntry.ENCODING_DEFLATE_BLOCK.equals(encoding) && blockWriter == null) {
+			throw new IllegalArgumentException("Encoding '" + encoding + "' is only used by the writer in block mode, see Builder.blockSize(int)");
+		}
+		return codec;
+	}
+
+	/**
+	 * Read the input up to the length of the given array.
+	 * @return The number of bytes read. If it is the length of the array,
+	 *         the input may have more bytes.
+	 */
+	private static int readBlockCandidate(final InputStream in, final byte[] data) throws IOException {
+		int length = 0;
+		int n;
+		while (length < data.length && (n = in.read(data, length, data.length - length)) != -1) {
+			length += n;
+		}
+		return length;
+	}
+
+	/**
+	 * @param future Future to complete when the block is written, may be
+	 *        <code>null</code>
+	 */
+	private void addBlockedEntry(final String name, final String mediaType, final byte[] data, final int length, final CompletableFuture<BlobEntry> future) throws IOException {
+		synchronized (blockWriter) {
+			if (!blockWriter.fits(length)) {
+				flushBlock();
+			}
+			blockWriter.add(name, mediaType, data, length);
+			blockFutures.add(future);
+			if (blockWriter.isFull()) {
+				flushBlock();
+			}
+		}
+	}
+
+	/**
+	 * Write the current block, if any, and complete the futures of its
+	 * entries. Must be called while holding the lock of the block writer.
+	 */
+	private void flushBlock() throws IOException {
+		if (blockWriter.isEmpty()) {
+			return;
+		}
+		try {
+			final List<BlobEntryImpl> entries;
+			final long lockWaitStart = lockWaitStart();
+			synchronized (countingOut) {
+				lockAcquired(lockWaitStart);
+				final long blockOffset = countingOut.getByteCount();
+				entries = blockWriter.writeTo(countingOut, blockOffset);
+				metrics.entriesWritten(entries.size(), countingOut.getByteCount() - blockOffset);
+			}
+			for (final BlobEntryImpl entry : entries) {
+				addIndexEntry(entry);
+			}
+			for (int i = 0; i < entries.size(); i++) {
+				final CompletableFuture<BlobEntry> future = blockFutures.get(i);
+				if (future != null) {
+					future.complete(entries.get(i));
+				}
+			}
+		} catch (final IOException | RuntimeException e) {
+			for (final CompletableFuture<BlobEntry> future : blockFutures) {
+				if (future != null) {
+					future.completeExceptionally(e);
+				}
+			}
+			throw e;
+		} finally {
+			blockFutures.clear();
+		}
+	}
+
 	@Override
 	public void addBlobEntry(final String name, final InputStream in, final String mediaType, final String encoding) throws IOException {
+		requireWritableEncoding(encoding);
+		if (stagingBuffers != null) {
+			addBlobEntryStaged(name, in, mediaType, encoding);
+			return;
+		}
 		final long offset;
 		final long length;
+		final long lockWaitStart = lockWaitStart();
 		synchronized (countingOut) {
+			lockAcquired(lockWaitStart);
 			offset = countingOut.getByteCount();
 			StreamCopy.copy(in, countingOut);
 			length = countingOut.getByteCount() - offset;
 		}
+		metrics.entriesWritten(1, length);
 		addIndexEntry(new BlobEntryImpl(name, offset, length, mediaType, encoding, defaults));
 	}
 
+	/**
+	 * Read the entry into a staging buffer without holding the lock, so that
+	 * e.g. compression of the input happens in parallel. Only the append of
+	 * the staged data to the blob file is serialized.
+	 */
+	private void addBlobEntryStaged(final String name, final InputStream in, final String mediaType, final String encoding) throws IOException {
+		StagingBuffer stagingBuffer = stagingBuffers.poll();
+		if (stagingBuffer == null) {
+			stagingBuffer = new StagingBuffer(maxStagingBufferSize, blobFile.getAbsoluteFile().getParentFile());
+		}
+		try {
+			stagingBuffer.stage(in);
+			appendStaged(name, mediaType, encoding, stagingBuffer);
+		} finally {
+			stagingBuffer.reset();
+			stagingBuffers.add(stagingBuffer);
+		}
+	}
+
+	private BlobEntryImpl appendStaged(final String name, final String mediaType, final String encoding, final StagingBuffer stagingBuffer) throws IOException {
+		final long offset;
+		final long lockWaitStart = lockWaitStart();
+		synchronized (countingOut) {
+			lockAcquired(lockWaitStart);
+			offset = countingOut.getByteCount();
+			stagingBuffer.writeTo(countingOut);
+		}
+		metrics.entriesWritten(1, stagingBuffer.length());
+		final BlobEntryImpl entry = new BlobEntryImpl(name, offset, stagingBuffer.length(), mediaType, encoding, defaults);
+		addIndexEntry(entry);
+		return entry;
+	}
+
+	/**
+	 * Add a gzip encoded blob entry, compressing the input using the
+	 * compression executor. See
+	 * {@link #addBlobEntryEncodedAsync(String, InputStream, String, String)}.
+	 */
+	public CompletableFuture<BlobEntry> addBlobEntryGzEncodedAsync(final String name, final InputStream nonGzIn, final String mediaType) throws IOException {
+		return addBlobEntryEncodedAsync(name, nonGzIn, mediaType, BlobEntry.ENCODING_GZIP);
+	}
+
+	/**
+	 * Add a blob entry, encoding the input using the compression executor.
+	 * This method returns as soon as the encoding task is submitted, so that
+	 * multiple entries are encoded in parallel. The encoded entry is then
+	 * appended to the blob file, by the async writer thread if async writes
+	 * are enabled. The output for each entry is the same as for
+	 * {@link #addBlobEntryEncoded(String, InputStream, String, String)}.
+	 * Entries packed into a compressed block are completed when the block
+	 * is written, which may be on {@link #close()}.
+	 *
+	 * <p>
+	 * The input stream is read by the encoding task and must not be closed
+	 * before the returned future is completed. If the maximum number of
+	 * pending compressions is reached, this method blocks until an encoding
+	 * task is finished.
+	 * </p>
+	 *
+	 * @return A future completed with the entry when it is written, or
+	 *         completed exceptionally if reading, encoding or writing
+	 *         failed.
+	 * @throws IllegalStateException If no compression executor is set, see
+	 *         {@link Builder#compressionExecutor(Executor)}.
+	 * @throws IllegalArgumentException If the encoding is not supported
+	 */
+	public CompletableFuture<BlobEntry> addBlobEntryEncodedAsync(final String name, final InputStream unencodedIn, final String mediaType, final String encoding) throws IOException {
+		if (compressionExecutor == null) {
+			throw new IllegalStateException("No compression executor set");
+		}
+		final BlobCodec codec = getEncodingCodec(encoding);
+		try {
+			compressionPermits.acquire();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for pending compressions");
+		}
+		if (compressionClosed) {
+			compressionPermits.release();
+			throw new IOException("Writer is closed");
+		}
+		final CompletableFuture<BlobEntry> future = new CompletableFuture<>();
+		try {
+			compressionExecutor.execute(() -> {
+				try {
+					encodeAndAppend(name, unencodedIn, mediaType, codec, future);
+				} finally {
+					compressionPermits.release();
+				}
+			});
+		} catch (final RuntimeException e) {
+			compressionPermits.release();
+			throw e;
+		}
+		return future;
+	}
+
+	private void encodeAndAppend(final String name, final InputStream unencodedIn, final String mediaType, final BlobCodec codec, final CompletableFuture<BlobEntry> future) {
+		final StagingBuffer stagingBuffer = new StagingBuffer(maxStagingBufferSize, blobFile.getAbsoluteFile().getParentFile());
+		BlobCodec entryCodec = codec;
+		InputStream in = unencodedIn;
+		boolean enqueued = false;
+		try {
+			if (BlobEntry.ENCODING_DEFLATE_BLOCK.equals(codec.getEncoding())) {
+				final byte[] data = new byte[maxBlockedEntrySize + 1];
+				final int length = readBlockCandidate(unencodedIn, data);
+				if (length <= maxBlockedEntrySize) {
+					addBlockedEntry(name, mediaType, data, length, future);
+					return;
+				}
+				in = new SequenceInputStream(new ByteArrayInputStream(data, 0, length), unencodedIn);
+				entryCodec = getCodec(BlobEntry.ENCODING_DEFLATE_RAW);
+			}
+			final String encoding = entryCodec.getEncoding();
+			stagingBuffer.stage(entryCodec.newEncodingInputStream(in));
+			if (pendingWrites != null) {
+				enqueue(new PendingWrite(name, mediaType, encoding, stagingBuffer, future));
+				enqueued = true;
+			} else {
+				future.complete(appendStaged(name, mediaType, encoding, stagingBuffer));
+			}
+		} catch (final IOException | RuntimeException e) {
+			future.completeExceptionally(e);
+		} finally {
+			if (!enqueued) {
+				try {
+					stagingBuffer.reset();
+				} catch (final IOException e) {
+					LOG.warn("Error deleting staging file", e);
+				}
+			}
+		}
+	}
+
+	private void closeCompression() {
+		compressionClosed = true;
+		// wait for pending compressions
+		compressionPermits.acquireUninterruptibly(maxPendingCompressions);
+		compressionPermits.release(maxPendingCompressions);
+	}
+
+	/**
+	 * Add a blob entry without waiting for it to be written to the blob file.
+	 * The input is read fully in the calling thread, see
+	 * {@link Builder#maxStagingBufferSize(int)}. Writing to the blob file is
+	 * done by a dedicated writer thread, which appends pending entries in
+	 * batches.
+	 *
+	 * <p>
+	 * If the queue of pending entries is full, this method blocks until
+	 * there is space again.
+	 * </p>
+	 *
+	 * @return A future completed with the entry when it is written, or
+	 *         completed exceptionally if writing failed.
+	 * @throws IllegalStateException If async writes are not enabled, see
+	 *         {@link Builder#asyncQueueCapacity(int)}.
+	 */
+	public CompletableFuture<BlobEntry> addBlobEntryAsync(final String name, final InputStream in, final String mediaType, final String encoding) throws IOException {
+		if (pendingWrites == null) {
+			throw new IllegalStateException("Async writes are not enabled");
+		}
+		requireWritableEncoding(encoding);
+		final StagingBuffer stagingBuffer = new StagingBuffer(maxStagingBufferSize, blobFile.getAbsoluteFile().getParentFile());
+		final PendingWrite pendingWrite = new PendingWrite(name, mediaType, encoding, stagingBuffer, new CompletableFuture<>());
+		boolean enqueued = false;
+		try {
+			stagingBuffer.stage(in);
+			enqueue(pendingWrite);
+			enqueued = true;
+		} finally {
+			if (!enqueued) {
+				stagingBuffer.reset();
+			}
+		}
+		return pendingWrite.future;
+	}
+
+	private void enqueue(final PendingWrite pendingWrite) throws IOException {
+		asyncLock.readLock().lock();
+		try {
+			if (asyncClosed) {
+				throw new IOException("Writer is closed");
+			}
+			pendingWrites.put(pendingWrite);
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for space in queue");
+		} finally {
+			asyncLock.readLock().unlock();
+		}
+	}
+
+	private static class PendingWrite {
+		private final String name;
+		private final String mediaType;
+		private final String encoding;
+		private final StagingBuffer stagingBuffer;
+		private final CompletableFuture<BlobEntry> future;
+
+		public PendingWrite(final String name, final String mediaType, final String encoding, final StagingBuffer stagingBuffer, final CompletableFuture<BlobEntry> future) {
+			this.name = name;
+			this.mediaType = mediaType;
+			this.encoding = encoding;
+			this.stagingBuffer = stagingBuffer;
+			this.future = future;
+		}
+	}
+
+	/**
+	 * Main loop of the async writer thread.
+	 */
+	private void writePendingWrites() {
+		final List<PendingWrite> batch = new ArrayList<>(ASYNC_MAX_BATCH_SIZE);
+		boolean done = false;
+		while (!done) {
+			try {
+				batch.add(pendingWrites.take());
+			} catch (final InterruptedException e) {
+				LOG.error("Async writer thread interrupted, pending entries are not written");
+				pendingWrites.drainTo(batch);
+				for (final PendingWrite pendingWrite : batch) {
+					pendingWrite.future.completeExceptionally(new InterruptedIOException());
+				}
+				return;
+			}
+			pendingWrites.drainTo(batch, ASYNC_MAX_BATCH_SIZE - 1);
+			// the end marker is always the last element ever enqueued
+			if (batch.get(batch.size() - 1) == END_OF_PENDING_WRITES) {
+				batch.remove(batch.size() - 1);
+				done = true;
+			}
+			writeBatch(batch);
+			batch.clear();
+		}
+	}
+
+	private void writeBatch(final List<PendingWrite> batch) {
+		final BlobEntryImpl[] entries = new BlobEntryImpl[batch.size()];
+		IOException flushException = null;
+		int writtenCount = 0;
+		long writtenBytes = 0;
+		final long lockWaitStart = lockWaitStart();
+		synchronized (countingOut) {
+			lockAcquired(lockWaitStart);
+			for (int i = 0; i < entries.length; i++) {
+				final PendingWrite pendingWrite = batch.get(i);
+				final long offset = countingOut.getByteCount();
+				try {
+					pendingWrite.stagingBuffer.writeTo(countingOut);
+					entries[i] = new BlobEntryImpl(pendingWrite.name, offset, pendingWrite.stagingBuffer.length(), pendingWrite.mediaType, pendingWrite.encoding, defaults);
+					writtenCount++;
+					writtenBytes += entries[i].getLength();
+				} catch (final IOException | RuntimeException e) {
+					pendingWrite.future.completeExceptionally(e);
+				}
+			}
+			try {
+				countingOut.flush();
+				if (syncAsyncWrites) {
+					fileOut.getChannel().force(false);
+				}
+			} catch (final IOException e) {
+				flushException = e;
+			}
+		}
+		metrics.entriesWritten(writtenCount, writtenBytes);
+		for (int i = 0; i < entries.length; i++) {
+			final PendingWrite pendingWrite = batch.get(i);
+			try {
+				pendingWrite.stagingBuffer.reset();
+				if (entries[i] != null) {
+					if (flushException != null) {
+						throw flushException;
+					}
+					addIndexEntry(entries[i]);
+					pendingWrite.future.complete(entries[i]);
+				}
+			} catch (final IOException | RuntimeException e) {
+				pendingWrite.future.completeExceptionally(e);
+			}
+		}
+	}
+
+	private void closeAsyncWrites() throws IOException {
+		asyncLock.writeLock().lock();
+		try {
+			if (asyncClosed) {
+				return;
+			}
+			asyncClosed = true;
+		} finally {
+			asyncLock.writeLock().unlock();
+		}
+		try {
+			pendingWrites.put(END_OF_PENDING_WRITES);
+			asyncWriterThread.join();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for pending writes");
+		}
+	}
+
 	/**
 	 * Get an output stream suitable for writing a new blob entry.
 	 * The returned output stream is not thread-safe.
@@ -104,109 +710,350 @@ public class FileBlobStoreWriter extends AbstractBlobStoreWriter {
 		return new BlobEntryOutputStream(this, name, mediaType, encoding);
 	}
 
+	/**
+	 * Copy all entries of the given reader. Entries are copied as they are,
+	 * except for entries using the dictionary or compressed blocks of their
+	 * blob file. They are re-encoded using the dictionary of this writer, or
+	 * gzip if no dictionary is set.
+	 */
 	@Override
 	public void mergeFrom(final BlobStoreReader reader) throws IOException {
 		reader.visitBlobEntries(new BlobEntryVisitor() {
 			@Override
 			public void visit(final BlobEntry blobEntry, final InputStream contents) throws IOException {
+				if (isFileBoundEncoding(blobEntry.getEncoding())) {
+					try (InputStream decoded = reader.getBlobEntryContentsDecoded(blobEntry)) {
+						addBlobEntryEncoded(blobEntry.getName(), decoded, blobEntry.getMediaType(), getMergeEncoding());
+					}
+					return;
+				}
 				final long offset;
 				final long length;
+				final long lockWaitStart = lockWaitStart();
 				synchronized (countingOut) {
+					lockAcquired(lockWaitStart);
 					offset = countingOut.getByteCount();
 					StreamCopy.copy(contents, countingOut);
 					length = countingOut.getByteCount() - offset;
 				}
+				metrics.entriesWritten(1, length);
 				addIndexEntry(new BlobEntryImpl(blobEntry.getName(), offset, length, blobEntry.getMediaType(), blobEntry.getEncoding(), defaults));
 			}
 		});
 	}
 
+	/**
+	 * @return The encoding for entries re-encoded while merging.
+	 */
+	private String getMergeEncoding() {
+		if (dictionaryCodec != null) {
+			return BlobEntry.ENCODING_DEFLATE_DICT;
+		}
+		return blockWriter != null ? BlobEntry.ENCODING_DEFLATE_BLOCK : BlobEntry.ENCODING_GZIP;
+	}
+
+	/**
+	 * @return The start time for measuring the wait time for the lock on the
+	 *         blob file output, or 0 if metrics are disabled.
+	 */
+	private long lockWaitStart() {
+		return metrics == BlobStoreMetrics.NOOP ? 0L : System.nanoTime();
+	}
+
+	private void lockAcquired(final long lockWaitStart) {
+		if (lockWaitStart != 0L) {
+			metrics.writeLockWait(System.nanoTime() - lockWaitStart);
+		}
+	}
+
 	private void addIndexEntry(final BlobEntryImpl indexEntry) throws IOException {
-		List<BlobEntryImpl> indexEntriesToDump = null;
+		IndexEntryBuffer indexEntriesToDump = null;
 		synchronized (indexEntriesMutex) {
 			indexEntries.add(indexEntry);
-			if (maxIndexEntriesInMemory > 0 && indexEntries.size() >= maxIndexEntriesInMemory) {
+			indexEntryCount++;
+			if ((maxIndexEntriesInMemory > 0 && indexEntries.size() >= maxIndexEntriesInMemory)
+					|| (maxIndexMemory > 0 && indexEntries.getEstimatedMemoryUsage() >= maxIndexMemory)) {
 				indexEntriesToDump = indexEntries;
-				indexEntries = new ArrayList<>();
+				// chunks are usually of similar size
+				indexEntries = new IndexEntryBuffer(defaults, indexEntriesToDump.size(), indexEntriesToDump.getNamesLength());
+			}
+		}
+		if (indexEntriesToDump != null) {
+			if (indexMergeExecutor != null) {
+				dumpIndexEntriesChunkAsync(indexEntriesToDump);
+			} else {
+				dumpIndexEntriesChunk(indexEntriesToDump);
 			}
 		}
-		dumpIndexEntriesChunk(indexEntriesToDump);
 	}
 
-	private void dumpIndexEntriesChunk(final List<BlobEntryImpl> indexEntries) throws IOException, UnsupportedEncodingException, FileNotFoundException {
+	private void dumpIndexEntriesChunk(final IndexEntryBuffer indexEntries) throws IOException {
 		if (indexEntries != null) {
-			LOG.info("Dumping {} index entries to chunk file...", indexEntries.size());
-			// sort current index entries and dump to temp file
-			Collections.sort(indexEntries);
-			final File indexChunkFile = File.createTempFile(blobFile.getName(), ".idxchunk", blobFile.getParentFile());
-			synchronized (indexChunkFiles) {
-				indexChunkFiles.add(indexChunkFile);
-			}
-			try (Writer idxOut = newIndexChunkWriter(indexChunkFile)) {
-				for (final BlobEntryImpl entry : indexEntries) {
-					entry.write(idxOut);
+			final File indexChunkFile = newIndexChunkFile();
+			writeIndexChunk(indexChunkFile, indexEntries);
+			addIndexChunk(CompletableFuture.completedFuture(indexChunkFile));
+		}
+	}
+
+	/**
+	 * Sort and write the entries in a task of the index merge executor. While
+	 * {@value #MAX_PENDING_INDEX_CHUNKS} chunks are pending, the entries are
+	 * written in the calling thread instead, to bound the memory used by index
+	 * entries. The calling thread never waits for executor tasks, as it may be
+	 * a task of the same executor, e.g. of a shared compression executor.
+	 */
+	private void dumpIndexEntriesChunkAsync(final IndexEntryBuffer indexEntries) throws IOException {
+		checkIndexChunkFailure();
+		if (!indexChunkPermits.tryAcquire()) {
+			dumpIndexEntriesChunk(indexEntries);
+			return;
+		}
+		final CompletableFuture<File> indexChunk;
+		try {
+			final File indexChunkFile = newIndexChunkFile();
+			indexChunk = CompletableFuture.supplyAsync(() -> {
+				try {
+					writeIndexChunk(indexChunkFile, indexEntries);
+					return indexChunkFile;
+				} catch (final IOException e) {
+					throw new UncheckedIOException(e);
 				}
+			}, indexMergeExecutor);
+		} catch (final IOException | RuntimeException e) {
+			indexChunkPermits.release();
+			throw e;
+		}
+		indexChunk.whenComplete((file, failure) -> indexChunkPermits.release());
+		addIndexChunk(indexChunk);
+	}
+
+	private File newIndexChunkFile() throws IOException {
+		return File.createTempFile(blobFile.getName(), ".idxchunk", blobFile.getParentFile());
+	}
+
+	private void writeIndexChunk(final File indexChunkFile, final IndexEntryBuffer indexEntries) throws IOException {
+		LOG.info("Dumping {} index entries to chunk file...", indexEntries.size());
+		final long start = System.nanoTime();
+		// sort current index entries and dump to temp file
+		indexEntries.sort();
+		try (Writer idxOut = indexChunkMerger.newWriter(indexChunkFile)) {
+			for (int i = 0; i < indexEntries.size(); i++) {
+				indexEntries.getBlobEntry(i).write(idxOut);
 			}
 		}
+		metrics.indexChunkDumped(System.nanoTime() - start, indexEntries.size());
 	}
 
-	private OutputStreamWriter newIndexChunkWriter(final File indexChunkFile) throws IOException {
-		return new OutputStreamWriter(
-				new GZIPOutputStream(
-						new BufferedOutputStream(
-								new FileOutputStream(indexChunkFile))),
-				BlobEntryImpl.BLOB_ENTRY_NAME_ENCODING);
+	/**
+	 * Add a chunk in write order. With an index merge executor, every
+	 * {@value SortedChunkMerger#DEFAULT_MAX_MERGE_WIDTH} chunks are merged to
+	 * one in the background, so less work is left for {@link #close()}.
+	 */
+	private void addIndexChunk(final CompletableFuture<File> indexChunk) {
+		recordIndexChunkFailure(indexChunk);
+		synchronized (indexChunks) {
+			indexChunks.add(indexChunk);
+			unmergedIndexChunks++;
+			if (indexMergeExecutor == null || unmergedIndexChunks < SortedChunkMerger.DEFAULT_MAX_MERGE_WIDTH) {
+				return;
+			}
+			final List<CompletableFuture<File>> unmerged = indexChunks.subList(indexChunks.size() - unmergedIndexChunks, indexChunks.size());
+			final List<CompletableFuture<File>> toMerge = new ArrayList<>(unmerged);
+			unmerged.clear();
+			unmergedIndexChunks = 0;
+			final CompletableFuture<File> merged = CompletableFuture.allOf(toMerge.toArray(new CompletableFuture<?>[0]))
+					.thenApplyAsync(v -> {
+						final List<File> files = new ArrayList<>(toMerge.size());
+						for (final CompletableFuture<File> chunk : toMerge) {
+							files.add(chunk.join());
+						}
+						final long start = System.nanoTime();
+						try {
+							final File mergedFile = indexChunkMerger.mergeToFile(files);
+							metrics.indexChunksMerged(System.nanoTime() - start, files.size());
+							return mergedFile;
+						} catch (final IOException e) {
+							throw new UncheckedIOException(e);
+						}
+					}, indexMergeExecutor);
+			recordIndexChunkFailure(merged);
+			// merged chunks are not merged again before close
+			indexChunks.add(merged);
+		}
+	}
+
+	private void recordIndexChunkFailure(final CompletableFuture<File> indexChunk) {
+		indexChunk.whenComplete((file, failure) -> {
+			if (failure != null && indexChunkFailure == null) {
+				indexChunkFailure = failure;
+			}
+		});
+	}
+
+	private void checkIndexChunkFailure() throws IOException {
+		final Throwable failure = indexChunkFailure;
+		if (failure != null) {
+			throw new IOException("Writing index chunk failed", unwrap(failure));
+		}
+	}
+
+	/**
+	 * Wait for all index chunks to be written.
+	 * @return The index chunk files in write order
+	 */
+	private List<File> awaitIndexChunks() throws IOException {
+		final List<CompletableFuture<File>> chunks;
+		synchronized (indexChunks) {
+			chunks = new ArrayList<>(indexChunks);
+		}
+		final List<File> files = new ArrayList<>(chunks.size());
+		for (final CompletableFuture<File> chunk : chunks) {
+			try {
+				files.add(chunk.join());
+			} catch (final CompletionException e) {
+				throw new IOException("Writing index chunk failed", unwrap(e));
+			}
+		}
+		return files;
+	}
+
+	private static void awaitWritten(final CompletableFuture<BlobEntry> future) throws IOException {
+		try {
+			future.join();
+		} catch (final CompletionException e) {
+			final Throwable cause = unwrap(e);
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IOException(cause);
+		}
+	}
+
+	private static Throwable unwrap(final Throwable failure) {
+		Throwable cause = failure;
+		while ((cause instanceof CompletionException || cause instanceof UncheckedIOException) && cause.getCause() != null) {
+			cause = cause.getCause();
+		}
+		return cause;
 	}
 
 	@Override
 	public void close() throws IOException {
+		if (compressionExecutor != null) {
+			closeCompression();
+		}
+		if (pendingWrites != null) {
+			closeAsyncWrites();
+		}
+		if (blockWriter != null) {
+			synchronized (blockWriter) {
+				flushBlock();
+				blockWriter.close();
+			}
+		}
 		final long indexOffset;
+		final BloomFilter bloomFilter;
+		final IndexedNames indexedNames = new IndexedNames();
 		synchronized (countingOut) {
 			indexOffset = countingOut.getByteCount();
+			if (bloomFilterFalsePositiveRate > 0) {
+				bloomFilter = BloomFilter.create(indexEntryCount, bloomFilterFalsePositiveRate);
+			} else {
+				bloomFilter = null;
+			}
 
 			try {
+				final long start = System.nanoTime();
 				if (indexFile == null) {
-					writeIndex(countingOut);
+					writeIndex(countingOut, bloomFilter, indexedNames);
 				} else {
 					try (FileOutputStream indexOut = new FileOutputStream(indexFile)) {
-						writeIndex(indexOut);
+						writeIndex(indexOut, bloomFilter, indexedNames);
 					}
 				}
+				metrics.indexWritten(System.nanoTime() - start, indexEntryCount);
 			} finally {
 				countingOut.reallyClose();
+				if (stagingBuffers != null) {
+					stagingBuffers.clear();
+				}
 			}
 		}
 
 		if (indexFile == null) {
 			writeHeader(indexOffset);
 		}
+
+		if (bloomFilter != null) {
+			// written last, so that the blob file is complete
+			bloomFilter.write(BloomFilter.getSidecarFile(blobFile), new BloomFilter.BlobFileInfo(
+					blobFile.length(), indexOffset, blobFile.lastModified(),
+					indexedNames.count, indexedNames.first, indexedNames.last));
+		}
+	}
+
+	/**
+	 * Names written to the index, in index order.
+	 */
+	private static class IndexedNames {
+		private long count;
+		private String first;
+		private String last;
+
+		void add(final String name) {
+			if (count == 0) {
+				first = name;
+			}
+			last = name;
+			count++;
+		}
 	}
 
-	private void writeIndex(OutputStream indexOut) throws IOException {
-		if (!indexChunkFiles.isEmpty()) {
+	/**
+	 * @param bloomFilter Filter to add all entry names to, may be <code>null</code>
+	 * @param indexedNames Receives all entry names in index order
+	 */
+	private void writeIndex(OutputStream indexOut, BloomFilter bloomFilter, IndexedNames indexedNames) throws IOException {
+		final boolean hasIndexChunks;
+		synchronized (indexChunks) {
+			hasIndexChunks = !indexChunks.isEmpty();
+		}
+		if (hasIndexChunks) {
 			// dump remaining entries
 			synchronized (indexEntriesMutex) {
 				dumpIndexEntriesChunk(indexEntries);
 			}
 			indexEntries = null;
 
-			// do external sort on chunk files
-			try (BufferedWriter idxOut = new BufferedWriter(new OutputStreamWriter(indexOut, BlobEntryImpl.BLOB_ENTRY_NAME_ENCODING))) {
-				ExternalSort.mergeSortedFiles(
-						indexChunkFiles,
-						idxOut,
-						BLOB_ENTRY_LINE_COMPARATOR,
-						Charset.forName(BlobEntryImpl.BLOB_ENTRY_NAME_ENCODING),
-						false,
-						true);
+			// merge sorted chunk files
+			final List<File> indexChunkFiles = awaitIndexChunks();
+			try (IndexWriter idxOut = newIndexWriter(indexOut)) {
+				indexChunkMerger.merge(indexChunkFiles, (line, key) -> {
+					idxOut.writeLine(line);
+					indexedNames.add(key);
+					if (bloomFilter != null) {
+						bloomFilter.put(key);
+					}
+				});
 			}
 		} else {
 			// sort in-memory and write to blob file index section
 			synchronized (indexEntriesMutex) {
-				Collections.sort(indexEntries);
-				try (BufferedWriter idxOut = new BufferedWriter(new OutputStreamWriter(indexOut, BlobEntryImpl.BLOB_ENTRY_NAME_ENCODING))) {
-					for (final BlobEntryImpl entry : indexEntries) {
-						entry.write(idxOut);
+				indexEntries.sort();
+				try (IndexWriter idxOut = newIndexWriter(indexOut)) {
+					for (int i = 0; i < indexEntries.size(); i++) {
+						final BlobEntryImpl entry = indexEntries.getBlobEntry(i);
+						idxOut.write(entry);
+						indexedNames.add(entry.getName());
+						if (bloomFilter != null) {
+							bloomFilter.put(entry.getName());
+						}
 					}
 				}
 				indexEntries = null;
@@ -214,14 +1061,12 @@ public class FileBlobStoreWriter extends AbstractBlobStoreWriter {
 		}
 	}
 
-	private static final Comparator<String> BLOB_ENTRY_LINE_COMPARATOR = new Comparator<String>() {
-		@Override
-		public int compare(final String o1, final String o2) {
-			final String k1 = BlobEntryImpl.parseKey(o1);
-			final String k2 = BlobEntryImpl.parseKey(o2);
-			return k1.compareTo(k2);
+	private IndexWriter newIndexWriter(final OutputStream indexOut) throws IOException {
+		if (formatVersion == FORMAT_VERSION_2) {
+			return new BinaryIndexWriter(indexOut, defaults, blobFile.getAbsoluteFile().getParentFile(), blobFile.getName());
 		}
-	};
+		return new TextIndexWriter(indexOut);
+	}
 
 	private void writeHeader(final long indexOffset) throws IOException {
 		final StringBuilder paddedIndexOffsetSb = new StringBuilder(19); // Long.MAX_VALUE is 9223372036854775807 and thus maximum 19 decimal digits
@@ -238,7 +1083,8 @@ public class FileBlobStoreWriter extends AbstractBlobStoreWriter {
 		final String paddedIndexOffset = paddedIndexOffsetSb.toString();
 
 		try (RandomAccessFile randomAccessFile = new RandomAccessFile(blobFile, "rw")) {
-			randomAccessFile.write(HEADER_PREFIX.getBytes(BlobEntryImpl.BLOB_ENTRY_NAME_ENCODING));
+			final String headerPrefix = formatVersion == FORMAT_VERSION_2 ? HEADER_PREFIX_V2 : HEADER_PREFIX;
+			randomAccessFile.write(headerPrefix.getBytes(BlobEntryImpl.BLOB_ENTRY_NAME_ENCODING));
 			randomAccessFile.write(paddedIndexOffset.getBytes(BlobEntryImpl.BLOB_ENTRY_NAME_ENCODING));
 			randomAccessFile.write(HEADER_SUFFIX.getBytes(BlobEntryImpl.BLOB_ENTRY_NAME_ENCODING));
 		}
@@ -251,12 +1097,30 @@ public class FileBlobStoreWriter extends AbstractBlobStoreWriter {
 	public static class Builder {
 		// package protected
 		static final int DEFAULT_MAX_ENTRIES_IN_MEMORY = 100_000;
+		static final double DEFAULT_BLOOM_FILTER_FALSE_POSITIVE_RATE = 0.01;
+		static final int DEFAULT_MAX_STAGING_BUFFER_SIZE = 1024 * 1024;
+		static final int DEFAULT_MAX_BLOCKED_ENTRY_SIZE = 4096;
 
 		private boolean overwrite;
 		private File blobFile;
 		private File indexFile;
 		private BlobStoreDefaults defaults = BlobStoreDefaults.STANDARD_DEFAULTS;
+		private BlobStoreMetrics metrics = BlobStoreMetrics.NOOP;
 		private int maxIndexEntriesInMemory = DEFAULT_MAX_ENTRIES_IN_MEMORY;
+		private long maxIndexMemory;
+		private int formatVersion = FORMAT_VERSION_1;
+		private boolean bloomFilter;
+		private double bloomFilterFalsePositiveRate = DEFAULT_BLOOM_FILTER_FALSE_POSITIVE_RATE;
+		private boolean concurrentWrites;
+		private int maxStagingBufferSize = DEFAULT_MAX_STAGING_BUFFER_SIZE;
+		private int asyncQueueCapacity;
+		private boolean syncAsyncWrites;
+		private Executor compressionExecutor;
+		private int maxPendingCompressions;
+		private Executor indexMergeExecutor;
+		private byte[] dictionary;
+		private int blockSize;
+		private int maxBlockedEntrySize = DEFAULT_MAX_BLOCKED_ENTRY_SIZE;
 
 		public Builder overwrite(boolean overwrite) {
 			this.overwrite = overwrite;
@@ -271,6 +1135,7 @@ public class FileBlobStoreWriter extends AbstractBlobStoreWriter {
 		/**
 		 * Enable usage of a index file and do not write index data into the blob file.
 		 * Do not set, or set to <code>null</code>, to produce a combined blob file.
+		 * Can not be combined with {@link #dictionary(byte[])}.
 		 */
 		public Builder indexFile(File indexFile) {
 			this.indexFile = indexFile;
@@ -295,7 +1160,8 @@ public class FileBlobStoreWriter extends AbstractBlobStoreWriter {
 		/**
 		 * Set number of index entries to keep in memory before dumping a index chunk to
 		 * disk. A value &lt;= 0 disables dumping of index chunks to disk, all index
-		 * entries will be kept in memory.
+		 * entries will be kept in memory, unless {@link #maxIndexMemory(long)}
+		 * is set.
 		 *
 		 * <p>
 		 * Default value: {@value #DEFAULT_MAX_ENTRIES_IN_MEMORY}.
@@ -306,6 +1172,244 @@ public class FileBlobStoreWriter extends AbstractBlobStoreWriter {
 			return this;
 		}
 
+		/**
+		 * Set the estimated heap memory in bytes to use for index entries
+		 * before dumping a index chunk to disk. Unlike the number of entries,
+		 * this accounts for the length of entry names. Index entries are kept
+		 * compactly, using about 32 bytes per entry plus the name length. If
+		 * both this and {@link #maxIndexEntriesInMemory(int)} are set, a chunk
+		 * is dumped when either limit is reached. To limit memory only, set
+		 * max index entries in memory to 0. A value &lt;= 0 disables the
+		 * memory limit.
+		 *
+		 * <p>
+		 * Default value: 0.
+		 * </p>
+		 */
+		public Builder maxIndexMemory(long maxIndexMemory) {
+			this.maxIndexMemory = maxIndexMemory;
+			return this;
+		}
+
+		/**
+		 * Set the format version of the blob file to write. Format version
+		 * {@value FileBlobStoreWriter#FORMAT_VERSION_2} uses a compact binary
+		 * index allowing faster lookups, but can only be read by readers
+		 * supporting it.
+		 *
+		 * <p>
+		 * Default value: {@value FileBlobStoreWriter#FORMAT_VERSION_1}.
+		 * </p>
+		 */
+		public Builder formatVersion(int formatVersion) {
+			this.formatVersion = formatVersion;
+			return this;
+		}
+
+		/**
+		 * Enable writing a bloom filter over all entry names to a sidecar
+		 * file next to the blob file, named like the blob file with suffix
+		 * {@value BloomFilter#SIDECAR_SUFFIX}. Readers use the filter to
+		 * answer lookups for missing names without searching the index.
+		 */
+		public Builder bloomFilter(boolean bloomFilter) {
+			this.bloomFilter = bloomFilter;
+			return this;
+		}
+
+		/**
+		 * Set the desired false positive rate of the bloom filter. Lower
+		 * values need more memory, about 10 bits per entry for 0.01.
+		 *
+		 * <p>
+		 * Default value: {@value #DEFAULT_BLOOM_FILTER_FALSE_POSITIVE_RATE}.
+		 * </p>
+		 */
+		public Builder bloomFilterFalsePositiveRate(double bloomFilterFalsePositiveRate) {
+			this.bloomFilterFalsePositiveRate = bloomFilterFalsePositiveRate;
+			return this;
+		}
+
+		/**
+		 * Enable concurrent writes. Each call to add an entry first reads the
+		 * input into a staging buffer without holding any lock, and only the
+		 * append of the staged data to the blob file is serialized. Use this
+		 * if multiple threads add entries and reading the input is expensive,
+		 * e.g. because it is compressed on the fly.
+		 *
+		 * <p>
+		 * Without concurrent writes, entries are copied directly to the blob
+		 * file while holding the lock, which avoids the extra copy.
+		 * </p>
+		 */
+		public Builder concurrentWrites(boolean concurrentWrites) {
+			this.concurrentWrites = concurrentWrites;
+			return this;
+		}
+
+		/**
+		 * Set the maximum number of bytes of an entry to stage in memory
+		 * when concurrent writes are enabled. Larger entries are staged in a
+		 * temporary file next to the blob file. One buffer is used per
+		 * concurrently writing thread.
+		 *
+		 * <p>
+		 * Default value: {@value #DEFAULT_MAX_STAGING_BUFFER_SIZE}.
+		 * </p>
+		 */
+		public Builder maxStagingBufferSize(int maxStagingBufferSize) {
+			this.maxStagingBufferSize = maxStagingBufferSize;
+			return this;
+		}
+
+		/**
+		 * Enable async writes using
+		 * {@link FileBlobStoreWriter#addBlobEntryAsync(String, InputStream, String, String)}
+		 * by setting the maximum number of entries waiting to be written.
+		 * When the limit is reached, adding more entries blocks until the
+		 * writer thread catches up. Each waiting entry uses up to
+		 * {@link #maxStagingBufferSize(int)} bytes of memory. A value &lt;= 0
+		 * disables async writes.
+		 *
+		 * <p>
+		 * Default value: 0.
+		 * </p>
+		 */
+		public Builder asyncQueueCapacity(int asyncQueueCapacity) {
+			this.asyncQueueCapacity = asyncQueueCapacity;
+			return this;
+		}
+
+		/**
+		 * Enable syncing the blob file to the storage device after each batch
+		 * of async writes, before the futures of the batch are completed.
+		 */
+		public Builder syncAsyncWrites(boolean syncAsyncWrites) {
+			this.syncAsyncWrites = syncAsyncWrites;
+			return this;
+		}
+
+		/**
+		 * Set the executor used to compress entries added with
+		 * {@link FileBlobStoreWriter#addBlobEntryEncodedAsync(String, InputStream, String, String)},
+		 * e.g. a {@link java.util.concurrent.ForkJoinPool} or a thread pool
+		 * sized to the number of cores. Entries added with the sync methods
+		 * like {@link FileBlobStoreWriter#addBlobEntryGzEncoded(String, InputStream)}
+		 * are compressed by the executor as well, with the calling thread
+		 * waiting for the result. The sync methods must therefore not be
+		 * called from tasks of a bounded executor other than a
+		 * {@link java.util.concurrent.ForkJoinPool}. The executor is not
+		 * shut down by the writer.
+		 */
+		public Builder compressionExecutor(Executor compressionExecutor) {
+			this.compressionExecutor = compressionExecutor;
+			return this;
+		}
+
+		/**
+		 * Set the maximum number of entries being compressed or waiting for
+		 * compression at the same time. Each of them uses up to
+		 * {@link #maxStagingBufferSize(int)} bytes of memory. A value &lt;= 0
+		 * uses twice the number of available processors.
+		 *
+		 * <p>
+		 * Default value: 0.
+		 * </p>
+		 */
+		public Builder maxPendingCompressions(int maxPendingCompressions) {
+			this.maxPendingCompressions = maxPendingCompressions;
+			return this;
+		}
+
+		/**
+		 * Set the executor used to write and merge index chunk files, see
+		 * {@link #maxIndexEntriesInMemory(int)}. Chunks are sorted and written
+		 * in executor tasks instead of the thread adding the entry that filled
+		 * the chunk. While two chunks are pending, the thread adding the entry
+		 * writes the chunk itself, so adding entries never waits for executor
+		 * tasks, and the executor may be shared with the compression executor.
+		 * Every {@value SortedChunkMerger#DEFAULT_MAX_MERGE_WIDTH} chunk files
+		 * are merged in the background while writing continues. On close,
+		 * chunk files are read ahead in executor tasks. The executor is not
+		 * shut down by the writer.
+		 *
+		 * <p>
+		 * Default value: <code>null</code>, chunks are written in the thread
+		 * adding the entry and merged in the closing thread.
+		 * </p>
+		 */
+		public Builder indexMergeExecutor(Executor indexMergeExecutor) {
+			this.indexMergeExecutor = indexMergeExecutor;
+			return this;
+		}
+
+		/**
+		 * Set a preset dictionary for entries with encoding
+		 * {@value BlobEntry#ENCODING_DEFLATE_DICT}. The dictionary is stored
+		 * once in the blob file and used by readers to decode these entries.
+		 * It should contain content common to many entries, see
+		 * {@link de.mklinger.blobstore.codec.DictionaryTrainer}. At most
+		 * {@value DeflateDictionaryCodec#MAX_DICTIONARY_SIZE} bytes are
+		 * allowed. Can not be combined with {@link #indexFile(File)}.
+		 */
+		public Builder dictionary(byte[] dictionary) {
+			if (dictionary != null && dictionary.length > DeflateDictionaryCodec.MAX_DICTIONARY_SIZE) {
+				throw new IllegalArgumentException("Dictionary too large: " + dictionary.length);
+			}
+			this.dictionary = dictionary;
+			return this;
+		}
+
+		/**
+		 * Enable block mode by setting the uncompressed size of compressed
+		 * blocks, up to {@value CompressedBlock#MAX_BLOCK_SIZE}. In block
+		 * mode, small entries added with encoding
+		 * {@value BlobEntry#ENCODING_DEFLATE_BLOCK} using
+		 * {@link FileBlobStoreWriter#addBlobEntryEncoded(String, InputStream, String, String)}
+		 * or
+		 * {@link FileBlobStoreWriter#addBlobEntryEncodedAsync(String, InputStream, String, String)}
+		 * are packed into blocks compressed together, saving space and CPU for
+		 * millions of tiny entries. Entries with any other encoding, e.g.
+		 * gzip, keep their encoding. A value &lt;= 0 disables block mode.
+		 *
+		 * <p>
+		 * Default value: 0.
+		 * </p>
+		 */
+		public Builder blockSize(int blockSize) {
+			if (blockSize > CompressedBlock.MAX_BLOCK_SIZE) {
+				throw new IllegalArgumentException("Block size too large: " + blockSize);
+			}
+			this.blockSize = blockSize;
+			return this;
+		}
+
+		/**
+		 * Set the maximum unencoded size of entries to pack into blocks in
+		 * block mode. Larger entries are stored on their own with encoding
+		 * {@value BlobEntry#ENCODING_DEFLATE_RAW}.
+		 *
+		 * <p>
+		 * Default value: {@value #DEFAULT_MAX_BLOCKED_ENTRY_SIZE}.
+		 * </p>
+		 */
+		public Builder maxBlockedEntrySize(int maxBlockedEntrySize) {
+			this.maxBlockedEntrySize = maxBlockedEntrySize;
+			return this;
+		}
+
+		/**
+		 * Set the receiver for metrics of this writer.
+		 *
+		 * <p>
+		 * Default value: {@link BlobStoreMetrics#NOOP}.
+		 * </p>
+		 */
+		public Builder metrics(BlobStoreMetrics metrics) {
+			this.metrics = metrics;
+			return this;
+		}
+
 		public FileBlobStoreWriter build() throws IOException {
 			return new FileBlobStoreWriter(this);
 		}
@@ -3,26 +3,171 @@ package de.mklinger.blobstore;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import de.mklinger.blobstore.impl.NameRangeRouter;
+
 public class MultiFileBlobStoreReader implements BlobStoreReader {
 	private static final Logger LOG = LoggerFactory.getLogger(MultiFileBlobStoreReader.class);
 
 	private final List<BlobStoreReader> readers;
+	private final NameRangeRouter router;
+
+	/**
+	 * Opens the reader for a single blob file, e.g.
+	 * <code>file -&gt; FileBlobStoreReader.builder().blobFile(file).mapped(true).build()</code>.
+	 */
+	@FunctionalInterface
+	public interface ReaderFactory {
+		FileBlobStoreReader open(File blobFile) throws IOException;
+	}
 
 	public MultiFileBlobStoreReader(final List<File> files) throws IOException {
+		this(files, FileBlobStoreReader::new, null);
+	}
+
+	/**
+	 * @param executor Executor used to open the blob files in parallel, or
+	 *        <code>null</code> to open them one after the other in the
+	 *        calling thread. Readers are used in the order of the given files
+	 *        in both cases.
+	 */
+	public MultiFileBlobStoreReader(final List<File> files, final Executor executor) throws IOException {
+		this(files, FileBlobStoreReader::new, executor);
+	}
+
+	/**
+	 * @param readerFactory Factory opening the reader for each blob file,
+	 *        e.g. to enable memory mapping, caches or metrics. Must be
+	 *        thread-safe if an executor is given.
+	 * @param executor Executor used to open the blob files in parallel, or
+	 *        <code>null</code> to open them one after the other in the
+	 *        calling thread. Readers are used in the order of the given files
+	 *        in both cases.
+	 */
+	public MultiFileBlobStoreReader(final List<File> files, final ReaderFactory readerFactory, final Executor executor) throws IOException {
+		Objects.requireNonNull(readerFactory);
+		final List<OpenedFile> openedFiles = executor == null
+				? openSequential(files, readerFactory)
+				: openParallel(files, readerFactory, executor);
 		readers = new ArrayList<>(files.size());
-		for (final File file : files) {
+		final List<String> firstNames = new ArrayList<>(files.size());
+		final List<String> lastNames = new ArrayList<>(files.size());
+		for (final OpenedFile openedFile : openedFiles) {
+			if (openedFile != null) {
+				readers.add(openedFile.reader);
+				firstNames.add(openedFile.firstName);
+				lastNames.add(openedFile.lastName);
+			}
+		}
+		router = new NameRangeRouter(firstNames, lastNames);
+	}
+
+	private static List<OpenedFile> openSequential(final List<File> files, final ReaderFactory readerFactory) throws IOException {
+		final List<OpenedFile> openedFiles = new ArrayList<>(files.size());
+		try {
+			for (final File file : files) {
+				openedFiles.add(open(file, readerFactory));
+			}
+		} catch (final IOException | RuntimeException e) {
+			closeAll(openedFiles, e);
+			throw e;
+		}
+		return openedFiles;
+	}
+
+	private static List<OpenedFile> openParallel(final List<File> files, final ReaderFactory readerFactory, final Executor executor) throws IOException {
+		final List<CompletableFuture<OpenedFile>> futures = new ArrayList<>(files.size());
+		Throwable failure = null;
+		try {
+			for (final File file : files) {
+				futures.add(CompletableFuture.supplyAsync(() -> {
+					try {
+						return open(file, readerFactory);
+					} catch (final IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				}, executor));
+			}
+		} catch (final RuntimeException e) {
+			// e.g. RejectedExecutionException, files already submitted are
+			// still waited for and closed below
+			failure = e;
+		}
+		final List<OpenedFile> openedFiles = new ArrayList<>(futures.size());
+		// wait for all submitted files, so that no reader is left open on failure
+		for (final CompletableFuture<OpenedFile> future : futures) {
+			try {
+				openedFiles.add(future.join());
+			} catch (final CompletionException e) {
+				final Throwable cause = e.getCause() instanceof UncheckedIOException ? e.getCause().getCause() : e.getCause();
+				if (failure == null) {
+					failure = cause;
+				} else {
+					failure.addSuppressed(cause);
+				}
+			}
+		}
+		if (failure != null) {
+			closeAll(openedFiles, failure);
+			if (failure instanceof IOException) {
+				throw (IOException) failure;
+			}
+			if (failure instanceof RuntimeException) {
+				throw (RuntimeException) failure;
+			}
+			throw new IOException(failure);
+		}
+		return openedFiles;
+	}
+
+	/**
+	 * @return The opened file, or <code>null</code> if the file is broken.
+	 */
+	private static OpenedFile open(final File file, final ReaderFactory readerFactory) throws IOException {
+		try {
+			final FileBlobStoreReader reader = readerFactory.open(file);
 			try {
-				readers.add(new FileBlobStoreReader(file));
-			} catch (final BlobStoreFormatException e) {
-				LOG.warn("Not using blob file {} as input, seems to be broken", file);
+				return new OpenedFile(reader, reader.getFirstEntryName(), reader.getLastEntryName());
+			} catch (final IOException | RuntimeException e) {
+				try {
+					reader.close();
+				} catch (final IOException e2) {
+					e.addSuppressed(e2);
+				}
+				throw e;
+			}
+		} catch (final BlobStoreFormatException e) {
+			LOG.warn("Not using blob file {} as input, seems to be broken", file);
+			return null;
+		}
+	}
+
+	private static void closeAll(final List<OpenedFile> openedFiles, final Throwable failure) {
+		for (final OpenedFile openedFile : openedFiles) {
+			if (openedFile != null) {
+				try {
+					openedFile.reader.close();
+				} catch (final IOException e) {
+					failure.addSuppressed(e);
+				}
 			}
 		}
 	}
@@ -33,7 +178,9 @@ public class MultiFileBlobStoreReader implements BlobStoreReader {
 
 	@Override
 	public BlobEntry getBlobEntry(final String name) throws IOException {
-		for (final BlobStoreReader reader : readers) {
+		// only ask readers with a matching name range, in the original order
+		for (final int readerIdx : router.getCandidates(name)) {
+			final BlobStoreReader reader = readers.get(readerIdx);
 			final BlobEntry blobEntry = reader.getBlobEntry(name);
 			if (blobEntry != null) {
 				return new ReaderBoundBlobEntry(blobEntry, reader);
@@ -42,6 +189,53 @@ public class MultiFileBlobStoreReader implements BlobStoreReader {
 		return null;
 	}
 
+	/**
+	 * Get the blob entries for multiple names at once. Names are grouped by
+	 * the readers whose name range contains them, and each reader is asked
+	 * once for all of its names, in the original reader order.
+	 */
+	@Override
+	public Map<String, BlobEntry> getBlobEntries(final Collection<String> names) throws IOException {
+		final List<List<String>> namesByReader = new ArrayList<>(readers.size());
+		for (int i = 0; i < readers.size(); i++) {
+			namesByReader.add(null);
+		}
+		for (final String name : names) {
+			for (final int readerIdx : router.getCandidates(name)) {
+				List<String> readerNames = namesByReader.get(readerIdx);
+				if (readerNames == null) {
+					readerNames = new ArrayList<>();
+					namesByReader.set(readerIdx, readerNames);
+				}
+				readerNames.add(name);
+			}
+		}
+
+		final Map<String, BlobEntry> found = new HashMap<>();
+		for (int readerIdx = 0; readerIdx < readers.size(); readerIdx++) {
+			final List<String> readerNames = namesByReader.get(readerIdx);
+			if (readerNames == null) {
+				continue;
+			}
+			if (!found.isEmpty()) {
+				readerNames.removeIf(found::containsKey);
+			}
+			final BlobStoreReader reader = readers.get(readerIdx);
+			for (final Map.Entry<String, BlobEntry> e : reader.getBlobEntries(readerNames).entrySet()) {
+				found.put(e.getKey(), new ReaderBoundBlobEntry(e.getValue(), reader));
+			}
+		}
+
+		final Map<String, BlobEntry> blobEntries = new LinkedHashMap<>();
+		for (final String name : new TreeSet<>(names)) {
+			final BlobEntry blobEntry = found.get(name);
+			if (blobEntry != null) {
+				blobEntries.put(name, blobEntry);
+			}
+		}
+		return blobEntries;
+	}
+
 	@Override
 	public InputStream getBlobEntryContentsDecoded(BlobEntry blobEntry) throws IOException {
 		final ReaderBoundBlobEntry e = requireReaderBoundBlobEntry(blobEntry);
@@ -54,6 +248,18 @@ public class MultiFileBlobStoreReader implements BlobStoreReader {
 		return e.getReader().getBlobEntryContents(e.getDelegate());
 	}
 
+	@Override
+	public ReadableByteChannel getBlobEntryChannel(final BlobEntry blobEntry) throws IOException {
+		final ReaderBoundBlobEntry e = requireReaderBoundBlobEntry(blobEntry);
+		return e.getReader().getBlobEntryChannel(e.getDelegate());
+	}
+
+	@Override
+	public long transferTo(final BlobEntry blobEntry, final WritableByteChannel target) throws IOException {
+		final ReaderBoundBlobEntry e = requireReaderBoundBlobEntry(blobEntry);
+		return e.getReader().transferTo(e.getDelegate(), target);
+	}
+
 	private ReaderBoundBlobEntry requireReaderBoundBlobEntry(BlobEntry blobEntry) {
 		Objects.requireNonNull(blobEntry);
 		if (!(blobEntry instanceof ReaderBoundBlobEntry)) {
@@ -88,6 +294,54 @@ public class MultiFileBlobStoreReader implements BlobStoreReader {
 		}
 	}
 
+	/**
+	 * Visit all entries, using multiple tasks per blob file. Blob files are
+	 * visited one after the other, see
+	 * {@link FileBlobStoreReader#visitBlobEntries(BlobEntryVisitor, Executor, int)}.
+	 */
+	public void visitBlobEntries(final BlobEntryVisitor visitor, final Executor executor, final int parallelism) throws IOException {
+		for (final BlobStoreReader reader : readers) {
+			final BlobEntryVisitor readerVisitor = (entry, contents)
+					-> visitor.visit(new ReaderBoundBlobEntry(entry, reader), contents);
+			if (reader instanceof FileBlobStoreReader) {
+				((FileBlobStoreReader) reader).visitBlobEntries(readerVisitor, executor, parallelism);
+			} else {
+				reader.visitBlobEntries(readerVisitor);
+			}
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		IOException exception = null;
+		for (final BlobStoreReader reader : readers) {
+			try {
+				reader.close();
+			} catch (final IOException e) {
+				if (exception == null) {
+					exception = e;
+				} else {
+					exception.addSuppressed(e);
+				}
+			}
+		}
+		if (exception != null) {
+			throw exception;
+		}
+	}
+
+	private static class OpenedFile {
+		private final FileBlobStoreReader reader;
+		private final String firstName;
+		private final String lastName;
+
+		public OpenedFile(final FileBlobStoreReader reader, final String firstName, final String lastName) {
+			this.reader = reader;
+			this.firstName = firstName;
+			this.lastName = lastName;
+		}
+	}
+
 	private static class ReaderBoundBlobEntry implements BlobEntry {
 		private final BlobEntry delegate;
 		private final BlobStoreReader reader;
@@ -22,6 +22,8 @@ public class RotatingFileBlobStoreWriter extends AbstractBlobStoreWriter {
 	private final String prefix;
 	private final String suffix;
 	private final FileBlobStoreWriter.Builder delegateBuilder;
+	/** null if no dictionary is set. */
+	private final byte[] dictionary;
 
 	private final int maxEntryCount;
 	private int entryCount;
@@ -40,13 +42,33 @@ public class RotatingFileBlobStoreWriter extends AbstractBlobStoreWriter {
 		this.delegateBuilder = FileBlobStoreWriter.builder()
 				.defaults(builder.defaults)
 				.overwrite(builder.overwrite)
-				.maxIndexEntriesInMemory(builder.maxIndexEntriesInMemory);
+				.maxIndexEntriesInMemory(builder.maxIndexEntriesInMemory)
+				.maxIndexMemory(builder.maxIndexMemory)
+				.formatVersion(builder.formatVersion)
+				.bloomFilter(builder.bloomFilter)
+				.dictionary(builder.dictionary)
+				.blockSize(builder.blockSize)
+				.metrics(builder.metrics);
+		this.dictionary = builder.dictionary;
 		this.files = new ArrayList<>();
 		this.nextIdx = 0;
 	}
 
 	@Override
 	public synchronized void addBlobEntry(final String name, final InputStream in, final String mediaType, final String encoding) throws IOException {
+		nextWriter().addBlobEntry(name, in, mediaType, encoding);
+	}
+
+	/**
+	 * Add an encoded entry using the current writer, which knows the
+	 * dictionary of its blob file.
+	 */
+	@Override
+	public synchronized void addBlobEntryEncoded(final String name, final InputStream unencodedIn, final String mediaType, final String encoding) throws IOException {
+		nextWriter().addBlobEntryEncoded(name, unencodedIn, mediaType, encoding);
+	}
+
+	private BlobStoreWriter nextWriter() throws IOException {
 		if (currentWriter != null && entryCount >= maxEntryCount) {
 			LOG.info("Rotating blob file...");
 			currentWriter.close();
@@ -64,7 +86,7 @@ public class RotatingFileBlobStoreWriter extends AbstractBlobStoreWriter {
 					.build();
 		}
 		entryCount++;
-		currentWriter.addBlobEntry(name, in, mediaType, encoding);
+		return currentWriter;
 	}
 
 	private synchronized File getNextFile() {
@@ -82,10 +104,23 @@ public class RotatingFileBlobStoreWriter extends AbstractBlobStoreWriter {
 		return new ArrayList<>(files);
 	}
 
+	/**
+	 * Copy all entries of the given reader. Entries using the dictionary or
+	 * compressed blocks of their blob file are re-encoded, see
+	 * {@link FileBlobStoreWriter#mergeFrom(BlobStoreReader)}.
+	 */
 	@Override
 	public void mergeFrom(final BlobStoreReader reader) throws IOException {
-		reader.visitBlobEntries((blobEntry, contents)
-				-> addBlobEntry(blobEntry.getName(), contents, blobEntry.getMediaType(), blobEntry.getEncoding()));
+		final String mergeEncoding = dictionary != null ? BlobEntry.ENCODING_DEFLATE_DICT : BlobEntry.ENCODING_GZIP;
+		reader.visitBlobEntries((blobEntry, contents) -> {
+			if (FileBlobStoreWriter.isFileBoundEncoding(blobEntry.getEncoding())) {
+				try (InputStream decoded = reader.getBlobEntryContentsDecoded(blobEntry)) {
+					addBlobEntryEncoded(blobEntry.getName(), decoded, blobEntry.getMediaType(), mergeEncoding);
+				}
+			} else {
+				addBlobEntry(blobEntry.getName(), contents, blobEntry.getMediaType(), blobEntry.getEncoding());
+			}
+		});
 	}
 
 	@Override
@@ -108,7 +143,13 @@ public class RotatingFileBlobStoreWriter extends AbstractBlobStoreWriter {
 		private String suffix;
 		private BlobStoreDefaults defaults = BlobStoreDefaults.STANDARD_DEFAULTS;
 		private int maxIndexEntriesInMemory = FileBlobStoreWriter.Builder.DEFAULT_MAX_ENTRIES_IN_MEMORY;
+		private long maxIndexMemory;
 		private int maxEntryCountPerFile;
+		private int formatVersion = FileBlobStoreWriter.FORMAT_VERSION_1;
+		private boolean bloomFilter;
+		private byte[] dictionary;
+		private int blockSize;
+		private BlobStoreMetrics metrics = BlobStoreMetrics.NOOP;
 
 		public Builder overwrite(boolean overwrite) {
 			this.overwrite = overwrite;
@@ -159,11 +200,66 @@ public class RotatingFileBlobStoreWriter extends AbstractBlobStoreWriter {
 			return this;
 		}
 
+		/**
+		 * Set the estimated heap memory in bytes to use for index entries of
+		 * each blob file before dumping a index chunk to disk.
+		 * @see FileBlobStoreWriter.Builder#maxIndexMemory(long)
+		 */
+		public Builder maxIndexMemory(long maxIndexMemory) {
+			this.maxIndexMemory = maxIndexMemory;
+			return this;
+		}
+
 		public Builder maxEntryCountPerFile(int maxEntryCountPerFile) {
 			this.maxEntryCountPerFile = maxEntryCountPerFile;
 			return this;
 		}
 
+		/**
+		 * Set the format version of the blob files to write.
+		 * @see FileBlobStoreWriter.Builder#formatVersion(int)
+		 */
+		public Builder formatVersion(int formatVersion) {
+			this.formatVersion = formatVersion;
+			return this;
+		}
+
+		/**
+		 * Enable writing a bloom filter sidecar file for each blob file.
+		 * @see FileBlobStoreWriter.Builder#bloomFilter(boolean)
+		 */
+		public Builder bloomFilter(boolean bloomFilter) {
+			this.bloomFilter = bloomFilter;
+			return this;
+		}
+
+		/**
+		 * Set a preset dictionary, stored in each blob file.
+		 * @see FileBlobStoreWriter.Builder#dictionary(byte[])
+		 */
+		public Builder dictionary(byte[] dictionary) {
+			this.dictionary = dictionary;
+			return this;
+		}
+
+		/**
+		 * Enable block mode for small entries.
+		 * @see FileBlobStoreWriter.Builder#blockSize(int)
+		 */
+		public Builder blockSize(int blockSize) {
+			this.blockSize = blockSize;
+			return this;
+		}
+
+		/**
+		 * Set the receiver for metrics of all blob file writers.
+		 * @see FileBlobStoreWriter.Builder#metrics(BlobStoreMetrics)
+		 */
+		public Builder metrics(BlobStoreMetrics metrics) {
+			this.metrics = metrics;
+			return this;
+		}
+
 		public RotatingFileBlobStoreWriter build() {
 			return new RotatingFileBlobStoreWriter(this);
 		}
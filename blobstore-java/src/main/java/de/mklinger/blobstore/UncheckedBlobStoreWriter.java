@@ -38,6 +38,15 @@ public class UncheckedBlobStoreWriter implements BlobStoreWriter {
 		}
 	}
 
+	@Override
+	public void addBlobEntryEncoded(String name, InputStream unencodedIn, String mediaType, String encoding) {
+		try {
+			delegate.addBlobEntryEncoded(name, unencodedIn, mediaType, encoding);
+		} catch (final IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
 	@Override
 	public void addBlobEntryUnencoded(String name, InputStream in, String mediaType) {
 		try {
@@ -6,7 +6,6 @@ import java.io.InputStream;
 import java.util.List;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
-import java.util.zip.GZIPInputStream;
 
 import de.mklinger.blobstore.BlobEntry;
 import de.mklinger.blobstore.BlobStoreReader;
@@ -27,24 +26,18 @@ public class GetEntry {
 				.map(File::new)
 				.collect(Collectors.toList());
 
-		final BlobStoreReader reader = new MultiFileBlobStoreReader(files);
+		try (BlobStoreReader reader = new MultiFileBlobStoreReader(files)) {
 
-		final BlobEntry blobEntry = reader.getBlobEntry(name);
+			final BlobEntry blobEntry = reader.getBlobEntry(name);
 
-		if (blobEntry == null) {
-			System.err.println("Not found: '" + name + "'");
-			System.exit(1);
-		}
-
-		if (blobEntry.getEncoding() == BlobEntry.ENCODING_GZIP) {
-			try (InputStream blobEntryContents = new GZIPInputStream(reader.getBlobEntryContents(blobEntry))) {
-				StreamCopy.copy(blobEntryContents, System.out);
+			if (blobEntry == null) {
+				System.err.println("Not found: '" + name + "'");
+				System.exit(1);
 			}
-		} else {
-			try (InputStream blobEntryContents = reader.getBlobEntryContents(blobEntry)) {
+
+			try (InputStream blobEntryContents = reader.getBlobEntryContentsDecoded(blobEntry)) {
 				StreamCopy.copy(blobEntryContents, System.out);
 			}
 		}
-
 	}
 }
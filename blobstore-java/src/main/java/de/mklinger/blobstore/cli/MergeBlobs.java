@@ -49,8 +49,7 @@ public class MergeBlobs {
 				.build()) {
 
 			for (final File inputFile : inputFiles) {
-				try {
-					final FileBlobStoreReader reader = new FileBlobStoreReader(inputFile);
+				try (FileBlobStoreReader reader = new FileBlobStoreReader(inputFile)) {
 					System.err.println("Merging: " + inputFile.getAbsolutePath());
 					writer.mergeFrom(reader);
 				} catch (final BlobStoreFormatException e) {
@@ -0,0 +1,36 @@
+package de.mklinger.blobstore.codec;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Codec for a content encoding of blob entries.
+ *
+ * <p>
+ * Implementations are registered in {@link BlobCodecs}, either explicitly or
+ * by the {@link java.util.ServiceLoader} mechanism. Implementations must be
+ * thread-safe.
+ * </p>
+ *
+ * @author Marc Klinger - mklinger[at]mklinger[dot]de
+ */
+public interface BlobCodec {
+	/**
+	 * Get the name of the encoding as stored in the index. The name must
+	 * consist of US-ASCII characters between 33 ('!') and 126 ('~') and must
+	 * not contain ';'.
+	 */
+	String getEncoding();
+
+	/**
+	 * Get a stream providing the encoded data of the given unencoded input.
+	 * Closing the returned stream closes the given stream.
+	 */
+	InputStream newEncodingInputStream(InputStream in) throws IOException;
+
+	/**
+	 * Get a stream providing the decoded data of the given encoded input.
+	 * Closing the returned stream closes the given stream.
+	 */
+	InputStream newDecodingInputStream(InputStream in) throws IOException;
+}
@@ -0,0 +1,124 @@
+package de.mklinger.blobstore.codec;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.mklinger.blobstore.BlobEntry;
+
+/**
+ * Registry of the codecs for all supported encodings.
+ *
+ * <p>
+ * Codecs for {@value BlobEntry#ENCODING_IDENTITY},
+ * {@value BlobEntry#ENCODING_GZIP}, {@value BlobEntry#ENCODING_DEFLATE_RAW}
+ * and {@value BlobEntry#ENCODING_LZ4_BLOCKS} are built in, as well as
+ * placeholders for {@value BlobEntry#ENCODING_DEFLATE_DICT} and
+ * {@value BlobEntry#ENCODING_DEFLATE_BLOCK}, which are handled by readers
+ * and writers of the blob file, see {@link DeflateDictionaryCodec} and
+ * {@link DeflateBlockCodec}. Additional codecs
+ * are loaded using {@link ServiceLoader} from
+ * <code>META-INF/services/de.mklinger.blobstore.codec.BlobCodec</code> and
+ * may replace built in codecs of the same encoding, e.g. to use a different
+ * compression level. Codecs can also be registered at runtime using
+ * {@link #register(BlobCodec)}.
+ * </p>
+ *
+ * @author Marc Klinger - mklinger[at]mklinger[dot]de
+ */
+public final class BlobCodecs {
+	private static final Logger LOG = LoggerFactory.getLogger(BlobCodecs.class);
+
+	private static final ConcurrentMap<String, BlobCodec> CODECS = new ConcurrentHashMap<>();
+
+	static {
+		register(new IdentityCodec());
+		register(new GzipCodec());
+		register(new DeflateRawCodec());
+		register(new Lz4BlockCodec());
+		register(new DeflateDictionaryCodec());
+		register(new DeflateBlockCodec());
+		loadServiceCodecs();
+	}
+
+	private BlobCodecs() {}
+
+	private static void loadServiceCodecs() {
+		final Iterator<BlobCodec> it = ServiceLoader.load(BlobCodec.class, BlobCodecs.class.getClassLoader()).iterator();
+		while (true) {
+			try {
+				if (!it.hasNext()) {
+					return;
+				}
+				final BlobCodec codec = it.next();
+				register(codec);
+				LOG.debug("Registered codec {} for encoding '{}'", codec.getClass().getName(), codec.getEncoding());
+			} catch (final ServiceConfigurationError | IllegalArgumentException e) {
+				LOG.warn("Not using codec, seems to be broken", e);
+			}
+		}
+	}
+
+	/**
+	 * Register a codec, replacing any codec registered for the same
+	 * encoding before.
+	 */
+	public static void register(final BlobCodec codec) {
+		final String encoding = requireLegalEncodingName(codec.getEncoding());
+		if (BlobEntry.ENCODING_IDENTITY.equals(encoding) && !(codec instanceof IdentityCodec)) {
+			throw new IllegalArgumentException("Encoding '" + encoding + "' can not be replaced");
+		}
+		CODECS.put(encoding, codec);
+	}
+
+	private static String requireLegalEncodingName(final String encoding) {
+		if (encoding == null || encoding.isEmpty()) {
+			throw new IllegalArgumentException("Missing encoding name");
+		}
+		for (int i = 0; i < encoding.length(); i++) {
+			final char c = encoding.charAt(i);
+			if (c < 33 || c > 126 || c == ';') {
+				throw new IllegalArgumentException("Encoding name contains illegal character: '" + (int)c + "'");
+			}
+		}
+		return encoding;
+	}
+
+	/**
+	 * @return The codec, or <code>null</code> if the encoding is not
+	 *         supported.
+	 */
+	public static BlobCodec get(final String encoding) {
+		if (encoding == null) {
+			return null;
+		}
+		return CODECS.get(encoding);
+	}
+
+	/**
+	 * @return The codec, never <code>null</code>
+	 * @throws IllegalArgumentException If the encoding is not supported
+	 */
+	public static BlobCodec require(final String encoding) {
+		final BlobCodec codec = get(encoding);
+		if (codec == null) {
+			throw new IllegalArgumentException("Unsupported encoding: " + encoding);
+		}
+		return codec;
+	}
+
+	/**
+	 * @return The names of all supported encodings, sorted.
+	 */
+	public static Set<String> getEncodings() {
+		return Collections.unmodifiableSet(new TreeSet<>(CODECS.keySet()));
+	}
+}
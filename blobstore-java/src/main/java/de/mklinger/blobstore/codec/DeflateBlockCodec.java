@@ -0,0 +1,36 @@
+package de.mklinger.blobstore.codec;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import de.mklinger.blobstore.BlobEntry;
+
+/**
+ * Codec for entries packed into compressed blocks, see
+ * {@link de.mklinger.blobstore.impl.CompressedBlock}.
+ *
+ * <p>
+ * Such entries have no encoded form of their own. Readers decompress the
+ * block and return the contents of the entry unencoded, so decoding is the
+ * identity. Entries are packed by writers in block mode only, so encoding
+ * fails.
+ * </p>
+ *
+ * @author Marc Klinger - mklinger[at]mklinger[dot]de
+ */
+public class DeflateBlockCodec implements BlobCodec {
+	@Override
+	public String getEncoding() {
+		return BlobEntry.ENCODING_DEFLATE_BLOCK;
+	}
+
+	@Override
+	public InputStream newEncodingInputStream(final InputStream in) throws IOException {
+		throw new IOException("Entries with encoding '" + BlobEntry.ENCODING_DEFLATE_BLOCK + "' can only be packed by writers in block mode");
+	}
+
+	@Override
+	public InputStream newDecodingInputStream(final InputStream in) {
+		return in;
+	}
+}
@@ -0,0 +1,78 @@
+package de.mklinger.blobstore.codec;
+
+import java.io.IOException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import de.mklinger.blobstore.BlobEntry;
+
+/**
+ * Codec for raw deflate data compressed using a preset dictionary. Small
+ * entries sharing a lot of content with the dictionary, e.g. JSON documents
+ * of the same structure, compress much better than without it.
+ *
+ * <p>
+ * The dictionary is stored once per blob file, so instances are bound to a
+ * blob file and are not registered in {@link BlobCodecs}. The instance
+ * registered there has no dictionary and fails to encode and decode data.
+ * </p>
+ *
+ * @author Marc Klinger - mklinger[at]mklinger[dot]de
+ */
+public class DeflateDictionaryCodec extends DeflateRawCodec {
+	/** Size of the deflate window, larger dictionaries are of no use. */
+	public static final int MAX_DICTIONARY_SIZE = 32 * 1024;
+
+	/** null if not bound to a dictionary. */
+	private final byte[] dictionary;
+
+	/**
+	 * Create a codec without dictionary, which can not encode or decode any
+	 * data.
+	 */
+	public DeflateDictionaryCodec() {
+		this.dictionary = null;
+	}
+
+	public DeflateDictionaryCodec(final byte[] dictionary) {
+		this(dictionary, Deflater.DEFAULT_COMPRESSION);
+	}
+
+	/**
+	 * @param level Compression level, 0-9 or {@link Deflater#DEFAULT_COMPRESSION}
+	 */
+	public DeflateDictionaryCodec(final byte[] dictionary, final int level) {
+		super(level);
+		if (dictionary.length > MAX_DICTIONARY_SIZE) {
+			throw new IllegalArgumentException("Dictionary too large: " + dictionary.length);
+		}
+		this.dictionary = dictionary.clone();
+	}
+
+	@Override
+	public String getEncoding() {
+		return BlobEntry.ENCODING_DEFLATE_DICT;
+	}
+
+	@Override
+	protected Deflater newDeflater() throws IOException {
+		requireDictionary();
+		final Deflater deflater = super.newDeflater();
+		deflater.setDictionary(dictionary);
+		return deflater;
+	}
+
+	@Override
+	protected Inflater newInflater() throws IOException {
+		requireDictionary();
+		final Inflater inflater = super.newInflater();
+		inflater.setDictionary(dictionary);
+		return inflater;
+	}
+
+	private void requireDictionary() throws IOException {
+		if (dictionary == null) {
+			throw new IOException("Encoding '" + BlobEntry.ENCODING_DEFLATE_DICT + "' needs the dictionary of the blob file");
+		}
+	}
+}
@@ -0,0 +1,92 @@
+package de.mklinger.blobstore.codec;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import de.mklinger.blobstore.BlobEntry;
+
+/**
+ * Codec for raw deflate data as defined in RFC 1951, without any header or
+ * checksum. Compared to gzip, this saves 18 bytes per entry and the CRC
+ * computation on both sides, at the cost of not detecting corrupt data.
+ *
+ * @author Marc Klinger - mklinger[at]mklinger[dot]de
+ */
+public class DeflateRawCodec implements BlobCodec {
+	private static final int BUFFER_SIZE = 8192;
+
+	/** Compression level, for use by sub classes. */
+	protected final int level;
+
+	public DeflateRawCodec() {
+		this(Deflater.DEFAULT_COMPRESSION);
+	}
+
+	/**
+	 * @param level Compression level, 0-9 or {@link Deflater#DEFAULT_COMPRESSION}.
+	 *        Lower levels trade compression ratio for speed.
+	 */
+	public DeflateRawCodec(final int level) {
+		if ((level < 0 || level > 9) && level != Deflater.DEFAULT_COMPRESSION) {
+			throw new IllegalArgumentException("Invalid compression level: " + level);
+		}
+		this.level = level;
+	}
+
+	@Override
+	public String getEncoding() {
+		return BlobEntry.ENCODING_DEFLATE_RAW;
+	}
+
+	@Override
+	public InputStream newEncodingInputStream(final InputStream in) throws IOException {
+		final Deflater deflater = newDeflater();
+		return new DeflaterInputStream(in, deflater, BUFFER_SIZE) {
+			@Override
+			public void close() throws IOException {
+				try {
+					super.close();
+				} finally {
+					// not done by super class for custom deflaters
+					deflater.end();
+				}
+			}
+		};
+	}
+
+	@Override
+	public InputStream newDecodingInputStream(final InputStream in) throws IOException {
+		final Inflater inflater = newInflater();
+		return new InflaterInputStream(in, inflater, BUFFER_SIZE) {
+			@Override
+			public void close() throws IOException {
+				try {
+					super.close();
+				} finally {
+					// not done by super class for custom inflaters
+					inflater.end();
+				}
+			}
+		};
+	}
+
+	/**
+	 * Create a deflater producing raw deflate data. Sub classes may further
+	 * initialize it, e.g. using {@link Deflater#setDictionary(byte[])}.
+	 */
+	protected Deflater newDeflater() throws IOException {
+		return new Deflater(level, true);
+	}
+
+	/**
+	 * Create an inflater for raw deflate data. Sub classes may further
+	 * initialize it, e.g. using {@link Inflater#setDictionary(byte[])}.
+	 */
+	protected Inflater newInflater() throws IOException {
+		return new Inflater(true);
+	}
+}
@@ -0,0 +1,149 @@
+package de.mklinger.blobstore.codec;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Builds a preset dictionary for {@link DeflateDictionaryCodec} from sample
+ * entries.
+ *
+ * <p>
+ * Samples are split into segments. Each segment is scored by the number of
+ * samples containing its 8 byte sequences. Segments are picked greedily by
+ * score, not counting sequences covered by segments picked before. The best
+ * segments are placed at the end of the dictionary, where deflate can
+ * reference them with the shortest distances.
+ * </p>
+ *
+ * @author Marc Klinger - mklinger[at]mklinger[dot]de
+ */
+public class DictionaryTrainer {
+	private static final int K = 8;
+	private static final int SEGMENT_SIZE = 64;
+	private static final int HASH_BITS = 20;
+
+	private DictionaryTrainer() {}
+
+	/**
+	 * @param samples Typical entries, unencoded. Using a few thousand
+	 *        samples is usually enough.
+	 * @param maxDictionarySize Maximum size of the dictionary, up to
+	 *        {@value DeflateDictionaryCodec#MAX_DICTIONARY_SIZE}
+	 * @return The dictionary, empty if the samples have nothing in common
+	 */
+	public static byte[] train(final Collection<byte[]> samples, final int maxDictionarySize) {
+		if (maxDictionarySize <= 0 || maxDictionarySize > DeflateDictionaryCodec.MAX_DICTIONARY_SIZE) {
+			throw new IllegalArgumentException("Invalid dictionary size: " + maxDictionarySize);
+		}
+
+		// number of samples containing each sequence, by hash
+		final int[] counts = new int[1 << HASH_BITS];
+		final int[] lastSample = new int[1 << HASH_BITS];
+		Arrays.fill(lastSample, -1);
+		int sampleIdx = 0;
+		for (final byte[] sample : samples) {
+			for (int i = 0; i + K <= sample.length; i++) {
+				final int h = hash(sample, i);
+				if (lastSample[h] != sampleIdx) {
+					lastSample[h] = sampleIdx;
+					counts[h]++;
+				}
+			}
+			sampleIdx++;
+		}
+
+		final PriorityQueue<Segment> queue = new PriorityQueue<>();
+		for (final byte[] sample : samples) {
+			for (int off = 0; off < sample.length; off += SEGMENT_SIZE) {
+				final Segment segment = new Segment(sample, off, Math.min(SEGMENT_SIZE, sample.length - off));
+				segment.score = score(segment, counts);
+				if (segment.score > 0) {
+					queue.add(segment);
+				}
+			}
+		}
+
+		// lazy greedy: scores only decrease, so a segment still scoring at
+		// least as much as the next best after rescoring is the best one
+		final List<Segment> picked = new ArrayList<>();
+		int size = 0;
+		while (size < maxDictionarySize && !queue.isEmpty()) {
+			final Segment segment = queue.poll();
+			final long score = score(segment, counts);
+			if (score <= 0) {
+				continue;
+			}
+			if (!queue.isEmpty() && score < queue.peek().score) {
+				segment.score = score;
+				queue.add(segment);
+				continue;
+			}
+			picked.add(segment);
+			size += segment.length;
+			for (int i = segment.off; i + K <= segment.off + segment.length; i++) {
+				counts[hash(segment.sample, i)] = 0;
+			}
+		}
+
+		final ByteArrayOutputStream dictionary = new ByteArrayOutputStream(Math.min(size, maxDictionarySize));
+		for (int i = picked.size() - 1; i >= 0; i--) {
+			final Segment segment = picked.get(i);
+			dictionary.write(segment.sample, segment.off, segment.length);
+		}
+		final byte[] bytes = dictionary.toByteArray();
+		if (bytes.length > maxDictionarySize) {
+			// drop from the start, which holds the least valuable segments
+			return Arrays.copyOfRange(bytes, bytes.length - maxDictionarySize, bytes.length);
+		}
+		return bytes;
+	}
+
+	/**
+	 * @return The score, 0 if the segment has too few sequences found in
+	 *         multiple samples, which are most likely hash collisions.
+	 */
+	private static long score(final Segment segment, final int[] counts) {
+		long score = 0;
+		int sharedCount = 0;
+		for (int i = segment.off; i + K <= segment.off + segment.length; i++) {
+			final int count = counts[hash(segment.sample, i)];
+			// sequences found in one sample only do not help
+			if (count > 1) {
+				score += count;
+				sharedCount++;
+			}
+		}
+		return sharedCount < K ? 0 : score;
+	}
+
+	private static int hash(final byte[] b, final int off) {
+		long v = 0;
+		for (int i = 0; i < K; i++) {
+			v = v << 8 | (b[off + i] & 0xff);
+		}
+		return (int)((v * 0x9E3779B97F4A7C15L) >>> (64 - HASH_BITS));
+	}
+
+	private static class Segment implements Comparable<Segment> {
+		private final byte[] sample;
+		private final int off;
+		private final int length;
+		private long score;
+
+		public Segment(final byte[] sample, final int off, final int length) {
+			this.sample = sample;
+			this.off = off;
+			this.length = length;
+		}
+
+		@Override
+		public int compareTo(final Segment o) {
+			// highest score first
+			return Long.compare(o.score, score);
+		}
+	}
+}
@@ -0,0 +1,50 @@
+package de.mklinger.blobstore.codec;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+
+import de.mklinger.blobstore.BlobEntry;
+import de.mklinger.blobstore.io.GzipCompressingInputStream;
+
+/**
+ * Codec for gzip encoded data.
+ *
+ * @author Marc Klinger - mklinger[at]mklinger[dot]de
+ */
+public class GzipCodec implements BlobCodec {
+	/** Larger than the JDK default of 512 bytes to reduce reads on the source. */
+	private static final int BUFFER_SIZE = 8192;
+
+	private final int level;
+
+	public GzipCodec() {
+		this(Deflater.DEFAULT_COMPRESSION);
+	}
+
+	/**
+	 * @param level Compression level, 0-9 or {@link Deflater#DEFAULT_COMPRESSION}
+	 */
+	public GzipCodec(final int level) {
+		if ((level < 0 || level > 9) && level != Deflater.DEFAULT_COMPRESSION) {
+			throw new IllegalArgumentException("Invalid compression level: " + level);
+		}
+		this.level = level;
+	}
+
+	@Override
+	public String getEncoding() {
+		return BlobEntry.ENCODING_GZIP;
+	}
+
+	@Override
+	public InputStream newEncodingInputStream(final InputStream in) throws IOException {
+		return new GzipCompressingInputStream(in, level);
+	}
+
+	@Override
+	public InputStream newDecodingInputStream(final InputStream in) throws IOException {
+		return new GZIPInputStream(in, BUFFER_SIZE);
+	}
+}
@@ -0,0 +1,27 @@
+package de.mklinger.blobstore.codec;
+
+import java.io.InputStream;
+
+import de.mklinger.blobstore.BlobEntry;
+
+/**
+ * Codec for unencoded data.
+ *
+ * @author Marc Klinger - mklinger[at]mklinger[dot]de
+ */
+public class IdentityCodec implements BlobCodec {
+	@Override
+	public String getEncoding() {
+		return BlobEntry.ENCODING_IDENTITY;
+	}
+
+	@Override
+	public InputStream newEncodingInputStream(final InputStream in) {
+		return in;
+	}
+
+	@Override
+	public InputStream newDecodingInputStream(final InputStream in) {
+		return in;
+	}
+}
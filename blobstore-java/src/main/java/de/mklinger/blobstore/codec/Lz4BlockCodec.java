@@ -0,0 +1,49 @@
+package de.mklinger.blobstore.codec;
+
+import java.io.InputStream;
+
+import de.mklinger.blobstore.BlobEntry;
+import de.mklinger.blobstore.io.Lz4BlockCompressingInputStream;
+import de.mklinger.blobstore.io.Lz4BlockDecompressingInputStream;
+
+/**
+ * Codec for fast compression using the LZ4 block format, see
+ * {@link Lz4BlockCompressingInputStream}. Compression ratio is lower than
+ * for gzip, but compression and especially decompression are several times
+ * faster.
+ *
+ * @author Marc Klinger - mklinger[at]mklinger[dot]de
+ */
+public class Lz4BlockCodec implements BlobCodec {
+	private final int blockSize;
+
+	public Lz4BlockCodec() {
+		this(Lz4BlockCompressingInputStream.DEFAULT_BLOCK_SIZE);
+	}
+
+	/**
+	 * @param blockSize Maximum number of uncompressed bytes per block, up to
+	 *        {@value Lz4BlockCompressingInputStream#MAX_BLOCK_SIZE}
+	 */
+	public Lz4BlockCodec(final int blockSize) {
+		if (blockSize <= 0 || blockSize > Lz4BlockCompressingInputStream.MAX_BLOCK_SIZE) {
+			throw new IllegalArgumentException("Invalid block size: " + blockSize);
+		}
+		this.blockSize = blockSize;
+	}
+
+	@Override
+	public String getEncoding() {
+		return BlobEntry.ENCODING_LZ4_BLOCKS;
+	}
+
+	@Override
+	public InputStream newEncodingInputStream(final InputStream in) {
+		return new Lz4BlockCompressingInputStream(in, blockSize);
+	}
+
+	@Override
+	public InputStream newDecodingInputStream(final InputStream in) {
+		return new Lz4BlockDecompressingInputStream(in);
+	}
+}
@@ -2,20 +2,36 @@ package de.mklinger.blobstore.impl;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Objects;
 
 import de.mklinger.blobstore.BlobEntry;
 import de.mklinger.blobstore.BlobStoreWriter;
-import de.mklinger.blobstore.io.GzipCompressingInputStream;
+import de.mklinger.blobstore.codec.BlobCodec;
+import de.mklinger.blobstore.codec.BlobCodecs;
 
 public abstract class AbstractBlobStoreWriter implements BlobStoreWriter {
 	@Override
 	public void addBlobEntryGzEncoded(String name, InputStream nonGzIn) throws IOException {
-		addBlobEntry(name, new GzipCompressingInputStream(nonGzIn), null, BlobEntry.ENCODING_GZIP);
+		addBlobEntryEncoded(name, nonGzIn, null, BlobEntry.ENCODING_GZIP);
 	}
 
 	@Override
 	public void addBlobEntryGzEncoded(String name, InputStream nonGzIn, String mediaType) throws IOException {
-		addBlobEntry(name, new GzipCompressingInputStream(nonGzIn), mediaType, BlobEntry.ENCODING_GZIP);
+		addBlobEntryEncoded(name, nonGzIn, mediaType, BlobEntry.ENCODING_GZIP);
+	}
+
+	@Override
+	public void addBlobEntryEncoded(String name, InputStream unencodedIn, String mediaType, String encoding) throws IOException {
+		Objects.requireNonNull(encoding);
+		addBlobEntry(name, getCodec(encoding).newEncodingInputStream(unencodedIn), mediaType, encoding);
+	}
+
+	/**
+	 * Get the codec to encode entries with the given encoding.
+	 * @throws IllegalArgumentException If the encoding is not supported
+	 */
+	protected BlobCodec getCodec(String encoding) {
+		return BlobCodecs.require(encoding);
 	}
 
 	@Override
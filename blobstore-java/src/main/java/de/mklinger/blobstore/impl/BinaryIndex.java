@@ -0,0 +1,390 @@
+package de.mklinger.blobstore.impl;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+import de.mklinger.blobstore.BlobEntry;
+import de.mklinger.blobstore.BlobStoreDefaults;
+import de.mklinger.blobstore.BlobStoreFormatException;
+import de.mklinger.blobstore.io.PositionalReader;
+
+/**
+ * Binary index used by format version 2.
+ *
+ * <p>
+ * Layout of the index section, all numbers big-endian, all offsets relative
+ * to the start of the index section:
+ * </p>
+ * <pre>
+ * magic            4 bytes "BIX2"
+ * records          one per entry in index order:
+ *                  varint name length, name bytes (US-ASCII),
+ *                  varint offset, varint length,
+ *                  varint media type code, varint encoding code
+ * table            one fixed-width (4 or 8 bytes) record offset per entry
+ * dictionaries     media types, then encodings: varint count, then for each
+ *                  code starting at 1: varint length, UTF-8 bytes.
+ *                  Code 0 is the default value.
+ * footer           long entry count, long table offset,
+ *                  long dictionaries offset, int table width, magic
+ * </pre>
+ *
+ * <p>
+ * Finding the record for a binary search probe is a read of a single table
+ * entry, without any parsing. Instances are thread-safe if the underlying
+ * reader is.
+ * </p>
+ */
+public class BinaryIndex {
+	public static final int MAGIC = 0x42495832; // "BIX2"
+	public static final int FOOTER_LENGTH = 32;
+	/** Maximum length of the varints following the name in a record. */
+	static final int MAX_RECORD_TAIL_LENGTH = 10 + 10 + 5 + 5;
+	private static final int RECORD_READ_SIZE = 128;
+
+	private final PositionalReader reader;
+	private final BlobStoreDefaults defaults;
+	private final long indexOffset;
+	private final long entryCount;
+	private final long tableOffset;
+	private final int tableWidth;
+	private final String[] mediaTypes;
+	private final String[] encodings;
+
+	/**
+	 * @param reader Reader for the file containing the index
+	 * @param indexOffset Start of the index section in the file
+	 * @param indexEnd End of the index section in the file
+	 */
+	public BinaryIndex(final PositionalReader reader, final long indexOffset, final long indexEnd, final BlobStoreDefaults defaults) throws IOException {
+		this.reader = reader;
+		this.defaults = defaults;
+		this.indexOffset = indexOffset;
+
+		if (indexEnd - indexOffset < 4 + FOOTER_LENGTH) {
+			throw new BlobStoreFormatException("Binary index too short");
+		}
+		final byte[] magic = new byte[4];
+		readFully(indexOffset, magic, 0, 4);
+		final ByteBuffer footer = ByteBuffer.allocate(FOOTER_LENGTH);
+		readFully(indexEnd - FOOTER_LENGTH, footer.array(), 0, FOOTER_LENGTH);
+		if (ByteBuffer.wrap(magic).getInt() != MAGIC || footer.getInt(FOOTER_LENGTH - 4) != MAGIC) {
+			throw new BlobStoreFormatException("Invalid binary index magic");
+		}
+		this.entryCount = footer.getLong();
+		this.tableOffset = indexOffset + footer.getLong();
+		final long dictionariesOffset = indexOffset + footer.getLong();
+		this.tableWidth = footer.getInt();
+		if (entryCount < 0 || (tableWidth != 4 && tableWidth != 8)
+				|| tableOffset + entryCount * tableWidth != dictionariesOffset
+				|| dictionariesOffset > indexEnd - FOOTER_LENGTH) {
+			throw new BlobStoreFormatException("Invalid binary index footer");
+		}
+
+		final long dictionariesLength = indexEnd - FOOTER_LENGTH - dictionariesOffset;
+		if (dictionariesLength > Integer.MAX_VALUE) {
+			throw new BlobStoreFormatException("Invalid binary index dictionaries");
+		}
+		final Cursor dictionaries = new Cursor(new byte[(int)dictionariesLength]);
+		readFully(dictionariesOffset, dictionaries.buf, 0, dictionaries.buf.length);
+		this.mediaTypes = dictionaries.readDictionary();
+		this.encodings = dictionaries.readDictionary();
+	}
+
+	public long size() {
+		return entryCount;
+	}
+
+	/**
+	 * @return The offset of the first record in the file.
+	 */
+	public long getRecordsOffset() {
+		return indexOffset + 4;
+	}
+
+	/**
+	 * @return The length of all records in bytes.
+	 */
+	public long getRecordsLength() {
+		return tableOffset - getRecordsOffset();
+	}
+
+	public BlobEntry getBlobEntry(final String name) throws IOException {
+		return getBlobEntry(name, null);
+	}
+
+	/**
+	 * @param probeCounter Receives the number of records read by the binary
+	 *        search, may be <code>null</code>
+	 */
+	public BlobEntry getBlobEntry(final String name, final IntConsumer probeCounter) throws IOException {
+		final Cursor cursor = new Cursor(new byte[RECORD_READ_SIZE]);
+		final long idx = search(name, 0, cursor);
+		if (probeCounter != null) {
+			probeCounter.accept(cursor.probes);
+		}
+		if (idx < 0) {
+			return null;
+		}
+		return cursor.readBlobEntry();
+	}
+
+	/**
+	 * Look up multiple names in one walk over the index. The search for each
+	 * name starts where the search for the previous name ended.
+	 * @param sortedNames Names in ascending order
+	 * @param blobEntries Receives the entries found by name
+	 */
+	public void getBlobEntries(final Collection<String> sortedNames, final Map<String, BlobEntry> blobEntries) throws IOException {
+		final Cursor cursor = new Cursor(new byte[RECORD_READ_SIZE]);
+		long fromIdx = 0;
+		for (final String name : sortedNames) {
+			final long idx = search(name, fromIdx, cursor);
+			if (idx < 0) {
+				fromIdx = -(idx + 1);
+			} else {
+				blobEntries.put(name, cursor.readBlobEntry());
+				fromIdx = idx + 1;
+			}
+		}
+	}
+
+	/**
+	 * Binary search starting at the given index. If found, the cursor is
+	 * positioned after the name of the record.
+	 * @return The index of the entry, or <code>-(insertion point + 1)</code>
+	 *         if not found.
+	 */
+	private long search(final String name, final long fromIdx, final Cursor cursor) throws IOException {
+		long low = fromIdx;
+		long high = entryCount - 1;
+		while (low <= high) {
+			final long mid = (low + high) >>> 1;
+			readRecord(mid, cursor);
+			final int cmp = cursor.compareName(name);
+			if (cmp < 0) {
+				low = mid + 1;
+			} else if (cmp > 0) {
+				high = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+		return -(low + 1);
+	}
+
+	/**
+	 * Get the name of the entry at the given position in index order.
+	 */
+	public String getName(final long idx) throws IOException {
+		if (idx < 0 || idx >= entryCount) {
+			throw new IndexOutOfBoundsException("Invalid entry index: " + idx);
+		}
+		final Cursor cursor = new Cursor(new byte[RECORD_READ_SIZE]);
+		readRecord(idx, cursor);
+		return cursor.getName();
+	}
+
+	/**
+	 * Get the file position of the record at the given position in index
+	 * order, e.g. to visit a part of the records only.
+	 */
+	public long getRecordPosition(final long idx) throws IOException {
+		if (idx < 0 || idx >= entryCount) {
+			throw new IndexOutOfBoundsException("Invalid entry index: " + idx);
+		}
+		return readRecordPosition(idx, new byte[tableWidth]);
+	}
+
+	private long readRecordPosition(final long idx, final byte[] buf) throws IOException {
+		final long tablePos = tableOffset + idx * tableWidth;
+		readFully(tablePos, buf, 0, tableWidth);
+		return indexOffset + (tableWidth == 4
+				? ByteBuffer.wrap(buf).getInt() & 0xFFFFFFFFL
+				: ByteBuffer.wrap(buf).getLong());
+	}
+
+	private void readRecord(final long idx, final Cursor cursor) throws IOException {
+		final long recordPos = readRecordPosition(idx, cursor.buf);
+		cursor.probes++;
+
+		// records are followed by the table, so never read beyond it
+		int n = readFully(recordPos, cursor.buf, 0, (int)Math.min(cursor.buf.length, tableOffset - recordPos));
+		cursor.pos = 0;
+		cursor.limit = n;
+		final int nameLength = (int)cursor.readVarLong();
+		final int recordLength = cursor.pos + nameLength + MAX_RECORD_TAIL_LENGTH;
+		if (recordLength > n) {
+			if (recordLength > cursor.buf.length) {
+				cursor.buf = new byte[recordLength];
+			}
+			n = readFully(recordPos, cursor.buf, 0, Math.min(recordLength, (int)(tableOffset - recordPos)));
+			cursor.limit = n;
+		}
+		cursor.nameStart = cursor.pos;
+		cursor.nameLength = nameLength;
+		cursor.pos += nameLength;
+	}
+
+	/**
+	 * Receiver for entries visited in index order.
+	 */
+	@FunctionalInterface
+	public interface EntryVisitor {
+		/**
+		 * Media type and encoding are <code>null</code> for the default values.
+		 */
+		void visit(String name, long offset, long length, String mediaType, String encoding) throws IOException;
+	}
+
+	/**
+	 * Visit all entries in index order.
+	 * @param recordsIn Stream reading all records, starting at
+	 *        {@link #getRecordsOffset()}. Should be buffered.
+	 */
+	public void visitEntries(final InputStream recordsIn, final EntryVisitor visitor) throws IOException {
+		visitEntries(recordsIn, entryCount, visitor);
+	}
+
+	/**
+	 * Visit a number of consecutive entries in index order.
+	 * @param recordsIn Stream reading records, starting at the record of the
+	 *        first entry to visit, see {@link #getRecordPosition(long)}.
+	 *        Should be buffered.
+	 * @param count The number of entries to visit
+	 */
+	public void visitEntries(final InputStream recordsIn, final long count, final EntryVisitor visitor) throws IOException {
+		byte[] nameBytes = new byte[RECORD_READ_SIZE];
+		for (long i = 0; i < count; i++) {
+			final int nameLength = (int)readVarLong(recordsIn);
+			if (nameLength > nameBytes.length) {
+				nameBytes = new byte[nameLength];
+			}
+			readFully(recordsIn, nameBytes, nameLength);
+			final String name = new String(nameBytes, 0, nameLength, StandardCharsets.US_ASCII);
+			final long offset = readVarLong(recordsIn);
+			final long length = readVarLong(recordsIn);
+			final String mediaType = decode(mediaTypes, readVarLong(recordsIn));
+			final String encoding = decode(encodings, readVarLong(recordsIn));
+			visitor.visit(name, offset, length, mediaType, encoding);
+		}
+	}
+
+	public BlobEntry newBlobEntry(final String name, final long offset, final long length, final String mediaType, final String encoding) {
+		return new BlobEntryImpl(name, offset, length, mediaType, encoding, defaults);
+	}
+
+	private static String decode(final String[] dictionary, final long code) {
+		if (code < 0 || code >= dictionary.length) {
+			throw new BlobStoreFormatException("Invalid dictionary code in binary index: " + code);
+		}
+		return dictionary[(int)code];
+	}
+
+	private static long readVarLong(final InputStream in) throws IOException {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			final int b = in.read();
+			if (b == -1) {
+				throw new EOFException("Unexpected end of binary index");
+			}
+			value |= (long)(b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new BlobStoreFormatException("Invalid varint in binary index");
+	}
+
+	private static void readFully(final InputStream in, final byte[] b, final int len) throws IOException {
+		int off = 0;
+		while (off < len) {
+			final int n = in.read(b, off, len - off);
+			if (n == -1) {
+				throw new EOFException("Unexpected end of binary index");
+			}
+			off += n;
+		}
+	}
+
+	private int readFully(final long position, final byte[] b, final int off, final int len) throws IOException {
+		int done = 0;
+		while (done < len) {
+			final int n = reader.read(position + done, b, off + done, len - done);
+			if (n == -1) {
+				throw new EOFException("Unexpected end of binary index");
+			}
+			done += n;
+		}
+		return done;
+	}
+
+	private class Cursor {
+		private byte[] buf;
+		private int pos;
+		private int limit;
+		private int nameStart;
+		private int nameLength;
+		private int probes;
+
+		public Cursor(final byte[] buf) {
+			this.buf = buf;
+			this.limit = buf.length;
+		}
+
+		public long readVarLong() {
+			long value = 0;
+			for (int shift = 0; shift < 64; shift += 7) {
+				if (pos >= limit) {
+					throw new BlobStoreFormatException("Unexpected end of binary index");
+				}
+				final int b = buf[pos++];
+				value |= (long)(b & 0x7F) << shift;
+				if ((b & 0x80) == 0) {
+					return value;
+				}
+			}
+			throw new BlobStoreFormatException("Invalid varint in binary index");
+		}
+
+		public int compareName(final String name) {
+			return BlobEntryImpl.compareName(buf, nameStart, nameLength, name);
+		}
+
+		public String getName() {
+			return new String(buf, nameStart, nameLength, StandardCharsets.US_ASCII);
+		}
+
+		public BlobEntry readBlobEntry() {
+			final String name = getName();
+			final long offset = readVarLong();
+			final long length = readVarLong();
+			final String mediaType = decode(mediaTypes, readVarLong());
+			final String encoding = decode(encodings, readVarLong());
+			return newBlobEntry(name, offset, length, mediaType, encoding);
+		}
+
+		public String[] readDictionary() {
+			final long count = readVarLong();
+			if (count < 0 || count > limit - pos) {
+				throw new BlobStoreFormatException("Invalid binary index dictionary");
+			}
+			final String[] values = new String[(int)count + 1];
+			for (int i = 1; i < values.length; i++) {
+				final long length = readVarLong();
+				if (length > limit - pos) {
+					throw new BlobStoreFormatException("Invalid binary index dictionary");
+				}
+				values[i] = new String(buf, pos, (int)length, StandardCharsets.UTF_8);
+				pos += (int)length;
+			}
+			return values;
+		}
+	}
+}
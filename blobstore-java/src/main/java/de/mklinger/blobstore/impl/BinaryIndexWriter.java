@@ -0,0 +1,180 @@
+package de.mklinger.blobstore.impl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.mklinger.blobstore.BlobStoreDefaults;
+
+/**
+ * Writer for the binary index used by format version 2. See
+ * {@link BinaryIndex} for a description of the layout.
+ *
+ * <p>
+ * Records are streamed to the output while the fixed-width table is
+ * collected in a temporary file, as the table width is only known when all
+ * records are written.
+ * </p>
+ */
+public class BinaryIndexWriter implements IndexWriter {
+	private final DataOutputStream out;
+	private final BlobStoreDefaults defaults;
+	private final File tableFile;
+	private final DataOutputStream tableOut;
+	private final byte[] recordBuffer;
+	private final List<String> mediaTypes;
+	private final Map<String, Integer> mediaTypeCodes;
+	private final List<String> encodings;
+	private final Map<String, Integer> encodingCodes;
+	private long position;
+	private long entryCount;
+
+	/**
+	 * @param out The stream to write the index to
+	 * @param defaults The defaults the entries were created with
+	 * @param tmpDirectory Directory for temporary files
+	 * @param tmpPrefix Prefix for temporary files
+	 */
+	public BinaryIndexWriter(final OutputStream out, final BlobStoreDefaults defaults, final File tmpDirectory, final String tmpPrefix) throws IOException {
+		this.tableFile = File.createTempFile(tmpPrefix, ".idxtable", tmpDirectory);
+		this.tableOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tableFile)));
+		this.out = new DataOutputStream(new BufferedOutputStream(out));
+		this.defaults = defaults;
+		this.recordBuffer = new byte[BinaryIndex.MAX_RECORD_TAIL_LENGTH + 5];
+		this.mediaTypes = new ArrayList<>();
+		this.mediaTypeCodes = new HashMap<>();
+		this.encodings = new ArrayList<>();
+		this.encodingCodes = new HashMap<>();
+		this.mediaTypes.add(null);
+		this.encodings.add(null);
+
+		this.out.writeInt(BinaryIndex.MAGIC);
+		this.position = 4;
+	}
+
+	@Override
+	public void write(final BlobEntryImpl entry) throws IOException {
+		tableOut.writeLong(position);
+		entryCount++;
+
+		final String name = entry.getName();
+		final int nameLength = name.length();
+
+		int len = writeVarLong(recordBuffer, 0, nameLength);
+		out.write(recordBuffer, 0, len);
+		position += len;
+
+		for (int i = 0; i < nameLength; i++) {
+			out.write(name.charAt(i));
+		}
+		position += nameLength;
+
+		len = writeVarLong(recordBuffer, 0, entry.getOffset());
+		len = writeVarLong(recordBuffer, len, entry.getLength());
+		len = writeVarLong(recordBuffer, len, code(entry.getMediaTypeOrNull(), mediaTypes, mediaTypeCodes));
+		len = writeVarLong(recordBuffer, len, code(entry.getEncodingOrNull(), encodings, encodingCodes));
+		out.write(recordBuffer, 0, len);
+		position += len;
+	}
+
+	@Override
+	public void writeLine(final String line) throws IOException {
+		write((BlobEntryImpl)BlobEntryImpl.parseBlobEntry(line, defaults));
+	}
+
+	private static int code(final String value, final List<String> values, final Map<String, Integer> codes) {
+		if (value == null) {
+			return 0;
+		}
+		final Integer code = codes.get(value);
+		if (code != null) {
+			return code;
+		}
+		final int newCode = values.size();
+		values.add(value);
+		codes.put(value, newCode);
+		return newCode;
+	}
+
+	/**
+	 * Write an unsigned LEB128 variable length value.
+	 * @return The position after the written value
+	 */
+	static int writeVarLong(final byte[] buf, final int pos, final long value) {
+		if (value < 0) {
+			throw new IllegalArgumentException("Negative value: " + value);
+		}
+		int p = pos;
+		long v = value;
+		while ((v & ~0x7FL) != 0) {
+			buf[p++] = (byte)((v & 0x7F) | 0x80);
+			v >>>= 7;
+		}
+		buf[p++] = (byte)v;
+		return p;
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			tableOut.close();
+
+			final long tableOffset = position;
+			final int tableWidth = position <= 0xFFFFFFFFL ? 4 : 8;
+			try (DataInputStream tableIn = new DataInputStream(new BufferedInputStream(new FileInputStream(tableFile)))) {
+				for (long i = 0; i < entryCount; i++) {
+					final long recordPosition = tableIn.readLong();
+					if (tableWidth == 4) {
+						out.writeInt((int)recordPosition);
+					} else {
+						out.writeLong(recordPosition);
+					}
+				}
+			}
+			position += entryCount * tableWidth;
+
+			final long dictionariesOffset = position;
+			writeDictionary(mediaTypes);
+			writeDictionary(encodings);
+
+			out.writeLong(entryCount);
+			out.writeLong(tableOffset);
+			out.writeLong(dictionariesOffset);
+			out.writeInt(tableWidth);
+			out.writeInt(BinaryIndex.MAGIC);
+			out.flush();
+		} finally {
+			try {
+				out.close();
+			} finally {
+				Files.deleteIfExists(tableFile.toPath());
+			}
+		}
+	}
+
+	private void writeDictionary(final List<String> values) throws IOException {
+		int len = writeVarLong(recordBuffer, 0, values.size() - 1);
+		out.write(recordBuffer, 0, len);
+		position += len;
+		// code 0 is the default value and not written
+		for (int i = 1; i < values.size(); i++) {
+			final byte[] bytes = values.get(i).getBytes(StandardCharsets.UTF_8);
+			len = writeVarLong(recordBuffer, 0, bytes.length);
+			out.write(recordBuffer, 0, len);
+			out.write(bytes);
+			position += len + bytes.length;
+		}
+	}
+}
@@ -60,7 +60,7 @@ public class BlobEntryImpl implements BlobEntry, Comparable<BlobEntryImpl> {
 		}
 	}
 
-	private static String requireLegalName(String name) {
+	static String requireLegalName(String name) {
 		Objects.requireNonNull(name);
 		name.chars().forEach(BlobEntryImpl::requireLegalNameCharacter);
 		return name;
@@ -104,6 +104,20 @@ public class BlobEntryImpl implements BlobEntry, Comparable<BlobEntryImpl> {
 		return mediaType;
 	}
 
+	/**
+	 * @return The media type, or <code>null</code> if it is the default.
+	 */
+	String getMediaTypeOrNull() {
+		return mediaType;
+	}
+
+	/**
+	 * @return The encoding, or <code>null</code> if it is the default.
+	 */
+	String getEncodingOrNull() {
+		return encoding;
+	}
+
 	@Override
 	public int compareTo(final BlobEntryImpl o) {
 		return name.compareTo(o.getName());
@@ -115,6 +129,23 @@ public class BlobEntryImpl implements BlobEntry, Comparable<BlobEntryImpl> {
 				&& name.equals(((BlobEntryImpl)obj).getName());
 	}
 
+	/**
+	 * Compare a name given as US-ASCII bytes to a name given as string, using
+	 * the same ordering as {@link String#compareTo(String)}.
+	 */
+	static int compareName(final byte[] bytes, final int off, final int len, final String name) {
+		final int len2 = name.length();
+		final int lim = Math.min(len, len2);
+		for (int i = 0; i < lim; i++) {
+			final int c1 = bytes[off + i] & 0xff;
+			final int c2 = name.charAt(i);
+			if (c1 != c2) {
+				return c1 - c2;
+			}
+		}
+		return len - len2;
+	}
+
 	public void write(final Writer w) throws IOException {
 		w.write(name);
 		w.write("=");
@@ -0,0 +1,260 @@
+package de.mklinger.blobstore.impl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+import de.mklinger.blobstore.BlobStoreFormatException;
+
+/**
+ * Bloom filter over blob entry names, used to answer lookups for names not
+ * contained in a blob file without searching the index.
+ *
+ * <p>
+ * The filter is stored in a sidecar file next to the blob file. The sidecar
+ * contains a {@link BlobFileInfo} of the blob file it was written for: length,
+ * index offset, last modification time, entry count and the first and last
+ * entry name. A filter not matching the blob file in any of these is detected
+ * and ignored. Copying a blob file without preserving the modification time
+ * therefore makes its filter unusable.
+ * </p>
+ *
+ * <p>
+ * Instances are thread-safe for concurrent calls to
+ * {@link #mightContain(String)} once all names are added.
+ * </p>
+ */
+public class BloomFilter {
+	public static final String SIDECAR_SUFFIX = ".bloom";
+	private static final int MAGIC_V1 = 0x424c4d31; // "BLM1"
+	private static final int MAGIC = 0x424c4d32; // "BLM2"
+	private static final int MAX_HASH_COUNT = 30;
+
+	private final long[] words;
+	private final long bitCount;
+	private final int hashCount;
+
+	private BloomFilter(final long[] words, final int hashCount) {
+		this.words = words;
+		this.bitCount = (long)words.length * Long.SIZE;
+		this.hashCount = hashCount;
+	}
+
+	/**
+	 * Create an empty filter.
+	 * @param expectedEntryCount The number of names that will be added
+	 * @param falsePositiveRate The desired rate of false positives, e.g. 0.01
+	 */
+	public static BloomFilter create(final long expectedEntryCount, final double falsePositiveRate) {
+		if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+			throw new IllegalArgumentException("Invalid false positive rate: " + falsePositiveRate);
+		}
+		final long n = Math.max(1, expectedEntryCount);
+		final double ln2 = Math.log(2);
+		final long optimalBitCount = (long)Math.ceil(-n * Math.log(falsePositiveRate) / (ln2 * ln2));
+		final long wordCount = Math.max(1, (optimalBitCount + Long.SIZE - 1) / Long.SIZE);
+		if (wordCount > Integer.MAX_VALUE - 8) {
+			throw new IllegalArgumentException("Bloom filter too large");
+		}
+		final int hashCount = (int)Math.max(1, Math.min(MAX_HASH_COUNT, Math.round((double)optimalBitCount / n * ln2)));
+		return new BloomFilter(new long[(int)wordCount], hashCount);
+	}
+
+	public void put(final String name) {
+		final long hash = hash(name);
+		final long h1 = hash;
+		final long h2 = fmix64(hash ^ 0x9e3779b97f4a7c15L) | 1;
+		for (int i = 0; i < hashCount; i++) {
+			final long bit = Long.remainderUnsigned(h1 + i * h2, bitCount);
+			words[(int)(bit >>> 6)] |= 1L << bit;
+		}
+	}
+
+	/**
+	 * @return <code>false</code> if the name was definitely not added,
+	 *         <code>true</code> if it might have been added.
+	 */
+	public boolean mightContain(final String name) {
+		final long hash = hash(name);
+		final long h1 = hash;
+		final long h2 = fmix64(hash ^ 0x9e3779b97f4a7c15L) | 1;
+		for (int i = 0; i < hashCount; i++) {
+			final long bit = Long.remainderUnsigned(h1 + i * h2, bitCount);
+			if ((words[(int)(bit >>> 6)] & (1L << bit)) == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Get the heap memory used by this filter in bytes.
+	 */
+	public long getMemoryUsage() {
+		return 8L * words.length;
+	}
+
+	private static long hash(final String name) {
+		// FNV-1a over the chars, followed by a finalizer for better mixing
+		long h = 0xcbf29ce484222325L;
+		final int length = name.length();
+		for (int i = 0; i < length; i++) {
+			h ^= name.charAt(i);
+			h *= 0x100000001b3L;
+		}
+		return fmix64(h);
+	}
+
+	private static long fmix64(final long key) {
+		// MurmurHash3 fmix64
+		long h = key;
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+
+	public static File getSidecarFile(final File blobFile) {
+		return new File(blobFile.getPath() + SIDECAR_SUFFIX);
+	}
+
+	/**
+	 * Write this filter to the given sidecar file.
+	 * @param blobFileInfo Info of the blob file the filter belongs to
+	 */
+	public void write(final File sidecarFile, final BlobFileInfo blobFileInfo) throws IOException {
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(sidecarFile)))) {
+			out.writeInt(MAGIC);
+			out.writeLong(blobFileInfo.length);
+			out.writeLong(blobFileInfo.indexOffset);
+			out.writeLong(blobFileInfo.lastModified);
+			out.writeLong(blobFileInfo.entryCount);
+			writeName(out, blobFileInfo.firstName);
+			writeName(out, blobFileInfo.lastName);
+			out.writeInt(hashCount);
+			out.writeInt(words.length);
+			for (final long word : words) {
+				out.writeLong(word);
+			}
+		}
+	}
+
+	private static void writeName(final DataOutputStream out, final String name) throws IOException {
+		if (name == null) {
+			out.writeInt(-1);
+		} else {
+			final byte[] b = name.getBytes(StandardCharsets.UTF_8);
+			out.writeInt(b.length);
+			out.write(b);
+		}
+	}
+
+	/**
+	 * Read a filter from the given sidecar file.
+	 * @param blobFileInfo Info of the blob file the filter is used for
+	 * @return The filter, or <code>null</code> if the sidecar file does not
+	 *         exist, has an outdated format or was written for another blob
+	 *         file.
+	 */
+	public static BloomFilter read(final File sidecarFile, final BlobFileInfo blobFileInfo) throws IOException {
+		if (!sidecarFile.isFile()) {
+			return null;
+		}
+		final long sidecarLength = sidecarFile.length();
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(sidecarFile)))) {
+			final int magic = in.readInt();
+			if (magic == MAGIC_V1) {
+				// not enough info to validate
+				return null;
+			}
+			if (magic != MAGIC) {
+				throw new BlobStoreFormatException("Invalid bloom filter file: " + sidecarFile);
+			}
+			final long length = in.readLong();
+			final long indexOffset = in.readLong();
+			final long lastModified = in.readLong();
+			final long entryCount = in.readLong();
+			final String firstName = readName(in, sidecarFile, sidecarLength);
+			final String lastName = readName(in, sidecarFile, sidecarLength);
+			if (!blobFileInfo.matches(new BlobFileInfo(length, indexOffset, lastModified, entryCount, firstName, lastName))) {
+				return null;
+			}
+			final int hashCount = in.readInt();
+			final int wordCount = in.readInt();
+			if (hashCount < 1 || hashCount > MAX_HASH_COUNT || wordCount < 1 || 8L * wordCount > sidecarLength) {
+				throw new BlobStoreFormatException("Invalid bloom filter file: " + sidecarFile);
+			}
+			final long[] words = new long[wordCount];
+			for (int i = 0; i < wordCount; i++) {
+				words[i] = in.readLong();
+			}
+			if (in.read() != -1) {
+				throw new BlobStoreFormatException("Invalid bloom filter file: " + sidecarFile);
+			}
+			return new BloomFilter(words, hashCount);
+		} catch (final EOFException e) {
+			throw new BlobStoreFormatException("Invalid bloom filter file: " + sidecarFile, e);
+		}
+	}
+
+	private static String readName(final DataInputStream in, final File sidecarFile, final long sidecarLength) throws IOException {
+		final int length = in.readInt();
+		if (length == -1) {
+			return null;
+		}
+		if (length < 0 || length > sidecarLength) {
+			throw new BlobStoreFormatException("Invalid bloom filter file: " + sidecarFile);
+		}
+		final byte[] b = new byte[length];
+		in.readFully(b);
+		return new String(b, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Identifies the state of a blob file a filter was written for.
+	 */
+	public static class BlobFileInfo {
+		private final long length;
+		private final long indexOffset;
+		private final long lastModified;
+		private final long entryCount;
+		private final String firstName;
+		private final String lastName;
+
+		/**
+		 * @param entryCount The number of index entries, or -1 if unknown.
+		 *        An unknown entry count matches any entry count.
+		 * @param firstName The first entry name in index order, or
+		 *        <code>null</code> if there are no entries
+		 * @param lastName The last entry name in index order, or
+		 *        <code>null</code> if there are no entries
+		 */
+		public BlobFileInfo(final long length, final long indexOffset, final long lastModified, final long entryCount, final String firstName, final String lastName) {
+			this.length = length;
+			this.indexOffset = indexOffset;
+			this.lastModified = lastModified;
+			this.entryCount = entryCount;
+			this.firstName = firstName;
+			this.lastName = lastName;
+		}
+
+		boolean matches(final BlobFileInfo other) {
+			return length == other.length
+					&& indexOffset == other.indexOffset
+					&& lastModified == other.lastModified
+					&& (entryCount == -1 || other.entryCount == -1 || entryCount == other.entryCount)
+					&& Objects.equals(firstName, other.firstName)
+					&& Objects.equals(lastName, other.lastName);
+		}
+	}
+}
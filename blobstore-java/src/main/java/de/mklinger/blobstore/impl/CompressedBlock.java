@@ -0,0 +1,101 @@
+package de.mklinger.blobstore.impl;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import de.mklinger.blobstore.BlobStoreFormatException;
+
+/**
+ * Block of small entries compressed together, for entries with encoding
+ * {@value de.mklinger.blobstore.BlobEntry#ENCODING_DEFLATE_BLOCK}.
+ *
+ * <p>
+ * Blocks are stored in the contents region of the blob file:
+ * </p>
+ *
+ * <pre>
+ * uncompressed length  int32, big endian, at most {@value #MAX_BLOCK_SIZE}
+ * compressed length    int32, big endian
+ * data                 raw deflate data
+ * </pre>
+ *
+ * <p>
+ * The offset of an entry in a block is a virtual offset: the file offset of
+ * the block shifted left by 16 bits, combined with the offset of the entry
+ * in the uncompressed block. The length of an entry is its uncompressed
+ * length.
+ * </p>
+ *
+ * @author Marc Klinger - mklinger[at]mklinger[dot]de
+ */
+public class CompressedBlock {
+	public static final int MAX_BLOCK_SIZE = 64 * 1024;
+	static final int HEADER_LENGTH = 8;
+
+	private static final int INTRA_BLOCK_BITS = 16;
+	private static final long INTRA_BLOCK_MASK = (1L << INTRA_BLOCK_BITS) - 1;
+
+	private CompressedBlock() {}
+
+	public static long toVirtualOffset(final long blockOffset, final int intraBlockOffset) {
+		if (intraBlockOffset < 0 || intraBlockOffset > INTRA_BLOCK_MASK) {
+			throw new IllegalArgumentException("Invalid intra block offset: " + intraBlockOffset);
+		}
+		return blockOffset << INTRA_BLOCK_BITS | intraBlockOffset;
+	}
+
+	public static long getBlockOffset(final long virtualOffset) {
+		return virtualOffset >>> INTRA_BLOCK_BITS;
+	}
+
+	public static int getIntraBlockOffset(final long virtualOffset) {
+		return (int)(virtualOffset & INTRA_BLOCK_MASK);
+	}
+
+	/**
+	 * Read and decompress a block.
+	 * @param in Stream positioned at the start of the block
+	 * @return The uncompressed block
+	 */
+	public static byte[] read(final InputStream in) throws IOException {
+		final DataInputStream din = new DataInputStream(in);
+		// one bulk read for the header
+		final byte[] header = new byte[HEADER_LENGTH];
+		din.readFully(header);
+		final int length = readInt(header, 0);
+		final int compressedLength = readInt(header, 4);
+		if (length < 0 || length > MAX_BLOCK_SIZE || compressedLength < 0) {
+			throw new BlobStoreFormatException("Invalid compressed block header");
+		}
+		final byte[] compressed = new byte[compressedLength];
+		din.readFully(compressed);
+		final byte[] block = new byte[length];
+		final Inflater inflater = new Inflater(true);
+		try {
+			inflater.setInput(compressed);
+			int n = 0;
+			while (n < length) {
+				final int inflated = inflater.inflate(block, n, length - n);
+				if (inflated == 0 && (inflater.finished() || inflater.needsInput())) {
+					throw new BlobStoreFormatException("Truncated compressed block");
+				}
+				n += inflated;
+			}
+		} catch (final DataFormatException e) {
+			throw new BlobStoreFormatException("Corrupt compressed block", e);
+		} finally {
+			inflater.end();
+		}
+		return block;
+	}
+
+	private static int readInt(final byte[] b, final int off) {
+		return (b[off] & 0xff) << 24
+				| (b[off + 1] & 0xff) << 16
+				| (b[off + 2] & 0xff) << 8
+				| (b[off + 3] & 0xff);
+	}
+}
@@ -0,0 +1,130 @@
+package de.mklinger.blobstore.impl;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+
+import de.mklinger.blobstore.BlobEntry;
+import de.mklinger.blobstore.BlobStoreDefaults;
+
+/**
+ * Collects small entries into a block and writes it as
+ * {@link CompressedBlock}.
+ *
+ * <p>
+ * Instances are not thread-safe.
+ * </p>
+ *
+ * @author Marc Klinger - mklinger[at]mklinger[dot]de
+ */
+public class CompressedBlockWriter {
+	private final BlobStoreDefaults defaults;
+	private final byte[] block;
+	private final byte[] compressed;
+	private final Deflater deflater;
+	private final List<PendingEntry> pendingEntries;
+	private int length;
+
+	/**
+	 * @param blockSize Maximum uncompressed block size, up to
+	 *        {@value CompressedBlock#MAX_BLOCK_SIZE}
+	 * @param level Compression level, 0-9 or {@link Deflater#DEFAULT_COMPRESSION}
+	 */
+	public CompressedBlockWriter(final int blockSize, final int level, final BlobStoreDefaults defaults) {
+		if (blockSize <= 0 || blockSize > CompressedBlock.MAX_BLOCK_SIZE) {
+			throw new IllegalArgumentException("Invalid block size: " + blockSize);
+		}
+		this.defaults = defaults;
+		this.block = new byte[blockSize];
+		// deflate worst case for incompressible data
+		this.compressed = new byte[blockSize + blockSize / 1000 + 64];
+		this.deflater = new Deflater(level, true);
+		this.pendingEntries = new ArrayList<>();
+	}
+
+	/**
+	 * @return <code>true</code> if an entry of the given length fits into
+	 *         the current block.
+	 */
+	public boolean fits(final int entryLength) {
+		return length + entryLength <= block.length;
+	}
+
+	public boolean isEmpty() {
+		return pendingEntries.isEmpty();
+	}
+
+	public boolean isFull() {
+		return length == block.length;
+	}
+
+	/**
+	 * Add an entry to the current block.
+	 * @throws IllegalStateException If the entry does not fit
+	 */
+	public void add(final String name, final String mediaType, final byte[] data, final int dataLength) {
+		if (!fits(dataLength) || isFull()) {
+			throw new IllegalStateException("Entry does not fit into block");
+		}
+		pendingEntries.add(new PendingEntry(BlobEntryImpl.requireLegalName(name), mediaType, length, dataLength));
+		System.arraycopy(data, 0, block, length, dataLength);
+		length += dataLength;
+	}
+
+	/**
+	 * Compress the current block, write it to the given stream and start a
+	 * new block.
+	 *
+	 * @param blockOffset File offset the block is written to
+	 * @return Index entries for the entries of the block
+	 */
+	public List<BlobEntryImpl> writeTo(final OutputStream out, final long blockOffset) throws IOException {
+		deflater.reset();
+		deflater.setInput(block, 0, length);
+		deflater.finish();
+		int compressedLength = 0;
+		while (!deflater.finished()) {
+			compressedLength += deflater.deflate(compressed, compressedLength, compressed.length - compressedLength);
+		}
+		final DataOutputStream dout = new DataOutputStream(out);
+		dout.writeInt(length);
+		dout.writeInt(compressedLength);
+		dout.write(compressed, 0, compressedLength);
+		dout.flush();
+
+		final List<BlobEntryImpl> entries = new ArrayList<>(pendingEntries.size());
+		for (final PendingEntry pendingEntry : pendingEntries) {
+			entries.add(new BlobEntryImpl(
+					pendingEntry.name,
+					CompressedBlock.toVirtualOffset(blockOffset, pendingEntry.intraBlockOffset),
+					pendingEntry.length,
+					pendingEntry.mediaType,
+					BlobEntry.ENCODING_DEFLATE_BLOCK,
+					defaults));
+		}
+		pendingEntries.clear();
+		length = 0;
+		return entries;
+	}
+
+	public void close() {
+		deflater.end();
+	}
+
+	private static class PendingEntry {
+		private final String name;
+		private final String mediaType;
+		private final int intraBlockOffset;
+		private final int length;
+
+		public PendingEntry(final String name, final String mediaType, final int intraBlockOffset, final int length) {
+			this.name = name;
+			this.mediaType = mediaType;
+			this.intraBlockOffset = intraBlockOffset;
+			this.length = length;
+		}
+	}
+}
@@ -0,0 +1,147 @@
+package de.mklinger.blobstore.impl;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import de.mklinger.blobstore.CacheStats;
+import de.mklinger.blobstore.io.StringSizeEstimator;
+
+/**
+ * Bounded cache for decoded entry contents by entry name.
+ *
+ * <p>
+ * The estimated memory used by names and contents is limited to a byte
+ * budget. When the budget is exceeded, least recently used entries are
+ * evicted.
+ * </p>
+ *
+ * <p>
+ * Instances are thread-safe. The cache is split into up to
+ * {@value #MAX_SEGMENT_COUNT} independently locked segments to reduce
+ * contention. Each segment has an equal share of the budget, and contents
+ * larger than a segment budget are never cached. Cached arrays are shared between callers and
+ * must not be modified.
+ * </p>
+ *
+ * @author Marc Klinger - mklinger[at]mklinger[dot]de
+ */
+public class ContentCache {
+	private static final int MAX_SEGMENT_COUNT = 16;
+	/** Estimated memory used per entry for the map node and array header. */
+	private static final int ENTRY_OVERHEAD = 64;
+
+	private final Segment[] segments;
+	private final LongAdder hitCount = new LongAdder();
+	private final LongAdder missCount = new LongAdder();
+	private final LongAdder evictionCount = new LongAdder();
+
+	/**
+	 * @param maxSize Maximum estimated memory in bytes to use for cached
+	 *        entries.
+	 */
+	public ContentCache(final long maxSize) {
+		this(maxSize, 0);
+	}
+
+	/**
+	 * @param maxSize Maximum estimated memory in bytes to use for cached
+	 *        entries.
+	 * @param maxEntrySize Maximum size in bytes of the contents that will be
+	 *        put. Fewer segments are used if needed, so that each segment
+	 *        can hold at least two entries of this size if possible.
+	 * @throws IllegalArgumentException If contents of the maximum entry size
+	 *         do not fit into the cache at all
+	 */
+	public ContentCache(final long maxSize, final int maxEntrySize) {
+		if (maxSize <= 0) {
+			throw new IllegalArgumentException("Invalid cache size: " + maxSize);
+		}
+		if (maxEntrySize < 0) {
+			throw new IllegalArgumentException("Invalid max entry size: " + maxEntrySize);
+		}
+		final long minEntrySize = (long)maxEntrySize + ENTRY_OVERHEAD;
+		if (maxEntrySize > 0 && minEntrySize > maxSize) {
+			throw new IllegalArgumentException("Max entry size " + maxEntrySize + " too large for cache size " + maxSize);
+		}
+		int segmentCount = MAX_SEGMENT_COUNT;
+		while (segmentCount > 1 && maxSize / segmentCount < 2 * minEntrySize) {
+			segmentCount /= 2;
+		}
+		this.segments = new Segment[segmentCount];
+		final long maxSegmentSize = Math.max(1, maxSize / segmentCount);
+		for (int i = 0; i < segments.length; i++) {
+			segments[i] = new Segment(maxSegmentSize);
+		}
+	}
+
+	public byte[] get(final String name) {
+		final byte[] contents = segmentFor(name).get(name);
+		if (contents == null) {
+			missCount.increment();
+		} else {
+			hitCount.increment();
+		}
+		return contents;
+	}
+
+	/**
+	 * Put the contents of an entry. Contents are expected to never change, so
+	 * existing contents for the name are kept.
+	 */
+	public void put(final String name, final byte[] contents) {
+		segmentFor(name).put(name, contents);
+	}
+
+	public CacheStats getStats() {
+		long entryCount = 0;
+		long size = 0;
+		for (final Segment segment : segments) {
+			synchronized (segment) {
+				entryCount += segment.map.size();
+				size += segment.size;
+			}
+		}
+		return new CacheStats(hitCount.sum(), missCount.sum(), evictionCount.sum(), entryCount, size);
+	}
+
+	private Segment segmentFor(final String name) {
+		final int h = name.hashCode() * 0x9e3779b9;
+		return segments[(h >>> 28) & (segments.length - 1)];
+	}
+
+	private static long estimatedSizeOf(final String name, final byte[] contents) {
+		return StringSizeEstimator.estimatedSizeOf(name) + contents.length + ENTRY_OVERHEAD;
+	}
+
+	private class Segment {
+		private final long maxSize;
+		/** Access ordered, eldest entry is least recently used. */
+		private final LinkedHashMap<String, byte[]> map = new LinkedHashMap<>(16, 0.75f, true);
+		private long size;
+
+		public Segment(final long maxSize) {
+			this.maxSize = maxSize;
+		}
+
+		public synchronized byte[] get(final String name) {
+			return map.get(name);
+		}
+
+		public synchronized void put(final String name, final byte[] contents) {
+			final long entrySize = estimatedSizeOf(name, contents);
+			if (entrySize > maxSize || map.putIfAbsent(name, contents) != null) {
+				return;
+			}
+			size += entrySize;
+			final Iterator<Map.Entry<String, byte[]>> it = map.entrySet().iterator();
+			while (size > maxSize) {
+				final Map.Entry<String, byte[]> eldest = it.next();
+				size -= estimatedSizeOf(eldest.getKey(), eldest.getValue());
+				it.remove();
+				evictionCount.increment();
+			}
+		}
+	}
+}
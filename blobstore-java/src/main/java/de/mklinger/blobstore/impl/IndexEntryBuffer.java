@@ -0,0 +1,237 @@
+package de.mklinger.blobstore.impl;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.mklinger.blobstore.BlobStoreDefaults;
+import de.mklinger.blobstore.io.StringSizeEstimator;
+
+/**
+ * Compact buffer for index entries of a writer, until they are sorted and
+ * written.
+ *
+ * <p>
+ * Like {@link PackedBlobIndex}, entry names are packed into a single byte
+ * array, offsets and lengths are kept in primitive arrays and media types
+ * and encodings are stored as codes into small dictionaries. A
+ * {@link BlobEntryImpl} is only created when an entry is read.
+ * </p>
+ *
+ * <p>
+ * Instances are not thread-safe.
+ * </p>
+ *
+ * @author Marc Klinger - mklinger[at]mklinger[dot]de
+ */
+public class IndexEntryBuffer {
+	private static final int MIN_CAPACITY = 1024;
+	/** Bytes per entry in the primitive arrays, without the name bytes. */
+	private static final int BYTES_PER_ENTRY = 4 + 8 + 8 + 4 + 4 + 4;
+	/** Estimated memory used per dictionary value for the map and list. */
+	private static final int DICTIONARY_ENTRY_OVERHEAD = 64;
+
+	private final BlobStoreDefaults defaults;
+	private int size;
+	private byte[] names;
+	private int namesLength;
+	private int[] nameOffsets;
+	private long[] offsets;
+	private long[] lengths;
+	private int[] mediaTypeCodes;
+	private int[] encodingCodes;
+	/** Entry indexes in name order, <code>null</code> if not sorted. */
+	private int[] order;
+	/** code 0 is <code>null</code>, meaning the default value. */
+	private final List<String> mediaTypes = new ArrayList<>();
+	private final Map<String, Integer> mediaTypeCodesByValue = new HashMap<>();
+	/** code 0 is <code>null</code>, meaning the default value. */
+	private final List<String> encodings = new ArrayList<>();
+	private final Map<String, Integer> encodingCodesByValue = new HashMap<>();
+	private long dictionarySize;
+
+	public IndexEntryBuffer(final BlobStoreDefaults defaults) {
+		this(defaults, 0, 0);
+	}
+
+	/**
+	 * @param expectedSize Expected number of entries, e.g. the size of the
+	 *        previous buffer, to avoid growing the arrays
+	 * @param expectedNamesLength Expected total length of all names
+	 */
+	public IndexEntryBuffer(final BlobStoreDefaults defaults, final int expectedSize, final int expectedNamesLength) {
+		this.defaults = defaults;
+		final int capacity = Math.max(MIN_CAPACITY, expectedSize);
+		this.names = new byte[Math.max(capacity * 16, expectedNamesLength)];
+		this.nameOffsets = new int[capacity + 1];
+		this.offsets = new long[capacity];
+		this.lengths = new long[capacity];
+		this.mediaTypeCodes = new int[capacity];
+		this.encodingCodes = new int[capacity];
+		mediaTypes.add(null);
+		encodings.add(null);
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int getNamesLength() {
+		return namesLength;
+	}
+
+	public void add(final BlobEntryImpl entry) {
+		if (order != null) {
+			throw new IllegalStateException("Buffer is sorted");
+		}
+		if (size == offsets.length) {
+			grow();
+		}
+		final String name = entry.getName();
+		final int nameLength = name.length();
+		if (namesLength + nameLength < 0) {
+			throw new IllegalStateException("Index entries too large to be kept in memory");
+		}
+		if (namesLength + nameLength > names.length) {
+			names = Arrays.copyOf(names, Math.max(namesLength + nameLength, (int)Math.min(Integer.MAX_VALUE - 8, names.length * 2L)));
+		}
+		// names are US-ASCII
+		for (int i = 0; i < nameLength; i++) {
+			names[namesLength + i] = (byte)name.charAt(i);
+		}
+		nameOffsets[size] = namesLength;
+		namesLength += nameLength;
+		nameOffsets[size + 1] = namesLength;
+		offsets[size] = entry.getOffset();
+		lengths[size] = entry.getLength();
+		mediaTypeCodes[size] = code(entry.getMediaTypeOrNull(), mediaTypes, mediaTypeCodesByValue);
+		encodingCodes[size] = code(entry.getEncodingOrNull(), encodings, encodingCodesByValue);
+		size++;
+	}
+
+	private int code(final String value, final List<String> values, final Map<String, Integer> codesByValue) {
+		if (value == null) {
+			return 0;
+		}
+		final Integer code = codesByValue.get(value);
+		if (code != null) {
+			return code;
+		}
+		final int newCode = values.size();
+		values.add(value);
+		codesByValue.put(value, newCode);
+		dictionarySize += StringSizeEstimator.estimatedSizeOf(value) + DICTIONARY_ENTRY_OVERHEAD;
+		return newCode;
+	}
+
+	private void grow() {
+		final int newCapacity = offsets.length + (offsets.length >> 1);
+		if (newCapacity < 0 || newCapacity >= Integer.MAX_VALUE - 8) {
+			throw new IllegalStateException("Too many index entries to be kept in memory");
+		}
+		nameOffsets = Arrays.copyOf(nameOffsets, newCapacity + 1);
+		offsets = Arrays.copyOf(offsets, newCapacity);
+		lengths = Arrays.copyOf(lengths, newCapacity);
+		mediaTypeCodes = Arrays.copyOf(mediaTypeCodes, newCapacity);
+		encodingCodes = Arrays.copyOf(encodingCodes, newCapacity);
+	}
+
+	/**
+	 * Get an estimate of the heap memory used by the entries in bytes. Spare
+	 * array capacity is not included.
+	 */
+	public long getEstimatedMemoryUsage() {
+		return namesLength + (long)BYTES_PER_ENTRY * size + dictionarySize;
+	}
+
+	/**
+	 * Sort the entries by name. Entries with equal names keep the order they
+	 * were added in. No more entries can be added afterwards.
+	 */
+	public void sort() {
+		final int[] sorted = new int[size];
+		for (int i = 0; i < size; i++) {
+			sorted[i] = i;
+		}
+		mergeSort(sorted.clone(), sorted, 0, size);
+		order = sorted;
+	}
+
+	/**
+	 * Stable top down merge sort of the range from src into dst. Both arrays
+	 * must contain the same values in the range.
+	 */
+	private void mergeSort(final int[] src, final int[] dst, final int from, final int to) {
+		final int length = to - from;
+		if (length < 8) {
+			// insertion sort for small ranges
+			for (int i = from + 1; i < to; i++) {
+				final int value = dst[i];
+				int j = i - 1;
+				while (j >= from && compareNames(dst[j], value) > 0) {
+					dst[j + 1] = dst[j];
+					j--;
+				}
+				dst[j + 1] = value;
+			}
+			return;
+		}
+		final int mid = (from + to) >>> 1;
+		mergeSort(dst, src, from, mid);
+		mergeSort(dst, src, mid, to);
+		if (compareNames(src[mid - 1], src[mid]) <= 0) {
+			System.arraycopy(src, from, dst, from, length);
+			return;
+		}
+		int p = from;
+		int q = mid;
+		for (int i = from; i < to; i++) {
+			if (q >= to || (p < mid && compareNames(src[p], src[q]) <= 0)) {
+				dst[i] = src[p++];
+			} else {
+				dst[i] = src[q++];
+			}
+		}
+	}
+
+	/**
+	 * Compare names of two entries, using the same ordering as
+	 * {@link String#compareTo(String)}.
+	 */
+	private int compareNames(final int idx1, final int idx2) {
+		final int off1 = nameOffsets[idx1];
+		final int len1 = nameOffsets[idx1 + 1] - off1;
+		final int off2 = nameOffsets[idx2];
+		final int len2 = nameOffsets[idx2 + 1] - off2;
+		final int lim = Math.min(len1, len2);
+		for (int i = 0; i < lim; i++) {
+			final int c1 = names[off1 + i] & 0xff;
+			final int c2 = names[off2 + i] & 0xff;
+			if (c1 != c2) {
+				return c1 - c2;
+			}
+		}
+		return len1 - len2;
+	}
+
+	/**
+	 * Get an entry. After {@link #sort()}, entries are returned in name order.
+	 */
+	public BlobEntryImpl getBlobEntry(final int i) {
+		if (i < 0 || i >= size) {
+			throw new IndexOutOfBoundsException();
+		}
+		final int idx = order == null ? i : order[i];
+		final int nameOffset = nameOffsets[idx];
+		return new BlobEntryImpl(
+				new String(names, nameOffset, nameOffsets[idx + 1] - nameOffset, StandardCharsets.US_ASCII),
+				offsets[idx],
+				lengths[idx],
+				mediaTypes.get(mediaTypeCodes[idx]),
+				encodings.get(encodingCodes[idx]),
+				defaults);
+	}
+}
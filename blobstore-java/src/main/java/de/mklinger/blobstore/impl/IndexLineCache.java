@@ -0,0 +1,20 @@
+package de.mklinger.blobstore.impl;
+
+import de.mklinger.blobstore.io.StringSizeEstimator;
+
+/**
+ * Bounded cache for index lines by file position, used for the upper levels
+ * of the binary search in the index.
+ *
+ * <p>
+ * Instances are thread-safe, see {@link LongKeyCache}.
+ * </p>
+ */
+public class IndexLineCache extends LongKeyCache<String> {
+	/**
+	 * @param maxSize Maximum estimated memory in bytes to use for cached lines.
+	 */
+	public IndexLineCache(final long maxSize) {
+		super(maxSize, StringSizeEstimator::estimatedSizeOf);
+	}
+}
@@ -0,0 +1,18 @@
+package de.mklinger.blobstore.impl;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Writer for the index section of a blob file. Entries must be written in
+ * index order. Closing the index writer closes the underlying stream.
+ */
+public interface IndexWriter extends Closeable {
+	void write(BlobEntryImpl entry) throws IOException;
+
+	/**
+	 * Write an entry given as line in text index format, without line
+	 * terminator.
+	 */
+	void writeLine(String line) throws IOException;
+}
@@ -0,0 +1,236 @@
+package de.mklinger.blobstore.impl;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+
+import de.mklinger.blobstore.CacheStats;
+
+/**
+ * Bounded cache for values by primitive long keys, e.g. file positions.
+ *
+ * <p>
+ * Keys and values are kept in open addressing hash tables with linear
+ * probing. The estimated memory used by cached values is limited to a byte
+ * budget. When the budget is exceeded, entries are evicted using
+ * the CLOCK algorithm, giving recently used entries a second chance.
+ * </p>
+ *
+ * <p>
+ * Instances are thread-safe. The cache is split into independently locked
+ * segments to reduce contention.
+ * </p>
+ */
+public class LongKeyCache<V> {
+	private static final int SEGMENT_COUNT = 16;
+	private static final int INITIAL_SEGMENT_CAPACITY = 16;
+	/** Estimated memory used per entry for the key and table slots. */
+	private static final int ENTRY_OVERHEAD = 8 + 8 + 1;
+
+	private final Segment[] segments;
+	private final ToLongFunction<V> sizeEstimator;
+	private final LongAdder hitCount = new LongAdder();
+	private final LongAdder missCount = new LongAdder();
+	private final LongAdder evictionCount = new LongAdder();
+
+	/**
+	 * @param maxSize Maximum estimated memory in bytes to use for cached values.
+	 * @param sizeEstimator Estimates the memory used by a value in bytes
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public LongKeyCache(final long maxSize, final ToLongFunction<V> sizeEstimator) {
+		if (maxSize <= 0) {
+			throw new IllegalArgumentException("Invalid cache size: " + maxSize);
+		}
+		this.sizeEstimator = sizeEstimator;
+		this.segments = new LongKeyCache.Segment[SEGMENT_COUNT];
+		final long maxSegmentSize = Math.max(1, maxSize / SEGMENT_COUNT);
+		for (int i = 0; i < segments.length; i++) {
+			segments[i] = new Segment(maxSegmentSize);
+		}
+	}
+
+	public V get(final long key) {
+		final long hash = hash(key);
+		final V value = segmentFor(hash).get(key, (int)hash);
+		if (value == null) {
+			missCount.increment();
+		} else {
+			hitCount.increment();
+		}
+		return value;
+	}
+
+	/**
+	 * Put a value. Values for a key are expected to never change, so an
+	 * existing value for the key is kept.
+	 */
+	public void put(final long key, final V value) {
+		final long hash = hash(key);
+		segmentFor(hash).put(key, (int)hash, value);
+	}
+
+	public CacheStats getStats() {
+		long entryCount = 0;
+		long size = 0;
+		for (final Segment segment : segments) {
+			synchronized (segment) {
+				entryCount += segment.count;
+				size += segment.size;
+			}
+		}
+		return new CacheStats(hitCount.sum(), missCount.sum(), evictionCount.sum(), entryCount, size);
+	}
+
+	private Segment segmentFor(final long hash) {
+		return segments[(int)(hash >>> 60)];
+	}
+
+	private static long hash(final long key) {
+		// MurmurHash3 fmix64
+		long h = key;
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+
+	private long estimatedSizeOf(final V value) {
+		return sizeEstimator.applyAsLong(value) + ENTRY_OVERHEAD;
+	}
+
+	private class Segment {
+		private final long maxSize;
+		private long[] keys;
+		/** null marks an empty slot. */
+		private Object[] values;
+		private boolean[] referenced;
+		private int count;
+		private long size;
+		private int clockHand;
+
+		public Segment(final long maxSize) {
+			this.maxSize = maxSize;
+			this.keys = new long[INITIAL_SEGMENT_CAPACITY];
+			this.values = new Object[INITIAL_SEGMENT_CAPACITY];
+			this.referenced = new boolean[INITIAL_SEGMENT_CAPACITY];
+		}
+
+		@SuppressWarnings("unchecked")
+		public synchronized V get(final long key, final int hash) {
+			final int mask = keys.length - 1;
+			for (int i = hash & mask; values[i] != null; i = (i + 1) & mask) {
+				if (keys[i] == key) {
+					referenced[i] = true;
+					return (V)values[i];
+				}
+			}
+			return null;
+		}
+
+		public synchronized void put(final long key, final int hash, final V value) {
+			final long valueSize = estimatedSizeOf(value);
+			if (valueSize > maxSize) {
+				return;
+			}
+			int mask = keys.length - 1;
+			for (int i = hash & mask; values[i] != null; i = (i + 1) & mask) {
+				if (keys[i] == key) {
+					// already cached
+					referenced[i] = true;
+					return;
+				}
+			}
+			while (size + valueSize > maxSize) {
+				evictOne();
+			}
+			if ((count + 1) * 2 > keys.length) {
+				resize();
+				mask = keys.length - 1;
+			}
+			int i = hash & mask;
+			while (values[i] != null) {
+				i = (i + 1) & mask;
+			}
+			keys[i] = key;
+			values[i] = value;
+			referenced[i] = false;
+			count++;
+			size += valueSize;
+		}
+
+		private void evictOne() {
+			final int mask = keys.length - 1;
+			while (true) {
+				final int i = clockHand;
+				clockHand = (clockHand + 1) & mask;
+				if (values[i] != null) {
+					if (referenced[i]) {
+						// second chance
+						referenced[i] = false;
+					} else {
+						@SuppressWarnings("unchecked")
+						final V value = (V)values[i];
+						size -= estimatedSizeOf(value);
+						count--;
+						removeAt(i);
+						evictionCount.increment();
+						return;
+					}
+				}
+			}
+		}
+
+		/**
+		 * Remove the entry at the given slot, moving following entries of the
+		 * probe sequence back to keep them reachable.
+		 */
+		private void removeAt(final int slot) {
+			final int mask = keys.length - 1;
+			int free = slot;
+			int i = slot;
+			while (true) {
+				i = (i + 1) & mask;
+				if (values[i] == null) {
+					break;
+				}
+				final int home = (int)hash(keys[i]) & mask;
+				final boolean stays = free <= i
+						? free < home && home <= i
+						: free < home || home <= i;
+				if (!stays) {
+					keys[free] = keys[i];
+					values[free] = values[i];
+					referenced[free] = referenced[i];
+					free = i;
+				}
+			}
+			values[free] = null;
+			referenced[free] = false;
+		}
+
+		private void resize() {
+			final long[] oldKeys = keys;
+			final Object[] oldValues = values;
+			final boolean[] oldReferenced = referenced;
+			final int newCapacity = oldKeys.length * 2;
+			keys = new long[newCapacity];
+			values = new Object[newCapacity];
+			referenced = new boolean[newCapacity];
+			final int mask = newCapacity - 1;
+			for (int j = 0; j < oldKeys.length; j++) {
+				if (oldValues[j] != null) {
+					int i = (int)hash(oldKeys[j]) & mask;
+					while (values[i] != null) {
+						i = (i + 1) & mask;
+					}
+					keys[i] = oldKeys[j];
+					values[i] = oldValues[j];
+					referenced[i] = oldReferenced[j];
+				}
+			}
+			clockHand = 0;
+		}
+	}
+}
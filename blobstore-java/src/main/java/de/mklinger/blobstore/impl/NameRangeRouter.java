@@ -0,0 +1,105 @@
+package de.mklinger.blobstore.impl;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Routes lookups by name to the blob files that may contain the name, based
+ * on the range of names in each file.
+ *
+ * <p>
+ * Ranges are sorted by their first name. A lookup finds the ranges starting
+ * at or before the name by binary search and walks back over them only as
+ * long as a range ending at or after the name is left, which is tracked as
+ * the running maximum of last names. For files with disjoint ranges this
+ * touches a single range.
+ * </p>
+ *
+ * <p>
+ * Instances are immutable and thread-safe.
+ * </p>
+ */
+public class NameRangeRouter {
+	private static final int[] NO_CANDIDATES = new int[0];
+
+	/** Indexes of the files, sorted by first name. */
+	private final int[] fileIdxs;
+	private final String[] firstNames;
+	private final String[] lastNames;
+	/** Maximum of lastNames up to and including the same position. */
+	private final String[] maxLastNames;
+
+	/**
+	 * @param firstNames The first name of each file, <code>null</code> for
+	 *        files without entries
+	 * @param lastNames The last name of each file, <code>null</code> for
+	 *        files without entries
+	 */
+	public NameRangeRouter(final List<String> firstNames, final List<String> lastNames) {
+		if (firstNames.size() != lastNames.size()) {
+			throw new IllegalArgumentException();
+		}
+		final Integer[] sortedIdxs = new Integer[firstNames.size()];
+		int count = 0;
+		for (int i = 0; i < firstNames.size(); i++) {
+			if (firstNames.get(i) != null && lastNames.get(i) != null) {
+				sortedIdxs[count] = i;
+				count++;
+			}
+		}
+		Arrays.sort(sortedIdxs, 0, count, Comparator.comparing(firstNames::get));
+
+		this.fileIdxs = new int[count];
+		this.firstNames = new String[count];
+		this.lastNames = new String[count];
+		this.maxLastNames = new String[count];
+		for (int i = 0; i < count; i++) {
+			final int fileIdx = sortedIdxs[i];
+			fileIdxs[i] = fileIdx;
+			this.firstNames[i] = firstNames.get(fileIdx);
+			this.lastNames[i] = lastNames.get(fileIdx);
+			if (i == 0 || this.lastNames[i].compareTo(maxLastNames[i - 1]) > 0) {
+				maxLastNames[i] = this.lastNames[i];
+			} else {
+				maxLastNames[i] = maxLastNames[i - 1];
+			}
+		}
+	}
+
+	/**
+	 * Get the files whose name range contains the given name.
+	 * @return The file indexes in ascending order
+	 */
+	public int[] getCandidates(final String name) {
+		// number of ranges with first name <= name
+		int low = 0;
+		int high = firstNames.length;
+		while (low < high) {
+			final int mid = (low + high) >>> 1;
+			if (firstNames[mid].compareTo(name) <= 0) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+
+		int[] candidates = NO_CANDIDATES;
+		int count = 0;
+		for (int i = low - 1; i >= 0 && maxLastNames[i].compareTo(name) >= 0; i--) {
+			if (lastNames[i].compareTo(name) >= 0) {
+				if (count == candidates.length) {
+					candidates = Arrays.copyOf(candidates, Math.max(4, count * 2));
+				}
+				candidates[count] = fileIdxs[i];
+				count++;
+			}
+		}
+		if (count == 0) {
+			return NO_CANDIDATES;
+		}
+		final int[] result = count == candidates.length ? candidates : Arrays.copyOf(candidates, count);
+		Arrays.sort(result);
+		return result;
+	}
+}
@@ -0,0 +1,242 @@
+package de.mklinger.blobstore.impl;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.mklinger.blobstore.BlobEntry;
+import de.mklinger.blobstore.BlobStoreDefaults;
+import de.mklinger.blobstore.BlobStoreFormatException;
+
+/**
+ * Compact in-memory representation of a sorted blob store index.
+ *
+ * <p>
+ * Entry names are packed into a single byte array, offsets and lengths are
+ * kept in primitive arrays and media types and encodings are stored as codes
+ * into small dictionaries. Lookups are binary searches that do not allocate
+ * any objects. A {@link BlobEntry} is only created on request.
+ * </p>
+ *
+ * <p>
+ * Instances are immutable and thread-safe once built.
+ * </p>
+ */
+public class PackedBlobIndex {
+	private final BlobStoreDefaults defaults;
+	private final int size;
+	private final byte[] names;
+	/** size + 1 elements, the last one is the end of the last name. */
+	private final int[] nameOffsets;
+	private final long[] offsets;
+	private final long[] lengths;
+	private final int[] mediaTypeCodes;
+	private final byte[] encodingCodes;
+	/** code 0 is <code>null</code>, meaning the default value. */
+	private final String[] mediaTypes;
+	/** code 0 is <code>null</code>, meaning the default value. */
+	private final String[] encodings;
+
+	private PackedBlobIndex(final Builder builder) {
+		this.defaults = builder.defaults;
+		this.size = builder.size;
+		this.names = Arrays.copyOf(builder.names, builder.namesLength);
+		this.nameOffsets = Arrays.copyOf(builder.nameOffsets, size + 1);
+		this.nameOffsets[size] = builder.namesLength;
+		this.offsets = Arrays.copyOf(builder.offsets, size);
+		this.lengths = Arrays.copyOf(builder.lengths, size);
+		this.mediaTypeCodes = Arrays.copyOf(builder.mediaTypeCodes, size);
+		this.encodingCodes = Arrays.copyOf(builder.encodingCodes, size);
+		this.mediaTypes = builder.mediaTypes.toArray(new String[0]);
+		this.encodings = builder.encodings.toArray(new String[0]);
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Find the index of the entry with the given name.
+	 * @return The index of the entry, or a negative value if not found.
+	 */
+	public int indexOf(final String name) {
+		return indexOf(name, 0);
+	}
+
+	/**
+	 * Find the index of the entry with the given name, starting at the given
+	 * index. Useful to look up names in ascending order.
+	 * @return The index of the entry, or <code>-(insertion point + 1)</code>
+	 *         if not found.
+	 */
+	public int indexOf(final String name, final int fromIdx) {
+		int low = fromIdx;
+		int high = size - 1;
+		while (low <= high) {
+			final int mid = (low + high) >>> 1;
+			final int cmp = compareName(mid, name);
+			if (cmp < 0) {
+				low = mid + 1;
+			} else if (cmp > 0) {
+				high = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+		return -(low + 1);
+	}
+
+	/**
+	 * Compare the name of the entry at the given index to the given name,
+	 * using the same ordering as {@link String#compareTo(String)}.
+	 */
+	public int compareName(final int idx, final String name) {
+		final int start = nameOffsets[idx];
+		return BlobEntryImpl.compareName(names, start, nameOffsets[idx + 1] - start, name);
+	}
+
+	public String getName(final int idx) {
+		final int start = nameOffsets[idx];
+		return new String(names, start, nameOffsets[idx + 1] - start, StandardCharsets.US_ASCII);
+	}
+
+	public long getOffset(final int idx) {
+		return offsets[idx];
+	}
+
+	public long getLength(final int idx) {
+		return lengths[idx];
+	}
+
+	public String getEncoding(final int idx) {
+		final String encoding = encodings[encodingCodes[idx]];
+		return encoding == null ? defaults.getDefaultEncoding() : encoding;
+	}
+
+	public String getMediaType(final int idx) {
+		final String mediaType = mediaTypes[mediaTypeCodes[idx]];
+		return mediaType == null ? defaults.getDefaultMediaType() : mediaType;
+	}
+
+	public BlobEntry getBlobEntry(final int idx) {
+		return new BlobEntryImpl(
+				getName(idx),
+				offsets[idx],
+				lengths[idx],
+				mediaTypes[mediaTypeCodes[idx]],
+				encodings[encodingCodes[idx]],
+				defaults);
+	}
+
+	/**
+	 * Get a rough estimate of the heap memory used by this index in bytes.
+	 */
+	public long getEstimatedMemoryUsage() {
+		return names.length
+				+ 4L * nameOffsets.length
+				+ 8L * offsets.length
+				+ 8L * lengths.length
+				+ 4L * mediaTypeCodes.length
+				+ encodingCodes.length;
+	}
+
+	public static Builder builder(final BlobStoreDefaults defaults) {
+		return new Builder(defaults);
+	}
+
+	/**
+	 * Builder for a packed index. Entries must be added in index order.
+	 */
+	public static class Builder {
+		private static final int INITIAL_CAPACITY = 1024;
+
+		private final BlobStoreDefaults defaults;
+		private int size;
+		private byte[] names = new byte[INITIAL_CAPACITY * 16];
+		private int namesLength;
+		private int[] nameOffsets = new int[INITIAL_CAPACITY];
+		private long[] offsets = new long[INITIAL_CAPACITY];
+		private long[] lengths = new long[INITIAL_CAPACITY];
+		private int[] mediaTypeCodes = new int[INITIAL_CAPACITY];
+		private byte[] encodingCodes = new byte[INITIAL_CAPACITY];
+		private final List<String> mediaTypes = new ArrayList<>();
+		private final Map<String, Integer> mediaTypeCodesByName = new HashMap<>();
+		private final List<String> encodings = new ArrayList<>();
+		private final Map<String, Integer> encodingCodesByName = new HashMap<>();
+
+		private Builder(final BlobStoreDefaults defaults) {
+			this.defaults = defaults;
+			mediaTypes.add(null);
+			encodings.add(null);
+		}
+
+		/**
+		 * Add an entry. Media type and encoding may be <code>null</code> for
+		 * the default value.
+		 */
+		public Builder add(final String name, final long offset, final long length, final String mediaType, final String encoding) {
+			if (size == nameOffsets.length) {
+				grow();
+			}
+			final int nameLength = name.length();
+			if (namesLength + nameLength < 0) {
+				throw new BlobStoreFormatException("Index too large to be kept in memory");
+			}
+			if (namesLength + nameLength > names.length) {
+				names = Arrays.copyOf(names, Math.max(namesLength + nameLength, (int)Math.min(Integer.MAX_VALUE - 8, names.length * 2L)));
+			}
+			for (int i = 0; i < nameLength; i++) {
+				names[namesLength + i] = (byte)name.charAt(i);
+			}
+			nameOffsets[size] = namesLength;
+			namesLength += nameLength;
+			offsets[size] = offset;
+			lengths[size] = length;
+			mediaTypeCodes[size] = code(mediaType, mediaTypes, mediaTypeCodesByName, Integer.MAX_VALUE);
+			encodingCodes[size] = (byte)code(encoding, encodings, encodingCodesByName, Byte.MAX_VALUE);
+			size++;
+			return this;
+		}
+
+		public Builder add(final BlobEntry blobEntry) {
+			return add(blobEntry.getName(), blobEntry.getOffset(), blobEntry.getLength(), blobEntry.getMediaType(), blobEntry.getEncoding());
+		}
+
+		private int code(final String value, final List<String> values, final Map<String, Integer> codesByValue, final int maxCode) {
+			if (value == null) {
+				return 0;
+			}
+			final Integer code = codesByValue.get(value);
+			if (code != null) {
+				return code;
+			}
+			final int newCode = values.size();
+			if (newCode > maxCode) {
+				throw new BlobStoreFormatException("Too many distinct values in index");
+			}
+			values.add(value);
+			codesByValue.put(value, newCode);
+			return newCode;
+		}
+
+		private void grow() {
+			final int newCapacity = nameOffsets.length + (nameOffsets.length >> 1);
+			if (newCapacity < 0) {
+				throw new BlobStoreFormatException("Index too large to be kept in memory");
+			}
+			// one extra slot for the end offset
+			nameOffsets = Arrays.copyOf(nameOffsets, newCapacity + 1);
+			offsets = Arrays.copyOf(offsets, newCapacity + 1);
+			lengths = Arrays.copyOf(lengths, newCapacity + 1);
+			mediaTypeCodes = Arrays.copyOf(mediaTypeCodes, newCapacity + 1);
+			encodingCodes = Arrays.copyOf(encodingCodes, newCapacity + 1);
+		}
+
+		public PackedBlobIndex build() {
+			return new PackedBlobIndex(this);
+		}
+	}
+}
@@ -0,0 +1,67 @@
+package de.mklinger.blobstore.impl;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+import de.mklinger.blobstore.BlobStoreFormatException;
+import de.mklinger.blobstore.codec.DeflateDictionaryCodec;
+
+/**
+ * Preset dictionary stored in a blob file for entries with encoding
+ * {@value de.mklinger.blobstore.BlobEntry#ENCODING_DEFLATE_DICT}.
+ *
+ * <p>
+ * If a blob file has entries with this encoding, the dictionary is stored at
+ * the start of the contents region, right after the header, and is not part
+ * of the index:
+ * </p>
+ *
+ * <pre>
+ * magic            4 bytes "BSD1"
+ * length           int32, big endian
+ * dictionary       length bytes
+ * </pre>
+ *
+ * @author Marc Klinger - mklinger[at]mklinger[dot]de
+ */
+public class PresetDictionary {
+	private static final byte[] MAGIC = { 'B', 'S', 'D', '1' };
+	private static final int PREFIX_LENGTH = MAGIC.length + 4;
+
+	private PresetDictionary() {}
+
+	/**
+	 * @return The number of bytes written
+	 */
+	public static int write(final OutputStream out, final byte[] dictionary) throws IOException {
+		final DataOutputStream dout = new DataOutputStream(out);
+		dout.write(MAGIC);
+		dout.writeInt(dictionary.length);
+		dout.write(dictionary);
+		dout.flush();
+		return PREFIX_LENGTH + dictionary.length;
+	}
+
+	/**
+	 * @param in Stream positioned at the start of the dictionary
+	 */
+	public static byte[] read(final InputStream in) throws IOException {
+		final DataInputStream din = new DataInputStream(in);
+		final byte[] magic = new byte[MAGIC.length];
+		din.readFully(magic);
+		if (!Arrays.equals(MAGIC, magic)) {
+			throw new BlobStoreFormatException("Missing dictionary in blob file");
+		}
+		final int length = din.readInt();
+		if (length < 0 || length > DeflateDictionaryCodec.MAX_DICTIONARY_SIZE) {
+			throw new BlobStoreFormatException("Invalid dictionary length in blob file: " + length);
+		}
+		final byte[] dictionary = new byte[length];
+		din.readFully(dictionary);
+		return dictionary;
+	}
+}
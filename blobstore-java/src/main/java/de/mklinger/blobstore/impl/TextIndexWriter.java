@@ -0,0 +1,34 @@
+package de.mklinger.blobstore.impl;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+
+/**
+ * Writer for the text index used by format version 1. Each entry is written
+ * as one line.
+ */
+public class TextIndexWriter implements IndexWriter {
+	private final BufferedWriter out;
+
+	public TextIndexWriter(final OutputStream out) throws IOException {
+		this.out = new BufferedWriter(new OutputStreamWriter(out, BlobEntryImpl.BLOB_ENTRY_NAME_ENCODING));
+	}
+
+	@Override
+	public void write(final BlobEntryImpl entry) throws IOException {
+		entry.write(out);
+	}
+
+	@Override
+	public void writeLine(final String line) throws IOException {
+		out.write(line);
+		out.write('\n');
+	}
+
+	@Override
+	public void close() throws IOException {
+		out.close();
+	}
+}
@@ -0,0 +1,174 @@
+package de.mklinger.blobstore.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Buffered input stream reading a range of a file channel using positional
+ * reads. The channel position is never changed, so any number of streams
+ * can read concurrently from the same channel. Closing the stream does not
+ * close the channel. When reading from a {@link FileChannelSource}, the
+ * channel is taken from the source for every read.
+ *
+ * <p>
+ * The buffer is allocated on first use and is never larger than the range.
+ * Reads of at least the buffer size bypass the buffer. Skipping only moves
+ * the position without reading.
+ * </p>
+ *
+ * <p>
+ * Instances are not thread-safe.
+ * </p>
+ */
+public class FileChannelInputStream extends InputStream {
+	public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+	private final FileChannelSource channelSource;
+	/** File position of the next byte not yet read into the buffer. */
+	private long position;
+	private final long end;
+	private final int bufferSize;
+	/** null until first needed. */
+	private byte[] buf;
+	private int bufPos;
+	private int bufLimit;
+
+	public FileChannelInputStream(final FileChannel channel, final long offset, final long length) {
+		this(channel, offset, length, DEFAULT_BUFFER_SIZE);
+	}
+
+	public FileChannelInputStream(final FileChannel channel, final long offset, final long length, final int bufferSize) {
+		this(FileChannelSource.of(channel), offset, length, bufferSize);
+	}
+
+	public FileChannelInputStream(final FileChannelSource channelSource, final long offset, final long length, final int bufferSize) {
+		if (offset < 0 || length < 0) {
+			throw new IllegalArgumentException();
+		}
+		if (bufferSize <= 0) {
+			throw new IllegalArgumentException("Invalid buffer size: " + bufferSize);
+		}
+		this.channelSource = channelSource;
+		this.position = offset;
+		this.end = offset + length;
+		this.bufferSize = (int)Math.max(1, Math.min(bufferSize, length));
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (bufPos == bufLimit && fill() == -1) {
+			return -1;
+		}
+		return buf[bufPos++] & 0xff;
+	}
+
+	@Override
+	public int read(final byte[] b, final int off, final int len) throws IOException {
+		if (off < 0 || len < 0 || len > b.length - off) {
+			throw new IndexOutOfBoundsException();
+		}
+		if (len == 0) {
+			return 0;
+		}
+		int buffered = bufLimit - bufPos;
+		if (buffered == 0) {
+			if (len >= bufferSize) {
+				// large read, bypass the buffer
+				return readDirect(b, off, len);
+			}
+			buffered = fill();
+			if (buffered == -1) {
+				return -1;
+			}
+		}
+		final int n = Math.min(len, buffered);
+		System.arraycopy(buf, bufPos, b, off, n);
+		bufPos += n;
+		return n;
+	}
+
+	private int fill() throws IOException {
+		if (buf == null) {
+			buf = new byte[bufferSize];
+		}
+		bufPos = 0;
+		bufLimit = 0;
+		final int n = readDirect(buf, 0, buf.length);
+		if (n > 0) {
+			bufLimit = n;
+		}
+		return n;
+	}
+
+	private int readDirect(final byte[] b, final int off, final int len) throws IOException {
+		final long left = end - position;
+		if (left <= 0) {
+			return -1;
+		}
+		final ByteBuffer bb = ByteBuffer.wrap(b, off, (int)Math.min(len, left));
+		int n;
+		do {
+			n = channelSource.read(bb, position);
+		} while (n == 0);
+		if (n == -1) {
+			return -1;
+		}
+		position += n;
+		return n;
+	}
+
+	@Override
+	public long skip(final long n) {
+		if (n <= 0) {
+			return 0;
+		}
+		final int buffered = bufLimit - bufPos;
+		if (n <= buffered) {
+			bufPos += (int)n;
+			return n;
+		}
+		final long skipped = buffered + Math.min(n - buffered, Math.max(0, end - position));
+		position += skipped - buffered;
+		bufPos = 0;
+		bufLimit = 0;
+		return skipped;
+	}
+
+	/**
+	 * @return The number of bytes left in the range, limited to
+	 *         {@link Integer#MAX_VALUE}. Reading them will not block
+	 *         indefinitely.
+	 */
+	@Override
+	public int available() {
+		return (int)Math.min(Integer.MAX_VALUE, remaining());
+	}
+
+	private long remaining() {
+		return (bufLimit - bufPos) + Math.max(0, end - position);
+	}
+
+	@Override
+	public long transferTo(final OutputStream out) throws IOException {
+		long count = bufLimit - bufPos;
+		if (count > 0) {
+			out.write(buf, bufPos, (int)count);
+			bufPos = bufLimit;
+		}
+		final long left = end - position;
+		if (left <= 0) {
+			return count;
+		}
+		final int transferBufferSize = (int)Math.min(Math.max(bufferSize, DEFAULT_BUFFER_SIZE), left);
+		final byte[] transferBuf = buf != null && buf.length >= transferBufferSize ? buf : new byte[transferBufferSize];
+		int n;
+		while ((n = readDirect(transferBuf, 0, transferBuf.length)) != -1) {
+			out.write(transferBuf, 0, n);
+			count += n;
+		}
+		return count;
+	}
+}
@@ -0,0 +1,108 @@
+package de.mklinger.blobstore.io;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Readable channel for a range of a file channel using positional reads.
+ * The file channel position is never changed, so any number of range
+ * channels can read concurrently from the same file channel. Closing the
+ * range channel does not close the file channel. When reading from a
+ * {@link FileChannelSource}, the file channel is taken from the source for
+ * every read.
+ *
+ * <p>
+ * Instances are not thread-safe.
+ * </p>
+ */
+public class FileChannelRangeChannel implements ReadableByteChannel {
+	private final FileChannelSource channelSource;
+	private long position;
+	private final long end;
+	private boolean open = true;
+
+	public FileChannelRangeChannel(final FileChannel channel, final long offset, final long length) {
+		this(FileChannelSource.of(channel), offset, length);
+	}
+
+	public FileChannelRangeChannel(final FileChannelSource channelSource, final long offset, final long length) {
+		if (offset < 0 || length < 0) {
+			throw new IllegalArgumentException();
+		}
+		this.channelSource = channelSource;
+		this.position = offset;
+		this.end = offset + length;
+	}
+
+	@Override
+	public int read(final ByteBuffer dst) throws IOException {
+		if (!open) {
+			throw new ClosedChannelException();
+		}
+		final long left = end - position;
+		if (left <= 0) {
+			return -1;
+		}
+		if (!dst.hasRemaining()) {
+			return 0;
+		}
+		final ByteBuffer buf;
+		if (dst.remaining() > left) {
+			buf = dst.duplicate();
+			buf.limit(buf.position() + (int)left);
+		} else {
+			buf = dst;
+		}
+		int n;
+		do {
+			n = channelSource.read(buf, position);
+		} while (n == 0);
+		if (n == -1) {
+			return -1;
+		}
+		if (buf != dst) {
+			dst.position(dst.position() + n);
+		}
+		position += n;
+		return n;
+	}
+
+	/**
+	 * Transfer the remaining range to the given channel using
+	 * {@link FileChannel#transferTo(long, long, WritableByteChannel)},
+	 * which allows the operating system to send the bytes without copying
+	 * them to user space. A transfer interrupted by closing the file channel
+	 * is not retried, as the bytes already sent to the target are unknown.
+	 * @return The number of bytes transferred
+	 */
+	public long transferTo(final WritableByteChannel target) throws IOException {
+		if (!open) {
+			throw new ClosedChannelException();
+		}
+		final long start = position;
+		while (position < end) {
+			final FileChannel channel = channelSource.getChannel();
+			final long n = channel.transferTo(position, end - position, target);
+			if (n == 0 && position >= channel.size()) {
+				throw new EOFException();
+			}
+			position += n;
+		}
+		return position - start;
+	}
+
+	@Override
+	public boolean isOpen() {
+		return open;
+	}
+
+	@Override
+	public void close() {
+		open = false;
+	}
+}
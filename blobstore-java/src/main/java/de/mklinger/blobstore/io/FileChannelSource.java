@@ -0,0 +1,48 @@
+package de.mklinger.blobstore.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+
+/**
+ * Source of a shared file channel that may be replaced while in use, e.g.
+ * after the channel was closed by an interrupt of any thread reading from it.
+ * Readers get the channel from the source for every read instead of keeping
+ * a reference, so that they keep working with the replacement.
+ *
+ * @author Marc Klinger - mklinger[at]mklinger[dot]de
+ */
+@FunctionalInterface
+public interface FileChannelSource {
+	/**
+	 * @return The current channel
+	 * @throws ClosedChannelException If the source is closed
+	 */
+	FileChannel getChannel() throws IOException;
+
+	/**
+	 * Positional read from the current channel. If the channel was closed
+	 * while reading and the current thread was not interrupted, the channel
+	 * was closed by another thread, and the read is retried once with the
+	 * channel now provided by the source.
+	 * @see FileChannel#read(ByteBuffer, long)
+	 */
+	default int read(final ByteBuffer dst, final long position) throws IOException {
+		try {
+			return getChannel().read(dst, position);
+		} catch (final ClosedChannelException e) {
+			if (Thread.currentThread().isInterrupted()) {
+				throw e;
+			}
+			return getChannel().read(dst, position);
+		}
+	}
+
+	/**
+	 * Get a source always providing the given channel.
+	 */
+	static FileChannelSource of(final FileChannel channel) {
+		return () -> channel;
+	}
+}
@@ -1,74 +1,91 @@
 package de.mklinger.blobstore.io;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.zip.GZIPOutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
 
 /**
  * Input stream that provides gzip compressed data.
+ *
+ * <p>
+ * Data is compressed directly using a {@link Deflater}. Compressed data is
+ * written straight into the caller's buffer where possible, only the gzip
+ * header and trailer go through a small internal buffer. Input and output
+ * buffers are allocated once per stream.
+ * </p>
+ *
+ * <p>
+ * Like most input streams, instances are not thread-safe.
+ * </p>
+ *
  * @author Marc Klinger - mklinger[at]mklinger[dot]de
  */
 public class GzipCompressingInputStream extends InputStream {
-	private final List<byte[]> buffers;
-	private int bufferOffset;
-	private boolean writeDone;
+	public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+	private static final int GZIP_MAGIC = 0x8b1f;
+	private static final int HEADER_LENGTH = 10;
+	private static final int TRAILER_LENGTH = 8;
+	private static final int OS_UNKNOWN = 255;
+
+	private static final int STATE_HEADER = 0;
+	private static final int STATE_DEFLATE = 1;
+	private static final int STATE_TRAILER = 2;
+	private static final int STATE_DONE = 3;
 
 	private final InputStream in;
-	private final ByteArrayOutputStream bout;
-	private final GZIPOutputStream gzout;
-	private byte[] inOutBuf;
+	private final Deflater deflater;
+	private final CRC32 crc;
+	private final byte[] inBuf;
+	/** Header and trailer. */
+	private final byte[] outBuf;
+	private final byte[] singleByteBuf;
+	private int outPos;
+	private int outLimit;
+	private int state;
+	private boolean inputDone;
+	private boolean closed;
 
 	public GzipCompressingInputStream(final InputStream in) throws IOException {
-		if (in == null) {
-			throw new NullPointerException();
-		}
-		this.in = in;
-		this.bout = new ByteArrayOutputStream();
-		this.gzout = new GZIPOutputStream(bout);
-		this.inOutBuf = new byte[4096];
-		this.buffers = new LinkedList<>();
+		this(in, Deflater.DEFAULT_COMPRESSION, DEFAULT_BUFFER_SIZE);
 	}
 
-	private synchronized void setWriteDone() throws IOException {
-		gzout.close();
-		inOutBuf = null;
-		writeDone = true;
+	public GzipCompressingInputStream(final InputStream in, final int level) throws IOException {
+		this(in, level, DEFAULT_BUFFER_SIZE);
 	}
 
-	private synchronized void setReadDone() throws IOException {
-		setWriteDone();
-		buffers.clear();
-		in.close();
+	/**
+	 * @param level Compression level, 0-9 or {@link Deflater#DEFAULT_COMPRESSION}
+	 * @param bufferSize Size of the buffer used to read the input
+	 */
+	public GzipCompressingInputStream(final InputStream in, final int level, final int bufferSize) throws IOException {
+		if (in == null) {
+			throw new NullPointerException();
+		}
+		if (bufferSize <= 0) {
+			throw new IllegalArgumentException("Invalid buffer size: " + bufferSize);
+		}
+		this.in = in;
+		this.deflater = new Deflater(level, true);
+		this.crc = new CRC32();
+		this.inBuf = new byte[bufferSize];
+		this.outBuf = new byte[Math.max(HEADER_LENGTH, TRAILER_LENGTH)];
+		this.singleByteBuf = new byte[1];
+		this.state = STATE_HEADER;
 	}
 
 	@Override
-	public synchronized int read() throws IOException {
-		while (buffers.isEmpty()) {
-			if (writeDone) {
-				// buffer is empty and we won't get new data -> EOF
-				return -1;
-			}
-			fillBuffers();
-		}
-		final byte[] buffer = buffers.get(0);
-		final int availableLength = buffer.length - bufferOffset;
-		if (availableLength == 1) {
-			final byte b = buffer[bufferOffset];
-			buffers.remove(0);
-			bufferOffset = 0;
-			return b;
-		} else {
-			final byte b = buffer[bufferOffset];
-			bufferOffset++;
-			return b;
+	public int read() throws IOException {
+		final int n = read(singleByteBuf, 0, 1);
+		if (n == -1) {
+			return -1;
 		}
+		return singleByteBuf[0] & 0xff;
 	}
 
 	@Override
-	public synchronized int read(final byte[] target, final int offset, final int len) throws IOException {
+	public int read(final byte[] target, final int offset, final int len) throws IOException {
 		if (target == null) {
 			throw new NullPointerException();
 		} else if (offset < 0 || len < 0 || len > target.length - offset) {
@@ -76,46 +93,90 @@ public class GzipCompressingInputStream extends InputStream {
 		} else if (len == 0) {
 			return 0;
 		}
-		while (buffers.isEmpty()) {
-			if (writeDone) {
-				// buffer is empty and we won't get new data -> EOF
+		if (closed) {
+			throw new IOException("Stream closed");
+		}
+		while (true) {
+			if (outPos < outLimit) {
+				final int n = Math.min(len, outLimit - outPos);
+				System.arraycopy(outBuf, outPos, target, offset, n);
+				outPos += n;
+				return n;
+			}
+			switch (state) {
+			case STATE_HEADER:
+				writeHeader();
+				state = STATE_DEFLATE;
+				break;
+			case STATE_DEFLATE:
+				final int n = deflater.deflate(target, offset, len);
+				if (n > 0) {
+					return n;
+				}
+				if (deflater.finished()) {
+					writeTrailer();
+					state = STATE_TRAILER;
+				} else if (deflater.needsInput()) {
+					fillDeflater();
+				}
+				break;
+			case STATE_TRAILER:
+				deflater.end();
+				state = STATE_DONE;
+				return -1;
+			default:
 				return -1;
 			}
-			fillBuffers();
-		}
-		final byte[] buffer = buffers.get(0);
-		final int availableLength = buffer.length - bufferOffset;
-		if (len >= availableLength) {
-			// write all and remove buffer from list
-			System.arraycopy(buffer, bufferOffset, target, offset, availableLength);
-			buffers.remove(0);
-			bufferOffset = 0;
-			return availableLength;
-		} else {
-			// write len and set bufferOffset
-			System.arraycopy(buffer, bufferOffset, target, offset, len);
-			bufferOffset += len;
-			return len;
 		}
 	}
 
-	private void fillBuffers() throws IOException {
-		// synchronized by read method
-		final int read = in.read(inOutBuf);
-		if (read == -1) {
-			setWriteDone();
-		} else {
-			gzout.write(inOutBuf, 0, read);
+	private void fillDeflater() throws IOException {
+		if (inputDone) {
+			return;
 		}
-		if (bout.size() > 0) {
-			final byte[] outBytes = bout.toByteArray();
-			bout.reset();
-			buffers.add(outBytes);
+		final int n = in.read(inBuf, 0, inBuf.length);
+		if (n == -1) {
+			inputDone = true;
+			deflater.finish();
+		} else if (n > 0) {
+			crc.update(inBuf, 0, n);
+			deflater.setInput(inBuf, 0, n);
 		}
 	}
 
+	private void writeHeader() {
+		// minimal header: no flags, no mtime, no extra flags, unknown OS
+		outBuf[0] = (byte)GZIP_MAGIC;
+		outBuf[1] = (byte)(GZIP_MAGIC >> 8);
+		outBuf[2] = Deflater.DEFLATED;
+		for (int i = 3; i < HEADER_LENGTH - 1; i++) {
+			outBuf[i] = 0;
+		}
+		outBuf[HEADER_LENGTH - 1] = (byte)OS_UNKNOWN;
+		outPos = 0;
+		outLimit = HEADER_LENGTH;
+	}
+
+	private void writeTrailer() {
+		writeIntLE((int)crc.getValue(), 0);
+		writeIntLE((int)deflater.getBytesRead(), 4);
+		outPos = 0;
+		outLimit = TRAILER_LENGTH;
+	}
+
+	private void writeIntLE(final int value, final int pos) {
+		outBuf[pos] = (byte)value;
+		outBuf[pos + 1] = (byte)(value >> 8);
+		outBuf[pos + 2] = (byte)(value >> 16);
+		outBuf[pos + 3] = (byte)(value >> 24);
+	}
+
 	@Override
 	public void close() throws IOException {
-		setReadDone();
+		if (!closed) {
+			closed = true;
+			deflater.end();
+			in.close();
+		}
 	}
-}
\ No newline at end of file
+}
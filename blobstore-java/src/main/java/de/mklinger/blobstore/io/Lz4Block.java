@@ -0,0 +1,225 @@
+package de.mklinger.blobstore.io;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Compression and decompression of single blocks in the LZ4 block format.
+ *
+ * <p>
+ * The compressor uses a single hash table probe per position, which gives
+ * the same speed/ratio trade-off as the LZ4 "fast" mode. Output is readable
+ * by any LZ4 block decoder.
+ * </p>
+ *
+ * @author Marc Klinger - mklinger[at]mklinger[dot]de
+ */
+public class Lz4Block {
+	/** Size of the hash table to pass to {@link #compress(byte[], int, int, byte[], int, int[])}. */
+	public static final int HASH_TABLE_SIZE = 1 << 12;
+
+	private static final int HASH_SHIFT = 32 - 12;
+	private static final int MIN_MATCH = 4;
+	/** The last literals of a block are never part of a match. */
+	private static final int LAST_LITERALS = 5;
+	/** A match must start at least this many bytes before the end of the block. */
+	private static final int MF_LIMIT = 12;
+	private static final int MAX_DISTANCE = 65535;
+	private static final int RUN_MASK = 15;
+	private static final int SKIP_STRENGTH = 6;
+
+	private Lz4Block() {}
+
+	/**
+	 * @return The maximum compressed size of a block with the given
+	 *         uncompressed size.
+	 */
+	public static int maxCompressedLength(final int length) {
+		return length + length / 255 + 16;
+	}
+
+	/**
+	 * Compress a block.
+	 *
+	 * @param dst Target buffer with at least {@link #maxCompressedLength(int)}
+	 *        bytes of space
+	 * @param hashTable Table of size {@link #HASH_TABLE_SIZE}, may be reused
+	 *        for subsequent blocks
+	 * @return The compressed length
+	 */
+	public static int compress(final byte[] src, final int srcOff, final int srcLen, final byte[] dst, final int dstOff, final int[] hashTable) {
+		final int srcEnd = srcOff + srcLen;
+		final int matchLimit = srcEnd - LAST_LITERALS;
+		final int mfLimit = srcEnd - MF_LIMIT;
+		int anchor = srcOff;
+		int dOff = dstOff;
+		if (srcLen > MF_LIMIT) {
+			Arrays.fill(hashTable, -1);
+			int sOff = srcOff;
+			while (sOff < mfLimit) {
+				final int sequence = readInt(src, sOff);
+				final int h = hash(sequence);
+				int ref = hashTable[h];
+				hashTable[h] = sOff;
+				if (ref < 0 || sOff - ref > MAX_DISTANCE || readInt(src, ref) != sequence) {
+					// skip faster over incompressible data
+					sOff += 1 + ((sOff - anchor) >>> SKIP_STRENGTH);
+					continue;
+				}
+				int matchStart = sOff;
+				while (matchStart > anchor && ref > srcOff && src[matchStart - 1] == src[ref - 1]) {
+					matchStart--;
+					ref--;
+				}
+				int matchLen = MIN_MATCH + (sOff - matchStart);
+				while (matchStart + matchLen < matchLimit && src[matchStart + matchLen] == src[ref + matchLen]) {
+					matchLen++;
+				}
+				dOff = writeSequence(src, anchor, matchStart - anchor, matchStart - ref, matchLen, dst, dOff);
+				sOff = matchStart + matchLen;
+				anchor = sOff;
+			}
+		}
+		dOff = writeLastLiterals(src, anchor, srcEnd - anchor, dst, dOff);
+		return dOff - dstOff;
+	}
+
+	private static int hash(final int sequence) {
+		return (sequence * -1640531535) >>> HASH_SHIFT;
+	}
+
+	private static int readInt(final byte[] b, final int off) {
+		return (b[off] & 0xff)
+				| (b[off + 1] & 0xff) << 8
+				| (b[off + 2] & 0xff) << 16
+				| (b[off + 3] & 0xff) << 24;
+	}
+
+	private static int writeSequence(final byte[] src, final int literalsOff, final int literalsLen, final int matchOffset, final int matchLen, final byte[] dst, final int dstOff) {
+		final int tokenOff = dstOff;
+		int dOff = dstOff + 1;
+		int token;
+		if (literalsLen >= RUN_MASK) {
+			token = RUN_MASK << 4;
+			dOff = writeLength(literalsLen - RUN_MASK, dst, dOff);
+		} else {
+			token = literalsLen << 4;
+		}
+		System.arraycopy(src, literalsOff, dst, dOff, literalsLen);
+		dOff += literalsLen;
+		dst[dOff++] = (byte)matchOffset;
+		dst[dOff++] = (byte)(matchOffset >>> 8);
+		final int matchLenCode = matchLen - MIN_MATCH;
+		if (matchLenCode >= RUN_MASK) {
+			token |= RUN_MASK;
+			dOff = writeLength(matchLenCode - RUN_MASK, dst, dOff);
+		} else {
+			token |= matchLenCode;
+		}
+		dst[tokenOff] = (byte)token;
+		return dOff;
+	}
+
+	private static int writeLastLiterals(final byte[] src, final int literalsOff, final int literalsLen, final byte[] dst, final int dstOff) {
+		int dOff = dstOff;
+		if (literalsLen >= RUN_MASK) {
+			dst[dOff++] = (byte)(RUN_MASK << 4);
+			dOff = writeLength(literalsLen - RUN_MASK, dst, dOff);
+		} else {
+			dst[dOff++] = (byte)(literalsLen << 4);
+		}
+		System.arraycopy(src, literalsOff, dst, dOff, literalsLen);
+		return dOff + literalsLen;
+	}
+
+	private static int writeLength(final int length, final byte[] dst, final int dstOff) {
+		int dOff = dstOff;
+		int remaining = length;
+		while (remaining >= 255) {
+			dst[dOff++] = (byte)255;
+			remaining -= 255;
+		}
+		dst[dOff++] = (byte)remaining;
+		return dOff;
+	}
+
+	/**
+	 * Decompress a block.
+	 *
+	 * @param dstLen Maximum number of bytes to decompress
+	 * @return The decompressed length
+	 * @throws IOException If the compressed data is corrupt or decompresses
+	 *         to more than dstLen bytes
+	 */
+	public static int decompress(final byte[] src, final int srcOff, final int srcLen, final byte[] dst, final int dstOff, final int dstLen) throws IOException {
+		final int srcEnd = srcOff + srcLen;
+		final int dstEnd = dstOff + dstLen;
+		int sOff = srcOff;
+		int dOff = dstOff;
+		while (sOff < srcEnd) {
+			final int token = src[sOff++] & 0xff;
+
+			int literalsLen = token >>> 4;
+			if (literalsLen == RUN_MASK) {
+				int b;
+				do {
+					if (sOff >= srcEnd) {
+						throw corrupt();
+					}
+					b = src[sOff++] & 0xff;
+					literalsLen += b;
+				} while (b == 255);
+			}
+			if (literalsLen > srcEnd - sOff || literalsLen > dstEnd - dOff) {
+				throw corrupt();
+			}
+			System.arraycopy(src, sOff, dst, dOff, literalsLen);
+			sOff += literalsLen;
+			dOff += literalsLen;
+			if (sOff == srcEnd) {
+				// last sequence has no match
+				break;
+			}
+
+			if (srcEnd - sOff < 2) {
+				throw corrupt();
+			}
+			final int matchOffset = (src[sOff] & 0xff) | (src[sOff + 1] & 0xff) << 8;
+			sOff += 2;
+			if (matchOffset == 0 || matchOffset > dOff - dstOff) {
+				throw corrupt();
+			}
+
+			int matchLen = token & RUN_MASK;
+			if (matchLen == RUN_MASK) {
+				int b;
+				do {
+					if (sOff >= srcEnd) {
+						throw corrupt();
+					}
+					b = src[sOff++] & 0xff;
+					matchLen += b;
+				} while (b == 255);
+			}
+			matchLen += MIN_MATCH;
+			if (matchLen > dstEnd - dOff) {
+				throw corrupt();
+			}
+			final int ref = dOff - matchOffset;
+			if (matchOffset >= matchLen) {
+				System.arraycopy(dst, ref, dst, dOff, matchLen);
+			} else {
+				// overlapping copy repeats the last matchOffset bytes
+				for (int i = 0; i < matchLen; i++) {
+					dst[dOff + i] = dst[ref + i];
+				}
+			}
+			dOff += matchLen;
+		}
+		return dOff - dstOff;
+	}
+
+	private static IOException corrupt() {
+		return new IOException("Corrupt LZ4 block");
+	}
+}
@@ -0,0 +1,141 @@
+package de.mklinger.blobstore.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Input stream that provides LZ4 compressed data.
+ *
+ * <p>
+ * The input is split into blocks, which are compressed independently using
+ * the LZ4 block format, see {@link Lz4Block}. Each block is preceded by a
+ * header of two 32 bit big endian integers: the uncompressed length and the
+ * stored length. If the stored length equals the uncompressed length, the
+ * block is stored uncompressed because it did not compress. The stream ends
+ * with a single 32 bit zero.
+ * </p>
+ *
+ * <p>
+ * Like most input streams, instances are not thread-safe.
+ * </p>
+ *
+ * @author Marc Klinger - mklinger[at]mklinger[dot]de
+ */
+public class Lz4BlockCompressingInputStream extends InputStream {
+	public static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+	public static final int MAX_BLOCK_SIZE = 4 * 1024 * 1024;
+
+	static final int BLOCK_HEADER_LENGTH = 8;
+	static final int END_MARKER_LENGTH = 4;
+
+	private final InputStream in;
+	private final byte[] inBuf;
+	private final byte[] outBuf;
+	private final int[] hashTable;
+	private final byte[] singleByteBuf;
+	private int outPos;
+	private int outLimit;
+	private boolean done;
+	private boolean closed;
+
+	public Lz4BlockCompressingInputStream(final InputStream in) {
+		this(in, DEFAULT_BLOCK_SIZE);
+	}
+
+	/**
+	 * @param blockSize Maximum number of uncompressed bytes per block, up to
+	 *        {@value #MAX_BLOCK_SIZE}
+	 */
+	public Lz4BlockCompressingInputStream(final InputStream in, final int blockSize) {
+		if (in == null) {
+			throw new NullPointerException();
+		}
+		if (blockSize <= 0 || blockSize > MAX_BLOCK_SIZE) {
+			throw new IllegalArgumentException("Invalid block size: " + blockSize);
+		}
+		this.in = in;
+		this.inBuf = new byte[blockSize];
+		this.outBuf = new byte[BLOCK_HEADER_LENGTH + Lz4Block.maxCompressedLength(blockSize)];
+		this.hashTable = new int[Lz4Block.HASH_TABLE_SIZE];
+		this.singleByteBuf = new byte[1];
+	}
+
+	@Override
+	public int read() throws IOException {
+		final int n = read(singleByteBuf, 0, 1);
+		if (n == -1) {
+			return -1;
+		}
+		return singleByteBuf[0] & 0xff;
+	}
+
+	@Override
+	public int read(final byte[] target, final int offset, final int len) throws IOException {
+		if (target == null) {
+			throw new NullPointerException();
+		} else if (offset < 0 || len < 0 || len > target.length - offset) {
+			throw new IndexOutOfBoundsException();
+		} else if (len == 0) {
+			return 0;
+		}
+		if (closed) {
+			throw new IOException("Stream closed");
+		}
+		while (outPos == outLimit) {
+			if (done) {
+				return -1;
+			}
+			nextBlock();
+		}
+		final int n = Math.min(len, outLimit - outPos);
+		System.arraycopy(outBuf, outPos, target, offset, n);
+		outPos += n;
+		return n;
+	}
+
+	private void nextBlock() throws IOException {
+		final int length = readBlock();
+		outPos = 0;
+		if (length == 0) {
+			writeIntBE(0, 0);
+			outLimit = END_MARKER_LENGTH;
+			done = true;
+			return;
+		}
+		int storedLength = Lz4Block.compress(inBuf, 0, length, outBuf, BLOCK_HEADER_LENGTH, hashTable);
+		if (storedLength >= length) {
+			System.arraycopy(inBuf, 0, outBuf, BLOCK_HEADER_LENGTH, length);
+			storedLength = length;
+		}
+		writeIntBE(length, 0);
+		writeIntBE(storedLength, 4);
+		outLimit = BLOCK_HEADER_LENGTH + storedLength;
+	}
+
+	private int readBlock() throws IOException {
+		int length = 0;
+		while (length < inBuf.length) {
+			final int n = in.read(inBuf, length, inBuf.length - length);
+			if (n == -1) {
+				break;
+			}
+			length += n;
+		}
+		return length;
+	}
+
+	private void writeIntBE(final int value, final int pos) {
+		outBuf[pos] = (byte)(value >>> 24);
+		outBuf[pos + 1] = (byte)(value >>> 16);
+		outBuf[pos + 2] = (byte)(value >>> 8);
+		outBuf[pos + 3] = (byte)value;
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (!closed) {
+			closed = true;
+			in.close();
+		}
+	}
+}
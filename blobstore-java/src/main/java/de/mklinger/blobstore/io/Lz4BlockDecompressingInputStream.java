@@ -0,0 +1,141 @@
+package de.mklinger.blobstore.io;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Input stream that decompresses data written by
+ * {@link Lz4BlockCompressingInputStream}.
+ *
+ * <p>
+ * Like most input streams, instances are not thread-safe.
+ * </p>
+ *
+ * @author Marc Klinger - mklinger[at]mklinger[dot]de
+ */
+public class Lz4BlockDecompressingInputStream extends InputStream {
+	private final InputStream in;
+	private final byte[] headerBuf;
+	private final byte[] singleByteBuf;
+	private byte[] compressedBuf;
+	private byte[] buf;
+	private int pos;
+	private int limit;
+	private boolean done;
+	private boolean closed;
+
+	public Lz4BlockDecompressingInputStream(final InputStream in) {
+		if (in == null) {
+			throw new NullPointerException();
+		}
+		this.in = in;
+		this.headerBuf = new byte[Lz4BlockCompressingInputStream.BLOCK_HEADER_LENGTH];
+		this.singleByteBuf = new byte[1];
+		this.compressedBuf = new byte[0];
+		this.buf = new byte[0];
+	}
+
+	@Override
+	public int read() throws IOException {
+		final int n = read(singleByteBuf, 0, 1);
+		if (n == -1) {
+			return -1;
+		}
+		return singleByteBuf[0] & 0xff;
+	}
+
+	@Override
+	public int read(final byte[] target, final int offset, final int len) throws IOException {
+		if (target == null) {
+			throw new NullPointerException();
+		} else if (offset < 0 || len < 0 || len > target.length - offset) {
+			throw new IndexOutOfBoundsException();
+		} else if (len == 0) {
+			return 0;
+		}
+		if (closed) {
+			throw new IOException("Stream closed");
+		}
+		if (pos == limit) {
+			if (done) {
+				return -1;
+			}
+			nextBlock();
+			if (done) {
+				return -1;
+			}
+		}
+		final int n = Math.min(len, limit - pos);
+		System.arraycopy(buf, pos, target, offset, n);
+		pos += n;
+		return n;
+	}
+
+	@Override
+	public int available() throws IOException {
+		if (closed) {
+			throw new IOException("Stream closed");
+		}
+		return limit - pos;
+	}
+
+	private void nextBlock() throws IOException {
+		readFully(headerBuf, 0, Lz4BlockCompressingInputStream.END_MARKER_LENGTH);
+		final int length = readIntBE(headerBuf, 0);
+		if (length == 0) {
+			done = true;
+			pos = 0;
+			limit = 0;
+			return;
+		}
+		readFully(headerBuf, 4, 4);
+		final int storedLength = readIntBE(headerBuf, 4);
+		if (length < 0 || length > Lz4BlockCompressingInputStream.MAX_BLOCK_SIZE || storedLength <= 0 || storedLength > Lz4Block.maxCompressedLength(length)) {
+			throw new IOException("Corrupt LZ4 block header");
+		}
+		if (buf.length < length) {
+			buf = new byte[length];
+		}
+		if (storedLength == length) {
+			readFully(buf, 0, length);
+		} else {
+			if (compressedBuf.length < storedLength) {
+				compressedBuf = new byte[storedLength];
+			}
+			readFully(compressedBuf, 0, storedLength);
+			final int n = Lz4Block.decompress(compressedBuf, 0, storedLength, buf, 0, length);
+			if (n != length) {
+				throw new IOException("Corrupt LZ4 block");
+			}
+		}
+		pos = 0;
+		limit = length;
+	}
+
+	private void readFully(final byte[] b, final int off, final int len) throws IOException {
+		int total = 0;
+		while (total < len) {
+			final int n = in.read(b, off + total, len - total);
+			if (n == -1) {
+				throw new EOFException("Unexpected end of LZ4 input stream");
+			}
+			total += n;
+		}
+	}
+
+	private static int readIntBE(final byte[] b, final int off) {
+		return (b[off] & 0xff) << 24
+				| (b[off + 1] & 0xff) << 16
+				| (b[off + 2] & 0xff) << 8
+				| (b[off + 3] & 0xff);
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (!closed) {
+			closed = true;
+			in.close();
+		}
+	}
+}
@@ -0,0 +1,130 @@
+package de.mklinger.blobstore.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Output stream writing LZ4 compressed data in the format of
+ * {@link Lz4BlockCompressingInputStream}, to be read by
+ * {@link Lz4BlockDecompressingInputStream}.
+ *
+ * <p>
+ * Data is buffered until a block is full. {@link #flush()} writes the
+ * current block even if it is not full. Closing the stream writes the end
+ * marker and closes the underlying stream.
+ * </p>
+ *
+ * <p>
+ * Like most output streams, instances are not thread-safe.
+ * </p>
+ *
+ * @author Marc Klinger - mklinger[at]mklinger[dot]de
+ */
+public class Lz4BlockOutputStream extends OutputStream {
+	private final OutputStream out;
+	private final byte[] buf;
+	private final byte[] outBuf;
+	private final int[] hashTable;
+	private int count;
+	private boolean closed;
+
+	public Lz4BlockOutputStream(final OutputStream out) {
+		this(out, Lz4BlockCompressingInputStream.DEFAULT_BLOCK_SIZE);
+	}
+
+	/**
+	 * @param blockSize Maximum number of uncompressed bytes per block, up to
+	 *        {@value Lz4BlockCompressingInputStream#MAX_BLOCK_SIZE}
+	 */
+	public Lz4BlockOutputStream(final OutputStream out, final int blockSize) {
+		if (out == null) {
+			throw new NullPointerException();
+		}
+		if (blockSize <= 0 || blockSize > Lz4BlockCompressingInputStream.MAX_BLOCK_SIZE) {
+			throw new IllegalArgumentException("Invalid block size: " + blockSize);
+		}
+		this.out = out;
+		this.buf = new byte[blockSize];
+		this.outBuf = new byte[Lz4BlockCompressingInputStream.BLOCK_HEADER_LENGTH + Lz4Block.maxCompressedLength(blockSize)];
+		this.hashTable = new int[Lz4Block.HASH_TABLE_SIZE];
+	}
+
+	@Override
+	public void write(final int b) throws IOException {
+		ensureOpen();
+		if (count == buf.length) {
+			writeBlock();
+		}
+		buf[count++] = (byte)b;
+	}
+
+	@Override
+	public void write(final byte[] b, final int off, final int len) throws IOException {
+		if (b == null) {
+			throw new NullPointerException();
+		} else if (off < 0 || len < 0 || len > b.length - off) {
+			throw new IndexOutOfBoundsException();
+		}
+		ensureOpen();
+		int done = 0;
+		while (done < len) {
+			if (count == buf.length) {
+				writeBlock();
+			}
+			final int n = Math.min(len - done, buf.length - count);
+			System.arraycopy(b, off + done, buf, count, n);
+			count += n;
+			done += n;
+		}
+	}
+
+	private void writeBlock() throws IOException {
+		if (count == 0) {
+			return;
+		}
+		final int headerLength = Lz4BlockCompressingInputStream.BLOCK_HEADER_LENGTH;
+		int storedLength = Lz4Block.compress(buf, 0, count, outBuf, headerLength, hashTable);
+		if (storedLength >= count) {
+			System.arraycopy(buf, 0, outBuf, headerLength, count);
+			storedLength = count;
+		}
+		writeIntBE(count, 0);
+		writeIntBE(storedLength, 4);
+		out.write(outBuf, 0, headerLength + storedLength);
+		count = 0;
+	}
+
+	private void writeIntBE(final int value, final int pos) {
+		outBuf[pos] = (byte)(value >>> 24);
+		outBuf[pos + 1] = (byte)(value >>> 16);
+		outBuf[pos + 2] = (byte)(value >>> 8);
+		outBuf[pos + 3] = (byte)value;
+	}
+
+	private void ensureOpen() throws IOException {
+		if (closed) {
+			throw new IOException("Stream closed");
+		}
+	}
+
+	@Override
+	public void flush() throws IOException {
+		ensureOpen();
+		writeBlock();
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (!closed) {
+			closed = true;
+			try {
+				writeBlock();
+				writeIntBE(0, 0);
+				out.write(outBuf, 0, Lz4BlockCompressingInputStream.END_MARKER_LENGTH);
+			} finally {
+				out.close();
+			}
+		}
+	}
+}
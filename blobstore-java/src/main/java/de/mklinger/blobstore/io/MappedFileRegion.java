@@ -0,0 +1,151 @@
+package de.mklinger.blobstore.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+/**
+ * Read-only memory mapped region of a file. Regions larger than what fits
+ * into a single {@link MappedByteBuffer} are mapped in multiple chunks.
+ * All positions are relative to the start of the region.
+ *
+ * <p>
+ * Instances are thread-safe. The mapping stays valid after the channel used
+ * to create it has been closed and is released when the instance is garbage
+ * collected.
+ * </p>
+ */
+public class MappedFileRegion {
+	static final int DEFAULT_CHUNK_SIZE = 1 << 30;
+
+	private final long size;
+	private final int chunkSize;
+	private final MappedByteBuffer[] chunks;
+
+	public MappedFileRegion(final FileChannel channel, final long offset, final long size) throws IOException {
+		this(channel, offset, size, DEFAULT_CHUNK_SIZE);
+	}
+
+	// package protected for tests
+	MappedFileRegion(final FileChannel channel, final long offset, final long size, final int chunkSize) throws IOException {
+		if (offset < 0 || size < 0 || chunkSize <= 0) {
+			throw new IllegalArgumentException();
+		}
+		this.size = size;
+		this.chunkSize = chunkSize;
+		final long chunkCount = (size + chunkSize - 1) / chunkSize;
+		if (chunkCount > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Region too large: " + size);
+		}
+		this.chunks = new MappedByteBuffer[(int)chunkCount];
+		for (int i = 0; i < chunks.length; i++) {
+			final long chunkOffset = (long)i * chunkSize;
+			final long chunkLength = Math.min(chunkSize, size - chunkOffset);
+			chunks[i] = channel.map(MapMode.READ_ONLY, offset + chunkOffset, chunkLength);
+		}
+	}
+
+	public long size() {
+		return size;
+	}
+
+	public byte get(final long position) {
+		if (position < 0 || position >= size) {
+			throw new IndexOutOfBoundsException("Position " + position + " out of region of size " + size);
+		}
+		return chunks[(int)(position / chunkSize)].get((int)(position % chunkSize));
+	}
+
+	/**
+	 * Copy bytes starting at the given position into the given array.
+	 * @return The number of bytes copied, or -1 if position is at or behind
+	 *         the end of the region.
+	 */
+	public int get(final long position, final byte[] dst, final int off, final int len) {
+		if (off < 0 || len < 0 || len > dst.length - off || position < 0) {
+			throw new IndexOutOfBoundsException();
+		}
+		if (position >= size) {
+			return -1;
+		}
+		final int count = (int)Math.min(len, size - position);
+		long pos = position;
+		int copied = 0;
+		while (copied < count) {
+			final int chunkIdx = (int)(pos / chunkSize);
+			final int chunkPos = (int)(pos % chunkSize);
+			final ByteBuffer chunk = chunks[chunkIdx].duplicate();
+			final int n = Math.min(count - copied, chunk.limit() - chunkPos);
+			chunk.position(chunkPos);
+			chunk.get(dst, off + copied, n);
+			copied += n;
+			pos += n;
+		}
+		return count;
+	}
+
+	/**
+	 * Get a new input stream reading the given range of this region.
+	 * The returned stream is not thread-safe.
+	 */
+	public InputStream newInputStream(final long position, final long length) {
+		if (position < 0 || length < 0 || position + length > size) {
+			throw new IndexOutOfBoundsException();
+		}
+		return new RegionInputStream(position, position + length);
+	}
+
+	private class RegionInputStream extends InputStream {
+		private long pos;
+		private final long end;
+
+		public RegionInputStream(final long pos, final long end) {
+			this.pos = pos;
+			this.end = end;
+		}
+
+		@Override
+		public int read() {
+			if (pos >= end) {
+				return -1;
+			}
+			final byte b = get(pos);
+			pos++;
+			return b & 0xff;
+		}
+
+		@Override
+		public int read(final byte[] b, final int off, final int len) {
+			if (off < 0 || len < 0 || len > b.length - off) {
+				throw new IndexOutOfBoundsException();
+			}
+			if (len == 0) {
+				return 0;
+			}
+			if (pos >= end) {
+				return -1;
+			}
+			final int n = get(pos, b, off, (int)Math.min(len, end - pos));
+			pos += n;
+			return n;
+		}
+
+		@Override
+		public long skip(final long n) {
+			if (n <= 0) {
+				return 0;
+			}
+			final long skipped = Math.min(n, end - pos);
+			pos += skipped;
+			return skipped;
+		}
+
+		@Override
+		public int available() {
+			return (int)Math.min(Integer.MAX_VALUE, end - pos);
+		}
+	}
+}
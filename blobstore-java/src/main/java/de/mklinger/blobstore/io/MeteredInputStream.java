@@ -0,0 +1,53 @@
+package de.mklinger.blobstore.io;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.LongConsumer;
+
+/**
+ * Input stream counting the bytes read. Skipped bytes are not counted. The
+ * count is reported once, when the stream is closed.
+ */
+public class MeteredInputStream extends FilterInputStream {
+	private final LongConsumer onClose;
+	private long count;
+	private boolean closed;
+
+	public MeteredInputStream(final InputStream in, final LongConsumer onClose) {
+		super(in);
+		this.onClose = onClose;
+	}
+
+	@Override
+	public int read() throws IOException {
+		final int b = super.read();
+		if (b != -1) {
+			count++;
+		}
+		return b;
+	}
+
+	@Override
+	public int read(final byte[] b, final int off, final int len) throws IOException {
+		final int n = super.read(b, off, len);
+		if (n > 0) {
+			count += n;
+		}
+		return n;
+	}
+
+	@Override
+	public boolean markSupported() {
+		return false;
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (!closed) {
+			closed = true;
+			onClose.accept(count);
+		}
+		super.close();
+	}
+}
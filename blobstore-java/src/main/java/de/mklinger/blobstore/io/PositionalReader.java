@@ -0,0 +1,17 @@
+package de.mklinger.blobstore.io;
+
+import java.io.IOException;
+
+/**
+ * Source of bytes that can be read at arbitrary positions without any
+ * shared position state.
+ */
+@FunctionalInterface
+public interface PositionalReader {
+	/**
+	 * Read up to len bytes starting at the given position.
+	 * @return The number of bytes read, or -1 if position is at or behind the
+	 *         end of the source.
+	 */
+	int read(long position, byte[] b, int off, int len) throws IOException;
+}
@@ -0,0 +1,543 @@
+package de.mklinger.blobstore.io;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
+
+/**
+ * Merges line files, each sorted by a key derived from the lines, into one
+ * sorted sequence of lines. Files are LZ4 compressed, see
+ * {@link Lz4BlockOutputStream}.
+ *
+ * <p>
+ * The key of each line is computed once when the line is read, and the
+ * merge uses a loser tree, so each merged line costs about log2(k) key
+ * comparisons for k files. Lines with equal keys are merged in file order.
+ * </p>
+ *
+ * <p>
+ * With an executor, lines are read and keys are computed ahead in the
+ * background, and more than the maximum merge width files are first merged
+ * in parallel groups to intermediate files in the directory of the input
+ * files.
+ * </p>
+ *
+ * <p>
+ * Input files are deleted after they are merged successfully.
+ * </p>
+ *
+ * @author Marc Klinger - mklinger[at]mklinger[dot]de
+ */
+public class SortedChunkMerger {
+	public static final int DEFAULT_BUFFER_SIZE = 16 * 1024;
+	public static final int DEFAULT_MAX_MERGE_WIDTH = 64;
+	private static final int PREFETCH_BATCH_SIZE = 512;
+	private static final int PREFETCH_BATCHES = 2;
+
+	/**
+	 * Receiver for merged lines.
+	 */
+	@FunctionalInterface
+	public interface KeyedLineWriter {
+		/**
+		 * @param key The key computed for the line
+		 */
+		void write(String line, String key) throws IOException;
+	}
+
+	private final Function<String, String> keyFunction;
+	private final Charset charset;
+	private final Executor executor;
+	private final int bufferSize;
+	private final int maxMergeWidth;
+
+	/**
+	 * @param keyFunction Function computing the sort key of a line
+	 * @param executor Executor for prefetching and parallel merges, may be
+	 *        <code>null</code> to merge in the calling thread only.
+	 */
+	public SortedChunkMerger(final Function<String, String> keyFunction, final Charset charset, final Executor executor) {
+		this(keyFunction, charset, executor, DEFAULT_BUFFER_SIZE, DEFAULT_MAX_MERGE_WIDTH);
+	}
+
+	/**
+	 * @param keyFunction Function computing the sort key of a line
+	 * @param executor Executor for prefetching and parallel merges, may be
+	 *        <code>null</code> to merge in the calling thread only.
+	 * @param bufferSize Size of read buffers and compressed blocks per file
+	 * @param maxMergeWidth Maximum number of files to merge at once when an
+	 *        executor is given
+	 */
+	public SortedChunkMerger(final Function<String, String> keyFunction, final Charset charset, final Executor executor, final int bufferSize, final int maxMergeWidth) {
+		if (bufferSize <= 0) {
+			throw new IllegalArgumentException("Invalid buffer size: " + bufferSize);
+		}
+		if (maxMergeWidth < 2) {
+			throw new IllegalArgumentException("Invalid max merge width: " + maxMergeWidth);
+		}
+		this.keyFunction = keyFunction;
+		this.charset = charset;
+		this.executor = executor;
+		this.bufferSize = bufferSize;
+		this.maxMergeWidth = maxMergeWidth;
+	}
+
+	/**
+	 * Merge the given files.
+	 * @return The number of lines merged
+	 */
+	public long merge(final List<File> files, final KeyedLineWriter lineWriter) throws IOException {
+		List<File> toMerge = files;
+		try {
+			while (executor != null && toMerge.size() > maxMergeWidth) {
+				final List<File> merged = mergeGroups(toMerge);
+				if (toMerge != files) {
+					delete(toMerge);
+				}
+				toMerge = merged;
+			}
+			final long count = mergeFiles(toMerge, lineWriter, executor);
+			delete(files);
+			return count;
+		} finally {
+			if (toMerge != files) {
+				delete(toMerge);
+			}
+		}
+	}
+
+	private List<File> mergeGroups(final List<File> files) throws IOException {
+		final int groupCount = (files.size() + maxMergeWidth - 1) / maxMergeWidth;
+		final List<CompletableFuture<File>> futures = new ArrayList<>(groupCount);
+		for (int i = 0; i < groupCount; i++) {
+			final List<File> group = files.subList(files.size() * i / groupCount, files.size() * (i + 1) / groupCount);
+			futures.add(CompletableFuture.supplyAsync(() -> {
+				try {
+					return mergeToTempFile(group);
+				} catch (final IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}, executor));
+		}
+
+		final List<File> merged = new ArrayList<>(groupCount);
+		Throwable failure = null;
+		for (final CompletableFuture<File> future : futures) {
+			try {
+				merged.add(future.join());
+			} catch (final CompletionException e) {
+				final Throwable cause = e.getCause() instanceof UncheckedIOException ? e.getCause().getCause() : e.getCause();
+				if (failure == null) {
+					failure = cause;
+				} else {
+					failure.addSuppressed(cause);
+				}
+			}
+		}
+		if (failure != null) {
+			delete(merged);
+			if (failure instanceof IOException) {
+				throw (IOException) failure;
+			}
+			if (failure instanceof RuntimeException) {
+				throw (RuntimeException) failure;
+			}
+			if (failure instanceof Error) {
+				throw (Error) failure;
+			}
+			throw new IOException(failure);
+		}
+		return merged;
+	}
+
+	/**
+	 * Merge the given files to a new file in the directory of the first file,
+	 * in the calling thread only. Input files are deleted after they are
+	 * merged successfully. Other than {@link #merge(List, KeyedLineWriter)},
+	 * this method never waits for executor tasks, so it may be called from
+	 * tasks of the executor.
+	 * @return The merged file
+	 */
+	public File mergeToFile(final List<File> files) throws IOException {
+		final File mergedFile = mergeToTempFile(files);
+		delete(files);
+		return mergedFile;
+	}
+
+	private File mergeToTempFile(final List<File> files) throws IOException {
+		final File mergedFile = File.createTempFile("merged", ".idxchunk", files.get(0).getAbsoluteFile().getParentFile());
+		try (Writer out = newWriter(mergedFile)) {
+			// no prefetching, group merges already run in parallel and must
+			// not wait for other tasks of the executor
+			mergeFiles(files, (line, key) -> {
+				out.write(line);
+				out.write('\n');
+			}, null);
+		} catch (final IOException | RuntimeException | Error e) {
+			mergedFile.delete();
+			throw e;
+		}
+		return mergedFile;
+	}
+
+	private long mergeFiles(final List<File> files, final KeyedLineWriter lineWriter, final Executor prefetchExecutor) throws IOException {
+		if (files.isEmpty()) {
+			return 0;
+		}
+		final Source[] sources = new Source[files.size()];
+		Throwable failure = null;
+		try {
+			for (int i = 0; i < sources.length; i++) {
+				final BufferedReader reader = newReader(files.get(i));
+				if (prefetchExecutor == null) {
+					sources[i] = new ReaderSource(reader);
+				} else {
+					sources[i] = new PrefetchingSource(reader, prefetchExecutor);
+				}
+			}
+			for (final Source source : sources) {
+				source.advance();
+			}
+
+			final LoserTree tree = new LoserTree(sources);
+			long count = 0;
+			while (true) {
+				final int winner = tree.winner();
+				final Source source = sources[winner];
+				if (source.key == null) {
+					return count;
+				}
+				lineWriter.write(source.line, source.key);
+				count++;
+				source.advance();
+				tree.replay(winner);
+			}
+		} catch (final IOException | RuntimeException | Error e) {
+			failure = e;
+			throw e;
+		} finally {
+			closeAll(sources, failure);
+		}
+	}
+
+	private static void closeAll(final Source[] sources, final Throwable failure) throws IOException {
+		IOException closeFailure = null;
+		for (final Source source : sources) {
+			if (source == null) {
+				continue;
+			}
+			try {
+				source.close();
+			} catch (final IOException e) {
+				if (failure != null) {
+					failure.addSuppressed(e);
+				} else if (closeFailure == null) {
+					closeFailure = e;
+				} else {
+					closeFailure.addSuppressed(e);
+				}
+			}
+		}
+		if (closeFailure != null) {
+			throw closeFailure;
+		}
+	}
+
+	/**
+	 * Create a writer for a line file to be merged.
+	 */
+	public Writer newWriter(final File file) throws IOException {
+		return new OutputStreamWriter(
+				new Lz4BlockOutputStream(
+						new FileOutputStream(file), bufferSize),
+				charset);
+	}
+
+	private BufferedReader newReader(final File file) throws IOException {
+		return new BufferedReader(
+				new InputStreamReader(
+						new Lz4BlockDecompressingInputStream(
+								new FileInputStream(file)),
+						charset),
+				bufferSize);
+	}
+
+	private static void delete(final List<File> files) {
+		for (final File file : files) {
+			file.delete();
+		}
+	}
+
+	/**
+	 * Tournament tree holding the losers of each match in inner nodes and the
+	 * overall winner at index 0. Exhausted sources lose against all others.
+	 */
+	private static class LoserTree {
+		private final Source[] sources;
+		private final int[] tree;
+
+		public LoserTree(final Source[] sources) {
+			this.sources = sources;
+			this.tree = new int[Math.max(1, sources.length)];
+			if (sources.length > 1) {
+				tree[0] = init(1);
+			}
+		}
+
+		private int init(final int node) {
+			if (node >= sources.length) {
+				return node - sources.length;
+			}
+			final int left = init(node * 2);
+			final int right = init(node * 2 + 1);
+			if (less(left, right)) {
+				tree[node] = right;
+				return left;
+			} else {
+				tree[node] = left;
+				return right;
+			}
+		}
+
+		public int winner() {
+			return tree[0];
+		}
+
+		/**
+		 * Restore the tree after the winner advanced to its next line.
+		 */
+		public void replay(final int winner) {
+			int w = winner;
+			for (int node = (w + sources.length) >>> 1; node > 0; node >>>= 1) {
+				if (less(tree[node], w)) {
+					final int loser = w;
+					w = tree[node];
+					tree[node] = loser;
+				}
+			}
+			tree[0] = w;
+		}
+
+		private boolean less(final int a, final int b) {
+			final String keyA = sources[a].key;
+			final String keyB = sources[b].key;
+			if (keyA == null) {
+				return false;
+			}
+			if (keyB == null) {
+				return true;
+			}
+			final int cmp = keyA.compareTo(keyB);
+			return cmp < 0 || (cmp == 0 && a < b);
+		}
+	}
+
+	private abstract static class Source implements Closeable {
+		/** Current line, <code>null</code> when exhausted. */
+		protected String line;
+		/** Key of the current line, <code>null</code> when exhausted. */
+		protected String key;
+
+		public abstract void advance() throws IOException;
+	}
+
+	private class ReaderSource extends Source {
+		private final BufferedReader reader;
+
+		public ReaderSource(final BufferedReader reader) {
+			this.reader = reader;
+		}
+
+		@Override
+		public void advance() throws IOException {
+			line = reader.readLine();
+			key = line == null ? null : keyFunction.apply(line);
+		}
+
+		@Override
+		public void close() throws IOException {
+			reader.close();
+		}
+	}
+
+	private static class Batch {
+		private final String[] lines;
+		private final String[] keys;
+		private final int count;
+		private final Throwable failure;
+
+		public Batch(final String[] lines, final String[] keys, final int count) {
+			this.lines = lines;
+			this.keys = keys;
+			this.count = count;
+			this.failure = null;
+		}
+
+		public Batch(final Throwable failure) {
+			this.lines = null;
+			this.keys = null;
+			this.count = 0;
+			this.failure = failure;
+		}
+
+		/** A batch with less lines than the batch size is the last one. */
+		public boolean isLast() {
+			return count < PREFETCH_BATCH_SIZE;
+		}
+	}
+
+	/**
+	 * Source reading batches of lines in executor tasks. At most one read
+	 * task per source is in flight at a time, and tasks never block waiting
+	 * for the consumer, so a bounded executor can not dead lock.
+	 */
+	private class PrefetchingSource extends Source {
+		private final BufferedReader reader;
+		private final Executor executor;
+		/** Guarded by this. */
+		private final ArrayDeque<Batch> ready = new ArrayDeque<>(PREFETCH_BATCHES);
+		/** Guarded by this. */
+		private boolean reading;
+		/** Guarded by this. */
+		private boolean lastRead;
+		/** Guarded by this. */
+		private boolean closed;
+		private Batch current;
+		private int pos;
+
+		public PrefetchingSource(final BufferedReader reader, final Executor executor) {
+			this.reader = reader;
+			this.executor = executor;
+			synchronized (this) {
+				scheduleRead();
+			}
+		}
+
+		private void scheduleRead() {
+			if (reading || lastRead || closed || ready.size() >= PREFETCH_BATCHES) {
+				return;
+			}
+			reading = true;
+			try {
+				executor.execute(this::readBatch);
+			} catch (final RejectedExecutionException e) {
+				reading = false;
+				lastRead = true;
+				ready.add(new Batch(e));
+			}
+		}
+
+		private void readBatch() {
+			Batch batch;
+			try {
+				final String[] lines = new String[PREFETCH_BATCH_SIZE];
+				final String[] keys = new String[PREFETCH_BATCH_SIZE];
+				int count = 0;
+				String l;
+				while (count < lines.length && (l = reader.readLine()) != null) {
+					lines[count] = l;
+					keys[count] = keyFunction.apply(l);
+					count++;
+				}
+				batch = new Batch(lines, keys, count);
+			} catch (final Throwable e) {
+				batch = new Batch(e);
+			}
+			synchronized (this) {
+				reading = false;
+				if (batch.failure != null || batch.isLast()) {
+					lastRead = true;
+				}
+				ready.add(batch);
+				scheduleRead();
+				notifyAll();
+			}
+		}
+
+		@Override
+		public void advance() throws IOException {
+			if (current != null && pos < current.count) {
+				setCurrent();
+				return;
+			}
+			if (current != null && current.isLast()) {
+				line = null;
+				key = null;
+				return;
+			}
+			synchronized (this) {
+				while (ready.isEmpty()) {
+					try {
+						wait();
+					} catch (final InterruptedException e) {
+						Thread.currentThread().interrupt();
+						throw new IOException("Interrupted while waiting for lines", e);
+					}
+				}
+				current = ready.poll();
+				pos = 0;
+				scheduleRead();
+			}
+			if (current.failure != null) {
+				final Throwable failure = current.failure;
+				if (failure instanceof IOException) {
+					throw (IOException) failure;
+				}
+				if (failure instanceof RuntimeException) {
+					throw (RuntimeException) failure;
+				}
+				if (failure instanceof Error) {
+					throw (Error) failure;
+				}
+				throw new IOException(failure);
+			}
+			if (current.count == 0) {
+				line = null;
+				key = null;
+				return;
+			}
+			setCurrent();
+		}
+
+		private void setCurrent() {
+			line = current.lines[pos];
+			key = current.keys[pos];
+			pos++;
+		}
+
+		@Override
+		public void close() throws IOException {
+			synchronized (this) {
+				closed = true;
+				boolean interrupted = false;
+				while (reading) {
+					try {
+						wait();
+					} catch (final InterruptedException e) {
+						interrupted = true;
+					}
+				}
+				if (interrupted) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			reader.close();
+		}
+	}
+}
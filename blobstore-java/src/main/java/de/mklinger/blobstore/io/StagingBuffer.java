@@ -0,0 +1,108 @@
+package de.mklinger.blobstore.io;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import de.mklinger.micro.streamcopy.StreamCopy;
+
+/**
+ * Buffer to fully read an entry before it is appended to a blob file. Data
+ * is kept in memory up to a maximum size, larger data is spilled to a
+ * temporary file.
+ *
+ * <p>
+ * Instances are not thread-safe and are meant to be reused for one entry
+ * after another.
+ * </p>
+ */
+public class StagingBuffer {
+	private static final int INITIAL_SIZE = 8192;
+
+	private final int maxSizeInMemory;
+	private final File tmpDirectory;
+	private byte[] buf;
+	private int count;
+	/** null if all data is in memory. */
+	private File tmpFile;
+	private long tmpFileLength;
+
+	/**
+	 * @param maxSizeInMemory Maximum number of bytes to keep in memory
+	 * @param tmpDirectory Directory for temporary files, <code>null</code> for
+	 *        the default temporary directory
+	 */
+	public StagingBuffer(final int maxSizeInMemory, final File tmpDirectory) {
+		this.maxSizeInMemory = maxSizeInMemory;
+		this.tmpDirectory = tmpDirectory;
+		this.buf = new byte[Math.min(INITIAL_SIZE, Math.max(1, maxSizeInMemory))];
+	}
+
+	/**
+	 * Read the given stream fully into this buffer, replacing any previous
+	 * contents.
+	 */
+	public void stage(final InputStream in) throws IOException {
+		reset();
+		int n;
+		while ((n = in.read(buf, count, buf.length - count)) != -1) {
+			count += n;
+			if (count == buf.length) {
+				if (buf.length >= maxSizeInMemory) {
+					spill(in);
+					return;
+				}
+				buf = Arrays.copyOf(buf, (int)Math.min(maxSizeInMemory, buf.length * 2L));
+			}
+		}
+	}
+
+	private void spill(final InputStream in) throws IOException {
+		tmpFile = File.createTempFile("blob", ".staging", tmpDirectory);
+		try (OutputStream out = new BufferedOutputStream(new FileOutputStream(tmpFile))) {
+			out.write(buf, 0, count);
+			StreamCopy.copy(in, out);
+		} catch (final IOException | RuntimeException e) {
+			reset();
+			throw e;
+		}
+		tmpFileLength = tmpFile.length();
+		count = 0;
+	}
+
+	public long length() {
+		return tmpFile == null ? count : tmpFileLength;
+	}
+
+	/**
+	 * Write the staged data to the given stream.
+	 */
+	public void writeTo(final OutputStream out) throws IOException {
+		if (tmpFile == null) {
+			out.write(buf, 0, count);
+		} else {
+			try (InputStream in = new FileInputStream(tmpFile)) {
+				StreamCopy.copy(in, out);
+			}
+		}
+	}
+
+	/**
+	 * Discard the staged data and delete the temporary file, if any.
+	 */
+	public void reset() throws IOException {
+		count = 0;
+		if (tmpFile != null) {
+			final File f = tmpFile;
+			tmpFile = null;
+			tmpFileLength = 0;
+			Files.deleteIfExists(f.toPath());
+		}
+	}
+}
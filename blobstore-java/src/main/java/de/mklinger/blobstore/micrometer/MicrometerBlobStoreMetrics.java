@@ -0,0 +1,173 @@
+package de.mklinger.blobstore.micrometer;
+
+import java.util.concurrent.TimeUnit;
+
+import de.mklinger.blobstore.BlobStoreMetrics;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Adapter reporting metrics of readers and writers to a Micrometer
+ * {@link MeterRegistry}. Micrometer is an optional dependency and must be
+ * on the class path to use this class.
+ *
+ * <p>
+ * Meters are named <code>blobstore.*</code> and carry the given tags, e.g.
+ * to tell multiple stores apart. Latencies are recorded with percentile
+ * histograms.
+ * </p>
+ *
+ * @author Marc Klinger - mklinger[at]mklinger[dot]de
+ */
+public class MicrometerBlobStoreMetrics implements BlobStoreMetrics {
+	private final Timer lookupHits;
+	private final Timer lookupMisses;
+	private final DistributionSummary lookupProbes;
+	private final Counter positionCacheHits;
+	private final Counter positionCacheMisses;
+	private final Counter bytesRead;
+	private final Counter bytesDecoded;
+	private final Counter entriesWritten;
+	private final Counter bytesWritten;
+	private final Timer writeLockWait;
+	private final Timer indexChunkDumps;
+	private final DistributionSummary indexChunkEntries;
+	private final Timer indexChunkMerges;
+	private final DistributionSummary indexChunkMergeWidth;
+	private final Timer indexWrites;
+	private final DistributionSummary indexEntries;
+
+	public MicrometerBlobStoreMetrics(final MeterRegistry registry) {
+		this(registry, Tags.empty());
+	}
+
+	public MicrometerBlobStoreMetrics(final MeterRegistry registry, final Iterable<Tag> tags) {
+		this.lookupHits = lookupTimer(registry, tags, "hit");
+		this.lookupMisses = lookupTimer(registry, tags, "miss");
+		this.lookupProbes = DistributionSummary.builder("blobstore.reader.lookup.probes")
+				.description("Index positions read per lookup")
+				.tags(tags)
+				.register(registry);
+		this.positionCacheHits = positionCacheCounter(registry, tags, "hit");
+		this.positionCacheMisses = positionCacheCounter(registry, tags, "miss");
+		this.bytesRead = Counter.builder("blobstore.reader.bytes.read")
+				.description("Stored contents read from blob files")
+				.baseUnit("bytes")
+				.tags(tags)
+				.register(registry);
+		this.bytesDecoded = Counter.builder("blobstore.reader.bytes.decoded")
+				.description("Decoded contents read")
+				.baseUnit("bytes")
+				.tags(tags)
+				.register(registry);
+		this.entriesWritten = Counter.builder("blobstore.writer.entries")
+				.description("Entries appended to blob files")
+				.tags(tags)
+				.register(registry);
+		this.bytesWritten = Counter.builder("blobstore.writer.bytes")
+				.description("Bytes appended to blob files for entries")
+				.baseUnit("bytes")
+				.tags(tags)
+				.register(registry);
+		this.writeLockWait = Timer.builder("blobstore.writer.lock.wait")
+				.description("Wait time for the lock on the blob file output")
+				.tags(tags)
+				.publishPercentileHistogram()
+				.register(registry);
+		this.indexChunkDumps = Timer.builder("blobstore.writer.index.chunk.dump")
+				.description("Time to sort and write index chunk files")
+				.tags(tags)
+				.register(registry);
+		this.indexChunkEntries = DistributionSummary.builder("blobstore.writer.index.chunk.entries")
+				.description("Index entries per index chunk file")
+				.tags(tags)
+				.register(registry);
+		this.indexChunkMerges = Timer.builder("blobstore.writer.index.chunk.merge")
+				.description("Time to merge index chunk files in the background")
+				.tags(tags)
+				.register(registry);
+		this.indexChunkMergeWidth = DistributionSummary.builder("blobstore.writer.index.chunk.merge.width")
+				.description("Index chunk files merged at once in the background")
+				.tags(tags)
+				.register(registry);
+		this.indexWrites = Timer.builder("blobstore.writer.index.write")
+				.description("Time to write the index on close, including merging index chunk files")
+				.tags(tags)
+				.register(registry);
+		this.indexEntries = DistributionSummary.builder("blobstore.writer.index.entries")
+				.description("Index entries written on close")
+				.tags(tags)
+				.register(registry);
+	}
+
+	private static Timer lookupTimer(final MeterRegistry registry, final Iterable<Tag> tags, final String result) {
+		return Timer.builder("blobstore.reader.lookup")
+				.description("Latency of entry lookups by name")
+				.tags(tags)
+				.tag("result", result)
+				.publishPercentileHistogram()
+				.register(registry);
+	}
+
+	private static Counter positionCacheCounter(final MeterRegistry registry, final Iterable<Tag> tags, final String result) {
+		return Counter.builder("blobstore.reader.position.cache")
+				.description("Accesses of the index line cache")
+				.tags(tags)
+				.tag("result", result)
+				.register(registry);
+	}
+
+	@Override
+	public void lookup(final long nanos, final int probes, final boolean found) {
+		(found ? lookupHits : lookupMisses).record(nanos, TimeUnit.NANOSECONDS);
+		lookupProbes.record(probes);
+	}
+
+	@Override
+	public void positionCacheAccess(final boolean hit) {
+		(hit ? positionCacheHits : positionCacheMisses).increment();
+	}
+
+	@Override
+	public void bytesRead(final long bytes) {
+		bytesRead.increment(bytes);
+	}
+
+	@Override
+	public void bytesDecoded(final long bytes) {
+		bytesDecoded.increment(bytes);
+	}
+
+	@Override
+	public void entriesWritten(final int entryCount, final long bytes) {
+		entriesWritten.increment(entryCount);
+		bytesWritten.increment(bytes);
+	}
+
+	@Override
+	public void writeLockWait(final long nanos) {
+		writeLockWait.record(nanos, TimeUnit.NANOSECONDS);
+	}
+
+	@Override
+	public void indexChunkDumped(final long nanos, final int entryCount) {
+		indexChunkDumps.record(nanos, TimeUnit.NANOSECONDS);
+		indexChunkEntries.record(entryCount);
+	}
+
+	@Override
+	public void indexChunksMerged(final long nanos, final int chunkCount) {
+		indexChunkMerges.record(nanos, TimeUnit.NANOSECONDS);
+		indexChunkMergeWidth.record(chunkCount);
+	}
+
+	@Override
+	public void indexWritten(final long nanos, final long entryCount) {
+		indexWrites.record(nanos, TimeUnit.NANOSECONDS);
+		indexEntries.record(entryCount);
+	}
+}
@@ -0,0 +1,67 @@
+package de.mklinger.blobstore;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class BlobStoreWriterTest {
+	@Test
+	public void testDefaultAddBlobEntryEncoded() throws IOException {
+		final List<String> calls = new ArrayList<>();
+		final BlobStoreWriter writer = new BlobStoreWriter() {
+			@Override
+			public void addBlobEntry(final String name, final InputStream in, final String mediaType, final String encoding) {
+				calls.add("addBlobEntry " + name);
+			}
+
+			@Override
+			public void addBlobEntryGzEncoded(final String name, final InputStream nonGzIn, final String mediaType) {
+				calls.add("gz " + name + " " + mediaType);
+			}
+
+			@Override
+			public void addBlobEntryGzEncoded(final String name, final InputStream nonGzIn) {
+				calls.add("gz " + name);
+			}
+
+			@Override
+			public void addBlobEntryUnencoded(final String name, final InputStream in, final String mediaType) {
+				calls.add("unencoded " + name + " " + mediaType);
+			}
+
+			@Override
+			public void addBlobEntryUnencoded(final String name, final InputStream in) {
+				calls.add("unencoded " + name);
+			}
+
+			@Override
+			public void mergeFrom(final BlobStoreReader reader) {
+			}
+
+			@Override
+			public void close() {
+			}
+		};
+
+		final InputStream in = new ByteArrayInputStream(new byte[0]);
+		writer.addBlobEntryEncoded("a", in, "text/plain", BlobEntry.ENCODING_GZIP);
+		writer.addBlobEntryEncoded("b", in, null, BlobEntry.ENCODING_IDENTITY);
+		try {
+			writer.addBlobEntryEncoded("c", in, null, "deflate-raw");
+			fail("Expected exception");
+		} catch (final UnsupportedEncodingException e) {
+			// expected
+		}
+		assertEquals(2, calls.size());
+		assertEquals("gz a text/plain", calls.get(0));
+		assertEquals("unencoded b null", calls.get(1));
+	}
+}
@@ -3,17 +3,38 @@ package de.mklinger.blobstore;
 import static de.mklinger.blobstore.Random.getRandomInt;
 import static de.mklinger.blobstore.Random.getRandomString;
 import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPInputStream;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.junit.Rule;
 import org.junit.Test;
@@ -52,17 +73,43 @@ public class FileBlobStoreReaderTest {
 
 		}
 
-		read(testData, f, 0);
-		read(testData, f, 20);
+		read(testData, "0", FileBlobStoreReader.builder().blobFile(f).positionCacheDepth(0));
+		read(testData, "20", FileBlobStoreReader.builder().blobFile(f).positionCacheDepth(20));
+		read(testData, "20, mapped", FileBlobStoreReader.builder().blobFile(f).positionCacheDepth(20).mapped(true));
+		read(testData, "0, mapped contents", FileBlobStoreReader.builder().blobFile(f).positionCacheDepth(0).mappedContents(true));
+		read(testData, "in-memory index", FileBlobStoreReader.builder().blobFile(f).inMemoryIndex(true));
+
+		final File f2 = tmp.newFile();
+
+		try (FileBlobStoreWriter w = FileBlobStoreWriter.builder()
+				.blobFile(f2)
+				.overwrite(true)
+				.formatVersion(FileBlobStoreWriter.FORMAT_VERSION_2)
+				.build()) {
+
+			for (final Entry<String, String> e : testData.entrySet()) {
+				try (ByteArrayInputStream in = new ByteArrayInputStream(e.getValue().getBytes(UTF_8))) {
+					w.addBlobEntry(e.getKey(), in, "application/something", BlobEntry.ENCODING_IDENTITY);
+				}
+			}
+
+		}
+
+		assertTrue(f2.length() < f.length());
+
+		read(testData, "v2", FileBlobStoreReader.builder().blobFile(f2));
+		read(testData, "v2, mapped", FileBlobStoreReader.builder().blobFile(f2).mapped(true));
+		read(testData, "v2, mapped contents", FileBlobStoreReader.builder().blobFile(f2).mappedContents(true));
+		read(testData, "v2, in-memory index", FileBlobStoreReader.builder().blobFile(f2).inMemoryIndex(true));
 	}
 
-	private void read(final Map<String, String> testData, final File f, final int positionCacheDepth) throws IOException {
+	private void read(final Map<String, String> testData, final String description, final FileBlobStoreReader.Builder readerBuilder) throws IOException {
 		final int readRunCount = 3;
 		for (int i = 0; i < readRunCount; i++) {
 
 			final long start = System.currentTimeMillis();
 
-			final FileBlobStoreReader r = new FileBlobStoreReader(f, positionCacheDepth);
+			final FileBlobStoreReader r = readerBuilder.build();
 
 			for (final Entry<String, String> e : testData.entrySet()) {
 				final BlobEntry blobEntry = r.getBlobEntry(e.getKey());
@@ -77,7 +124,558 @@ public class FileBlobStoreReaderTest {
 
 			final long end = System.currentTimeMillis();
 
-			System.out.println("Time (run " + i + "@" + positionCacheDepth + "): " + (end - start) + "ms");
+			assertNull(r.getBlobEntry("doesnotexist"));
+			assertNull(r.getBlobEntryContents("doesnotexist"));
+
+			final List<String> names = new ArrayList<>(testData.keySet());
+			names.add("doesnotexist");
+			names.add("");
+			names.add("~~~");
+			final Map<String, BlobEntry> blobEntries = r.getBlobEntries(names);
+			assertEquals(testData.size(), blobEntries.size());
+			for (final String name : testData.keySet()) {
+				final BlobEntry expected = r.getBlobEntry(name);
+				final BlobEntry actual = blobEntries.get(name);
+				assertEquals(name, actual.getName());
+				assertEquals(expected.getOffset(), actual.getOffset());
+				assertEquals(expected.getLength(), actual.getLength());
+			}
+
+			final CacheStats positionCacheStats = r.getPositionCacheStats();
+			if (positionCacheStats != null) {
+				assertTrue(positionCacheStats.getHitCount() > 0);
+			}
+
+			r.close();
+
+			System.out.println("Time (run " + i + "@" + description + "): " + (end - start) + "ms");
+		}
+	}
+
+	@Test
+	public void testConcurrentReads() throws Exception {
+		final File f = tmp.newFile();
+		final int testDataCount = 500;
+		try (FileBlobStoreWriter w = FileBlobStoreWriter.builder()
+				.blobFile(f)
+				.overwrite(true)
+				.build()) {
+			for (int i = 0; i < testDataCount; i++) {
+				w.addBlobEntryGzEncoded("entry" + i, new ByteArrayInputStream(("data" + i).getBytes(UTF_8)));
+			}
+		}
+
+		try (FileBlobStoreReader r = new FileBlobStoreReader(f)) {
+			final ExecutorService executor = Executors.newFixedThreadPool(8);
+			try {
+				final List<Future<?>> futures = new ArrayList<>();
+				for (int t = 0; t < 8; t++) {
+					futures.add(executor.submit(() -> {
+						for (int i = testDataCount - 1; i >= 0; i--) {
+							try (InputStream in = r.getBlobEntryContentsDecoded("entry" + i)) {
+								assertEquals("data" + i, IOUtils.toString(in, UTF_8));
+							}
+						}
+						return null;
+					}));
+				}
+				for (final Future<?> future : futures) {
+					future.get();
+				}
+			} finally {
+				executor.shutdown();
+			}
+		}
+	}
+
+	@Test(expected = ClosedChannelException.class)
+	public void testClosed() throws IOException {
+		final File f = tmp.newFile();
+		try (FileBlobStoreWriter w = FileBlobStoreWriter.builder()
+				.blobFile(f)
+				.overwrite(true)
+				.build()) {
+			w.addBlobEntryUnencoded("entry", new ByteArrayInputStream("data".getBytes(UTF_8)));
+		}
+
+		final FileBlobStoreReader r = new FileBlobStoreReader(f);
+		r.close();
+		r.getBlobEntry("entry");
+	}
+
+	@Test
+	public void testBloomFilter() throws IOException {
+		final File f = tmp.newFile();
+		try (FileBlobStoreWriter w = FileBlobStoreWriter.builder()
+				.blobFile(f)
+				.overwrite(true)
+				.bloomFilter(true)
+				.build()) {
+			for (int i = 0; i < 1000; i++) {
+				w.addBlobEntryUnencoded("entry" + i, new ByteArrayInputStream(("data" + i).getBytes(UTF_8)));
+			}
+		}
+		final File sidecarFile = new File(f.getPath() + ".bloom");
+		assertTrue(sidecarFile.isFile());
+
+		try (FileBlobStoreReader r = new FileBlobStoreReader(f)) {
+			for (int i = 0; i < 1000; i++) {
+				assertEquals("data" + i, IOUtils.toString(r.getBlobEntryContents("entry" + i), UTF_8));
+				assertNull(r.getBlobEntry("missing" + i));
+			}
+		}
+
+		// rewrite with different contents, stale filter must not be used
+		final File sidecarCopy = tmp.newFile();
+		FileUtils.copyFile(sidecarFile, sidecarCopy);
+		try (FileBlobStoreWriter w = FileBlobStoreWriter.builder()
+				.blobFile(f)
+				.overwrite(true)
+				.build()) {
+			w.addBlobEntryUnencoded("other", new ByteArrayInputStream("other data".getBytes(UTF_8)));
+		}
+		assertFalse(sidecarFile.exists());
+		FileUtils.copyFile(sidecarCopy, sidecarFile);
+
+		try (FileBlobStoreReader r = new FileBlobStoreReader(f)) {
+			assertEquals("other data", IOUtils.toString(r.getBlobEntryContents("other"), UTF_8));
+		}
+	}
+
+	@Test
+	public void testInterruptDuringOpenStream() throws Exception {
+		final byte[] large = getRandomString(100_000).getBytes(UTF_8);
+		final File f = tmp.newFile();
+		try (FileBlobStoreWriter w = FileBlobStoreWriter.builder()
+				.blobFile(f)
+				.overwrite(true)
+				.build()) {
+			w.addBlobEntryUnencoded("large", new ByteArrayInputStream(large));
+			w.addBlobEntryUnencoded("small", new ByteArrayInputStream("small data".getBytes(UTF_8)));
+		}
+
+		try (FileBlobStoreReader r = FileBlobStoreReader.builder()
+				.blobFile(f)
+				.readBufferSize(1024)
+				.build()) {
+			final BlobEntry blobEntry = r.getBlobEntry("large");
+			try (InputStream in = r.getBlobEntryContents(blobEntry);
+					ReadableByteChannel channel = r.getBlobEntryChannel(blobEntry)) {
+				final ByteArrayOutputStream streamOut = new ByteArrayOutputStream();
+				final byte[] buf = new byte[1000];
+				streamOut.write(buf, 0, in.read(buf));
+				final ByteBuffer channelBuf = ByteBuffer.allocate(1000);
+				channel.read(channelBuf);
+
+				// read in another thread, interrupted while reading
+				final Throwable[] interruptedFailure = new Throwable[1];
+				final Thread thread = new Thread(() -> {
+					Thread.currentThread().interrupt();
+					try {
+						IOUtils.toByteArray(r.getBlobEntryContents("small"));
+					} catch (final Throwable e) {
+						interruptedFailure[0] = e;
+					}
+				});
+				thread.start();
+				thread.join();
+				assertTrue(String.valueOf(interruptedFailure[0]), interruptedFailure[0] instanceof ClosedByInterruptException);
+
+				// streams opened before keep working
+				IOUtils.copy(in, streamOut);
+				assertArrayEquals(large, streamOut.toByteArray());
+				final ByteArrayOutputStream channelOut = new ByteArrayOutputStream();
+				channelOut.write(channelBuf.array(), 0, channelBuf.position());
+				IOUtils.copy(Channels.newInputStream(channel), channelOut);
+				assertArrayEquals(large, channelOut.toByteArray());
+			}
+			assertEquals("small data", IOUtils.toString(r.getBlobEntryContents("small"), UTF_8));
+		}
+	}
+
+	@Test
+	public void testBloomFilterSameLengthRewrite() throws IOException {
+		final File f = tmp.newFile();
+		writeBloomFilterStore(f, "entry");
+		final File sidecarFile = new File(f.getPath() + ".bloom");
+		final File sidecarCopy = tmp.newFile();
+		FileUtils.copyFile(sidecarFile, sidecarCopy);
+		final long lastModified = f.lastModified();
+
+		// same length, index offset and modification time, other names
+		writeBloomFilterStore(f, "ENTRY");
+		assertTrue(f.setLastModified(lastModified));
+		FileUtils.copyFile(sidecarCopy, sidecarFile);
+
+		try (FileBlobStoreReader r = new FileBlobStoreReader(f)) {
+			for (int i = 0; i < 100; i++) {
+				assertEquals("data" + i, IOUtils.toString(r.getBlobEntryContents("ENTRY" + i), UTF_8));
+			}
+		}
+	}
+
+	@Test
+	public void testBloomFilterModified() throws IOException {
+		final File f = tmp.newFile();
+		writeBloomFilterStore(f, "entry");
+
+		final RecordingMetrics metrics = new RecordingMetrics();
+		try (FileBlobStoreReader r = FileBlobStoreReader.builder().blobFile(f).metrics(metrics).build()) {
+			assertNull(r.getBlobEntry("missing"));
+		}
+		// answered by the bloom filter
+		assertEquals(0, metrics.probes.get());
+
+		assertTrue(f.setLastModified(f.lastModified() - 10_000));
+		try (FileBlobStoreReader r = FileBlobStoreReader.builder().blobFile(f).metrics(metrics).build()) {
+			assertNull(r.getBlobEntry("missing"));
+		}
+		// filter not used, searched the index
+		assertTrue(metrics.probes.get() > 0);
+	}
+
+	private static void writeBloomFilterStore(final File f, final String namePrefix) throws IOException {
+		try (FileBlobStoreWriter w = FileBlobStoreWriter.builder()
+				.blobFile(f)
+				.overwrite(true)
+				.bloomFilter(true)
+				.build()) {
+			for (int i = 0; i < 100; i++) {
+				w.addBlobEntryUnencoded(namePrefix + i, new ByteArrayInputStream(("data" + i).getBytes(UTF_8)));
+			}
+		}
+	}
+
+	@Test
+	public void testContentCache() throws IOException {
+		final StringBuilder large = new StringBuilder();
+		for (int i = 0; i < 1000; i++) {
+			large.append("large data ").append(i);
+		}
+		final File f = tmp.newFile();
+		try (FileBlobStoreWriter w = FileBlobStoreWriter.builder()
+				.blobFile(f)
+				.overwrite(true)
+				.build()) {
+			for (int i = 0; i < 100; i++) {
+				w.addBlobEntryGzEncoded("entry" + i, new ByteArrayInputStream(("data" + i).getBytes(UTF_8)));
+			}
+			w.addBlobEntryGzEncoded("large", new ByteArrayInputStream(large.toString().getBytes(UTF_8)));
+		}
+
+		for (final boolean inMemoryIndex : new boolean[] { false, true }) {
+			try (FileBlobStoreReader r = FileBlobStoreReader.builder()
+					.blobFile(f)
+					.inMemoryIndex(inMemoryIndex)
+					.contentCacheSize(1024 * 1024)
+					.maxCachedEntrySize(1024)
+					.build()) {
+				for (int round = 0; round < 3; round++) {
+					for (int i = 0; i < 100; i++) {
+						assertEquals("data" + i, IOUtils.toString(r.getBlobEntryContentsDecoded("entry" + i), UTF_8));
+					}
+					assertEquals(large.toString(), IOUtils.toString(r.getBlobEntryContentsDecoded("large"), UTF_8));
+					assertNull(r.getBlobEntryContentsDecoded("missing"));
+				}
+				final BlobEntry blobEntry = r.getBlobEntry("entry0");
+				assertEquals("data0", IOUtils.toString(r.getBlobEntryContentsDecoded(blobEntry), UTF_8));
+
+				final CacheStats stats = r.getContentCacheStats();
+				assertEquals(100, stats.getEntryCount());
+				assertEquals(201, stats.getHitCount());
+				assertEquals(0, stats.getEvictionCount());
+			}
+		}
+
+		try (FileBlobStoreReader r = new FileBlobStoreReader(f)) {
+			assertNull(r.getContentCacheStats());
+		}
+	}
+
+	@Test
+	public void testContentCacheMaxEntrySize() throws IOException {
+		final byte[] data = getRandomString(FileBlobStoreReader.Builder.DEFAULT_MAX_CACHED_ENTRY_SIZE).getBytes(UTF_8);
+		assertEquals(FileBlobStoreReader.Builder.DEFAULT_MAX_CACHED_ENTRY_SIZE, data.length);
+		final File f = tmp.newFile();
+		try (FileBlobStoreWriter w = FileBlobStoreWriter.builder()
+				.blobFile(f)
+				.overwrite(true)
+				.build()) {
+			w.addBlobEntryGzEncoded("entry", new ByteArrayInputStream(data));
+		}
+
+		try (FileBlobStoreReader r = FileBlobStoreReader.builder()
+				.blobFile(f)
+				.contentCacheSize(1024 * 1024)
+				.build()) {
+			assertArrayEquals(data, IOUtils.toByteArray(r.getBlobEntryContentsDecoded(r.getBlobEntry("entry"))));
+			assertArrayEquals(data, IOUtils.toByteArray(r.getBlobEntryContentsDecoded(r.getBlobEntry("entry"))));
+			final CacheStats stats = r.getContentCacheStats();
+			assertEquals(1, stats.getEntryCount());
+			assertEquals(1, stats.getHitCount());
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testContentCacheTooSmall() throws IOException {
+		final File f = tmp.newFile();
+		FileBlobStoreWriter.builder().blobFile(f).overwrite(true).build().close();
+		FileBlobStoreReader.builder()
+				.blobFile(f)
+				.contentCacheSize(1024)
+				.maxCachedEntrySize(1024)
+				.build();
+	}
+
+	@Test
+	public void testReadBufferSize() throws IOException {
+		final StringBuilder large = new StringBuilder();
+		for (int i = 0; i < 1000; i++) {
+			large.append("large data ").append(i);
+		}
+		final File f = tmp.newFile();
+		try (FileBlobStoreWriter w = FileBlobStoreWriter.builder()
+				.blobFile(f)
+				.overwrite(true)
+				.build()) {
+			for (int i = 0; i < 100; i++) {
+				w.addBlobEntryUnencoded("entry" + i, new ByteArrayInputStream(("data" + i).getBytes(UTF_8)));
+			}
+			w.addBlobEntryGzEncoded("large", new ByteArrayInputStream(large.toString().getBytes(UTF_8)));
+		}
+
+		for (final int readBufferSize : new int[] { 1, 7, 64 * 1024 }) {
+			try (FileBlobStoreReader r = FileBlobStoreReader.builder()
+					.blobFile(f)
+					.readBufferSize(readBufferSize)
+					.build()) {
+				for (int i = 0; i < 100; i++) {
+					assertEquals("data" + i, IOUtils.toString(r.getBlobEntryContents("entry" + i), UTF_8));
+				}
+				assertEquals(large.toString(), IOUtils.toString(r.getBlobEntryContentsDecoded("large"), UTF_8));
+				final List<String> names = new ArrayList<>();
+				r.visitBlobEntries((blobEntry, contents) -> {
+					if (!blobEntry.getName().equals("large")) {
+						assertEquals(blobEntry.getName().replace("entry", "data"), IOUtils.toString(contents, UTF_8));
+					}
+					names.add(blobEntry.getName());
+				});
+				assertEquals(101, names.size());
+			}
+		}
+
+		try {
+			FileBlobStoreReader.builder().blobFile(f).readBufferSize(0).build();
+			fail("Expected exception");
+		} catch (final IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testMetrics() throws IOException {
+		final File f = tmp.newFile();
+		try (FileBlobStoreWriter w = FileBlobStoreWriter.builder()
+				.blobFile(f)
+				.overwrite(true)
+				.build()) {
+			for (int i = 0; i < 1000; i++) {
+				w.addBlobEntryGzEncoded("entry" + i, new ByteArrayInputStream(("data" + i).getBytes(UTF_8)));
+			}
+		}
+
+		final RecordingMetrics metrics = new RecordingMetrics();
+		try (FileBlobStoreReader r = FileBlobStoreReader.builder()
+				.blobFile(f)
+				.positionCacheDepth(20)
+				.metrics(metrics)
+				.build()) {
+			for (int i = 0; i < 100; i++) {
+				final BlobEntry blobEntry = r.getBlobEntry("entry" + i);
+				try (InputStream in = r.getBlobEntryContents(blobEntry)) {
+					IOUtils.toByteArray(in);
+				}
+				try (InputStream in = r.getBlobEntryContentsDecoded(blobEntry)) {
+					assertEquals("data" + i, IOUtils.toString(in, UTF_8));
+				}
+			}
+			assertNull(r.getBlobEntry("missing"));
+		}
+
+		assertEquals(101, metrics.lookups.get());
+		assertEquals(100, metrics.lookupsFound.get());
+		assertTrue(metrics.probes.get() > 100);
+		assertTrue(metrics.positionCacheHits.get() > 0);
+		assertTrue(metrics.positionCacheMisses.get() > 0);
+		assertTrue(metrics.bytesRead.get() > 0);
+		long decodedLength = 0;
+		for (int i = 0; i < 100; i++) {
+			decodedLength += ("data" + i).length();
+		}
+		assertEquals(decodedLength, metrics.bytesDecoded.get());
+	}
+
+	@Test
+	public void testChannels() throws IOException {
+		// larger than the max blocked entry size, so it is stored gzip encoded
+		final StringBuilder gzipData = new StringBuilder();
+		for (int i = 0; i < 1000; i++) {
+			gzipData.append("gzip data ").append(i);
+		}
+		final File f = tmp.newFile();
+		try (FileBlobStoreWriter w = FileBlobStoreWriter.builder()
+				.blobFile(f)
+				.overwrite(true)
+				.blockSize(4096)
+				.build()) {
+			w.addBlobEntryUnencoded("identity", new ByteArrayInputStream("identity data".getBytes(UTF_8)));
+			w.addBlobEntryGzEncoded("gzip", new ByteArrayInputStream(gzipData.toString().getBytes(UTF_8)));
+			w.addBlobEntryEncoded("block", new ByteArrayInputStream("block data".getBytes(UTF_8)), null, BlobEntry.ENCODING_DEFLATE_BLOCK);
+		}
+
+		final File target = tmp.newFile();
+		try (FileBlobStoreReader r = new FileBlobStoreReader(f)) {
+			for (final String name : new String[] { "identity", "gzip", "block" }) {
+				final BlobEntry blobEntry = r.getBlobEntry(name);
+				final byte[] expected = IOUtils.toByteArray(r.getBlobEntryContents(blobEntry));
+
+				try (ReadableByteChannel in = r.getBlobEntryChannel(blobEntry)) {
+					assertArrayEquals(expected, IOUtils.toByteArray(Channels.newInputStream(in)));
+				}
+
+				final ByteArrayOutputStream bout = new ByteArrayOutputStream();
+				assertEquals(expected.length, r.transferTo(blobEntry, Channels.newChannel(bout)));
+				assertArrayEquals(expected, bout.toByteArray());
+
+				try (FileChannel out = FileChannel.open(target.toPath(), StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+					assertEquals(expected.length, r.transferTo(blobEntry, out));
+				}
+				assertArrayEquals(expected, FileUtils.readFileToByteArray(target));
+			}
+			assertEquals(BlobEntry.ENCODING_GZIP, r.getBlobEntry("gzip").getEncoding());
+			assertEquals(gzipData.toString(), IOUtils.toString(new GZIPInputStream(Channels.newInputStream(r.getBlobEntryChannel(r.getBlobEntry("gzip")))), UTF_8));
+		}
+	}
+
+	@Test
+	public void testInvalidHeader() throws IOException {
+		final File f = tmp.newFile();
+		for (final String contents : new String[] { "", "indexOffset=0000000000000000032", "indexOffset=000000000000000003x\n", "otherPrefix=0000000000000000032\n" }) {
+			FileUtils.writeStringToFile(f, contents, UTF_8);
+			try {
+				new FileBlobStoreReader(f).close();
+				fail("Expected BlobStoreFormatException for header " + contents);
+			} catch (final BlobStoreFormatException e) {
+				// expected
+			}
+		}
+	}
+
+	@Test
+	public void testParallelVisit() throws IOException {
+		final ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			for (final int formatVersion : new int[] { FileBlobStoreWriter.FORMAT_VERSION_1, FileBlobStoreWriter.FORMAT_VERSION_2 }) {
+				for (final int entryCount : new int[] { 0, 1, 500 }) {
+					final File f = tmp.newFile();
+					try (FileBlobStoreWriter w = FileBlobStoreWriter.builder()
+							.blobFile(f)
+							.overwrite(true)
+							.formatVersion(formatVersion)
+							.build()) {
+						for (int i = 0; i < entryCount; i++) {
+							w.addBlobEntryGzEncoded("entry" + i, new ByteArrayInputStream(("data" + i).getBytes(UTF_8)));
+						}
+					}
+					final List<FileBlobStoreReader.Builder> builders = new ArrayList<>();
+					builders.add(FileBlobStoreReader.builder().blobFile(f));
+					builders.add(FileBlobStoreReader.builder().blobFile(f).mapped(true));
+					builders.add(FileBlobStoreReader.builder().blobFile(f).inMemoryIndex(true));
+					for (final FileBlobStoreReader.Builder builder : builders) {
+						try (FileBlobStoreReader r = builder.build()) {
+							for (final int parallelism : new int[] { 1, 3, 7, 1000 }) {
+								final Map<String, String> visited = new ConcurrentHashMap<>();
+								r.visitBlobEntries((blobEntry, contents) -> {
+									final String data;
+									try (InputStream in = new GZIPInputStream(contents)) {
+										data = IOUtils.toString(in, UTF_8);
+									}
+									assertNull(visited.put(blobEntry.getName(), data));
+								}, executor, parallelism);
+								assertEquals(entryCount, visited.size());
+								for (int i = 0; i < entryCount; i++) {
+									assertEquals("data" + i, visited.get("entry" + i));
+								}
+							}
+						}
+					}
+				}
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void testParallelVisitFailure() throws IOException {
+		final File f = tmp.newFile();
+		try (FileBlobStoreWriter w = FileBlobStoreWriter.builder()
+				.blobFile(f)
+				.overwrite(true)
+				.build()) {
+			for (int i = 0; i < 100; i++) {
+				w.addBlobEntryUnencoded("entry" + i, new ByteArrayInputStream(("data" + i).getBytes(UTF_8)));
+			}
+		}
+		final ExecutorService executor = Executors.newFixedThreadPool(4);
+		try (FileBlobStoreReader r = new FileBlobStoreReader(f)) {
+			r.visitBlobEntries((blobEntry, contents) -> {
+				if (blobEntry.getName().equals("entry50")) {
+					throw new IOException("Test failure");
+				}
+			}, executor, 4);
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testFirstAndLastEntryName() throws IOException {
+		final StringBuilder longName = new StringBuilder("z");
+		for (int i = 0; i < 1000; i++) {
+			longName.append('x');
+		}
+		for (final int formatVersion : new int[] { FileBlobStoreWriter.FORMAT_VERSION_1, FileBlobStoreWriter.FORMAT_VERSION_2 }) {
+			final File f = tmp.newFile();
+			try (FileBlobStoreWriter w = FileBlobStoreWriter.builder()
+					.blobFile(f)
+					.overwrite(true)
+					.formatVersion(formatVersion)
+					.build()) {
+				w.addBlobEntryUnencoded(longName.toString(), new ByteArrayInputStream("last".getBytes(UTF_8)));
+				for (int i = 0; i < 100; i++) {
+					w.addBlobEntryUnencoded("entry" + i, new ByteArrayInputStream(("data" + i).getBytes(UTF_8)));
+				}
+			}
+			for (final boolean inMemoryIndex : new boolean[] { false, true }) {
+				try (FileBlobStoreReader r = FileBlobStoreReader.builder().blobFile(f).inMemoryIndex(inMemoryIndex).build()) {
+					assertEquals("entry0", r.getFirstEntryName());
+					assertEquals(longName.toString(), r.getLastEntryName());
+				}
+			}
+
+			final File empty = tmp.newFile();
+			FileBlobStoreWriter.builder()
+					.blobFile(empty)
+					.overwrite(true)
+					.formatVersion(formatVersion)
+					.build()
+					.close();
+			try (FileBlobStoreReader r = new FileBlobStoreReader(empty)) {
+				assertNull(r.getFirstEntryName());
+				assertNull(r.getLastEntryName());
+				assertNull(r.getBlobEntry("entry0"));
+			}
 		}
 	}
 
@@ -94,5 +692,12 @@ public class FileBlobStoreReaderTest {
 		final FileBlobStoreReader reader = new FileBlobStoreReader(blobFile);
 		assertEquals("entry 1 gzip VALUE", IOUtils.toString(reader.getBlobEntryContentsDecoded("entry 1 gzip"), UTF_8));
 		assertEquals("entry 2 identity VALUE", IOUtils.toString(reader.getBlobEntryContentsDecoded("entry 2 identity"), UTF_8));
+
+		final FileBlobStoreReader mappedReader = FileBlobStoreReader.builder()
+				.blobFile(blobFile)
+				.mappedContents(true)
+				.build();
+		assertEquals("entry 1 gzip VALUE", IOUtils.toString(mappedReader.getBlobEntryContentsDecoded("entry 1 gzip"), UTF_8));
+		assertEquals("entry 2 identity VALUE", IOUtils.toString(mappedReader.getBlobEntryContentsDecoded("entry 2 identity"), UTF_8));
 	}
 }
@@ -5,14 +5,30 @@ import static java.nio.charset.Charset.defaultCharset;
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.apache.commons.io.FileUtils.readFileToString;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
 
 import org.apache.commons.io.IOUtils;
 import org.junit.Assert;
@@ -20,7 +36,9 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
+import de.mklinger.blobstore.codec.DictionaryTrainer;
 import de.mklinger.blobstore.impl.BlobEntryImpl;
+import de.mklinger.blobstore.io.SortedChunkMerger;
 
 public class FileBlobStoreWriterTest {
 	@Rule
@@ -125,6 +143,408 @@ public class FileBlobStoreWriterTest {
 		}
 	}
 
+	@Test
+	public void testMetrics() throws IOException {
+		final RecordingMetrics metrics = new RecordingMetrics();
+		final File blobFile = tmp.newFile();
+		try (BlobStoreWriter writer = FileBlobStoreWriter.builder()
+				.blobFile(blobFile)
+				.overwrite(true)
+				.maxIndexEntriesInMemory(100)
+				.metrics(metrics)
+				.build()) {
+			for (int i = 999; i >= 0; i--) {
+				writer.addBlobEntry("Entry" + i, new ByteArrayInputStream(("data" + i).getBytes()), "text/plain", ENCODING_IDENTITY);
+			}
+		}
+
+		assertEquals(1000, metrics.entriesWritten.get());
+		long dataLength = 0;
+		for (int i = 0; i < 1000; i++) {
+			dataLength += ("data" + i).length();
+		}
+		assertEquals(dataLength, metrics.bytesWritten.get());
+		assertEquals(1000, metrics.writeLockWaits.get());
+		Assert.assertTrue(metrics.indexChunksDumped.get() >= 9);
+		assertEquals(1, metrics.indexWrites.get());
+		assertEquals(1000, metrics.indexEntries.get());
+	}
+
+	@Test
+	public void testIndexMergeExecutor() throws IOException {
+		for (final int formatVersion : new int[] { FileBlobStoreWriter.FORMAT_VERSION_1, FileBlobStoreWriter.FORMAT_VERSION_2 }) {
+			final File blobFilePlain = tmp.newFile();
+			final File blobFileMerged = tmp.newFile();
+			final RecordingMetrics metrics = new RecordingMetrics();
+			final ExecutorService executor = Executors.newFixedThreadPool(2);
+			try {
+				for (final File blobFile : new File[] { blobFilePlain, blobFileMerged }) {
+					try (BlobStoreWriter writer = FileBlobStoreWriter.builder()
+							.blobFile(blobFile)
+							.overwrite(true)
+							.formatVersion(formatVersion)
+							.bloomFilter(true)
+							// 100 chunk files, more than merged at once
+							.maxIndexEntriesInMemory(blobFile == blobFilePlain ? -1 : 100)
+							.indexMergeExecutor(executor)
+							.metrics(blobFile == blobFilePlain ? BlobStoreMetrics.NOOP : metrics)
+							.build()) {
+						for (int i = 9999; i >= 0; i--) {
+							writer.addBlobEntry("Entry" + i, new ByteArrayInputStream(("data" + i).getBytes()), "text/plain", ENCODING_IDENTITY);
+						}
+					}
+				}
+			} finally {
+				executor.shutdown();
+			}
+			Assert.assertArrayEquals(Files.readAllBytes(blobFilePlain.toPath()), Files.readAllBytes(blobFileMerged.toPath()));
+			assertEquals(1, metrics.indexChunkMerges.get());
+			assertEquals(SortedChunkMerger.DEFAULT_MAX_MERGE_WIDTH, metrics.indexChunksMerged.get());
+		}
+		// assert idx chunk files are gone
+		for (final File file : tmp.getRoot().listFiles()) {
+			Assert.assertFalse("File should not exists: " + file.getName(), file.getName().endsWith(".idxchunk"));
+		}
+	}
+
+	@Test(timeout = 60_000)
+	public void testSharedExecutor() throws Exception {
+		// index chunks are dumped from compression tasks running on the only thread
+		final File blobFile = tmp.newFile();
+		final ExecutorService executor = Executors.newSingleThreadExecutor();
+		final List<CompletableFuture<BlobEntry>> futures = new ArrayList<>();
+		try {
+			try (FileBlobStoreWriter writer = FileBlobStoreWriter.builder()
+					.blobFile(blobFile)
+					.overwrite(true)
+					.maxIndexEntriesInMemory(10)
+					.compressionExecutor(executor)
+					.indexMergeExecutor(executor)
+					.build()) {
+				for (int i = 0; i < 1000; i++) {
+					futures.add(writer.addBlobEntryGzEncodedAsync("Entry" + i, new ByteArrayInputStream(("data" + i).getBytes(UTF_8)), "text/plain"));
+				}
+			}
+		} finally {
+			executor.shutdown();
+		}
+
+		try (FileBlobStoreReader reader = new FileBlobStoreReader(blobFile)) {
+			for (int i = 0; i < 1000; i++) {
+				assertEquals("Entry" + i, futures.get(i).get().getName());
+				assertEquals("data" + i, IOUtils.toString(reader.getBlobEntryContentsDecoded("Entry" + i), UTF_8));
+			}
+		}
+	}
+
+	@Test
+	public void testMaxIndexMemory() throws IOException {
+		final File blobFilePlain = tmp.newFile();
+		final File blobFile = tmp.newFile();
+		final RecordingMetrics metrics = new RecordingMetrics();
+		final char[] padding = new char[200];
+		Arrays.fill(padding, 'x');
+		for (final File f : new File[] { blobFilePlain, blobFile }) {
+			try (BlobStoreWriter writer = FileBlobStoreWriter.builder()
+					.blobFile(f)
+					.overwrite(true)
+					.maxIndexEntriesInMemory(-1)
+					.maxIndexMemory(f == blobFile ? 64 * 1024 : -1)
+					.metrics(f == blobFile ? metrics : BlobStoreMetrics.NOOP)
+					.build()) {
+				for (int i = 9999; i >= 0; i--) {
+					// long names for some entries
+					final String name = i % 10 == 0 ? "Entry" + i + new String(padding) : "Entry" + i;
+					writer.addBlobEntry(name, new ByteArrayInputStream(("data" + i).getBytes()), "text/plain", ENCODING_IDENTITY);
+				}
+			}
+		}
+		// about 1 MB of estimated index memory
+		Assert.assertTrue(metrics.indexChunksDumped.get() >= 10);
+		assertEquals(10000, metrics.indexChunkEntries.get());
+		Assert.assertArrayEquals(Files.readAllBytes(blobFilePlain.toPath()), Files.readAllBytes(blobFile.toPath()));
+	}
+
+	@Test
+	public void testFormatVersion2Chunks() throws IOException {
+		final File blobFile1 = tmp.newFile("blob1.bin");
+		try (BlobStoreWriter writer = FileBlobStoreWriter.builder()
+				.blobFile(blobFile1)
+				.overwrite(true)
+				.formatVersion(FileBlobStoreWriter.FORMAT_VERSION_2)
+				.build()) {
+			for (int i = 9876; i >= 0; i--) {
+				writer.addBlobEntry("Entry" + i, new ByteArrayInputStream(("data" + i).getBytes()), i % 2 == 0 ? "text/plain" : "text/html", ENCODING_IDENTITY);
+			}
+		}
+
+		final File blobFile2 = tmp.newFile("blob2.bin");
+		try (BlobStoreWriter writer = FileBlobStoreWriter.builder()
+				.blobFile(blobFile2)
+				.overwrite(true)
+				.maxIndexEntriesInMemory(100)
+				.formatVersion(FileBlobStoreWriter.FORMAT_VERSION_2)
+				.build()) {
+			for (int i = 9876; i >= 0; i--) {
+				writer.addBlobEntry("Entry" + i, new ByteArrayInputStream(("data" + i).getBytes()), i % 2 == 0 ? "text/plain" : "text/html", ENCODING_IDENTITY);
+			}
+		}
+
+		Assert.assertArrayEquals(Files.readAllBytes(blobFile1.toPath()), Files.readAllBytes(blobFile2.toPath()));
+
+		// assert idx chunk and table files are gone
+		assertEquals(2, tmp.getRoot().listFiles().length);
+
+		try (FileBlobStoreReader reader = new FileBlobStoreReader(blobFile2)) {
+			for (int i = 9876; i >= 0; i--) {
+				final BlobEntry blobEntry = reader.getBlobEntry("Entry" + i);
+				assertEquals("Entry" + i, blobEntry.getName());
+				assertEquals(i % 2 == 0 ? "text/plain" : "text/html", blobEntry.getMediaType());
+				assertEquals(ENCODING_IDENTITY, blobEntry.getEncoding());
+				assertEquals("data" + i, IOUtils.toString(reader.getBlobEntryContents(blobEntry), UTF_8));
+			}
+			assertNull(reader.getBlobEntry("Entry"));
+			assertNull(reader.getBlobEntry("Entry99999"));
+			assertNull(reader.getBlobEntry("A"));
+			assertNull(reader.getBlobEntry("Z"));
+
+			final int[] count = new int[1];
+			final String[] lastName = new String[1];
+			reader.visitBlobEntries((blobEntry, contents) -> {
+				if (lastName[0] != null) {
+					Assert.assertTrue(lastName[0].compareTo(blobEntry.getName()) < 0);
+				}
+				lastName[0] = blobEntry.getName();
+				assertEquals("data" + blobEntry.getName().substring(5), IOUtils.toString(contents, UTF_8));
+				count[0]++;
+			});
+			assertEquals(9877, count[0]);
+		}
+	}
+
+	@Test
+	public void testConcurrentWrites() throws Exception {
+		final File blobFile = tmp.newFile("blob.bin");
+		final int threadCount = 8;
+		final int entriesPerThread = 200;
+		try (FileBlobStoreWriter writer = FileBlobStoreWriter.builder()
+				.blobFile(blobFile)
+				.overwrite(true)
+				.concurrentWrites(true)
+				.maxStagingBufferSize(1000)
+				.build()) {
+			final ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+			try {
+				final List<Future<?>> futures = new ArrayList<>();
+				for (int t = 0; t < threadCount; t++) {
+					final int threadIdx = t;
+					futures.add(executor.submit(() -> {
+						for (int i = 0; i < entriesPerThread; i++) {
+							final String name = "Entry" + threadIdx + "_" + i;
+							writer.addBlobEntryGzEncoded(name, new ByteArrayInputStream(getData(name).getBytes(UTF_8)));
+						}
+						return null;
+					}));
+				}
+				for (final Future<?> future : futures) {
+					future.get();
+				}
+			} finally {
+				executor.shutdown();
+			}
+		}
+
+		// assert staging files are gone
+		assertEquals(1, tmp.getRoot().listFiles().length);
+
+		try (FileBlobStoreReader reader = new FileBlobStoreReader(blobFile)) {
+			for (int t = 0; t < threadCount; t++) {
+				for (int i = 0; i < entriesPerThread; i++) {
+					final String name = "Entry" + t + "_" + i;
+					assertEquals(getData(name), IOUtils.toString(reader.getBlobEntryContentsDecoded(name), UTF_8));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testAsyncWrites() throws Exception {
+		final File blobFile = tmp.newFile("blob.bin");
+		final int threadCount = 4;
+		final int entriesPerThread = 500;
+		final List<CompletableFuture<BlobEntry>> blobEntryFutures = new ArrayList<>();
+		final FileBlobStoreWriter writer = FileBlobStoreWriter.builder()
+				.blobFile(blobFile)
+				.overwrite(true)
+				.asyncQueueCapacity(10)
+				.syncAsyncWrites(true)
+				.maxStagingBufferSize(1000)
+				.build();
+		try {
+			final ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+			try {
+				final List<Future<List<CompletableFuture<BlobEntry>>>> futures = new ArrayList<>();
+				for (int t = 0; t < threadCount; t++) {
+					final int threadIdx = t;
+					futures.add(executor.submit(() -> {
+						final List<CompletableFuture<BlobEntry>> threadBlobEntryFutures = new ArrayList<>();
+						for (int i = 0; i < entriesPerThread; i++) {
+							final String name = "Entry" + threadIdx + "_" + i;
+							threadBlobEntryFutures.add(writer.addBlobEntryAsync(name, new ByteArrayInputStream(getData(name).getBytes(UTF_8)), "text/plain", ENCODING_IDENTITY));
+						}
+						return threadBlobEntryFutures;
+					}));
+				}
+				for (final Future<List<CompletableFuture<BlobEntry>>> future : futures) {
+					blobEntryFutures.addAll(future.get());
+				}
+			} finally {
+				executor.shutdown();
+			}
+		} finally {
+			writer.close();
+		}
+
+		assertEquals(threadCount * entriesPerThread, blobEntryFutures.size());
+		try (FileBlobStoreReader reader = new FileBlobStoreReader(blobFile)) {
+			for (final CompletableFuture<BlobEntry> blobEntryFuture : blobEntryFutures) {
+				Assert.assertTrue(blobEntryFuture.isDone());
+				final BlobEntry written = blobEntryFuture.get();
+				final BlobEntry blobEntry = reader.getBlobEntry(written.getName());
+				assertEquals(written.getOffset(), blobEntry.getOffset());
+				assertEquals(written.getLength(), blobEntry.getLength());
+				assertEquals(getData(written.getName()), IOUtils.toString(reader.getBlobEntryContents(blobEntry), UTF_8));
+			}
+		}
+
+		try {
+			writer.addBlobEntryAsync("late", new ByteArrayInputStream(new byte[0]), null, null);
+			Assert.fail("Expected exception");
+		} catch (final IOException e) {
+			// expected
+		}
+
+		// assert staging files are gone
+		assertEquals(1, tmp.getRoot().listFiles().length);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testAsyncWritesDisabled() throws IOException {
+		try (FileBlobStoreWriter writer = FileBlobStoreWriter.builder()
+				.blobFile(tmp.newFile())
+				.overwrite(true)
+				.build()) {
+			writer.addBlobEntryAsync("entry", new ByteArrayInputStream(new byte[0]), null, null);
+		}
+	}
+
+	@Test
+	public void testCompressionExecutor() throws Exception {
+		final File expectedBlobFile = tmp.newFile("expected.bin");
+		try (FileBlobStoreWriter writer = FileBlobStoreWriter.builder()
+				.blobFile(expectedBlobFile)
+				.overwrite(true)
+				.build()) {
+			for (int i = 0; i < 1000; i++) {
+				final String name = "Entry" + i;
+				writer.addBlobEntryGzEncoded(name, new ByteArrayInputStream(getData(name).getBytes(UTF_8)), "text/plain");
+			}
+		}
+
+		final ForkJoinPool compressionExecutor = new ForkJoinPool(4);
+		try {
+			for (final int asyncQueueCapacity : new int[] { 0, 10 }) {
+				final File blobFile = tmp.newFile("blob" + asyncQueueCapacity + ".bin");
+				final List<CompletableFuture<BlobEntry>> blobEntryFutures = new ArrayList<>();
+				try (FileBlobStoreWriter writer = FileBlobStoreWriter.builder()
+						.blobFile(blobFile)
+						.overwrite(true)
+						.compressionExecutor(compressionExecutor)
+						.maxPendingCompressions(8)
+						.asyncQueueCapacity(asyncQueueCapacity)
+						.build()) {
+					for (int i = 0; i < 1000; i++) {
+						final String name = "Entry" + i;
+						blobEntryFutures.add(writer.addBlobEntryGzEncodedAsync(name, new ByteArrayInputStream(getData(name).getBytes(UTF_8)), "text/plain"));
+					}
+				}
+
+				try (FileBlobStoreReader expectedReader = new FileBlobStoreReader(expectedBlobFile);
+						FileBlobStoreReader reader = new FileBlobStoreReader(blobFile)) {
+					for (final CompletableFuture<BlobEntry> blobEntryFuture : blobEntryFutures) {
+						final String name = blobEntryFuture.get().getName();
+						final BlobEntry blobEntry = reader.getBlobEntry(name);
+						assertEquals(BlobEntry.ENCODING_GZIP, blobEntry.getEncoding());
+						assertEquals("text/plain", blobEntry.getMediaType());
+						Assert.assertArrayEquals(
+								IOUtils.toByteArray(expectedReader.getBlobEntryContents(name)),
+								IOUtils.toByteArray(reader.getBlobEntryContents(blobEntry)));
+						assertEquals(getData(name), IOUtils.toString(reader.getBlobEntryContentsDecoded(blobEntry), UTF_8));
+					}
+				}
+			}
+		} finally {
+			compressionExecutor.shutdown();
+		}
+	}
+
+	@Test
+	public void testSyncUsesCompressionExecutor() throws Exception {
+		final AtomicInteger executedTasks = new AtomicInteger();
+		final ExecutorService executor = Executors.newFixedThreadPool(2);
+		final Executor compressionExecutor = command -> {
+			executedTasks.incrementAndGet();
+			executor.execute(command);
+		};
+		final File blobFile = tmp.newFile();
+		try (FileBlobStoreWriter writer = FileBlobStoreWriter.builder()
+				.blobFile(blobFile)
+				.overwrite(true)
+				.compressionExecutor(compressionExecutor)
+				.build()) {
+			for (int i = 0; i < 10; i++) {
+				final String name = "Entry" + i;
+				writer.addBlobEntryGzEncoded(name, new ByteArrayInputStream(getData(name).getBytes(UTF_8)), "text/plain");
+			}
+			writer.addBlobEntryUnencoded("Unencoded", new ByteArrayInputStream("unencoded".getBytes(UTF_8)));
+			assertEquals(10, executedTasks.get());
+
+			try {
+				writer.addBlobEntryGzEncoded("Failing", new InputStream() {
+					@Override
+					public int read() throws IOException {
+						throw new IOException("Test failure");
+					}
+				});
+				fail("Expected exception");
+			} catch (final IOException e) {
+				assertEquals("Test failure", e.getMessage());
+			}
+		} finally {
+			executor.shutdown();
+		}
+
+		try (FileBlobStoreReader reader = new FileBlobStoreReader(blobFile)) {
+			for (int i = 0; i < 10; i++) {
+				final String name = "Entry" + i;
+				assertEquals(BlobEntry.ENCODING_GZIP, reader.getBlobEntry(name).getEncoding());
+				assertEquals(getData(name), IOUtils.toString(reader.getBlobEntryContentsDecoded(name), UTF_8));
+			}
+			assertEquals("unencoded", IOUtils.toString(reader.getBlobEntryContents("Unencoded"), UTF_8));
+			assertNull(reader.getBlobEntry("Failing"));
+		}
+	}
+
+	private static String getData(final String name) {
+		// every tenth entry is larger than the staging buffer
+		final StringBuilder sb = new StringBuilder();
+		final int repeat = name.endsWith("0") ? 1000 : 10;
+		for (int i = 0; i < repeat; i++) {
+			sb.append(name).append(i);
+		}
+		return sb.toString();
+	}
+
 	@Test
 	public void testWriteEncodedReadDecoded() throws IOException {
 		final File blobFile = tmp.newFile();
@@ -141,4 +561,250 @@ public class FileBlobStoreWriterTest {
 		assertEquals("entry 1 gzip VALUE", IOUtils.toString(reader.getBlobEntryContentsDecoded("entry 1 gzip"), UTF_8));
 		assertEquals("entry 2 identity VALUE", IOUtils.toString(reader.getBlobEntryContentsDecoded("entry 2 identity"), UTF_8));
 	}
+
+	@Test
+	public void testWriteCodecEncodedReadDecoded() throws Exception {
+		final File blobFile = tmp.newFile();
+		final String[] encodings = { BlobEntry.ENCODING_IDENTITY, BlobEntry.ENCODING_GZIP, BlobEntry.ENCODING_DEFLATE_RAW, BlobEntry.ENCODING_LZ4_BLOCKS };
+
+		final ForkJoinPool compressionExecutor = new ForkJoinPool(2);
+		try (FileBlobStoreWriter writer = FileBlobStoreWriter.builder()
+				.blobFile(blobFile)
+				.overwrite(true)
+				.compressionExecutor(compressionExecutor)
+				.build()) {
+			for (final String encoding : encodings) {
+				writer.addBlobEntryEncoded("entry " + encoding, new ByteArrayInputStream(getData(encoding + "0").getBytes(UTF_8)), "text/plain", encoding);
+				writer.addBlobEntryEncodedAsync("async entry " + encoding, new ByteArrayInputStream(getData(encoding + "0").getBytes(UTF_8)), "text/plain", encoding).get();
+			}
+		} finally {
+			compressionExecutor.shutdown();
+		}
+
+		try (FileBlobStoreReader reader = new FileBlobStoreReader(blobFile)) {
+			for (final String encoding : encodings) {
+				for (final String name : new String[] { "entry " + encoding, "async entry " + encoding }) {
+					final BlobEntry blobEntry = reader.getBlobEntry(name);
+					assertEquals(encoding, blobEntry.getEncoding());
+					assertEquals(getData(encoding + "0"), IOUtils.toString(reader.getBlobEntryContentsDecoded(blobEntry), UTF_8));
+				}
+			}
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnsupportedEncoding() throws IOException {
+		try (FileBlobStoreWriter writer = FileBlobStoreWriter.builder()
+				.blobFile(tmp.newFile())
+				.overwrite(true)
+				.build()) {
+			writer.addBlobEntryEncoded("entry", new ByteArrayInputStream(new byte[0]), null, "unknown");
+		}
+	}
+
+	private static String getJson(final int i) {
+		return "{\"id\":" + i + ",\"type\":\"document\",\"attributes\":{\"title\":\"Title " + i
+				+ "\",\"language\":\"en\",\"created\":\"2020-01-01T00:00:00Z\",\"tags\":[\"alpha\",\"beta\"]}}";
+	}
+
+	@Test
+	public void testDictionary() throws IOException {
+		final List<byte[]> samples = new ArrayList<>();
+		for (int i = 0; i < 100; i++) {
+			samples.add(getJson(i).getBytes(UTF_8));
+		}
+		final byte[] dictionary = DictionaryTrainer.train(samples, 4096);
+
+		final File blobFile = tmp.newFile();
+		try (FileBlobStoreWriter writer = FileBlobStoreWriter.builder()
+				.blobFile(blobFile)
+				.overwrite(true)
+				.dictionary(dictionary)
+				.build()) {
+			for (int i = 0; i < 1000; i++) {
+				writer.addBlobEntryEncoded("dict" + i, new ByteArrayInputStream(getJson(i).getBytes(UTF_8)), "application/json", BlobEntry.ENCODING_DEFLATE_DICT);
+				writer.addBlobEntryGzEncoded("gzip" + i, new ByteArrayInputStream(getJson(i).getBytes(UTF_8)), "application/json");
+			}
+		}
+
+		final File mergedBlobFile = tmp.newFile();
+		try (FileBlobStoreReader reader = new FileBlobStoreReader(blobFile)) {
+			for (int i = 0; i < 1000; i++) {
+				final BlobEntry dictEntry = reader.getBlobEntry("dict" + i);
+				assertEquals(BlobEntry.ENCODING_DEFLATE_DICT, dictEntry.getEncoding());
+				assertEquals(getJson(i), IOUtils.toString(reader.getBlobEntryContentsDecoded(dictEntry), UTF_8));
+				Assert.assertTrue(dictEntry.getLength() < reader.getBlobEntry("gzip" + i).getLength() / 2);
+			}
+
+			try (FileBlobStoreWriter writer = FileBlobStoreWriter.builder()
+					.blobFile(mergedBlobFile)
+					.overwrite(true)
+					.build()) {
+				writer.mergeFrom(reader);
+			}
+		}
+
+		try (FileBlobStoreReader reader = new FileBlobStoreReader(mergedBlobFile)) {
+			for (int i = 0; i < 1000; i++) {
+				final BlobEntry dictEntry = reader.getBlobEntry("dict" + i);
+				assertEquals(BlobEntry.ENCODING_GZIP, dictEntry.getEncoding());
+				assertEquals(getJson(i), IOUtils.toString(reader.getBlobEntryContentsDecoded(dictEntry), UTF_8));
+			}
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testDictionaryEncodingWithoutDictionary() throws IOException {
+		try (FileBlobStoreWriter writer = FileBlobStoreWriter.builder()
+				.blobFile(tmp.newFile())
+				.overwrite(true)
+				.build()) {
+			writer.addBlobEntryEncoded("entry", new ByteArrayInputStream(new byte[0]), null, BlobEntry.ENCODING_DEFLATE_DICT);
+		}
+	}
+
+	@Test
+	public void testDictionaryWithIndexFile() throws IOException {
+		final File blobFile = tmp.newFile();
+		final File indexFile = tmp.newFile();
+		try {
+			FileBlobStoreWriter.builder()
+					.blobFile(blobFile)
+					.indexFile(indexFile)
+					.overwrite(true)
+					.dictionary(new byte[] { 1, 2, 3 })
+					.build();
+			fail("Expected exception");
+		} catch (final IllegalArgumentException e) {
+			// expected
+		}
+		// existing files are not touched
+		assertTrue(blobFile.exists());
+		assertTrue(indexFile.exists());
+	}
+
+	@Test
+	public void testBlockMode() throws IOException {
+		final File blobFile = tmp.newFile();
+		try (FileBlobStoreWriter writer = FileBlobStoreWriter.builder()
+				.blobFile(blobFile)
+				.overwrite(true)
+				.blockSize(4096)
+				.maxBlockedEntrySize(1024)
+				.build()) {
+			for (int i = 0; i < 1000; i++) {
+				writer.addBlobEntryEncoded("Entry" + i, new ByteArrayInputStream(getData("Entry" + i).getBytes(UTF_8)), "text/plain", BlobEntry.ENCODING_DEFLATE_BLOCK);
+			}
+			writer.addBlobEntryUnencoded("Unencoded", new ByteArrayInputStream("unencoded".getBytes(UTF_8)));
+			writer.addBlobEntryGzEncoded("Gzip", new ByteArrayInputStream("gzip".getBytes(UTF_8)));
+		}
+
+		for (final boolean inMemoryIndex : new boolean[] { false, true }) {
+			try (FileBlobStoreReader reader = FileBlobStoreReader.builder()
+					.blobFile(blobFile)
+					.inMemoryIndex(inMemoryIndex)
+					.build()) {
+				for (int i = 0; i < 1000; i++) {
+					final String name = "Entry" + i;
+					final BlobEntry blobEntry = reader.getBlobEntry(name);
+					// every tenth entry is too large for a block
+					assertEquals(name.endsWith("0") ? BlobEntry.ENCODING_DEFLATE_RAW : BlobEntry.ENCODING_DEFLATE_BLOCK, blobEntry.getEncoding());
+					assertEquals("text/plain", blobEntry.getMediaType());
+					assertEquals(getData(name), IOUtils.toString(reader.getBlobEntryContentsDecoded(blobEntry), UTF_8));
+					assertEquals(getData(name), IOUtils.toString(reader.getBlobEntryContentsDecoded(name), UTF_8));
+				}
+				assertEquals(BlobEntry.ENCODING_IDENTITY, reader.getBlobEntry("Unencoded").getEncoding());
+				assertEquals("unencoded", IOUtils.toString(reader.getBlobEntryContents("Unencoded"), UTF_8));
+				// other encodings are not packed
+				assertEquals(BlobEntry.ENCODING_GZIP, reader.getBlobEntry("Gzip").getEncoding());
+				assertEquals("gzip", IOUtils.toString(new GZIPInputStream(reader.getBlobEntryContents("Gzip")), UTF_8));
+
+				// neighbouring entries share blocks
+				final CacheStats stats = reader.getBlockCacheStats();
+				Assert.assertTrue(stats.getHitCount() > stats.getMissCount());
+			}
+		}
+
+		final File mergedBlobFile = tmp.newFile();
+		try (FileBlobStoreReader reader = new FileBlobStoreReader(blobFile);
+				FileBlobStoreWriter writer = FileBlobStoreWriter.builder()
+				.blobFile(mergedBlobFile)
+				.overwrite(true)
+				.build()) {
+			writer.mergeFrom(reader);
+		}
+		try (FileBlobStoreReader reader = new FileBlobStoreReader(mergedBlobFile)) {
+			for (int i = 0; i < 1000; i++) {
+				final String name = "Entry" + i;
+				assertEquals(name.endsWith("0") ? BlobEntry.ENCODING_DEFLATE_RAW : BlobEntry.ENCODING_GZIP, reader.getBlobEntry(name).getEncoding());
+				assertEquals(getData(name), IOUtils.toString(reader.getBlobEntryContentsDecoded(name), UTF_8));
+			}
+		}
+	}
+
+	@Test
+	public void testBlockModeAsync() throws Exception {
+		final File blobFile = tmp.newFile();
+		final ForkJoinPool compressionExecutor = new ForkJoinPool(2);
+		final Map<String, CompletableFuture<BlobEntry>> futures = new LinkedHashMap<>();
+		try {
+			try (FileBlobStoreWriter writer = FileBlobStoreWriter.builder()
+					.blobFile(blobFile)
+					.overwrite(true)
+					.blockSize(4096)
+					.maxBlockedEntrySize(1024)
+					.compressionExecutor(compressionExecutor)
+					.build()) {
+				for (int i = 0; i < 100; i++) {
+					final String name = "Entry" + i;
+					futures.put(name, writer.addBlobEntryEncodedAsync(name, new ByteArrayInputStream(getData(name).getBytes(UTF_8)), "text/plain", BlobEntry.ENCODING_DEFLATE_BLOCK));
+				}
+				futures.put("Gzip", writer.addBlobEntryGzEncodedAsync("Gzip", new ByteArrayInputStream(getData("Gzip").getBytes(UTF_8)), "text/plain"));
+			}
+		} finally {
+			compressionExecutor.shutdown();
+		}
+
+		try (FileBlobStoreReader reader = new FileBlobStoreReader(blobFile)) {
+			for (final Map.Entry<String, CompletableFuture<BlobEntry>> e : futures.entrySet()) {
+				final String name = e.getKey();
+				final BlobEntry blobEntry = reader.getBlobEntry(name);
+				final String expectedEncoding;
+				if (name.equals("Gzip")) {
+					expectedEncoding = BlobEntry.ENCODING_GZIP;
+				} else if (name.endsWith("0")) {
+					// too large for a block
+					expectedEncoding = BlobEntry.ENCODING_DEFLATE_RAW;
+				} else {
+					expectedEncoding = BlobEntry.ENCODING_DEFLATE_BLOCK;
+				}
+				assertEquals(expectedEncoding, blobEntry.getEncoding());
+				assertTrue(e.getValue().isDone());
+				assertEquals(blobEntry.getOffset(), e.getValue().get().getOffset());
+				assertEquals(expectedEncoding, e.getValue().get().getEncoding());
+				assertEquals(getData(name), IOUtils.toString(reader.getBlobEntryContentsDecoded(blobEntry), UTF_8));
+			}
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testBlockEncodingWithoutBlockMode() throws IOException {
+		try (FileBlobStoreWriter writer = FileBlobStoreWriter.builder()
+				.blobFile(tmp.newFile())
+				.overwrite(true)
+				.build()) {
+			writer.addBlobEntryEncoded("entry", new ByteArrayInputStream(new byte[0]), null, BlobEntry.ENCODING_DEFLATE_BLOCK);
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testBlockEncodingNotWritable() throws IOException {
+		try (FileBlobStoreWriter writer = FileBlobStoreWriter.builder()
+				.blobFile(tmp.newFile())
+				.overwrite(true)
+				.blockSize(4096)
+				.build()) {
+			writer.addBlobEntry("entry", new ByteArrayInputStream(new byte[0]), null, BlobEntry.ENCODING_DEFLATE_BLOCK);
+		}
+	}
 }
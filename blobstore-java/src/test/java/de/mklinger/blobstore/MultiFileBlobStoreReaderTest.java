@@ -7,10 +7,21 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.io.IOUtils;
 import org.junit.Assert;
@@ -96,7 +107,250 @@ public class MultiFileBlobStoreReaderTest {
 		}
 	}
 
+	@Test
+	public void bloomFilterTest() throws IOException {
+		final List<File> bloomFilteredFiles = newRotatedBlobStore(true);
+		for (final File file : bloomFilteredFiles) {
+			assertTrue(new File(file.getPath() + ".bloom").isFile());
+		}
+
+		final MultiFileBlobStoreReader reader = new MultiFileBlobStoreReader(bloomFilteredFiles);
+
+		for (int idx = 0; idx < datas.length; idx++) {
+			assertArrayEquals(datas[idx], IOUtils.toByteArray(reader.getBlobEntryContents(getName(idx))));
+		}
+
+		assertNull(reader.getBlobEntry("doesnotexist"));
+		assertNull(reader.getBlobEntryContents("doesnotexist"));
+	}
+
+	@Test
+	public void bloomFilterMissTest() throws IOException {
+		// several entries per file, so that misses fall into the name ranges
+		final List<File> bloomFilteredFiles = newRotatedBlobStore(true, 5);
+		assertEquals(6, bloomFilteredFiles.size());
+
+		final RecordingMetrics metrics = new RecordingMetrics();
+		try (MultiFileBlobStoreReader reader = newMetricsReader(bloomFilteredFiles, metrics)) {
+			for (int idx = 0; idx < datas.length; idx++) {
+				assertNull(reader.getBlobEntry(getName(idx) + "0"));
+			}
+			for (int idx = 0; idx < datas.length; idx++) {
+				assertArrayEquals(datas[idx], IOUtils.toByteArray(reader.getBlobEntryContents(getName(idx))));
+			}
+		}
+		assertEquals(datas.length, metrics.lookupsFound.get());
+		final long probesWithBloomFilter = metrics.probes.get();
+
+		// same lookups without bloom filter
+		final List<File> files = newRotatedBlobStore(false, 5);
+		final RecordingMetrics controlMetrics = new RecordingMetrics();
+		try (MultiFileBlobStoreReader reader = newMetricsReader(files, controlMetrics)) {
+			for (int idx = 0; idx < datas.length; idx++) {
+				assertNull(reader.getBlobEntry(getName(idx) + "0"));
+			}
+			final long probesMissing = controlMetrics.probes.get();
+			assertTrue(probesMissing >= datas.length);
+			for (int idx = 0; idx < datas.length; idx++) {
+				assertArrayEquals(datas[idx], IOUtils.toByteArray(reader.getBlobEntryContents(getName(idx))));
+			}
+			// with bloom filter, only the found entries were searched in the index
+			assertEquals(probesWithBloomFilter, controlMetrics.probes.get() - probesMissing);
+		}
+	}
+
+	private static MultiFileBlobStoreReader newMetricsReader(final List<File> files, final BlobStoreMetrics metrics) throws IOException {
+		return new MultiFileBlobStoreReader(files, file -> FileBlobStoreReader.builder()
+				.blobFile(file)
+				.metrics(metrics)
+				.build(), null);
+	}
+
+	@Test
+	public void overlappingRangesTest() throws IOException {
+		final File file1 = tmp.newFile();
+		try (FileBlobStoreWriter writer = FileBlobStoreWriter.builder().blobFile(file1).overwrite(true).build()) {
+			writer.addBlobEntryUnencoded("b", new ByteArrayInputStream("b1".getBytes(StandardCharsets.UTF_8)));
+			writer.addBlobEntryUnencoded("d", new ByteArrayInputStream("d1".getBytes(StandardCharsets.UTF_8)));
+		}
+		final File file2 = tmp.newFile();
+		try (FileBlobStoreWriter writer = FileBlobStoreWriter.builder().blobFile(file2).overwrite(true).build()) {
+			writer.addBlobEntryUnencoded("a", new ByteArrayInputStream("a2".getBytes(StandardCharsets.UTF_8)));
+			writer.addBlobEntryUnencoded("c", new ByteArrayInputStream("c2".getBytes(StandardCharsets.UTF_8)));
+			writer.addBlobEntryUnencoded("d", new ByteArrayInputStream("d2".getBytes(StandardCharsets.UTF_8)));
+		}
+		final File file3 = tmp.newFile();
+		// no entries
+		FileBlobStoreWriter.builder().blobFile(file3).overwrite(true).build().close();
+
+		try (MultiFileBlobStoreReader reader = new MultiFileBlobStoreReader(Arrays.asList(file1, file2, file3))) {
+			assertEquals("a2", IOUtils.toString(reader.getBlobEntryContents("a"), StandardCharsets.UTF_8));
+			assertEquals("b1", IOUtils.toString(reader.getBlobEntryContents("b"), StandardCharsets.UTF_8));
+			assertEquals("c2", IOUtils.toString(reader.getBlobEntryContents("c"), StandardCharsets.UTF_8));
+			// first file in list wins
+			assertEquals("d1", IOUtils.toString(reader.getBlobEntryContents("d"), StandardCharsets.UTF_8));
+			assertNull(reader.getBlobEntry("0"));
+			assertNull(reader.getBlobEntry("bb"));
+			assertNull(reader.getBlobEntry("e"));
+
+			final Map<String, BlobEntry> blobEntries = reader.getBlobEntries(Arrays.asList("e", "d", "c", "bb", "b", "a", "0"));
+			assertEquals(Arrays.asList("a", "b", "c", "d"), new ArrayList<>(blobEntries.keySet()));
+			assertEquals("a2", IOUtils.toString(reader.getBlobEntryContents(blobEntries.get("a")), StandardCharsets.UTF_8));
+			assertEquals("b1", IOUtils.toString(reader.getBlobEntryContents(blobEntries.get("b")), StandardCharsets.UTF_8));
+			assertEquals("c2", IOUtils.toString(reader.getBlobEntryContents(blobEntries.get("c")), StandardCharsets.UTF_8));
+			assertEquals("d1", IOUtils.toString(reader.getBlobEntryContents(blobEntries.get("d")), StandardCharsets.UTF_8));
+		}
+	}
+
+	@Test
+	public void readerFactoryTest() throws IOException {
+		final RecordingMetrics metrics = new RecordingMetrics();
+		final List<File> openedFiles = new ArrayList<>();
+		try (MultiFileBlobStoreReader reader = new MultiFileBlobStoreReader(files, file -> {
+			openedFiles.add(file);
+			return FileBlobStoreReader.builder()
+					.blobFile(file)
+					.inMemoryIndex(true)
+					.metrics(metrics)
+					.build();
+		}, null)) {
+			assertEquals(files, openedFiles);
+			for (int idx = 0; idx < datas.length; idx++) {
+				assertArrayEquals(datas[idx], IOUtils.toByteArray(reader.getBlobEntryContents(getName(idx))));
+			}
+			assertEquals(datas.length, metrics.lookupsFound.get());
+			// answered from the in-memory index
+			assertEquals(0, metrics.probes.get());
+		}
+	}
+
+	@Test
+	public void parallelOpenTest() throws IOException {
+		final File broken = tmp.newFile();
+		Files.write(broken.toPath(), "not a blob file".getBytes(StandardCharsets.UTF_8));
+		final List<File> filesWithBroken = new ArrayList<>(files);
+		filesWithBroken.add(3, broken);
+
+		final ExecutorService executor = Executors.newFixedThreadPool(4);
+		try (MultiFileBlobStoreReader reader = new MultiFileBlobStoreReader(filesWithBroken, executor)) {
+			final List<BlobStoreReader> readers = reader.getReaders();
+			assertEquals(files.size(), readers.size());
+			for (int i = 0; i < files.size(); i++) {
+				assertEquals(files.get(i), ((FileBlobStoreReader)readers.get(i)).getBlobFile());
+			}
+			for (int idx = 0; idx < datas.length; idx++) {
+				assertArrayEquals(datas[idx], IOUtils.toByteArray(reader.getBlobEntryContents(getName(idx))));
+			}
+			assertNull(reader.getBlobEntry("doesnotexist"));
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void parallelVisitTest() throws IOException {
+		final ExecutorService executor = Executors.newFixedThreadPool(4);
+		try (MultiFileBlobStoreReader reader = new MultiFileBlobStoreReader(files)) {
+			final Map<String, byte[]> visited = new ConcurrentHashMap<>();
+			reader.visitBlobEntries((blobEntry, contents) -> {
+				assertNull(visited.put(blobEntry.getName(), IOUtils.toByteArray(contents)));
+				assertArrayEquals(visited.get(blobEntry.getName()), IOUtils.toByteArray(reader.getBlobEntryContents(blobEntry)));
+			}, executor, 3);
+			assertEquals(datas.length, visited.size());
+			for (int idx = 0; idx < datas.length; idx++) {
+				assertArrayEquals(datas[idx], visited.get(getName(idx)));
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void parallelReaderFactoryTest() throws IOException {
+		final RecordingMetrics metrics = new RecordingMetrics();
+		final Set<File> openedFiles = ConcurrentHashMap.newKeySet();
+		final ExecutorService executor = Executors.newFixedThreadPool(4);
+		try (MultiFileBlobStoreReader reader = new MultiFileBlobStoreReader(files, file -> {
+			openedFiles.add(file);
+			return FileBlobStoreReader.builder()
+					.blobFile(file)
+					.inMemoryIndex(true)
+					.metrics(metrics)
+					.build();
+		}, executor)) {
+			assertEquals(new HashSet<>(files), openedFiles);
+			for (int idx = 0; idx < datas.length; idx++) {
+				assertArrayEquals(datas[idx], IOUtils.toByteArray(reader.getBlobEntryContents(getName(idx))));
+			}
+			assertEquals(datas.length, metrics.lookupsFound.get());
+			assertEquals(0, metrics.probes.get());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void parallelOpenRejectedTest() throws IOException {
+		final int acceptedCount = 5;
+		final AtomicInteger submitted = new AtomicInteger();
+		final Executor rejectingExecutor = command -> {
+			if (submitted.incrementAndGet() > acceptedCount) {
+				throw new RejectedExecutionException("Test rejection");
+			}
+			command.run();
+		};
+		final List<CloseTrackingReader> openedReaders = Collections.synchronizedList(new ArrayList<>());
+		try {
+			new MultiFileBlobStoreReader(files, file -> {
+				final CloseTrackingReader reader = new CloseTrackingReader(file);
+				openedReaders.add(reader);
+				return reader;
+			}, rejectingExecutor);
+			fail("Expected exception");
+		} catch (final RejectedExecutionException e) {
+			// expected
+		}
+		assertEquals(acceptedCount, openedReaders.size());
+		for (final CloseTrackingReader reader : openedReaders) {
+			assertTrue(reader.closed);
+		}
+	}
+
+	private static class CloseTrackingReader extends FileBlobStoreReader {
+		private volatile boolean closed;
+
+		public CloseTrackingReader(final File blobFile) throws IOException {
+			super(blobFile, 0);
+		}
+
+		@Override
+		public void close() throws IOException {
+			closed = true;
+			super.close();
+		}
+	}
+
+	@Test(expected = NoSuchFileException.class)
+	public void parallelOpenMissingFileTest() throws IOException {
+		final List<File> filesWithMissing = new ArrayList<>(files);
+		filesWithMissing.add(new File(tmp.getRoot(), "missing.bin"));
+		final ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			new MultiFileBlobStoreReader(filesWithMissing, executor);
+		} finally {
+			executor.shutdown();
+		}
+	}
+
 	private List<File> newRotatedBlobStore() throws IOException {
+		return newRotatedBlobStore(false);
+	}
+
+	private List<File> newRotatedBlobStore(boolean bloomFilter) throws IOException {
+		return newRotatedBlobStore(bloomFilter, 1);
+	}
+
+	private List<File> newRotatedBlobStore(boolean bloomFilter, int maxEntryCountPerFile) throws IOException {
 		List<File> files;
 		final File directory = tmp.newFolder();
 
@@ -104,7 +358,8 @@ public class MultiFileBlobStoreReaderTest {
 				.directory(directory)
 				.prefix("blob")
 				.suffix(".bin")
-				.maxEntryCountPerFile(1)
+				.maxEntryCountPerFile(maxEntryCountPerFile)
+				.bloomFilter(bloomFilter)
 				.build()) {
 
 			for (int i = 0; i < datas.length; i++) {
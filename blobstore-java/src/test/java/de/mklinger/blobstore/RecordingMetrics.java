@@ -0,0 +1,75 @@
+package de.mklinger.blobstore;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+public class RecordingMetrics implements BlobStoreMetrics {
+	final AtomicLong lookups = new AtomicLong();
+	final AtomicLong lookupsFound = new AtomicLong();
+	final AtomicLong probes = new AtomicLong();
+	final AtomicLong positionCacheHits = new AtomicLong();
+	final AtomicLong positionCacheMisses = new AtomicLong();
+	final AtomicLong bytesRead = new AtomicLong();
+	final AtomicLong bytesDecoded = new AtomicLong();
+	final AtomicLong entriesWritten = new AtomicLong();
+	final AtomicLong bytesWritten = new AtomicLong();
+	final AtomicLong writeLockWaits = new AtomicLong();
+	final AtomicLong indexChunksDumped = new AtomicLong();
+	final AtomicLong indexChunkEntries = new AtomicLong();
+	final AtomicLong indexChunkMerges = new AtomicLong();
+	final AtomicLong indexChunksMerged = new AtomicLong();
+	final AtomicLong indexWrites = new AtomicLong();
+	final AtomicLong indexEntries = new AtomicLong();
+
+	@Override
+	public void lookup(final long nanos, final int probes, final boolean found) {
+		lookups.incrementAndGet();
+		if (found) {
+			lookupsFound.incrementAndGet();
+		}
+		this.probes.addAndGet(probes);
+	}
+
+	@Override
+	public void positionCacheAccess(final boolean hit) {
+		(hit ? positionCacheHits : positionCacheMisses).incrementAndGet();
+	}
+
+	@Override
+	public void bytesRead(final long bytes) {
+		bytesRead.addAndGet(bytes);
+	}
+
+	@Override
+	public void bytesDecoded(final long bytes) {
+		bytesDecoded.addAndGet(bytes);
+	}
+
+	@Override
+	public void entriesWritten(final int entryCount, final long bytes) {
+		entriesWritten.addAndGet(entryCount);
+		bytesWritten.addAndGet(bytes);
+	}
+
+	@Override
+	public void writeLockWait(final long nanos) {
+		writeLockWaits.incrementAndGet();
+	}
+
+	@Override
+	public void indexChunkDumped(final long nanos, final int entryCount) {
+		indexChunksDumped.incrementAndGet();
+		indexChunkEntries.addAndGet(entryCount);
+	}
+
+	@Override
+	public void indexChunksMerged(final long nanos, final int chunkCount) {
+		indexChunkMerges.incrementAndGet();
+		indexChunksMerged.addAndGet(chunkCount);
+	}
+
+	@Override
+	public void indexWritten(final long nanos, final long entryCount) {
+		indexWrites.incrementAndGet();
+		indexEntries.addAndGet(entryCount);
+	}
+}
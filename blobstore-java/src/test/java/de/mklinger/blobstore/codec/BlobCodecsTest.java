@@ -0,0 +1,102 @@
+package de.mklinger.blobstore.codec;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.zip.Deflater;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+import de.mklinger.blobstore.BlobEntry;
+
+public class BlobCodecsTest {
+	@Test
+	public void testBuiltInEncodings() {
+		assertTrue(BlobCodecs.getEncodings().contains(BlobEntry.ENCODING_IDENTITY));
+		assertTrue(BlobCodecs.getEncodings().contains(BlobEntry.ENCODING_GZIP));
+		assertTrue(BlobCodecs.getEncodings().contains(BlobEntry.ENCODING_DEFLATE_RAW));
+		assertTrue(BlobCodecs.getEncodings().contains(BlobEntry.ENCODING_LZ4_BLOCKS));
+		assertNull(BlobCodecs.get("unknown"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testRequireUnknown() {
+		BlobCodecs.require("unknown");
+	}
+
+	@Test(expected = IOException.class)
+	public void testDictionaryPlaceholder() throws IOException {
+		BlobCodecs.require(BlobEntry.ENCODING_DEFLATE_DICT).newDecodingInputStream(new ByteArrayInputStream(new byte[0]));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testIllegalEncodingName() {
+		BlobCodecs.register(new DeflateRawCodec() {
+			@Override
+			public String getEncoding() {
+				return "a;b";
+			}
+		});
+	}
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		for (final String encoding : BlobCodecs.getEncodings()) {
+			// file bound encodings are tested with the writer
+			if (!BlobEntry.ENCODING_DEFLATE_DICT.equals(encoding) && !BlobEntry.ENCODING_DEFLATE_BLOCK.equals(encoding)) {
+				testRoundTrip(BlobCodecs.require(encoding));
+			}
+		}
+		testRoundTrip(new DeflateDictionaryCodec("Lorem ipsum dolor sit amet".getBytes(StandardCharsets.US_ASCII)));
+		testRoundTrip(new DeflateRawCodec(Deflater.BEST_SPEED));
+		testRoundTrip(new GzipCodec(Deflater.BEST_COMPRESSION));
+		testRoundTrip(new Lz4BlockCodec(100));
+	}
+
+	private void testRoundTrip(final BlobCodec codec) throws IOException {
+		final Random random = new Random(1);
+		for (final int size : new int[] { 0, 1, 12, 13, 100, 65536, 65537, 300_000 }) {
+			final byte[] randomData = new byte[size];
+			random.nextBytes(randomData);
+			assertRoundTrip(codec, randomData);
+
+			final byte[] textData = new byte[size];
+			for (int i = 0; i < size; i++) {
+				textData[i] = (byte)("Lorem ipsum dolor sit amet " + (i / 100)).charAt(i % 27);
+			}
+			assertRoundTrip(codec, textData);
+		}
+	}
+
+	private void assertRoundTrip(final BlobCodec codec, final byte[] data) throws IOException {
+		final byte[] encoded;
+		try (InputStream in = codec.newEncodingInputStream(new ByteArrayInputStream(data))) {
+			encoded = IOUtils.toByteArray(in);
+		}
+		try (InputStream in = codec.newDecodingInputStream(new ByteArrayInputStream(encoded))) {
+			assertArrayEquals(codec.getEncoding() + " with " + data.length + " bytes", data, IOUtils.toByteArray(in));
+		}
+	}
+
+	@Test
+	public void testLz4BlocksCompress() throws IOException {
+		final byte[] data = new byte[100_000];
+		for (int i = 0; i < data.length; i++) {
+			data[i] = (byte)(i % 100);
+		}
+		final byte[] encoded;
+		try (InputStream in = BlobCodecs.require(BlobEntry.ENCODING_LZ4_BLOCKS).newEncodingInputStream(new ByteArrayInputStream(data))) {
+			encoded = IOUtils.toByteArray(in);
+		}
+		assertTrue(encoded.length < data.length / 50);
+		assertEquals(0, encoded[encoded.length - 1]);
+	}
+}
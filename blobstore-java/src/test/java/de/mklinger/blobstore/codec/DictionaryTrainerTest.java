@@ -0,0 +1,54 @@
+package de.mklinger.blobstore.codec;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class DictionaryTrainerTest {
+	@Test
+	public void testCommonContent() {
+		final List<byte[]> samples = new ArrayList<>();
+		for (int i = 0; i < 50; i++) {
+			samples.add(("<html><head><title>Page " + i + "</title></head><body class=\"content\">" + i + "</body></html>").getBytes(UTF_8));
+		}
+		final String dictionary = new String(DictionaryTrainer.train(samples, 1024), UTF_8);
+		assertTrue(dictionary, dictionary.contains("</title></head><body class=\"content\">"));
+	}
+
+	@Test
+	public void testMaxSize() {
+		final Random random = new Random(1);
+		final byte[] common = new byte[10_000];
+		random.nextBytes(common);
+		final List<byte[]> samples = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			samples.add(common);
+		}
+		assertEquals(100, DictionaryTrainer.train(samples, 100).length);
+	}
+
+	@Test
+	public void testNothingInCommon() {
+		final Random random = new Random(1);
+		final List<byte[]> samples = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			final byte[] sample = new byte[1000];
+			random.nextBytes(sample);
+			samples.add(sample);
+		}
+		assertEquals(0, DictionaryTrainer.train(samples, 1024).length);
+		assertEquals(0, DictionaryTrainer.train(Collections.emptyList(), 1024).length);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testTooLarge() {
+		DictionaryTrainer.train(Collections.emptyList(), DeflateDictionaryCodec.MAX_DICTIONARY_SIZE + 1);
+	}
+}
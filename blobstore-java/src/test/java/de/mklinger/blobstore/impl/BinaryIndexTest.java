@@ -0,0 +1,105 @@
+package de.mklinger.blobstore.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.mklinger.blobstore.BlobEntry;
+import de.mklinger.blobstore.BlobStoreDefaults;
+import de.mklinger.blobstore.io.PositionalReader;
+
+public class BinaryIndexTest {
+	private static final int PREFIX_LENGTH = 100;
+
+	@Rule
+	public TemporaryFolder tmp = new TemporaryFolder();
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		final List<BlobEntryImpl> entries = new ArrayList<>();
+		final StringBuilder longName = new StringBuilder();
+		for (int i = 0; i < 300; i++) {
+			longName.append('x');
+		}
+		final String[] names = { "A", "AB", "ABC", "B", "a", "a b", longName.toString(), "z~" };
+		for (int i = 0; i < names.length; i++) {
+			entries.add(new BlobEntryImpl(
+					names[i],
+					i * 1_000_000_000L,
+					i,
+					i % 2 == 0 ? "text/plain" : null,
+					i % 3 == 0 ? BlobEntry.ENCODING_IDENTITY : null,
+					BlobStoreDefaults.STANDARD_DEFAULTS));
+		}
+
+		final ByteArrayOutputStream bout = new ByteArrayOutputStream();
+		bout.write(new byte[PREFIX_LENGTH]);
+		try (IndexWriter w = new BinaryIndexWriter(bout, BlobStoreDefaults.STANDARD_DEFAULTS, tmp.getRoot(), "test")) {
+			for (final BlobEntryImpl entry : entries) {
+				w.write(entry);
+			}
+		}
+		final byte[] bytes = bout.toByteArray();
+
+		final BinaryIndex index = new BinaryIndex(reader(bytes), PREFIX_LENGTH, bytes.length, BlobStoreDefaults.STANDARD_DEFAULTS);
+		assertEquals(names.length, index.size());
+		for (final BlobEntryImpl expected : entries) {
+			assertBlobEntryEquals(expected, index.getBlobEntry(expected.getName()));
+		}
+		assertNull(index.getBlobEntry(""));
+		assertNull(index.getBlobEntry("AA"));
+		assertNull(index.getBlobEntry("ABCD"));
+		assertNull(index.getBlobEntry("zz"));
+
+		final List<BlobEntry> visited = new ArrayList<>();
+		try (InputStream in = new ByteArrayInputStream(bytes, (int)index.getRecordsOffset(), (int)index.getRecordsLength())) {
+			index.visitEntries(in, (name, offset, length, mediaType, encoding) -> {
+				visited.add(index.newBlobEntry(name, offset, length, mediaType, encoding));
+			});
+		}
+		assertEquals(entries.size(), visited.size());
+		for (int i = 0; i < entries.size(); i++) {
+			assertBlobEntryEquals(entries.get(i), visited.get(i));
+		}
+	}
+
+	@Test
+	public void testEmpty() throws IOException {
+		final ByteArrayOutputStream bout = new ByteArrayOutputStream();
+		new BinaryIndexWriter(bout, BlobStoreDefaults.STANDARD_DEFAULTS, tmp.getRoot(), "test").close();
+		final byte[] bytes = bout.toByteArray();
+
+		final BinaryIndex index = new BinaryIndex(reader(bytes), 0, bytes.length, BlobStoreDefaults.STANDARD_DEFAULTS);
+		assertEquals(0, index.size());
+		assertNull(index.getBlobEntry("A"));
+	}
+
+	private static PositionalReader reader(final byte[] bytes) {
+		return (position, b, off, len) -> {
+			if (position >= bytes.length) {
+				return -1;
+			}
+			final int n = (int)Math.min(len, bytes.length - position);
+			System.arraycopy(bytes, (int)position, b, off, n);
+			return n;
+		};
+	}
+
+	private static void assertBlobEntryEquals(final BlobEntry expected, final BlobEntry actual) {
+		assertEquals(expected.getName(), actual.getName());
+		assertEquals(expected.getOffset(), actual.getOffset());
+		assertEquals(expected.getLength(), actual.getLength());
+		assertEquals(expected.getMediaType(), actual.getMediaType());
+		assertEquals(expected.getEncoding(), actual.getEncoding());
+	}
+}
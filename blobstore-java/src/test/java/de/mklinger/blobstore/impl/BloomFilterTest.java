@@ -0,0 +1,89 @@
+package de.mklinger.blobstore.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.mklinger.blobstore.BlobStoreFormatException;
+
+public class BloomFilterTest {
+	@Rule
+	public TemporaryFolder tmp = new TemporaryFolder();
+
+	@Test
+	public void testFalsePositiveRate() {
+		final int count = 100_000;
+		final BloomFilter filter = BloomFilter.create(count, 0.01);
+		for (int i = 0; i < count; i++) {
+			filter.put("entry" + i);
+		}
+		for (int i = 0; i < count; i++) {
+			assertTrue(filter.mightContain("entry" + i));
+		}
+		int falsePositives = 0;
+		for (int i = 0; i < count; i++) {
+			if (filter.mightContain("missing" + i)) {
+				falsePositives++;
+			}
+		}
+		assertTrue("Too many false positives: " + falsePositives, falsePositives < count * 0.02);
+	}
+
+	@Test
+	public void testWriteRead() throws IOException {
+		final BloomFilter filter = BloomFilter.create(100, 0.01);
+		for (int i = 0; i < 100; i++) {
+			filter.put("entry" + i);
+		}
+		final File sidecarFile = tmp.newFile();
+		final BloomFilter.BlobFileInfo info = new BloomFilter.BlobFileInfo(1234, 567, 89, 100, "entry0", "entry99");
+		filter.write(sidecarFile, info);
+
+		final BloomFilter readFilter = BloomFilter.read(sidecarFile, info);
+		assertEquals(filter.getMemoryUsage(), readFilter.getMemoryUsage());
+		for (int i = 0; i < 100; i++) {
+			assertTrue(readFilter.mightContain("entry" + i));
+		}
+		// unknown entry count
+		assertNotNull(BloomFilter.read(sidecarFile, new BloomFilter.BlobFileInfo(1234, 567, 89, -1, "entry0", "entry99")));
+
+		assertNull(BloomFilter.read(sidecarFile, new BloomFilter.BlobFileInfo(1235, 567, 89, 100, "entry0", "entry99")));
+		assertNull(BloomFilter.read(sidecarFile, new BloomFilter.BlobFileInfo(1234, 568, 89, 100, "entry0", "entry99")));
+		assertNull(BloomFilter.read(sidecarFile, new BloomFilter.BlobFileInfo(1234, 567, 90, 100, "entry0", "entry99")));
+		assertNull(BloomFilter.read(sidecarFile, new BloomFilter.BlobFileInfo(1234, 567, 89, 101, "entry0", "entry99")));
+		assertNull(BloomFilter.read(sidecarFile, new BloomFilter.BlobFileInfo(1234, 567, 89, 100, "entry1", "entry99")));
+		assertNull(BloomFilter.read(sidecarFile, new BloomFilter.BlobFileInfo(1234, 567, 89, 100, "entry0", null)));
+		assertNull(BloomFilter.read(new File(tmp.getRoot(), "doesnotexist"), info));
+	}
+
+	@Test
+	public void testWriteReadNoEntries() throws IOException {
+		final BloomFilter filter = BloomFilter.create(0, 0.01);
+		final File sidecarFile = tmp.newFile();
+		final BloomFilter.BlobFileInfo info = new BloomFilter.BlobFileInfo(100, 50, 89, 0, null, null);
+		filter.write(sidecarFile, info);
+		assertFalse(BloomFilter.read(sidecarFile, info).mightContain("entry"));
+	}
+
+	@Test(expected = BlobStoreFormatException.class)
+	public void testReadTruncated() throws IOException {
+		final BloomFilter filter = BloomFilter.create(100, 0.01);
+		final File sidecarFile = tmp.newFile();
+		final BloomFilter.BlobFileInfo info = new BloomFilter.BlobFileInfo(1234, 567, 89, 100, "entry0", "entry99");
+		filter.write(sidecarFile, info);
+		final byte[] b = FileUtils.readFileToByteArray(sidecarFile);
+		FileUtils.writeByteArrayToFile(sidecarFile, Arrays.copyOf(b, b.length - 8));
+		BloomFilter.read(sidecarFile, info);
+	}
+}
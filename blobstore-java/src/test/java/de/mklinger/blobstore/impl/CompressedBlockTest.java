@@ -0,0 +1,62 @@
+package de.mklinger.blobstore.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.Deflater;
+
+import org.junit.Test;
+
+import de.mklinger.blobstore.BlobEntry;
+import de.mklinger.blobstore.BlobStoreDefaults;
+import de.mklinger.blobstore.BlobStoreFormatException;
+
+public class CompressedBlockTest {
+	@Test
+	public void testVirtualOffset() {
+		final long virtualOffset = CompressedBlock.toVirtualOffset(123_456_789_012L, 65535);
+		assertEquals(123_456_789_012L, CompressedBlock.getBlockOffset(virtualOffset));
+		assertEquals(65535, CompressedBlock.getIntraBlockOffset(virtualOffset));
+	}
+
+	@Test
+	public void testWriteRead() throws IOException {
+		final CompressedBlockWriter writer = new CompressedBlockWriter(100, Deflater.DEFAULT_COMPRESSION, BlobStoreDefaults.STANDARD_DEFAULTS);
+		final byte[] data = new byte[40];
+		Arrays.fill(data, (byte)'a');
+		writer.add("a", null, data, 40);
+		Arrays.fill(data, (byte)'b');
+		writer.add("b", "text/plain", data, 40);
+		assertFalse(writer.fits(21));
+		assertTrue(writer.fits(20));
+
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		out.write(new byte[7]);
+		final List<BlobEntryImpl> entries = writer.writeTo(out, 7);
+		assertTrue(writer.isEmpty());
+		assertEquals(2, entries.size());
+		assertEquals(BlobEntry.ENCODING_DEFLATE_BLOCK, entries.get(1).getEncoding());
+		assertEquals("text/plain", entries.get(1).getMediaType());
+		assertEquals(40, entries.get(1).getLength());
+		assertEquals(7, CompressedBlock.getBlockOffset(entries.get(1).getOffset()));
+		assertEquals(40, CompressedBlock.getIntraBlockOffset(entries.get(1).getOffset()));
+
+		final byte[] bytes = out.toByteArray();
+		final byte[] block = CompressedBlock.read(new ByteArrayInputStream(bytes, 7, bytes.length - 7));
+		assertEquals(80, block.length);
+		assertArrayEquals(data, Arrays.copyOfRange(block, 40, 80));
+		writer.close();
+	}
+
+	@Test(expected = BlobStoreFormatException.class)
+	public void testReadCorrupt() throws IOException {
+		CompressedBlock.read(new ByteArrayInputStream(new byte[] { 0, 0, 0, 10, 0, 0, 0, 2, 1, 2 }));
+	}
+}
@@ -0,0 +1,87 @@
+package de.mklinger.blobstore.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import de.mklinger.blobstore.CacheStats;
+
+public class ContentCacheTest {
+	@Test
+	public void testGetPut() {
+		final ContentCache cache = new ContentCache(1024 * 1024);
+		assertNull(cache.get("entry0"));
+		for (int i = 0; i < 1000; i++) {
+			cache.put("entry" + i, new byte[] { (byte)i });
+		}
+		for (int i = 0; i < 1000; i++) {
+			assertArrayEquals(new byte[] { (byte)i }, cache.get("entry" + i));
+		}
+
+		final CacheStats stats = cache.getStats();
+		assertEquals(1000, stats.getHitCount());
+		assertEquals(1, stats.getMissCount());
+		assertEquals(0, stats.getEvictionCount());
+		assertEquals(1000, stats.getEntryCount());
+	}
+
+	@Test
+	public void testBounded() {
+		final long maxSize = 64 * 1024;
+		final ContentCache cache = new ContentCache(maxSize);
+		for (int i = 0; i < 10_000; i++) {
+			cache.put("entry" + i, new byte[100]);
+		}
+		final CacheStats stats = cache.getStats();
+		assertTrue(stats.getEstimatedSize() <= maxSize);
+		assertTrue(stats.getEntryCount() > 0);
+		assertEquals(10_000, stats.getEntryCount() + stats.getEvictionCount());
+	}
+
+	@Test
+	public void testLeastRecentlyUsedEvicted() {
+		// single segment budget holds a few entries only
+		final ContentCache cache = new ContentCache(16 * 1024);
+		final String hot = "hot";
+		cache.put(hot, new byte[100]);
+		for (int i = 0; i < 10_000; i++) {
+			assertNotNull(cache.get(hot));
+			cache.put("cold" + i, new byte[100]);
+		}
+		assertNotNull(cache.get(hot));
+		assertTrue(cache.getStats().getEvictionCount() > 0);
+	}
+
+	@Test
+	public void testTooLarge() {
+		final ContentCache cache = new ContentCache(16 * 1024);
+		cache.put("large", new byte[16 * 1024]);
+		assertNull(cache.get("large"));
+		assertEquals(0, cache.getStats().getEntryCount());
+	}
+
+	@Test
+	public void testMaxEntrySize() {
+		// 16 segments of 64 KiB would not hold a 64 KiB entry
+		final int maxEntrySize = 64 * 1024;
+		final ContentCache cache = new ContentCache(1024 * 1024, maxEntrySize);
+		for (int i = 0; i < 10; i++) {
+			cache.put("entry" + i, new byte[maxEntrySize]);
+			assertNotNull(cache.get("entry" + i));
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testMaxEntrySizeTooLarge() {
+		new ContentCache(16 * 1024, 16 * 1024);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidSize() {
+		new ContentCache(0);
+	}
+}
@@ -0,0 +1,87 @@
+package de.mklinger.blobstore.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import de.mklinger.blobstore.BlobEntry;
+import de.mklinger.blobstore.BlobStoreDefaults;
+
+public class IndexEntryBufferTest {
+	@Test
+	public void testAddAndGet() {
+		final IndexEntryBuffer buffer = new IndexEntryBuffer(BlobStoreDefaults.STANDARD_DEFAULTS);
+		for (int i = 0; i < 5000; i++) {
+			buffer.add(newEntry("entry" + i, i));
+		}
+		assertEquals(5000, buffer.size());
+		for (int i = 0; i < 5000; i++) {
+			final BlobEntry blobEntry = buffer.getBlobEntry(i);
+			assertEquals("entry" + i, blobEntry.getName());
+			assertEquals(i * 10, blobEntry.getOffset());
+			assertEquals(i, blobEntry.getLength());
+			assertEquals(i % 2 == 0 ? "text/plain" : "application/octet-stream", blobEntry.getMediaType());
+			assertEquals(i % 3 == 0 ? BlobEntry.ENCODING_IDENTITY : BlobEntry.ENCODING_GZIP, blobEntry.getEncoding());
+		}
+	}
+
+	@Test
+	public void testSort() {
+		final Random random = new Random(1);
+		final List<BlobEntryImpl> entries = new ArrayList<>();
+		final IndexEntryBuffer buffer = new IndexEntryBuffer(BlobStoreDefaults.STANDARD_DEFAULTS, 10, 10);
+		for (int i = 0; i < 10_000; i++) {
+			// short names from a small alphabet, so there are duplicates and prefixes
+			final StringBuilder name = new StringBuilder();
+			final int length = random.nextInt(4);
+			for (int j = 0; j < length; j++) {
+				name.append((char)(' ' + random.nextInt(4) * 30));
+			}
+			final BlobEntryImpl entry = newEntry(name.toString(), i);
+			entries.add(entry);
+			buffer.add(entry);
+		}
+		// stable, like the list sort used before
+		Collections.sort(entries);
+		buffer.sort();
+		for (int i = 0; i < entries.size(); i++) {
+			final BlobEntryImpl blobEntry = buffer.getBlobEntry(i);
+			assertEquals(entries.get(i).getName(), blobEntry.getName());
+			assertEquals(entries.get(i).getOffset(), blobEntry.getOffset());
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testAddAfterSort() {
+		final IndexEntryBuffer buffer = new IndexEntryBuffer(BlobStoreDefaults.STANDARD_DEFAULTS);
+		buffer.add(newEntry("b", 0));
+		buffer.sort();
+		buffer.add(newEntry("a", 1));
+	}
+
+	@Test
+	public void testEstimatedMemoryUsage() {
+		final IndexEntryBuffer buffer = new IndexEntryBuffer(BlobStoreDefaults.STANDARD_DEFAULTS);
+		assertEquals(0, buffer.getEstimatedMemoryUsage());
+		// first entry adds dictionary values
+		buffer.add(newEntry("first", 0));
+		final long first = buffer.getEstimatedMemoryUsage();
+		assertTrue(first > "first".length());
+		buffer.add(newEntry("short", 0));
+		final long shortEntry = buffer.getEstimatedMemoryUsage() - first;
+		assertTrue(shortEntry > "short".length());
+		buffer.add(newEntry("a-much-longer-name-of-an-entry", 0));
+		final long longEntry = buffer.getEstimatedMemoryUsage() - first - shortEntry;
+		assertEquals("a-much-longer-name-of-an-entry".length() - "short".length(), longEntry - shortEntry);
+	}
+
+	private static BlobEntryImpl newEntry(final String name, final int i) {
+		return new BlobEntryImpl(name, i * 10, i, i % 2 == 0 ? "text/plain" : null, i % 3 == 0 ? BlobEntry.ENCODING_IDENTITY : null, BlobStoreDefaults.STANDARD_DEFAULTS);
+	}
+}
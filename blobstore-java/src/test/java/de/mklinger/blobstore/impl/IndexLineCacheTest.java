@@ -0,0 +1,65 @@
+package de.mklinger.blobstore.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import de.mklinger.blobstore.CacheStats;
+
+public class IndexLineCacheTest {
+	@Test
+	public void testGetPut() {
+		final IndexLineCache cache = new IndexLineCache(1024 * 1024);
+		assertNull(cache.get(-1L));
+		for (long pos = -1; pos < 1000; pos++) {
+			cache.put(pos, "line" + pos);
+		}
+		for (long pos = -1; pos < 1000; pos++) {
+			assertEquals("line" + pos, cache.get(pos));
+		}
+		assertNull(cache.get(1000));
+
+		final CacheStats stats = cache.getStats();
+		assertEquals(1001, stats.getHitCount());
+		assertEquals(2, stats.getMissCount());
+		assertEquals(0, stats.getEvictionCount());
+		assertEquals(1001, stats.getEntryCount());
+	}
+
+	@Test
+	public void testBounded() {
+		final long maxSize = 64 * 1024;
+		final IndexLineCache cache = new IndexLineCache(maxSize);
+		for (long pos = 0; pos < 100_000; pos++) {
+			cache.put(pos * 31, "some index line content " + pos);
+		}
+		final CacheStats stats = cache.getStats();
+		assertTrue(stats.getEstimatedSize() <= maxSize);
+		assertTrue(stats.getEntryCount() > 0);
+		assertEquals(100_000, stats.getEntryCount() + stats.getEvictionCount());
+
+		// remaining entries must still be reachable after evictions
+		long found = 0;
+		for (long pos = 0; pos < 100_000; pos++) {
+			final String line = cache.get(pos * 31);
+			if (line != null) {
+				assertEquals("some index line content " + pos, line);
+				found++;
+			}
+		}
+		assertEquals(stats.getEntryCount(), found);
+	}
+
+	@Test
+	public void testSecondChance() {
+		final IndexLineCache cache = new IndexLineCache(16 * 1024);
+		cache.put(42, "hot line");
+		for (long pos = 0; pos < 10_000; pos++) {
+			assertEquals("hot line", cache.get(42));
+			cache.put(1000 + pos, "cold line " + pos);
+		}
+		assertEquals("hot line", cache.get(42));
+	}
+}
@@ -0,0 +1,39 @@
+package de.mklinger.blobstore.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class NameRangeRouterTest {
+	@Test
+	public void testDisjoint() {
+		final NameRangeRouter router = new NameRangeRouter(
+				Arrays.asList("m", "a", "x", null),
+				Arrays.asList("p", "f", "z", null));
+
+		assertArrayEquals(new int[] { 1 }, router.getCandidates("a"));
+		assertArrayEquals(new int[] { 1 }, router.getCandidates("c"));
+		assertArrayEquals(new int[] { 1 }, router.getCandidates("f"));
+		assertArrayEquals(new int[] {}, router.getCandidates("g"));
+		assertArrayEquals(new int[] { 0 }, router.getCandidates("n"));
+		assertArrayEquals(new int[] { 2 }, router.getCandidates("z"));
+		assertArrayEquals(new int[] {}, router.getCandidates("zz"));
+		assertArrayEquals(new int[] {}, router.getCandidates(""));
+	}
+
+	@Test
+	public void testOverlapping() {
+		final NameRangeRouter router = new NameRangeRouter(
+				Arrays.asList("c", "a", "b", "x", "a"),
+				Arrays.asList("d", "z", "c", "y", "b"));
+
+		assertArrayEquals(new int[] { 1, 4 }, router.getCandidates("a"));
+		assertArrayEquals(new int[] { 1, 2, 4 }, router.getCandidates("b"));
+		assertArrayEquals(new int[] { 0, 1, 2 }, router.getCandidates("c"));
+		assertArrayEquals(new int[] { 1, 3 }, router.getCandidates("xa"));
+		assertArrayEquals(new int[] { 1 }, router.getCandidates("z"));
+		assertArrayEquals(new int[] {}, router.getCandidates("zz"));
+	}
+}
@@ -0,0 +1,53 @@
+package de.mklinger.blobstore.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import de.mklinger.blobstore.BlobEntry;
+import de.mklinger.blobstore.BlobStoreDefaults;
+
+public class PackedBlobIndexTest {
+	@Test
+	public void testIndexOf() {
+		final String[] names = { "A", "AB", "ABC", "B", "a", "a b", "z~" };
+		final PackedBlobIndex.Builder builder = PackedBlobIndex.builder(BlobStoreDefaults.STANDARD_DEFAULTS);
+		for (int i = 0; i < names.length; i++) {
+			builder.add(names[i], i * 10, i, i % 2 == 0 ? "text/plain" : null, i % 3 == 0 ? BlobEntry.ENCODING_IDENTITY : null);
+		}
+		final PackedBlobIndex index = builder.build();
+
+		assertEquals(names.length, index.size());
+		for (int i = 0; i < names.length; i++) {
+			assertEquals(i, index.indexOf(names[i]));
+			assertEquals(names[i], index.getName(i));
+			assertEquals(i * 10, index.getOffset(i));
+			assertEquals(i, index.getLength(i));
+
+			final BlobEntry blobEntry = index.getBlobEntry(i);
+			assertEquals(names[i], blobEntry.getName());
+			assertEquals(i % 2 == 0 ? "text/plain" : "application/octet-stream", blobEntry.getMediaType());
+			assertEquals(i % 3 == 0 ? BlobEntry.ENCODING_IDENTITY : BlobEntry.ENCODING_GZIP, blobEntry.getEncoding());
+		}
+
+		assertTrue(index.indexOf("") < 0);
+		assertTrue(index.indexOf("AA") < 0);
+		assertTrue(index.indexOf("ABCD") < 0);
+		assertTrue(index.indexOf("a ") < 0);
+		assertTrue(index.indexOf("zz") < 0);
+	}
+
+	@Test
+	public void testGrow() {
+		final PackedBlobIndex.Builder builder = PackedBlobIndex.builder(BlobStoreDefaults.STANDARD_DEFAULTS);
+		final int count = 10_000;
+		for (int i = 0; i < count; i++) {
+			builder.add(String.format("entry%06d", i), i, 1, null, null);
+		}
+		final PackedBlobIndex index = builder.build();
+		for (int i = 0; i < count; i++) {
+			assertEquals(i, index.indexOf(String.format("entry%06d", i)));
+		}
+	}
+}
@@ -0,0 +1,143 @@
+package de.mklinger.blobstore.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class FileChannelInputStreamTest {
+	@Rule
+	public TemporaryFolder tmp = new TemporaryFolder();
+
+	@Test
+	public void testOffset() throws IOException {
+		final File f = tmp.newFile();
+		FileUtils.writeByteArrayToFile(f, new byte[] { 1, 2, 3, 4, 5, 6, 7 });
+		try (FileChannel channel = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+			try (InputStream in = new FileChannelInputStream(channel, 1, 6)) {
+				assertEquals(2, in.read());
+
+				final byte[] buf = new byte[2];
+				int n = in.read(buf);
+				assertEquals(2, n);
+				assertArrayEquals(new byte[] { 3, 4 }, buf);
+
+				assertEquals(1, in.skip(1));
+				assertEquals(2, in.available());
+
+				buf[0] = 0;
+				buf[1] = 0;
+				n = in.read(buf, 1, 1);
+				assertEquals(1, n);
+				assertArrayEquals(new byte[] { 0, 6 }, buf);
+
+				n = in.read(buf);
+				assertEquals(1, n);
+				assertEquals(7, buf[0]);
+
+				assertEquals(-1, in.read(buf));
+				assertEquals(-1, in.read());
+			}
+			// channel position is not touched
+			assertEquals(0, channel.position());
+		}
+	}
+
+	@Test
+	public void testConcurrentStreams() throws IOException {
+		final File f = tmp.newFile();
+		FileUtils.writeByteArrayToFile(f, new byte[] { 1, 2, 3, 4, 5, 6 });
+		try (FileChannel channel = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+			final InputStream in1 = new FileChannelInputStream(channel, 0, 3);
+			final InputStream in2 = new FileChannelInputStream(channel, 3, 3);
+			assertEquals(4, in2.read());
+			assertEquals(1, in1.read());
+			assertArrayEquals(new byte[] { 5, 6 }, IOUtils.toByteArray(in2));
+			assertArrayEquals(new byte[] { 2, 3 }, IOUtils.toByteArray(in1));
+		}
+	}
+
+	@Test
+	public void testBufferedRange() throws IOException {
+		final File f = tmp.newFile();
+		FileUtils.writeByteArrayToFile(f, new byte[] { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10 });
+		try (FileChannel channel = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+			final InputStream in = new FileChannelInputStream(channel, 1, 8, 3);
+			assertEquals(8, in.available());
+			assertEquals(2, in.read());
+			assertEquals(7, in.available());
+
+			// skip within buffer
+			assertEquals(1, in.skip(1));
+			assertEquals(4, in.read());
+
+			// skip beyond buffer
+			assertEquals(2, in.skip(2));
+			assertEquals(7, in.read());
+			assertEquals(2, in.available());
+
+			assertEquals(2, in.skip(5));
+			assertEquals(0, in.available());
+			assertEquals(-1, in.read());
+
+			// channel position is not touched
+			assertEquals(0, channel.position());
+		}
+	}
+
+	@Test
+	public void testLargeReadAndTransferTo() throws IOException {
+		final byte[] data = new byte[100_000];
+		for (int i = 0; i < data.length; i++) {
+			data[i] = (byte)(i * 31);
+		}
+		final File f = tmp.newFile();
+		FileUtils.writeByteArrayToFile(f, data);
+		try (FileChannel channel = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+			final InputStream in = new FileChannelInputStream(channel, 10, data.length - 20, 1024);
+			assertEquals(data[10], (byte)in.read());
+			final byte[] large = new byte[5000];
+			assertEquals(1023, in.read(large));
+			assertEquals(data[11], large[0]);
+			assertEquals(5000, IOUtils.read(in, large));
+			assertEquals(data[1034], large[0]);
+			assertEquals(data[6033], large[4999]);
+
+			final ByteArrayOutputStream bout = new ByteArrayOutputStream();
+			assertEquals(data.length - 20 - 6024, in.transferTo(bout));
+			final byte[] rest = bout.toByteArray();
+			assertEquals(data[6034], rest[0]);
+			assertEquals(data[data.length - 11], rest[rest.length - 1]);
+			assertEquals(-1, in.read());
+		}
+	}
+
+	@Test
+	public void testInvalidRange() throws IOException {
+		final File f = tmp.newFile();
+		FileUtils.writeByteArrayToFile(f, new byte[] { 1, 2, 3 });
+		try (FileChannel channel = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+			final InputStream in = new FileChannelInputStream(channel, 2, 1);
+			try {
+				// only one byte is left, but the array range is checked first
+				in.read(new byte[2], 1, 2);
+				fail("Expected exception");
+			} catch (final IndexOutOfBoundsException e) {
+				// expected
+			}
+			assertEquals(3, in.read());
+		}
+	}
+}
@@ -0,0 +1,72 @@
+package de.mklinger.blobstore.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class FileChannelRangeChannelTest {
+	@Rule
+	public TemporaryFolder tmp = new TemporaryFolder();
+
+	@Test
+	public void testRead() throws IOException {
+		final File f = tmp.newFile();
+		FileUtils.writeByteArrayToFile(f, new byte[] { 1, 2, 3, 4, 5, 6, 7 });
+		try (FileChannel channel = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+			try (FileChannelRangeChannel in = new FileChannelRangeChannel(channel, 1, 5)) {
+				final ByteBuffer buf = ByteBuffer.allocate(3);
+				assertEquals(3, in.read(buf));
+				assertArrayEquals(new byte[] { 2, 3, 4 }, buf.array());
+
+				// larger buffer than remaining range
+				final ByteBuffer large = ByteBuffer.allocate(10);
+				assertEquals(2, in.read(large));
+				assertEquals(2, large.position());
+				assertEquals(5, large.get(0));
+				assertEquals(6, large.get(1));
+
+				assertEquals(-1, in.read(large));
+			}
+			// channel position is not touched
+			assertEquals(0, channel.position());
+		}
+	}
+
+	@Test
+	public void testTransferTo() throws IOException {
+		final File f = tmp.newFile();
+		FileUtils.writeByteArrayToFile(f, new byte[] { 1, 2, 3, 4, 5, 6, 7 });
+		try (FileChannel channel = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+			final ByteArrayOutputStream bout = new ByteArrayOutputStream();
+			try (FileChannelRangeChannel in = new FileChannelRangeChannel(channel, 2, 4)) {
+				assertEquals(4, in.transferTo(Channels.newChannel(bout)));
+			}
+			assertArrayEquals(new byte[] { 3, 4, 5, 6 }, bout.toByteArray());
+			assertEquals(0, channel.position());
+		}
+	}
+
+	@Test(expected = ClosedChannelException.class)
+	public void testClosed() throws IOException {
+		final File f = tmp.newFile();
+		FileUtils.writeByteArrayToFile(f, new byte[] { 1, 2, 3 });
+		try (FileChannel channel = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+			final FileChannelRangeChannel in = new FileChannelRangeChannel(channel, 0, 3);
+			in.close();
+			in.read(ByteBuffer.allocate(1));
+		}
+	}
+}
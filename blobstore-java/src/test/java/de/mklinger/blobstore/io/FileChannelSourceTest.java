@@ -0,0 +1,67 @@
+package de.mklinger.blobstore.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class FileChannelSourceTest {
+	@Rule
+	public TemporaryFolder tmp = new TemporaryFolder();
+
+	@Test
+	public void testRetryWithReplacedChannel() throws IOException {
+		final File f = tmp.newFile();
+		FileUtils.writeByteArrayToFile(f, new byte[] { 1, 2, 3, 4, 5 });
+		final FileChannel closedChannel = FileChannel.open(f.toPath(), StandardOpenOption.READ);
+		closedChannel.close();
+		try (FileChannel channel = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+			final Deque<FileChannel> channels = new ArrayDeque<>(Arrays.asList(closedChannel, channel));
+			final FileChannelSource source = () -> channels.size() > 1 ? channels.poll() : channels.peek();
+			try (InputStream in = new FileChannelInputStream(source, 1, 3, 8)) {
+				assertArrayEquals(new byte[] { 2, 3, 4 }, IOUtils.toByteArray(in));
+			}
+			assertEquals(1, channels.size());
+		}
+	}
+
+	@Test
+	public void testNoRetryWhenInterrupted() throws IOException {
+		final File f = tmp.newFile();
+		FileUtils.writeByteArrayToFile(f, new byte[] { 1, 2, 3, 4, 5 });
+		final FileChannel closedChannel = FileChannel.open(f.toPath(), StandardOpenOption.READ);
+		closedChannel.close();
+		try (FileChannel channel = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+			final Deque<FileChannel> channels = new ArrayDeque<>(Arrays.asList(closedChannel, channel));
+			final FileChannelSource source = () -> channels.size() > 1 ? channels.poll() : channels.peek();
+			Thread.currentThread().interrupt();
+			try {
+				source.read(ByteBuffer.allocate(5), 0);
+				fail("Expected exception");
+			} catch (final ClosedChannelException e) {
+				// expected
+			} finally {
+				assertTrue(Thread.interrupted());
+			}
+			assertEquals(1, channels.size());
+			assertEquals(5, source.read(ByteBuffer.allocate(5), 0));
+		}
+	}
+}
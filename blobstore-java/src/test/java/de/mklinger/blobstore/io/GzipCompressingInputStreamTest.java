@@ -5,7 +5,9 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.zip.Deflater;
 import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 import org.apache.commons.io.IOUtils;
 import org.junit.Assert;
@@ -103,6 +105,47 @@ public class GzipCompressingInputStreamTest {
 		});
 	}
 
+	@Test
+	public void testSameAsGzipOutputStream() throws IOException {
+		final byte[] testData = getTestData();
+		final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+		try (GZIPOutputStream gzout = new GZIPOutputStream(expected)) {
+			gzout.write(testData);
+		}
+
+		final ByteArrayOutputStream actual = new ByteArrayOutputStream();
+		try (GzipCompressingInputStream in = new GzipCompressingInputStream(new ByteArrayInputStream(testData))) {
+			IOUtils.copy(in, actual);
+		}
+
+		// header OS field differs between JDK versions
+		final byte[] expectedBytes = expected.toByteArray();
+		final byte[] actualBytes = actual.toByteArray();
+		expectedBytes[9] = 0;
+		actualBytes[9] = 0;
+		Assert.assertArrayEquals(expectedBytes, actualBytes);
+	}
+
+	@Test
+	public void testLevelAndBufferSize() throws IOException {
+		final byte[] testData = getTestData();
+		int lastLength = Integer.MAX_VALUE;
+		for (final int level : new int[] { Deflater.NO_COMPRESSION, Deflater.BEST_SPEED, Deflater.BEST_COMPRESSION }) {
+			final ByteArrayOutputStream tmp = new ByteArrayOutputStream();
+			try (GzipCompressingInputStream in = new GzipCompressingInputStream(new ByteArrayInputStream(testData), level, 100)) {
+				IOUtils.copy(in, tmp);
+			}
+			Assert.assertTrue(tmp.size() <= lastLength);
+			lastLength = tmp.size();
+
+			final ByteArrayOutputStream result = new ByteArrayOutputStream();
+			try (GZIPInputStream gzin = new GZIPInputStream(new ByteArrayInputStream(tmp.toByteArray()))) {
+				IOUtils.copy(gzin, result);
+			}
+			Assert.assertArrayEquals(testData, result.toByteArray());
+		}
+	}
+
 	private void testWithCopyStrategy(final CopyStrategy copyStrategy) throws IOException {
 		final byte[] testData = getTestData();
 		final ByteArrayOutputStream tmp = new ByteArrayOutputStream();
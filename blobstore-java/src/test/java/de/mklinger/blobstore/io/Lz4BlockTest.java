@@ -0,0 +1,109 @@
+package de.mklinger.blobstore.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+public class Lz4BlockTest {
+	@Test
+	public void testBlockRoundTrip() throws IOException {
+		final Random random = new Random(1);
+		final int[] hashTable = new int[Lz4Block.HASH_TABLE_SIZE];
+		for (int size = 0; size < 2000; size += 7) {
+			final byte[] data = new byte[size];
+			for (int i = 0; i < size; i++) {
+				// mix of runs, repetitions and noise
+				data[i] = (byte)(i % 300 < 100 ? 'a' : i % 300 < 200 ? i % 13 : random.nextInt());
+			}
+			final byte[] compressed = new byte[Lz4Block.maxCompressedLength(size)];
+			final int compressedLength = Lz4Block.compress(data, 0, size, compressed, 0, hashTable);
+			final byte[] decompressed = new byte[size];
+			assertEquals(size, Lz4Block.decompress(compressed, 0, compressedLength, decompressed, 0, size));
+			assertArrayEquals(data, decompressed);
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void testDecompressTooLarge() throws IOException {
+		final byte[] data = new byte[1000];
+		final byte[] compressed = new byte[Lz4Block.maxCompressedLength(data.length)];
+		final int compressedLength = Lz4Block.compress(data, 0, data.length, compressed, 0, new int[Lz4Block.HASH_TABLE_SIZE]);
+		Lz4Block.decompress(compressed, 0, compressedLength, new byte[999], 0, 999);
+	}
+
+	@Test(expected = IOException.class)
+	public void testDecompressInvalidOffset() throws IOException {
+		// one literal, then a match with offset 2
+		final byte[] compressed = { 0x10, 'a', 2, 0, 0x50, 'b', 'c', 'd', 'e', 'f' };
+		Lz4Block.decompress(compressed, 0, compressed.length, new byte[100], 0, 100);
+	}
+
+	@Test
+	public void testStreamSingleByteReads() throws IOException {
+		final byte[] data = new byte[10_000];
+		Arrays.fill(data, 5000, 10_000, (byte)'x');
+		final byte[] encoded = IOUtils.toByteArray(new Lz4BlockCompressingInputStream(new ByteArrayInputStream(data), 1000));
+		try (InputStream in = new Lz4BlockDecompressingInputStream(new ByteArrayInputStream(encoded))) {
+			for (int i = 0; i < data.length; i++) {
+				assertEquals(data[i] & 0xff, in.read());
+			}
+			assertEquals(-1, in.read());
+		}
+	}
+
+	@Test
+	public void testOutputStream() throws IOException {
+		final Random random = new Random(3);
+		final byte[] data = new byte[100_000];
+		for (int i = 0; i < data.length; i++) {
+			data[i] = (byte)('a' + random.nextInt(4));
+		}
+		final ByteArrayOutputStream bout = new ByteArrayOutputStream();
+		try (OutputStream out = new Lz4BlockOutputStream(bout, 1000)) {
+			// mix single byte and array writes across block boundaries
+			out.write(data, 0, 10);
+			for (int i = 10; i < 1500; i++) {
+				out.write(data[i]);
+			}
+			out.write(data, 1500, data.length - 1500);
+		}
+		// same format as the compressing input stream
+		assertArrayEquals(IOUtils.toByteArray(new Lz4BlockCompressingInputStream(new ByteArrayInputStream(data), 1000)), bout.toByteArray());
+		try (InputStream in = new Lz4BlockDecompressingInputStream(new ByteArrayInputStream(bout.toByteArray()))) {
+			assertArrayEquals(data, IOUtils.toByteArray(in));
+		}
+	}
+
+	@Test
+	public void testOutputStreamFlush() throws IOException {
+		final ByteArrayOutputStream bout = new ByteArrayOutputStream();
+		try (OutputStream out = new Lz4BlockOutputStream(bout)) {
+			out.write(new byte[] { 1, 2, 3 });
+			out.flush();
+			out.flush();
+			out.write(new byte[] { 4, 5 });
+		}
+		try (InputStream in = new Lz4BlockDecompressingInputStream(new ByteArrayInputStream(bout.toByteArray()))) {
+			assertArrayEquals(new byte[] { 1, 2, 3, 4, 5 }, IOUtils.toByteArray(in));
+		}
+	}
+
+	@Test(expected = EOFException.class)
+	public void testStreamTruncated() throws IOException {
+		final byte[] encoded = IOUtils.toByteArray(new Lz4BlockCompressingInputStream(new ByteArrayInputStream(new byte[100])));
+		try (InputStream in = new Lz4BlockDecompressingInputStream(new ByteArrayInputStream(encoded, 0, encoded.length - 1))) {
+			IOUtils.toByteArray(in);
+		}
+	}
+}
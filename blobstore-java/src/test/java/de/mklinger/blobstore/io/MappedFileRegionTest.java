@@ -0,0 +1,59 @@
+package de.mklinger.blobstore.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MappedFileRegionTest {
+	@Rule
+	public TemporaryFolder tmp = new TemporaryFolder();
+
+	@Test
+	public void testChunks() throws IOException {
+		final File f = tmp.newFile();
+		FileUtils.writeByteArrayToFile(f, new byte[] { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10 });
+
+		final MappedFileRegion region;
+		try (FileChannel channel = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+			region = new MappedFileRegion(channel, 1, 8, 3);
+		}
+
+		assertEquals(8, region.size());
+		for (int i = 0; i < 8; i++) {
+			assertEquals(i + 2, region.get(i));
+		}
+
+		final byte[] buf = new byte[10];
+		assertEquals(6, region.get(2, buf, 1, 9));
+		assertArrayEquals(new byte[] { 0, 4, 5, 6, 7, 8, 9, 0, 0, 0 }, buf);
+		assertEquals(-1, region.get(8, buf, 0, 1));
+
+		try (InputStream in = region.newInputStream(1, 6)) {
+			assertEquals(3, in.read());
+			assertEquals(2, in.skip(2));
+			assertEquals(3, in.available());
+			assertArrayEquals(new byte[] { 6, 7, 8 }, IOUtils.toByteArray(in));
+			assertEquals(-1, in.read());
+		}
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testOutOfRegion() throws IOException {
+		final File f = tmp.newFile();
+		FileUtils.writeByteArrayToFile(f, new byte[] { 1, 2, 3 });
+		try (FileChannel channel = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+			new MappedFileRegion(channel, 0, 3).newInputStream(2, 2);
+		}
+	}
+}
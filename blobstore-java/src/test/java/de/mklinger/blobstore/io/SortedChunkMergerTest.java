@@ -0,0 +1,144 @@
+package de.mklinger.blobstore.io;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.mklinger.blobstore.impl.BlobEntryImpl;
+
+public class SortedChunkMergerTest {
+	@Rule
+	public TemporaryFolder tmp = new TemporaryFolder();
+
+	@Test
+	public void testMerge() throws IOException {
+		testMerge(null, SortedChunkMerger.DEFAULT_MAX_MERGE_WIDTH);
+	}
+
+	@Test
+	public void testMergePrefetching() throws IOException {
+		final ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			testMerge(executor, SortedChunkMerger.DEFAULT_MAX_MERGE_WIDTH);
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testMergeGroups() throws IOException {
+		// single thread executor, must not dead lock
+		final ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			testMerge(executor, 3);
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	private void testMerge(final ExecutorService executor, final int maxMergeWidth) throws IOException {
+		final File dir = tmp.newFolder();
+		final int fileCount = 10;
+		final int lineCount = 5000;
+		final List<List<String>> fileLines = new ArrayList<>();
+		for (int i = 0; i < fileCount; i++) {
+			fileLines.add(new ArrayList<>());
+		}
+		for (int i = 0; i < lineCount; i++) {
+			// some files get more lines than others, one stays empty
+			fileLines.get((i * 7 + i / 3) % (fileCount - 1)).add(String.format("key%05d=%d;1;;", i, i));
+		}
+		final List<File> files = new ArrayList<>();
+		for (final List<String> lines : fileLines) {
+			files.add(writeChunkFile(dir, lines));
+		}
+
+		final List<String> merged = new ArrayList<>();
+		final SortedChunkMerger merger = new SortedChunkMerger(BlobEntryImpl::parseKey, UTF_8, executor, 1024, maxMergeWidth);
+		final long count = merger.merge(files, (line, key) -> {
+			assertEquals(BlobEntryImpl.parseKey(line), key);
+			merged.add(line);
+		});
+
+		assertEquals(lineCount, count);
+		assertEquals(lineCount, merged.size());
+		for (int i = 0; i < lineCount; i++) {
+			assertEquals(String.format("key%05d=%d;1;;", i, i), merged.get(i));
+		}
+		// inputs and intermediate files are deleted
+		assertEquals(0, dir.listFiles().length);
+	}
+
+	@Test
+	public void testEqualKeys() throws IOException {
+		final File dir = tmp.newFolder();
+		final List<File> files = Arrays.asList(
+				writeChunkFile(dir, Arrays.asList("a=0", "b=0", "c=0")),
+				writeChunkFile(dir, Arrays.asList("b=1", "c=1")),
+				writeChunkFile(dir, Arrays.asList("a=2", "c=2")));
+		final List<String> merged = new ArrayList<>();
+		new SortedChunkMerger(BlobEntryImpl::parseKey, UTF_8, null).merge(files, (line, key) -> merged.add(line));
+		assertEquals(Arrays.asList("a=0", "a=2", "b=0", "b=1", "c=0", "c=1", "c=2"), merged);
+	}
+
+	@Test
+	public void testMergeToFile() throws IOException {
+		final File dir = tmp.newFolder();
+		final SortedChunkMerger merger = new SortedChunkMerger(BlobEntryImpl::parseKey, UTF_8, null);
+		final File mergedFile = merger.mergeToFile(Arrays.asList(
+				writeChunkFile(dir, Arrays.asList("a=0", "c=0")),
+				writeChunkFile(dir, Arrays.asList("b=1", "d=1"))));
+		assertEquals(1, dir.listFiles().length);
+		final List<String> merged = new ArrayList<>();
+		merger.merge(Arrays.asList(mergedFile, writeChunkFile(dir, Arrays.asList("b=2"))), (line, key) -> merged.add(line));
+		assertEquals(Arrays.asList("a=0", "b=1", "b=2", "c=0", "d=1"), merged);
+		assertEquals(0, dir.listFiles().length);
+	}
+
+	@Test
+	public void testInvalidChunkFile() throws IOException {
+		final File dir = tmp.newFolder();
+		final File valid = writeChunkFile(dir, Arrays.asList("a=0"));
+		final File invalid = new File(dir, "invalid.idxchunk");
+		FileUtils.writeStringToFile(invalid, "not lz4", UTF_8);
+		final ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			new SortedChunkMerger(BlobEntryImpl::parseKey, UTF_8, executor).merge(Arrays.asList(valid, invalid), (line, key) -> {});
+			fail("Expected exception");
+		} catch (final IOException e) {
+			// expected
+		} finally {
+			executor.shutdown();
+		}
+		// inputs are kept on failure
+		assertFalse(dir.listFiles().length == 0);
+	}
+
+	private static File writeChunkFile(final File dir, final List<String> lines) throws IOException {
+		final File file = File.createTempFile("test", ".idxchunk", dir);
+		try (Writer out = new OutputStreamWriter(new Lz4BlockOutputStream(new FileOutputStream(file), 1024), UTF_8)) {
+			for (final String line : lines) {
+				out.write(line);
+				out.write('\n');
+			}
+		}
+		return file;
+	}
+}
@@ -0,0 +1,35 @@
+package de.mklinger.blobstore.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.mklinger.blobstore.Random;
+
+public class StagingBufferTest {
+	@Rule
+	public TemporaryFolder tmp = new TemporaryFolder();
+
+	@Test
+	public void testInMemoryAndSpilled() throws IOException {
+		final StagingBuffer stagingBuffer = new StagingBuffer(1000, tmp.getRoot());
+		for (final int size : new int[] { 0, 1, 999, 1000, 1001, 100_000, 10 }) {
+			final byte[] data = Random.getRandomString(size).getBytes();
+			stagingBuffer.stage(new ByteArrayInputStream(data));
+			assertEquals(data.length, stagingBuffer.length());
+			final ByteArrayOutputStream out = new ByteArrayOutputStream();
+			stagingBuffer.writeTo(out);
+			assertArrayEquals(data, out.toByteArray());
+			assertEquals(size >= 1000 ? 1 : 0, tmp.getRoot().listFiles().length);
+		}
+		stagingBuffer.reset();
+		assertEquals(0, tmp.getRoot().listFiles().length);
+	}
+}
@@ -0,0 +1,164 @@
+package de.mklinger.blobstore.micrometer;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.mklinger.blobstore.BlobEntry;
+import de.mklinger.blobstore.BlobStoreWriter;
+import de.mklinger.blobstore.FileBlobStoreReader;
+import de.mklinger.blobstore.FileBlobStoreWriter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class MicrometerBlobStoreMetricsTest {
+	@Rule
+	public TemporaryFolder tmp = new TemporaryFolder();
+
+	@Test
+	public void testReaderMeters() {
+		final MeterRegistry registry = new SimpleMeterRegistry();
+		final MicrometerBlobStoreMetrics metrics = new MicrometerBlobStoreMetrics(registry, Tags.of("store", "test"));
+
+		metrics.lookup(TimeUnit.MILLISECONDS.toNanos(2), 3, true);
+		metrics.lookup(TimeUnit.MILLISECONDS.toNanos(4), 5, false);
+		metrics.lookup(TimeUnit.MILLISECONDS.toNanos(6), 0, false);
+		metrics.positionCacheAccess(true);
+		metrics.positionCacheAccess(false);
+		metrics.positionCacheAccess(false);
+		metrics.bytesRead(100);
+		metrics.bytesRead(20);
+		metrics.bytesDecoded(300);
+
+		final Timer hits = registry.get("blobstore.reader.lookup").tags("store", "test", "result", "hit").timer();
+		assertEquals(1, hits.count());
+		assertEquals(2, hits.totalTime(TimeUnit.MILLISECONDS), 0.0);
+		final Timer misses = registry.get("blobstore.reader.lookup").tags("store", "test", "result", "miss").timer();
+		assertEquals(2, misses.count());
+		assertEquals(10, misses.totalTime(TimeUnit.MILLISECONDS), 0.0);
+
+		final DistributionSummary probes = registry.get("blobstore.reader.lookup.probes").tags("store", "test").summary();
+		assertEquals(3, probes.count());
+		assertEquals(8, probes.totalAmount(), 0.0);
+		assertEquals(5, probes.max(), 0.0);
+
+		assertEquals(1, registry.get("blobstore.reader.position.cache").tags("store", "test", "result", "hit").counter().count(), 0.0);
+		assertEquals(2, registry.get("blobstore.reader.position.cache").tags("store", "test", "result", "miss").counter().count(), 0.0);
+		assertEquals(120, registry.get("blobstore.reader.bytes.read").tags("store", "test").counter().count(), 0.0);
+		assertEquals("bytes", registry.get("blobstore.reader.bytes.read").counter().getId().getBaseUnit());
+		assertEquals(300, registry.get("blobstore.reader.bytes.decoded").tags("store", "test").counter().count(), 0.0);
+	}
+
+	@Test
+	public void testWriterMeters() {
+		final MeterRegistry registry = new SimpleMeterRegistry();
+		final MicrometerBlobStoreMetrics metrics = new MicrometerBlobStoreMetrics(registry, Tags.of("store", "test"));
+
+		metrics.entriesWritten(1, 10);
+		metrics.entriesWritten(4, 90);
+		metrics.writeLockWait(TimeUnit.MILLISECONDS.toNanos(1));
+		metrics.indexChunkDumped(TimeUnit.MILLISECONDS.toNanos(3), 100);
+		metrics.indexChunkDumped(TimeUnit.MILLISECONDS.toNanos(5), 60);
+		metrics.indexChunksMerged(TimeUnit.MILLISECONDS.toNanos(7), 64);
+		metrics.indexWritten(TimeUnit.MILLISECONDS.toNanos(9), 160);
+
+		assertEquals(5, registry.get("blobstore.writer.entries").tags("store", "test").counter().count(), 0.0);
+		assertEquals(100, registry.get("blobstore.writer.bytes").tags("store", "test").counter().count(), 0.0);
+
+		final Timer lockWait = registry.get("blobstore.writer.lock.wait").tags("store", "test").timer();
+		assertEquals(1, lockWait.count());
+		assertEquals(1, lockWait.totalTime(TimeUnit.MILLISECONDS), 0.0);
+
+		final Timer chunkDumps = registry.get("blobstore.writer.index.chunk.dump").tags("store", "test").timer();
+		assertEquals(2, chunkDumps.count());
+		assertEquals(8, chunkDumps.totalTime(TimeUnit.MILLISECONDS), 0.0);
+		final DistributionSummary chunkEntries = registry.get("blobstore.writer.index.chunk.entries").tags("store", "test").summary();
+		assertEquals(2, chunkEntries.count());
+		assertEquals(160, chunkEntries.totalAmount(), 0.0);
+		assertEquals(100, chunkEntries.max(), 0.0);
+
+		final Timer chunkMerges = registry.get("blobstore.writer.index.chunk.merge").tags("store", "test").timer();
+		assertEquals(1, chunkMerges.count());
+		assertEquals(7, chunkMerges.totalTime(TimeUnit.MILLISECONDS), 0.0);
+		final DistributionSummary mergeWidth = registry.get("blobstore.writer.index.chunk.merge.width").tags("store", "test").summary();
+		assertEquals(1, mergeWidth.count());
+		assertEquals(64, mergeWidth.totalAmount(), 0.0);
+
+		final Timer indexWrites = registry.get("blobstore.writer.index.write").tags("store", "test").timer();
+		assertEquals(1, indexWrites.count());
+		assertEquals(9, indexWrites.totalTime(TimeUnit.MILLISECONDS), 0.0);
+		final DistributionSummary indexEntries = registry.get("blobstore.writer.index.entries").tags("store", "test").summary();
+		assertEquals(1, indexEntries.count());
+		assertEquals(160, indexEntries.totalAmount(), 0.0);
+	}
+
+	@Test
+	public void testNoTags() {
+		final MeterRegistry registry = new SimpleMeterRegistry();
+		final MicrometerBlobStoreMetrics metrics = new MicrometerBlobStoreMetrics(registry);
+		metrics.bytesRead(1);
+		assertEquals(1, registry.get("blobstore.reader.bytes.read").counter().count(), 0.0);
+		assertNull(registry.get("blobstore.reader.bytes.read").counter().getId().getTag("store"));
+	}
+
+	@Test
+	public void testTagsTellStoresApart() {
+		final MeterRegistry registry = new SimpleMeterRegistry();
+		new MicrometerBlobStoreMetrics(registry, Tags.of("store", "a")).bytesRead(1);
+		new MicrometerBlobStoreMetrics(registry, Tags.of("store", "b")).bytesRead(2);
+		assertEquals(1, registry.get("blobstore.reader.bytes.read").tags("store", "a").counter().count(), 0.0);
+		assertEquals(2, registry.get("blobstore.reader.bytes.read").tags("store", "b").counter().count(), 0.0);
+		assertEquals(2, registry.get("blobstore.reader.bytes.read").counters().size());
+	}
+
+	@Test
+	public void testWithWriterAndReader() throws IOException {
+		final MeterRegistry registry = new SimpleMeterRegistry();
+		final MicrometerBlobStoreMetrics metrics = new MicrometerBlobStoreMetrics(registry, Tags.of("store", "test"));
+		final File blobFile = tmp.newFile();
+		try (BlobStoreWriter writer = FileBlobStoreWriter.builder()
+				.blobFile(blobFile)
+				.overwrite(true)
+				.maxIndexEntriesInMemory(10)
+				.metrics(metrics)
+				.build()) {
+			for (int i = 99; i >= 0; i--) {
+				writer.addBlobEntry("Entry" + i, new ByteArrayInputStream(("data" + i).getBytes(UTF_8)), "text/plain", BlobEntry.ENCODING_IDENTITY);
+			}
+		}
+		assertEquals(100, registry.get("blobstore.writer.entries").tags("store", "test").counter().count(), 0.0);
+		assertEquals(100, registry.get("blobstore.writer.index.chunk.entries").tags("store", "test").summary().totalAmount(), 0.0);
+		assertEquals(100, registry.get("blobstore.writer.index.entries").tags("store", "test").summary().totalAmount(), 0.0);
+		assertEquals(1, registry.get("blobstore.writer.index.write").tags("store", "test").timer().count());
+
+		try (FileBlobStoreReader reader = FileBlobStoreReader.builder()
+				.blobFile(blobFile)
+				.metrics(metrics)
+				.build()) {
+			try (InputStream in = reader.getBlobEntryContentsDecoded("Entry42")) {
+				assertNotNull(in);
+				assertEquals("data42", IOUtils.toString(in, UTF_8));
+			}
+			assertNull(reader.getBlobEntry("Entry100"));
+		}
+		assertEquals(1, registry.get("blobstore.reader.lookup").tags("store", "test", "result", "hit").timer().count());
+		assertTrue(registry.get("blobstore.reader.lookup").tags("store", "test", "result", "miss").timer().count() >= 1);
+		assertEquals("data42".length(), registry.get("blobstore.reader.bytes.read").tags("store", "test").counter().count(), 0.0);
+	}
+}